@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.jmh;
+
+import io.hops.experiments.benchmarks.common.BenchmarkOperations;
+import io.hops.experiments.benchmarks.common.stats.OperationHistograms;
+import io.hops.experiments.benchmarks.common.stats.StripedCounter;
+import io.hops.experiments.benchmarks.common.stats.Timeline;
+import io.hops.experiments.benchmarks.interleaved.coin.InterleavedMultiFaceCoin;
+import io.hops.experiments.controller.LiveMetrics;
+import io.hops.experiments.utils.BMOperationsUtils;
+import io.hops.experiments.workload.generator.CompactFileTreeGenerator;
+import io.hops.experiments.workload.generator.FilePool;
+import io.hops.experiments.workload.generator.FileTreeGenerator;
+import io.hops.experiments.workload.generator.NameSpaceGenerator;
+import org.apache.hadoop.fs.FileSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How many ops per second one client thread can issue when the file system
+ * costs nothing, i.e. the overhead that the harness adds to every op. Each
+ * JMH thread gets its own pool, coin and recorders like the worker threads
+ * of the interleaved benchmark.
+ *
+ * mvn -P jmh package && java -jar target/benchmarks.jar ClientOverhead -t 8
+ *
+ * @author salman
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientOverheadBenchmark {
+
+  private static final String BASE_DIR = "/test";
+  private static final int FILES_PER_DIR = 16;
+  private static final int DIRS_PER_DIR = 2;
+  private static final int POOL_FILES = 10000;
+  private static final short REPLICATION = 3;
+  // the files created by the ops have no data
+  private static final String FILE_SIZE = "[(0,100)]";
+
+  @Param({"FileTreeGenerator", "CompactFileTreeGenerator"})
+  public String filePool;
+
+  private FilePool pool;
+  private NameSpaceGenerator nameSpaceGenerator;
+  private InterleavedMultiFaceCoin coin;
+  private FileSystem dfs;
+  private String renamedPath;
+
+  private StripedCounter operationsCompleted;
+  private StripedCounter operationsFailed;
+  private OperationHistograms opsExeTimes;
+  private Timeline.Recorder timelineRecorder;
+  private LiveMetrics.Recorder liveRecorder;
+  private long latency = 0;
+
+  @Setup
+  public void setup() throws IOException {
+    if (filePool.equals("FileTreeGenerator")) {
+      pool = new FileTreeGenerator(BASE_DIR, FILES_PER_DIR, DIRS_PER_DIR, 0, FILE_SIZE);
+    } else if (filePool.equals("CompactFileTreeGenerator")) {
+      pool = new CompactFileTreeGenerator(BASE_DIR, FILES_PER_DIR, DIRS_PER_DIR, 0, FILE_SIZE);
+    } else {
+      throw new IllegalArgumentException("Unknown file pool: " + filePool);
+    }
+    for (int i = 0; i < POOL_FILES; i++) {
+      pool.fileCreationSucceeded(pool.getFileToCreate());
+    }
+
+    nameSpaceGenerator = new NameSpaceGenerator(BASE_DIR, FILES_PER_DIR, DIRS_PER_DIR);
+    coin = new InterleavedMultiFaceCoin(new BigDecimal(5), BigDecimal.ZERO, new BigDecimal(30),
+            new BigDecimal(5), new BigDecimal(5), new BigDecimal(10), new BigDecimal(10),
+            new BigDecimal(5), BigDecimal.ZERO, new BigDecimal(5), new BigDecimal(5),
+            new BigDecimal(10), new BigDecimal(10), BigDecimal.ZERO, BigDecimal.ZERO);
+    dfs = new NoOpFileSystem();
+    renamedPath = BMOperationsUtils.getRenameDestination(pool.getFileToRead());
+
+    operationsCompleted = new StripedCounter();
+    operationsFailed = new StripedCounter();
+    opsExeTimes = new OperationHistograms();
+    timelineRecorder = new Timeline(System.currentTimeMillis(), 1000).newRecorder();
+    liveRecorder = new LiveMetrics().newRecorder();
+  }
+
+  @Benchmark
+  public String getFilePath() {
+    return BMOperationsUtils.getPath(BenchmarkOperations.READ_FILE, pool);
+  }
+
+  @Benchmark
+  public String getDirPath() {
+    return BMOperationsUtils.getPath(BenchmarkOperations.LS_DIR, pool);
+  }
+
+  @Benchmark
+  public BenchmarkOperations coinFlip() {
+    return coin.flip();
+  }
+
+  @Benchmark
+  public String getFileToCreate() {
+    return nameSpaceGenerator.getFileToCreate();
+  }
+
+  /**
+   * the path has already been renamed once, so the counter is parsed too
+   */
+  @Benchmark
+  public String renameDestination() {
+    return BMOperationsUtils.getRenameDestination(renamedPath);
+  }
+
+  @Benchmark
+  public void updateStats() {
+    updateStats(BenchmarkOperations.READ_FILE, true, nextLatency());
+  }
+
+  /**
+   * an op of the interleaved benchmark from the coin flip to the stats
+   */
+  @Benchmark
+  public boolean interleavedOp() throws IOException {
+    BenchmarkOperations opType = coin.flip();
+    String path = BMOperationsUtils.getPath(opType, pool);
+    if (path == null) {
+      return false;
+    }
+    long opStartTime = System.nanoTime();
+    boolean retVal = BMOperationsUtils.performOp(dfs, opType, pool, path, REPLICATION, 0);
+    updateStats(opType, retVal, System.nanoTime() - opStartTime);
+    return retVal;
+  }
+
+  // same as InterleavedBenchmark's worker
+  private void updateStats(BenchmarkOperations opType, boolean success, long opExeTime) {
+    if (success) {
+      operationsCompleted.increment();
+      opsExeTimes.recordValue(opType, opExeTime);
+      timelineRecorder.recordSuccess(opExeTime);
+      liveRecorder.recordSuccess(opType, opExeTime);
+    } else {
+      operationsFailed.increment();
+      timelineRecorder.recordFailure();
+      liveRecorder.recordFailure();
+    }
+  }
+
+  // spreads the values over the buckets of the histograms, 1 us to 1 ms
+  private long nextLatency() {
+    latency = (latency + 7919) % 1000000;
+    return 1000 + latency;
+  }
+}
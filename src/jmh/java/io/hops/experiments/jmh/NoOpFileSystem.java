@@ -0,0 +1,184 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.jmh;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PositionedReadable;
+import org.apache.hadoop.fs.Seekable;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.util.Progressable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+
+/**
+ * A file system where every op succeeds without doing anything. Files are
+ * empty and data written to them is dropped, so the benchmarks only measure
+ * the client side of the harness.
+ *
+ * @author salman
+ */
+public class NoOpFileSystem extends FileSystem {
+
+  private static final URI NOOP_URI = URI.create("noop:///");
+  private static final FileStatus STATUS = new FileStatus(0, false, 1, 64 * 1024 * 1024, 0,
+          new Path("/"));
+  private static final FileStatus[] NO_FILES = new FileStatus[0];
+
+  private Path workingDir = new Path("/");
+
+  public NoOpFileSystem() {
+    setConf(new Configuration(false));
+  }
+
+  @Override
+  public URI getUri() {
+    return NOOP_URI;
+  }
+
+  @Override
+  public FSDataInputStream open(Path f, int bufferSize) throws IOException {
+    return new FSDataInputStream(new EmptyInputStream());
+  }
+
+  @Override
+  public FSDataOutputStream create(Path f, FsPermission permission, boolean overwrite,
+          int bufferSize, short replication, long blockSize, Progressable progress)
+          throws IOException {
+    return new FSDataOutputStream(new NullOutputStream(), null);
+  }
+
+  @Override
+  public FSDataOutputStream append(Path f, int bufferSize, Progressable progress)
+          throws IOException {
+    return new FSDataOutputStream(new NullOutputStream(), null);
+  }
+
+  @Override
+  public boolean rename(Path src, Path dst) throws IOException {
+    return true;
+  }
+
+  @Override
+  public boolean delete(Path f, boolean recursive) throws IOException {
+    return true;
+  }
+
+  @Override
+  public FileStatus[] listStatus(Path f) throws IOException {
+    return NO_FILES;
+  }
+
+  @Override
+  public void setWorkingDirectory(Path newDir) {
+    workingDir = newDir;
+  }
+
+  @Override
+  public Path getWorkingDirectory() {
+    return workingDir;
+  }
+
+  @Override
+  public boolean mkdirs(Path f, FsPermission permission) throws IOException {
+    return true;
+  }
+
+  @Override
+  public FileStatus getFileStatus(Path f) throws IOException {
+    return STATUS;
+  }
+
+  @Override
+  public void setPermission(Path p, FsPermission permission) throws IOException {
+  }
+
+  @Override
+  public void setOwner(Path p, String username, String groupname) throws IOException {
+  }
+
+  @Override
+  public boolean setReplication(Path src, short replication) throws IOException {
+    return true;
+  }
+
+  /**
+   * FSDataInputStream only wraps streams that can seek
+   */
+  private static class EmptyInputStream extends InputStream implements Seekable,
+          PositionedReadable {
+
+    @Override
+    public int read() throws IOException {
+      return -1;
+    }
+
+    @Override
+    public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+      return -1;
+    }
+
+    @Override
+    public void readFully(long position, byte[] buffer, int offset, int length)
+            throws IOException {
+      if (length > 0) {
+        throw new EOFException();
+      }
+    }
+
+    @Override
+    public void readFully(long position, byte[] buffer) throws IOException {
+      readFully(position, buffer, 0, buffer.length);
+    }
+
+    @Override
+    public void seek(long pos) throws IOException {
+      if (pos != 0) {
+        throw new EOFException();
+      }
+    }
+
+    @Override
+    public long getPos() throws IOException {
+      return 0;
+    }
+
+    @Override
+    public boolean seekToNewSource(long targetPos) throws IOException {
+      return false;
+    }
+  }
+
+  private static class NullOutputStream extends OutputStream {
+
+    @Override
+    public void write(int b) throws IOException {
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+    }
+  }
+}
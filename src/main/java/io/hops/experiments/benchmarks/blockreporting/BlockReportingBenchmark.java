@@ -49,11 +49,9 @@ public class BlockReportingBenchmark extends Benchmark {
   private DescriptiveStatistics brElapsedTimes = new DescriptiveStatistics();
   private TinyDatanodes datanodes;
   private BMConfiguration bmConf;
-  private final int slaveId ;
 
-  public BlockReportingBenchmark(Configuration conf, BMConfiguration bmConf, int slaveID) {
-    super(conf, bmConf);
-    this.slaveId = slaveID;
+  public BlockReportingBenchmark(Configuration conf, BMConfiguration bmConf, int slaveID, int numSlaves) {
+    super(conf, bmConf, slaveID, numSlaves);
   }
 
   @Override
@@ -87,6 +85,7 @@ public class BlockReportingBenchmark extends Benchmark {
               bmConf.getBlockReportingMaxTimeBeforeNextReport()));
     }
 
+    waitForStart();
     startTime = Time.now();
     executor.invokeAll(workers, bmConf.getBlockReportBenchMarkDuration(), TimeUnit.MILLISECONDS);
     executor.shutdown();
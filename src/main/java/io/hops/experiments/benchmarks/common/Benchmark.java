@@ -18,36 +18,59 @@ package io.hops.experiments.benchmarks.common;
 
 import io.hops.experiments.benchmarks.blockreporting.BlockReportingBenchmark;
 import io.hops.experiments.benchmarks.common.coin.FileSizeMultiFaceCoin;
+import io.hops.experiments.benchmarks.common.commands.NamespaceWarmUp;
 import io.hops.experiments.benchmarks.common.config.BMConfiguration;
+import io.hops.experiments.benchmarks.common.config.ConfigKeys;
 import io.hops.experiments.benchmarks.interleaved.InterleavedBenchmark;
 import io.hops.experiments.benchmarks.rawthroughput.RawBenchmark;
+import io.hops.experiments.benchmarks.replay.ReplayBenchmark;
+import io.hops.experiments.benchmarks.scenario.ScenarioBenchmark;
+import io.hops.experiments.controller.LiveMetrics;
 import io.hops.experiments.controller.Logger;
 import io.hops.experiments.controller.commands.BenchmarkCommand;
 import io.hops.experiments.controller.commands.Handshake;
 import io.hops.experiments.controller.commands.WarmUpCommand;
 import io.hops.experiments.utils.DFSOperationsUtils;
 import io.hops.experiments.workload.generator.FilePool;
+import io.hops.experiments.workload.generator.FilePoolSharing;
+import io.hops.experiments.workload.generator.NamespaceManifest;
+import io.hops.experiments.workload.generator.SharedNamespace;
+import io.hops.experiments.workload.generator.TreeDescription;
 import org.apache.hadoop.conf.Configuration;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 
 public abstract class Benchmark {
 
   protected final Configuration conf;
   protected final ExecutorService executor;
-  protected AtomicInteger threadsWarmedUp = new AtomicInteger(0);
+  // all the threads of the executor take part in each warm up stage
+  protected final CyclicBarrier threadsWarmedUp;
   protected final BMConfiguration bmConf;
+  protected final int slaveId;
+  protected final int numSlaves;
+  protected final LiveMetrics liveMetrics = new LiveMetrics();
+  private volatile long startAt = 0;
+  private boolean manifestsDirty = false;
 
-  public Benchmark(Configuration conf, BMConfiguration bmConf) {
+  public Benchmark(Configuration conf, BMConfiguration bmConf, int slaveId, int numSlaves) {
     this.conf = conf;
     this.bmConf = bmConf;
-    this.executor = Executors.newFixedThreadPool(bmConf.getSlaveNumThreads());
+    this.slaveId = slaveId;
+    this.numSlaves = Math.max(1, numSlaves);
+    this.executor = bmConf.getSlaveClientEngine().newExecutor(bmConf.getSlaveNumThreads());
+    this.threadsWarmedUp = new CyclicBarrier(bmConf.getSlaveNumThreads());
   }
 
   protected abstract WarmUpCommand.Response warmUp(WarmUpCommand.Request warmUp)
@@ -59,18 +82,84 @@ public abstract class Benchmark {
   public final BenchmarkCommand.Response processCommand(BenchmarkCommand.Request command)
           throws Exception {
     if (command instanceof WarmUpCommand.Request) {
-      return warmUp((WarmUpCommand.Request) command);
+      if (bmConf.getPrepopulateTree() != null) {
+        prepopulate(bmConf.getPrepopulateTree());
+      }
+      if (bmConf.isNamespaceManifestReuse() && loadNamespaceManifests()) {
+        return new NamespaceWarmUp.Response();
+      }
+      WarmUpCommand.Response response = warmUp((WarmUpCommand.Request) command);
+      if (bmConf.getNamespaceManifestDir() != null) {
+        saveNamespaceManifests();
+      }
+      if (bmConf.getFilePoolSharing() == FilePoolSharing.CLUSTER && response instanceof NamespaceWarmUp.Response) {
+        response = new NamespaceWarmUp.Response(slaveId, getSharedNamespace().getFilesIssued());
+      }
+      return response;
+    }
+    if (bmConf.getNamespaceManifestDir() != null && !manifestsDirty) {
+      // the phase may delete or rename files. the manifests are saved again
+      // when the run ends
+      markNamespaceManifestsDirty();
     }
     return processCommandInternal(command);
   }
   
-  public static Benchmark getBenchmark(Configuration conf, BMConfiguration bmConf, int slaveID) {
+  /**
+   * @param files number of files issued by each slave in the CLUSTER shared
+   * namespace, sent by the master after the warm up
+   */
+  public void setPeerFiles(long[] files) {
+    getSharedNamespace().setPeerFiles(files);
+  }
+
+  private SharedNamespace getSharedNamespace() {
+    return SharedNamespace.getInstance(bmConf.getBaseDir(), bmConf.getFilesPerDir(), bmConf.getDirPerDir(),
+            bmConf.getFilePoolSharing(), slaveId, numSlaves);
+  }
+
+  public LiveMetrics getLiveMetrics() {
+    return liveMetrics;
+  }
+
+  /**
+   * @param startAt time at which the next phase starts its clients
+   */
+  public void setStartAt(long startAt) {
+    this.startAt = startAt;
+  }
+
+  /**
+   * Called by the phases after setting up their clients. Holds the phase
+   * until the start time sent by the master so that all the slaves start
+   * together.
+   *
+   * @return the start time, the epoch of the phase's timeline
+   */
+  protected long waitForStart() throws InterruptedException {
+    long epoch = startAt;
+    long wait = startAt - System.currentTimeMillis();
+    if (startAt > 0 && wait < 0) {
+      Logger.printMsg("Phase set up finished " + (-wait) + " ms after the start time");
+    }
+    startAt = 0;
+    if (wait > 0) {
+      Thread.sleep(wait);
+    }
+    return epoch > 0 ? epoch : System.currentTimeMillis();
+  }
+
+  public static Benchmark getBenchmark(Configuration conf, BMConfiguration bmConf, int slaveID, int numSlaves) {
     if (bmConf.getBenchMarkType() == BenchmarkType.RAW) {
-      return new RawBenchmark(conf, bmConf);
+      return new RawBenchmark(conf, bmConf, slaveID, numSlaves);
     } else if (bmConf.getBenchMarkType() == BenchmarkType.INTERLEAVED) {
-      return new InterleavedBenchmark(conf, bmConf);
+      return new InterleavedBenchmark(conf, bmConf, slaveID, numSlaves);
     } else if (bmConf.getBenchMarkType() == BenchmarkType.BR) {
-         return new BlockReportingBenchmark(conf, bmConf, slaveID);
+         return new BlockReportingBenchmark(conf, bmConf, slaveID, numSlaves);
+    } else if (bmConf.getBenchMarkType() == BenchmarkType.REPLAY) {
+      return new ReplayBenchmark(conf, bmConf, slaveID, numSlaves);
+    } else if (bmConf.getBenchMarkType() == BenchmarkType.SCENARIO) {
+      return new ScenarioBenchmark(conf, bmConf, slaveID, numSlaves);
     } else {
       throw new UnsupportedOperationException("Unsupported Benchmark " + bmConf.getBenchMarkType());
     }
@@ -87,40 +176,51 @@ public abstract class Benchmark {
 
     public BaseWarmUp(int filesToCreate, BMConfiguration bmConf,
                        String stage) throws IOException {
+      this(filesToCreate, bmConf, stage, null, null);
+    }
+
+    /**
+     * @param dfs client to use. null = the client of the thread
+     * @param filePool pool to fill. null = the pool of the thread
+     */
+    public BaseWarmUp(int filesToCreate, BMConfiguration bmConf,
+                       String stage, FileSystem dfs, FilePool filePool) throws IOException {
       this.filesToCreate = filesToCreate;
       this.stage = stage;
       this.bmConf = bmConf;
+      this.dfs = dfs;
+      this.filePool = filePool;
     }
 
     @Override
     public Object call() throws Exception {
-      dfs = DFSOperationsUtils.getDFSClient(conf);
-      filePool = DFSOperationsUtils.getFilePool(conf,
-              bmConf.getBaseDir(), bmConf.getDirPerDir(),
-              bmConf.getFilesPerDir(), bmConf.isFixedDepthTree(),
-              bmConf.getTreeDepth(), bmConf.getFileSizeDistribution(),
-              bmConf.getReadFilesFromDisk(), bmConf.getDiskNameSpacePath());
+      if (dfs == null) {
+        dfs = DFSOperationsUtils.getDFSClient(conf);
+      }
+      if (filePool == null) {
+        filePool = DFSOperationsUtils.getFilePool(conf, bmConf, slaveId, numSlaves);
+      }
       String filePath = null;
 
-      for (int i = 0; i < filesToCreate; i++) {
-        try {
-          filePath = filePool.getFileToCreate();
-          DFSOperationsUtils
-                  .createFile(dfs, filePath, bmConf.getReplicationFactor(), filePool);
-          filePool.fileCreationSucceeded(filePath);
-          DFSOperationsUtils.readFile(dfs, filePath);
-          filesCreatedInWarmupPhase.incrementAndGet();
-          log();
-        } catch (Exception e) {
-          Logger.error(e);
+      try {
+        for (int i = 0; i < filesToCreate; i++) {
+          try {
+            filePath = filePool.getFileToCreate();
+            DFSOperationsUtils
+                    .createFile(dfs, filePath, bmConf.getReplicationFactor(), filePool);
+            filePool.fileCreationSucceeded(filePath);
+            DFSOperationsUtils.readFile(dfs, filePath);
+            filesCreatedInWarmupPhase.incrementAndGet();
+            log();
+          } catch (Exception e) {
+            Logger.error(e);
+          }
         }
-      }
-      log();
-      threadsWarmedUp.incrementAndGet();
-      while(threadsWarmedUp.get() != bmConf.getSlaveNumThreads()){ // this is to ensure that all the threads in
-        // the
-        // executor service are started during the warmup phase
-        Thread.sleep(100);
+        log();
+      } finally {
+        // this is to ensure that all the threads in the executor service
+        // are started, and have their pools, during the warmup phase
+        threadsWarmedUp.await();
       }
 
       System.out.println("WarmedUp");
@@ -136,6 +236,258 @@ public abstract class Benchmark {
     }
   };
 
+  /**
+   * Creates this slave's part of the tree, see TreeDescription. The leaves
+   * that a previous run created are skipped, so a stopped pre-population
+   * is resumed and a complete tree is reused as is, as long as the number
+   * of slaves and threads is the same.
+   */
+  protected void prepopulate(TreeDescription tree) throws InterruptedException {
+    int threads = bmConf.getSlaveNumThreads();
+    Logger.printMsg("Pre-populating " + tree);
+    List<Callable<Object>> workers = new ArrayList<Callable<Object>>();
+    for (int i = 0; i < threads; i++) {
+      workers.add(new TreeWarmUp(tree, slaveId * threads + i, numSlaves * threads));
+    }
+    executor.invokeAll(workers); // blocking call
+    Logger.printMsg("Finished. Pre-population. Created " + filesCreatedInPrepopulation.get() + " files. ");
+  }
+
+  private final AtomicLong filesCreatedInPrepopulation = new AtomicLong(0);
+  protected class TreeWarmUp implements Callable<Object> {
+
+    private final TreeDescription tree;
+    private final int worker;
+    private final int workers;
+
+    public TreeWarmUp(TreeDescription tree, int worker, int workers) {
+      this.tree = tree;
+      this.worker = worker;
+      this.workers = workers;
+    }
+
+    @Override
+    public Object call() throws Exception {
+      FileSystem dfs = DFSOperationsUtils.getDFSClient(conf);
+      String fileSizes = bmConf.getFileSizeDistribution();
+      FileSizeMultiFaceCoin fileSizeCoin = new FileSizeMultiFaceCoin(fileSizes != null ? fileSizes
+              : ConfigKeys.FILE_SIZE_IN_Bytes_DEFAULT);
+      StringBuilder path = new StringBuilder(128);
+      long leaves = tree.getLeavesOf(worker, workers);
+      long first = getFirstMissingLeaf(dfs, path, leaves);
+      if (first > 0) {
+        Logger.printMsg("Pre-population. Worker " + worker + " found " + first + " of its " + leaves
+                + " dirs. Resuming");
+      }
+      try {
+        for (long k = first; k < leaves; k++) {
+          long leaf = tree.getLeafOf(worker, workers, k);
+          path.setLength(0);
+          tree.appendLeafPath(path, leaf);
+          DFSOperationsUtils.mkdirs(dfs, path.toString());
+          for (long file = tree.getFirstFile(leaf); file <= tree.getLastFile(leaf); file++) {
+            path.setLength(0);
+            tree.appendFilePath(path, file, 0);
+            DFSOperationsUtils.createFile(dfs, path.toString(), bmConf.getReplicationFactor(),
+                    fileSizeCoin.getFileSize());
+            filesCreatedInPrepopulation.incrementAndGet();
+            log();
+          }
+        }
+      } catch (Exception e) {
+        // stop here, the created leaves must stay a prefix of the worker's leaves
+        Logger.error(e);
+      }
+      return null;
+    }
+
+    /**
+     * A leaf is complete when its last file exists
+     */
+    private long getFirstMissingLeaf(FileSystem dfs, StringBuilder path, long leaves) throws IOException {
+      long low = 0;
+      long high = leaves;
+      while (low < high) {
+        long mid = (low + high) >>> 1;
+        long leaf = tree.getLeafOf(worker, workers, mid);
+        path.setLength(0);
+        tree.appendFilePath(path, tree.getLastFile(leaf), 0);
+        if (dfs.exists(new Path(path.toString()))) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    private void log() {
+      if (Logger.canILog()) {
+        long files = tree.getFiles() / numSlaves;
+        double percent = (filesCreatedInPrepopulation.doubleValue() / Math.max(1, files)) * 100;
+        Logger.printMsg("Pre-populating the tree. " + DFSOperationsUtils.round(percent) + "%");
+      }
+    }
+  }
+
+  /**
+   * @return the pools filled by the warm up, one per thread, or null for
+   * the pools of the executor's threads
+   */
+  protected List<FilePool> getWarmUpPools() throws IOException {
+    return null;
+  }
+
+  /**
+   * Loads the pools from the manifests of an earlier run, see
+   * NamespaceManifest.
+   *
+   * @return false if a manifest is missing, was saved with other settings
+   * or by a run that did not end, and the namespace should be created
+   */
+  private boolean loadNamespaceManifests() throws Exception {
+    File dirty = NamespaceManifest.getDirtyFile(bmConf.getNamespaceManifestDir(), slaveId);
+    if (dirty.exists()) {
+      Logger.printMsg("The namespace manifests were not saved at the end of the last run. Warming up");
+      return false;
+    }
+    for (int i = 0; i < bmConf.getSlaveNumThreads(); i++) {
+      File manifest = NamespaceManifest.getManifestFile(bmConf.getNamespaceManifestDir(), slaveId, i);
+      if (!manifest.exists()) {
+        Logger.printMsg("No namespace manifest " + manifest + ". Warming up");
+        return false;
+      }
+    }
+    // nothing is loaded unless the manifests of all the threads match
+    for (Object mismatch : runManifestTasks(ManifestAction.CHECK)) {
+      if (mismatch != null) {
+        Logger.printMsg(mismatch + ". Warming up");
+        return false;
+      }
+    }
+    runManifestTasks(ManifestAction.LOAD);
+    Logger.printMsg("Loaded the namespace manifests of " + bmConf.getSlaveNumThreads() + " threads. "
+            + "Skipped the warm up");
+    return true;
+  }
+
+  private void saveNamespaceManifests() throws Exception {
+    runManifestTasks(ManifestAction.SAVE);
+    File dirty = NamespaceManifest.getDirtyFile(bmConf.getNamespaceManifestDir(), slaveId);
+    if (dirty.exists() && !dirty.delete()) {
+      throw new IOException("Unable to delete " + dirty);
+    }
+    manifestsDirty = false;
+    Logger.printMsg("Saved the namespace manifests of " + bmConf.getSlaveNumThreads() + " threads in "
+            + bmConf.getNamespaceManifestDir());
+  }
+
+  /**
+   * Marks the manifests as out of date until they are saved at the end of
+   * the run, so that a run that does not end does not leave stale manifests
+   */
+  private void markNamespaceManifestsDirty() throws IOException {
+    File dirty = NamespaceManifest.getDirtyFile(bmConf.getNamespaceManifestDir(), slaveId);
+    if (!dirty.exists() && !dirty.createNewFile()) {
+      throw new IOException("Unable to create " + dirty);
+    }
+    manifestsDirty = true;
+  }
+
+  /**
+   * Called when the master ends the run. Saves the manifests if the phases
+   * may have changed the namespace
+   */
+  public void finish() throws Exception {
+    if (manifestsDirty) {
+      saveNamespaceManifests();
+    }
+  }
+
+  /**
+   * The settings that shape the namespace. The manifests are only loaded
+   * by runs with the same settings
+   */
+  private String getNamespaceSettings(FilePool filePool) {
+    return "benchmark.type=" + bmConf.getBenchMarkType()
+            + " base.dir=" + bmConf.getBaseDir()
+            + " slaves=" + numSlaves
+            + " num.slave.threads=" + bmConf.getSlaveNumThreads()
+            + " dir.per.dir=" + bmConf.getDirPerDir()
+            + " files.per.dir=" + bmConf.getFilesPerDir()
+            + " compact.file.pool=" + bmConf.isCompactFilePool()
+            + " prepopulate=[" + bmConf.getPrepopulateTree() + "]"
+            + " access.distribution=" + bmConf.getAccessDistribution()
+            + " file.size=" + bmConf.getFileSizeDistribution()
+            + " pool=" + filePool.getClass().getName();
+  }
+
+  private List<Object> runManifestTasks(ManifestAction action) throws Exception {
+    List<FilePool> pools = getWarmUpPools();
+    List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+    for (int i = 0; i < bmConf.getSlaveNumThreads(); i++) {
+      tasks.add(new ManifestTask(i, action, pools != null ? pools.get(i) : null));
+    }
+    List<Object> results = new ArrayList<Object>();
+    for (Future<Object> result : executor.invokeAll(tasks)) {
+      try {
+        results.add(result.get());
+      } catch (ExecutionException e) {
+        throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+      }
+    }
+    return results;
+  }
+
+  private enum ManifestAction {
+    CHECK, LOAD, SAVE
+  }
+
+  private class ManifestTask implements Callable<Object> {
+
+    private final int thread;
+    private final ManifestAction action;
+    private FilePool filePool;
+
+    /**
+     * @param filePool pool to check, load or save. null = the pool of the
+     * thread
+     */
+    ManifestTask(int thread, ManifestAction action, FilePool filePool) {
+      this.thread = thread;
+      this.action = action;
+      this.filePool = filePool;
+    }
+
+    /**
+     * @return for CHECK, why the manifest can not be loaded, null if it can
+     */
+    @Override
+    public Object call() throws Exception {
+      try {
+        if (filePool == null) {
+          filePool = DFSOperationsUtils.getFilePool(conf, bmConf, slaveId, numSlaves);
+        }
+        File manifest = NamespaceManifest.getManifestFile(bmConf.getNamespaceManifestDir(), slaveId, thread);
+        String settings = getNamespaceSettings(filePool);
+        if (action == ManifestAction.CHECK) {
+          String saved = NamespaceManifest.readSettings(manifest);
+          if (!settings.equals(saved)) {
+            return "The namespace manifest " + manifest + " was saved with " + saved + ", expecting " + settings;
+          }
+        } else if (action == ManifestAction.LOAD) {
+          NamespaceManifest.load(filePool, manifest);
+        } else {
+          NamespaceManifest.save(filePool, manifest, settings);
+        }
+      } finally {
+        // one task per thread, so that each thread uses its own pool
+        threadsWarmedUp.await();
+      }
+      return null;
+    }
+  }
+
   protected int getAliveNNsCount() throws IOException {
     FileSystem fs = DFSOperationsUtils.getDFSClient(conf);
     int actualNNCount = 0;
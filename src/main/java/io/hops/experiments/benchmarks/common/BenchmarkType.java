@@ -24,7 +24,9 @@ package io.hops.experiments.benchmarks.common;
 public enum BenchmarkType {
     RAW           ("RAW"),
     INTERLEAVED   ("INTERLEAVED"),
-    BR            ("BR");
+    BR            ("BR"),
+    REPLAY        ("REPLAY"),
+    SCENARIO      ("SCENARIO");
     
     private final String type;
     private BenchmarkType(String type){
@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.benchmarks.common;
+
+import io.hops.experiments.controller.Logger;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Threads that run the benchmark clients on a slave.
+ *
+ * PLATFORM one OS thread per client.
+ * VIRTUAL  one virtual thread per client (JDK 21+). The virtual threads are
+ *          looked up using reflection as the project is compiled for older
+ *          JDKs. If they are not available then PLATFORM threads are used.
+ *
+ * In both cases the executor is a fixed size pool so that each client keeps
+ * its thread, and hence its thread local FileSystem and FilePool, across the
+ * warm up and the benchmark phases.
+ *
+ * @author salman
+ */
+public enum ClientEngine {
+  PLATFORM,
+  VIRTUAL;
+
+  public ExecutorService newExecutor(int numThreads) {
+    if (this == VIRTUAL) {
+      ThreadFactory factory = virtualThreadFactory();
+      if (factory != null) {
+        return Executors.newFixedThreadPool(numThreads, factory);
+      }
+      Logger.printMsg("Virtual threads are not supported by this JVM ("
+              + System.getProperty("java.version") + "). Using platform threads");
+    }
+    return Executors.newFixedThreadPool(numThreads);
+  }
+
+  /**
+   * @return true if the JVM has virtual threads
+   */
+  public static boolean isVirtualSupported() {
+    return virtualThreadFactory() != null;
+  }
+
+  /**
+   * Before JDK 24 a virtual thread that blocks in a synchronized block or in
+   * Object.wait() keeps its carrier thread, e.g. when waiting for a hadoop
+   * IPC response.
+   */
+  public static boolean isVirtualPinnedByMonitors() {
+    String version = System.getProperty("java.specification.version", "");
+    try {
+      return Integer.parseInt(version) < 24;
+    } catch (NumberFormatException e) {
+      // 1.6, 1.7 and 1.8
+      return true;
+    }
+  }
+
+  private static ThreadFactory virtualThreadFactory() {
+    try {
+      // Thread.ofVirtual().name("bm-client-", 0).factory()
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      Method name = builderClass.getMethod("name", String.class, long.class);
+      builder = name.invoke(builder, "bm-client-", 0L);
+      return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    } catch (Exception e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.benchmarks.common.coin;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Weighted sampler using Walker's alias method (Vose's construction).
+ *
+ * The weights can have any precision. They are normalized with BigDecimal
+ * arithmetic and only the final per column probabilities are stored as
+ * doubles, so the sampled distribution matches the weights to within the
+ * precision of a double. Sampling is O(1) and allocation free, it costs one
+ * bounded int and one double from the generator.
+ *
+ * The table is immutable. It can be shared between threads as long as each
+ * thread samples with its own SplitMix64Random.
+ *
+ * @author salman
+ */
+public class AliasSampler {
+
+  private final double[] prob;
+  private final int[] alias;
+
+  public AliasSampler(BigDecimal[] weights) {
+    int n = weights.length;
+    if (n == 0) {
+      throw new IllegalArgumentException("At least one weight is required");
+    }
+
+    BigDecimal total = BigDecimal.ZERO;
+    for (int i = 0; i < n; i++) {
+      if (weights[i] == null || weights[i].signum() < 0) {
+        throw new IllegalArgumentException("Weights can not be negative. Got: " + weights[i] + " at " + i);
+      }
+      total = total.add(weights[i]);
+    }
+    if (total.signum() == 0) {
+      throw new IllegalArgumentException("At least one weight should be greater than zero");
+    }
+
+    // scale the weights so that the average column holds exactly 1
+    BigDecimal columns = new BigDecimal(n);
+    double[] scaled = new double[n];
+    for (int i = 0; i < n; i++) {
+      scaled[i] = weights[i].multiply(columns).divide(total, MathContext.DECIMAL128).doubleValue();
+    }
+
+    prob = new double[n];
+    alias = new int[n];
+    int[] small = new int[n];
+    int[] large = new int[n];
+    int smallCount = 0;
+    int largeCount = 0;
+    for (int i = 0; i < n; i++) {
+      alias[i] = i;
+      if (scaled[i] < 1.0) {
+        small[smallCount++] = i;
+      } else {
+        large[largeCount++] = i;
+      }
+    }
+
+    while (smallCount > 0 && largeCount > 0) {
+      int less = small[--smallCount];
+      int more = large[--largeCount];
+      prob[less] = scaled[less];
+      alias[less] = more;
+      scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+      if (scaled[more] < 1.0) {
+        small[smallCount++] = more;
+      } else {
+        large[largeCount++] = more;
+      }
+    }
+    // whatever is left is 1 up to rounding errors
+    while (largeCount > 0) {
+      prob[large[--largeCount]] = 1.0;
+    }
+    while (smallCount > 0) {
+      prob[small[--smallCount]] = 1.0;
+    }
+  }
+
+  /**
+   * @return index of the sampled weight
+   */
+  public int sample(SplitMix64Random rand) {
+    int column = rand.nextInt(prob.length);
+    return rand.nextDouble() < prob[column] ? column : alias[column];
+  }
+
+  public int size() {
+    return prob.length;
+  }
+
+  /**
+   * Probability of sampling the index as encoded in the alias table. Used to
+   * verify the table against the input weights.
+   */
+  public double getProbability(int index) {
+    double mass = prob[index];
+    for (int i = 0; i < alias.length; i++) {
+      if (i != index && alias[i] == index) {
+        mass += 1.0 - prob[i];
+      }
+    }
+    return mass / prob.length;
+  }
+}
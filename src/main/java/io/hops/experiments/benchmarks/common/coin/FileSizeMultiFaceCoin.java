@@ -19,11 +19,14 @@ package io.hops.experiments.benchmarks.common.coin;
 import io.hops.experiments.utils.DFSOperationsUtils;
 
 import java.math.BigDecimal;
-import java.math.MathContext;
-import java.math.RoundingMode;
 import java.util.*;
 
 /**
+ * Picks file sizes according to a distribution given as
+ * [(size,percentage),(size,percentage),...]. The percentages can have any
+ * number of decimal places but must add up to exactly 100.
+ *
+ * Not thread safe. Each file generator uses its own coin.
  *
  * @author salman
  */
@@ -38,14 +41,11 @@ public class FileSizeMultiFaceCoin {
     }
   }
 
-  //private BigDecimal
-  private Random rand;
-  private BigDecimal expansion = new BigDecimal(100.00,new MathContext(4,RoundingMode.HALF_UP));
-  //1000 face dice
-  ArrayList<Long> dice = new ArrayList<Long>();
+  private final SplitMix64Random rand = new SplitMix64Random();
+  private long[] sizes;
+  private AliasSampler sampler;
 
   public FileSizeMultiFaceCoin(String str) {
-    this.rand = new Random(System.currentTimeMillis());
     createCoin(parse(str));
   }
 
@@ -56,36 +56,17 @@ public class FileSizeMultiFaceCoin {
       total = total.add(point.percentage);
     }
 
-    if (total.compareTo(new BigDecimal(100.0))!=0) {
+    if (total.compareTo(new BigDecimal(100))!=0) {
       throw new IllegalArgumentException("All probabilities should add to 100. Got: " + total);
     }
 
-    for(Point point : points){
-      for (int i = 0; i < point.percentage.multiply(expansion).intValueExact(); i++) {
-        dice.add(point.size);
-      }
+    sizes = new long[points.size()];
+    BigDecimal[] weights = new BigDecimal[points.size()];
+    for (int i = 0; i < points.size(); i++) {
+      sizes[i] = points.get(i).size;
+      weights[i] = points.get(i).percentage;
     }
-
-    double expectedSize = expansion.multiply(new BigDecimal(100)).intValueExact();
-    if (dice.size() != expectedSize) {
-      Map<Long, Integer> counts = new HashMap<Long, Integer>();
-      for (Long size : dice) {
-        Integer opCount = counts.get(size);
-        if (opCount == null) {
-          opCount = new Integer(0);
-        }
-        opCount++;
-        counts.put(size, opCount);
-      }
-
-      for (Long size : counts.keySet()) {
-        double percent = ((double) counts.get(size) / ((double)expectedSize) * 100);
-        System.out.println(size + " count " + counts.get(size) + ",  " + DFSOperationsUtils.round(percent) + "%");
-      }
-      throw new IllegalStateException("Dice is not properfly created. Dice should have  " + expectedSize + " faces. Found " + dice.size());
-    }
-
-    Collections.shuffle(dice);
+    sampler = new AliasSampler(weights);
   }
 
   private List<Point> parse(String str){
@@ -96,11 +77,7 @@ public class FileSizeMultiFaceCoin {
         String size = strTok.nextToken();
         String percentage = strTok.nextToken();
         long s = Long.parseLong(size);
-        double pd = Double.parseDouble(percentage);
-        if(!DFSOperationsUtils.isTwoDecimalPlace(pd)){
-          throw new IllegalArgumentException("Wrong default Value. Only one decimal place is supported.");
-        }
-        points.add(new Point(s, new BigDecimal(pd, new MathContext(4, RoundingMode.HALF_UP))));
+        points.add(new Point(s, new BigDecimal(percentage)));
       }
     }catch (Exception e){
       throw new IllegalArgumentException("Malformed file size parameter. See documentation. Exception caused: "+e);
@@ -108,9 +85,8 @@ public class FileSizeMultiFaceCoin {
     return points;
   }
 
-  public Long getFileSize() {
-    int choice = rand.nextInt(100 * expansion.intValueExact());
-    return dice.get(choice);
+  public long getFileSize() {
+    return sizes[sampler.sample(rand)];
   }
 
   public void testFlip() {
@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.benchmarks.common.coin;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SplitMix64 generator, the algorithm behind java.util.SplittableRandom.
+ *
+ * Unlike java.util.Random there is no CAS on the seed, so it is cheap to call
+ * from the hot loop of a benchmark thread. It is not thread safe, every
+ * thread must use its own instance. Instances created with the default
+ * constructor get well spread seeds.
+ *
+ * @author salman
+ */
+public class SplitMix64Random {
+
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+  private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+
+  private static final AtomicLong seeder =
+          new AtomicLong(mix64(System.currentTimeMillis()) ^ mix64(System.nanoTime()));
+
+  private long seed;
+
+  public SplitMix64Random() {
+    this(mix64(seeder.getAndAdd(2 * GOLDEN_GAMMA)));
+  }
+
+  public SplitMix64Random(long seed) {
+    this.seed = seed;
+  }
+
+  public long nextLong() {
+    return mix64(seed += GOLDEN_GAMMA);
+  }
+
+  /**
+   * @return uniformly distributed value in [0, bound)
+   */
+  public int nextInt(int bound) {
+    if (bound <= 0) {
+      throw new IllegalArgumentException("bound must be positive. Got: " + bound);
+    }
+    // Lemire's multiply and reject. Unbiased and rarely rejects
+    long m = (nextLong() >>> 32) * bound;
+    long low = m & 0xFFFFFFFFL;
+    if (low < bound) {
+      long threshold = (0x100000000L - bound) % bound;
+      while (low < threshold) {
+        m = (nextLong() >>> 32) * bound;
+        low = m & 0xFFFFFFFFL;
+      }
+    }
+    return (int) (m >>> 32);
+  }
+
+  /**
+   * @return uniformly distributed value in [0, 1)
+   */
+  public double nextDouble() {
+    return (nextLong() >>> 11) * DOUBLE_UNIT;
+  }
+
+  private static long mix64(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+}
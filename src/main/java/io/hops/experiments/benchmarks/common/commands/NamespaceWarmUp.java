@@ -83,5 +83,29 @@ public class NamespaceWarmUp {
   }
 
   public static class Response implements WarmUpCommand.Response {
+
+    private final int slaveId;
+    private final long sharedFiles;
+
+    public Response() {
+      this(-1, 0);
+    }
+
+    /**
+     * @param sharedFiles number of files the slave issued in the CLUSTER
+     * shared namespace, see SharedNamespace
+     */
+    public Response(int slaveId, long sharedFiles) {
+      this.slaveId = slaveId;
+      this.sharedFiles = sharedFiles;
+    }
+
+    public int getSlaveId() {
+      return slaveId;
+    }
+
+    public long getSharedFiles() {
+      return sharedFiles;
+    }
   }
 }
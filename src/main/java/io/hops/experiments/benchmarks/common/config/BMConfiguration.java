@@ -18,16 +18,25 @@ package io.hops.experiments.benchmarks.common.config;
 
 //import io.hops.experiments.benchmarks.blockreporting.TinyDatanodesHelper;
 import io.hops.experiments.benchmarks.common.BenchMarkFileSystemName;
+import io.hops.experiments.benchmarks.common.BenchmarkOperations;
 import io.hops.experiments.benchmarks.common.BenchmarkType;
+import io.hops.experiments.benchmarks.common.ClientEngine;
 import io.hops.experiments.benchmarks.common.coin.FileSizeMultiFaceCoin;
+import io.hops.experiments.benchmarks.interleaved.ArrivalDistribution;
 import io.hops.experiments.benchmarks.interleaved.coin.InterleavedMultiFaceCoin;
+import io.hops.experiments.benchmarks.scenario.Scenario;
+import io.hops.experiments.controller.channel.ControlProtocol;
+import io.hops.experiments.fs.InMemoryFileSystem;
+import io.hops.experiments.fs.LatencyDistribution;
 import io.hops.experiments.utils.DFSOperationsUtils;
+import io.hops.experiments.workload.generator.AccessDistribution;
+import io.hops.experiments.workload.generator.AccessSampler;
+import io.hops.experiments.workload.generator.FilePoolSharing;
+import io.hops.experiments.workload.generator.TreeDescription;
 import org.apache.hadoop.hdfs.DFSClient;
 
 import java.io.*;
 import java.math.BigDecimal;
-import java.math.MathContext;
-import java.math.RoundingMode;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.sql.SQLException;
@@ -55,6 +64,26 @@ public class BMConfiguration implements Serializable {
     validateArgs();
   }
 
+  /**
+   * rebuilds a configuration sent by the master. The master has already
+   * validated it.
+   */
+  public static BMConfiguration fromProperties(Properties props) {
+    BMConfiguration conf = new BMConfiguration();
+    conf.props = new Properties();
+    conf.props.putAll(props);
+    return conf;
+  }
+
+  /**
+   * @return a copy of the configuration properties
+   */
+  public Properties toProperties() {
+    Properties copy = new Properties();
+    copy.putAll(props);
+    return copy;
+  }
+
   private Properties loadPropFile(String file) throws FileNotFoundException, IOException {
     final String PROP_FILE = file;
     Properties props = new Properties();
@@ -68,7 +97,7 @@ public class BMConfiguration implements Serializable {
     return props;
   }
 
-  private void validateArgs() throws UnknownHostException, SQLException {
+  private void validateArgs() throws IOException, SQLException {
 
     // check for the
     if (getRawBmFilesCreationPhaseDuration() <= 0 && getBenchMarkType() == BenchmarkType.RAW) {
@@ -83,6 +112,61 @@ public class BMConfiguration implements Serializable {
       throw new IllegalArgumentException("Delete operations can not be more than create operations");
     }
 
+    getSlaveClientEngine();
+    getControlProtocol();
+    if (getPhaseStartDelay() < 0) {
+      throw new IllegalArgumentException(ConfigKeys.PHASE_START_DELAY_KEY + " can not be negative");
+    }
+    if (getTimelineWindow() <= 0) {
+      throw new IllegalArgumentException(ConfigKeys.TIMELINE_WINDOW_KEY + " should be greater than zero");
+    }
+    if (getLiveMetricsInterval() <= 0) {
+      throw new IllegalArgumentException(ConfigKeys.LIVE_METRICS_INTERVAL_KEY + " should be greater than zero");
+    }
+    if (getFilePoolSharing() != FilePoolSharing.NONE && (getReadFilesFromDisk() || isFixedDepthTree())) {
+      throw new IllegalArgumentException(ConfigKeys.FILE_POOL_SHARING_KEY + " can not be used with "
+              + ConfigKeys.READ_FILES_FROM_DISK + " or " + ConfigKeys.ENABLE_FIXED_DEPTH_TREE_KEY);
+    }
+    newAccessSampler();
+    if (getPrepopulateFiles() < 0 || getPrepopulateDepth() < 0) {
+      throw new IllegalArgumentException(ConfigKeys.PREPOPULATE_FILES_KEY + " and "
+              + ConfigKeys.PREPOPULATE_DEPTH_KEY + " can not be negative");
+    }
+    if (getPrepopulateFiles() > 0) {
+      if (getBenchMarkType() != BenchmarkType.RAW && getBenchMarkType() != BenchmarkType.INTERLEAVED
+              && getBenchMarkType() != BenchmarkType.SCENARIO) {
+        throw new IllegalArgumentException(ConfigKeys.PREPOPULATE_FILES_KEY + " is not supported by the "
+                + getBenchMarkType() + " benchmark");
+      }
+      if (getFilePoolSharing() != FilePoolSharing.NONE || getReadFilesFromDisk() || isFixedDepthTree()) {
+        throw new IllegalArgumentException(ConfigKeys.PREPOPULATE_FILES_KEY + " can not be used with "
+                + ConfigKeys.FILE_POOL_SHARING_KEY + ", " + ConfigKeys.READ_FILES_FROM_DISK + " or "
+                + ConfigKeys.ENABLE_FIXED_DEPTH_TREE_KEY);
+      }
+      getPrepopulateTree();
+    }
+    if (getNamespaceManifestDir() != null) {
+      if (getBenchMarkType() != BenchmarkType.RAW && getBenchMarkType() != BenchmarkType.INTERLEAVED
+              && getBenchMarkType() != BenchmarkType.SCENARIO) {
+        throw new IllegalArgumentException(ConfigKeys.NAMESPACE_MANIFEST_DIR_KEY + " is not supported by the "
+                + getBenchMarkType() + " benchmark");
+      }
+      if (getFilePoolSharing() != FilePoolSharing.NONE || getReadFilesFromDisk() || isFixedDepthTree()) {
+        throw new IllegalArgumentException(ConfigKeys.NAMESPACE_MANIFEST_DIR_KEY + " can not be used with "
+                + ConfigKeys.FILE_POOL_SHARING_KEY + ", " + ConfigKeys.READ_FILES_FROM_DISK + " or "
+                + ConfigKeys.ENABLE_FIXED_DEPTH_TREE_KEY);
+      }
+    } else if (isNamespaceManifestReuse()) {
+      throw new IllegalArgumentException(ConfigKeys.NAMESPACE_MANIFEST_REUSE_KEY + " needs "
+              + ConfigKeys.NAMESPACE_MANIFEST_DIR_KEY);
+    }
+    if (getReadFilesFromDisk() && getDiskFilesPrefetch() <= 0) {
+      throw new IllegalArgumentException(ConfigKeys.DISK_FILES_PREFETCH_KEY + " should be greater than zero");
+    }
+    if (getSlaveNumFsClients() < 0) {
+      throw new IllegalArgumentException(ConfigKeys.NUM_SLAVE_FS_CLIENTS_KEY + " can not be negative");
+    }
+
     //check the file size distribution coin
     FileSizeMultiFaceCoin fcoin = new FileSizeMultiFaceCoin(this.getFileSizeDistribution());
 
@@ -102,6 +186,105 @@ public class BMConfiguration implements Serializable {
               getInterleavedBmDirChangeOwnerPercentage());
     }
 
+    if (getBenchMarkFileSystemName() == BenchMarkFileSystemName.InMemory) {
+      if (getInMemoryFsLatency() == LatencyDistribution.HISTOGRAM && getInMemoryFsLatencyStore().isEmpty()) {
+        throw new IllegalArgumentException(ConfigKeys.INMEMORY_FS_LATENCY_STORE_KEY + " is not set");
+      }
+      if (getInMemoryFsLatencyMean() < 0 || getInMemoryFsLatencySigma() < 0) {
+        throw new IllegalArgumentException(ConfigKeys.INMEMORY_FS_LATENCY_MEAN_KEY + " and "
+                + ConfigKeys.INMEMORY_FS_LATENCY_SIGMA_KEY + " can not be negative");
+      }
+    }
+
+    if (getRawRpcPipelineDepth() > 0
+            && getBenchMarkFileSystemName() != BenchMarkFileSystemName.HDFS
+            && getBenchMarkFileSystemName() != BenchMarkFileSystemName.HopsFS) {
+      throw new IllegalArgumentException(ConfigKeys.RAW_RPC_PIPELINE_DEPTH_KEY + " is only supported for HDFS and HopsFS");
+    }
+    if (getRawRpcPipelineDepth() > 0 && getSlaveClientEngine() != ClientEngine.VIRTUAL) {
+      // every call in flight blocks an issuer thread
+      throw new IllegalArgumentException(ConfigKeys.RAW_RPC_PIPELINE_DEPTH_KEY + " needs "
+              + ConfigKeys.SLAVE_CLIENT_ENGINE_KEY + "=" + ClientEngine.VIRTUAL);
+    }
+    if (getRawRpcPipelineDepth() > 0 && getNamenodeCount() > 1) {
+      // the pipelined calls go through one namenode proxy
+      throw new IllegalArgumentException(ConfigKeys.RAW_RPC_PIPELINE_DEPTH_KEY + " can not be used with "
+              + ConfigKeys.NO_OF_NAMENODES_KEY + " > 1");
+    }
+
+    if (isInterleavedBmOpenLoop()) {
+      if (getBenchMarkType() != BenchmarkType.INTERLEAVED) {
+        throw new IllegalArgumentException(ConfigKeys.INTERLEAVED_BM_TARGET_OPS_PER_SEC_KEY
+                + " is only supported for interleaved benchmark");
+      }
+      getInterleavedBmArrivalDistribution();
+    }
+
+    if (getInterleavedBmSessions() > 0) {
+      if (getBenchMarkType() != BenchmarkType.INTERLEAVED) {
+        throw new IllegalArgumentException(ConfigKeys.INTERLEAVED_BM_SESSIONS_KEY
+                + " is only supported for interleaved benchmark");
+      }
+      if (isInterleavedBmOpenLoop()) {
+        throw new IllegalArgumentException("Sessions can not be used in the open loop mode");
+      }
+      if (getInterleavedBmSessionThinkTimeDistribution() == LatencyDistribution.HISTOGRAM) {
+        throw new IllegalArgumentException(ConfigKeys.INTERLEAVED_BM_SESSION_THINK_TIME_DISTRIBUTION_KEY
+                + " can not be " + LatencyDistribution.HISTOGRAM);
+      }
+      if (getInterleavedBmSessionThinkTime() < 0 || getInterleavedBmSessionThinkTimeSigma() < 0
+              || getInterleavedBmSessionLength() < 0 || getInterleavedBmSessionPause() < 0) {
+        throw new IllegalArgumentException("The session think time, sigma, length and pause can not be negative");
+      }
+      getInterleavedBmSessionOps();
+    }
+
+    if (isSaturationSearch()) {
+      if (getBenchMarkType() != BenchmarkType.INTERLEAVED) {
+        throw new IllegalArgumentException(ConfigKeys.SATURATION_SEARCH_START_OPS_PER_SEC_KEY
+                + " is only supported for interleaved benchmark");
+      }
+      if (getInterleavedBmSessions() > 0) {
+        throw new IllegalArgumentException("The saturation search can not be used with sessions");
+      }
+      if (!isPercentileEnabled()) {
+        throw new IllegalArgumentException("The saturation search needs the latency percentiles. Set "
+                + ConfigKeys.GENERATE_PERCENTILES_KEY + "=true");
+      }
+      if (getSaturationSearchStepOpsPerSec() <= 0 || getSaturationSearchMaxSteps() <= 0) {
+        throw new IllegalArgumentException(ConfigKeys.SATURATION_SEARCH_STEP_OPS_PER_SEC_KEY + " and "
+                + ConfigKeys.SATURATION_SEARCH_MAX_STEPS_KEY + " should be greater than zero");
+      }
+      if (getSaturationSearchRefineSteps() < 0) {
+        throw new IllegalArgumentException(ConfigKeys.SATURATION_SEARCH_REFINE_STEPS_KEY + " can not be negative");
+      }
+      if (getSaturationSearchSloP99() <= 0) {
+        throw new IllegalArgumentException(ConfigKeys.SATURATION_SEARCH_SLO_P99_KEY + " should be greater than zero");
+      }
+      if (getSaturationSearchSloErrorRate() < 0 || getSaturationSearchSloErrorRate() > 1) {
+        throw new IllegalArgumentException(ConfigKeys.SATURATION_SEARCH_SLO_ERROR_RATE_KEY
+                + " should be between 0 and 1");
+      }
+      getInterleavedBmArrivalDistribution();
+    }
+
+    if (getBenchMarkType() == BenchmarkType.REPLAY) {
+      if (getReplayBmTraceFiles() == null) {
+        throw new IllegalArgumentException(ConfigKeys.REPLAY_BM_TRACE_FILES_KEY + " is not set");
+      }
+      if (getReplayBmSpeedup() < 0) {
+        throw new IllegalArgumentException(ConfigKeys.REPLAY_BM_SPEEDUP_KEY + " can not be negative");
+      }
+    }
+
+    if (getBenchMarkType() == BenchmarkType.SCENARIO) {
+      if (getScenarioBmFile() == null) {
+        throw new IllegalArgumentException(ConfigKeys.SCENARIO_BM_FILE_KEY + " is not set");
+      }
+      Scenario.load(getScenarioBmFile());
+      getInterleavedBmArrivalDistribution();
+    }
+
     if (getBenchMarkType() == BenchmarkType.BR
             && (getBenchMarkFileSystemName() != BenchMarkFileSystemName.HDFS
             && getBenchMarkFileSystemName() != BenchMarkFileSystemName.HopsFS)) {
@@ -174,6 +357,18 @@ public class BMConfiguration implements Serializable {
     return getInt(ConfigKeys.MASTER_LISTENING_PORT_KEY, ConfigKeys.MASTER_LISTENING_PORT_DEFAULT);
   }
 
+  public ControlProtocol getControlProtocol() {
+    return ControlProtocol.valueOf(getString(ConfigKeys.CONTROL_PROTOCOL_KEY, ConfigKeys.CONTROL_PROTOCOL_DEFAULT));
+  }
+
+  public long getPhaseStartDelay() {
+    return getLong(ConfigKeys.PHASE_START_DELAY_KEY, ConfigKeys.PHASE_START_DELAY_DEFAULT);
+  }
+
+  public long getTimelineWindow() {
+    return getLong(ConfigKeys.TIMELINE_WINDOW_KEY, ConfigKeys.TIMELINE_WINDOW_DEFAULT);
+  }
+
   public BenchmarkType getBenchMarkType() {
     String val = getString(ConfigKeys.BENCHMARK_TYPE_KEY, ConfigKeys.BENCHMARK_TYPE_DEFAULT);
     return BenchmarkType.valueOf(val);
@@ -195,6 +390,10 @@ public class BMConfiguration implements Serializable {
     return getBigDecimal(ConfigKeys.INTLVD_CREATE_FILES_PERCENTAGE_KEY, ConfigKeys.INTLVD_CREATE_FILES_PERCENTAGE_DEFAULT);
   }
 
+  public int getRawRpcPipelineDepth() {
+    return getInt(ConfigKeys.RAW_RPC_PIPELINE_DEPTH_KEY, ConfigKeys.RAW_RPC_PIPELINE_DEPTH_DEFAULT);
+  }
+
   public long getRawBmMaxFilesToCreate() {
     return getLong(ConfigKeys.RAW_CREATE_PHASE_MAX_FILES_TO_CRAETE_KEY, ConfigKeys.RAW_CREATE_PHASE_MAX_FILES_TO_CRAETE_DEFAULT);
   }
@@ -374,6 +573,18 @@ public class BMConfiguration implements Serializable {
     return getInt(ConfigKeys.NUM_SLAVE_THREADS_KEY, ConfigKeys.NUM_SLAVE_THREADS_DEFAULT);
   }
 
+  public ClientEngine getSlaveClientEngine() {
+    return ClientEngine.valueOf(getString(ConfigKeys.SLAVE_CLIENT_ENGINE_KEY, ConfigKeys.SLAVE_CLIENT_ENGINE_DEFAULT));
+  }
+
+  public boolean isFilePayloadIncompressible() {
+    return getBoolean(ConfigKeys.FILE_PAYLOAD_INCOMPRESSIBLE_KEY, ConfigKeys.FILE_PAYLOAD_INCOMPRESSIBLE_DEFAULT);
+  }
+
+  public int getSlaveNumFsClients() {
+    return getInt(ConfigKeys.NUM_SLAVE_FS_CLIENTS_KEY, ConfigKeys.NUM_SLAVE_FS_CLIENTS_DEFAULT);
+  }
+
   public String getBaseDir() {
     return getString(ConfigKeys.BASE_DIR_KEY, ConfigKeys.BASE_DIR_DEFAULT);
   }
@@ -390,6 +601,14 @@ public class BMConfiguration implements Serializable {
     return getInt(ConfigKeys.REMOTE_LOGGING_PORT_KEY, ConfigKeys.REMOTE_LOGGING_PORT_DEFAULT);
   }
 
+  public int getLiveMetricsPort() {
+    return getInt(ConfigKeys.LIVE_METRICS_PORT_KEY, ConfigKeys.LIVE_METRICS_PORT_DEFAULT);
+  }
+
+  public long getLiveMetricsInterval() {
+    return getLong(ConfigKeys.LIVE_METRICS_INTERVAL_KEY, ConfigKeys.LIVE_METRICS_INTERVAL_DEFAULT);
+  }
+
   public String getResultsDir() {
     String filePath =  getString(ConfigKeys.RESULTS_DIR_KEY, ConfigKeys.RESULTS_DIR_DEFAULT);
     if(!filePath.endsWith("/")){
@@ -398,6 +617,14 @@ public class BMConfiguration implements Serializable {
     return filePath;
   }
 
+  /**
+   * @return dir of the result store that the runs are appended to. empty if
+   * the results are not stored
+   */
+  public String getResultsStore() {
+    return getString(ConfigKeys.RESULTS_STORE_KEY, ConfigKeys.RESULTS_STORE_DEFAULT).trim();
+  }
+
   public int getFilesToCreateInWarmUpPhase() {
     return getInt(ConfigKeys.FILES_TO_CRAETE_IN_WARM_UP_PHASE_KEY, ConfigKeys.FILES_TO_CRAETE_IN_WARM_UP_PHASE_DEFAULT);
   }
@@ -406,6 +633,131 @@ public class BMConfiguration implements Serializable {
     return getLong(ConfigKeys.INTERLEAVED_BM_DURATION_KEY, ConfigKeys.INTERLEAVED_BM_DURATION_DEFAULT);
   }
 
+  public long getInterleavedBmTargetOpsPerSec() {
+    return getLong(ConfigKeys.INTERLEAVED_BM_TARGET_OPS_PER_SEC_KEY, ConfigKeys.INTERLEAVED_BM_TARGET_OPS_PER_SEC_DEFAULT);
+  }
+
+  public String getReplayBmTraceFiles() {
+    return getString(ConfigKeys.REPLAY_BM_TRACE_FILES_KEY, ConfigKeys.REPLAY_BM_TRACE_FILES_DEFAULT);
+  }
+
+  public double getReplayBmSpeedup() {
+    return getDouble(ConfigKeys.REPLAY_BM_SPEEDUP_KEY, ConfigKeys.REPLAY_BM_SPEEDUP_DEFAULT);
+  }
+
+  public long getReplayBmMaxDuration() {
+    return getLong(ConfigKeys.REPLAY_BM_MAX_DURATION_KEY, ConfigKeys.REPLAY_BM_MAX_DURATION_DEFAULT);
+  }
+
+  public boolean isReplayBmPrepopulate() {
+    return getBoolean(ConfigKeys.REPLAY_BM_PREPOPULATE_KEY, ConfigKeys.REPLAY_BM_PREPOPULATE_DEFAULT);
+  }
+
+  public String getReplayBmWorkloadName() {
+    return getString(ConfigKeys.REPLAY_BM_WORKLOAD_NAME_KEY, ConfigKeys.REPLAY_BM_WORKLOAD_NAME_DEFAULT);
+  }
+
+  public String getScenarioBmFile() {
+    return getString(ConfigKeys.SCENARIO_BM_FILE_KEY, ConfigKeys.SCENARIO_BM_FILE_DEFAULT);
+  }
+
+  public boolean isInterleavedBmOpenLoop() {
+    return getInterleavedBmTargetOpsPerSec() > 0;
+  }
+
+  public ArrivalDistribution getInterleavedBmArrivalDistribution() {
+    return ArrivalDistribution.valueOf(getString(ConfigKeys.INTERLEAVED_BM_ARRIVAL_DISTRIBUTION_KEY,
+            ConfigKeys.INTERLEAVED_BM_ARRIVAL_DISTRIBUTION_DEFAULT));
+  }
+
+  public int getInterleavedBmSessions() {
+    return getInt(ConfigKeys.INTERLEAVED_BM_SESSIONS_KEY, ConfigKeys.INTERLEAVED_BM_SESSIONS_DEFAULT);
+  }
+
+  public long getInterleavedBmSessionThinkTime() {
+    return getLong(ConfigKeys.INTERLEAVED_BM_SESSION_THINK_TIME_KEY,
+            ConfigKeys.INTERLEAVED_BM_SESSION_THINK_TIME_DEFAULT);
+  }
+
+  public LatencyDistribution getInterleavedBmSessionThinkTimeDistribution() {
+    return LatencyDistribution.valueOf(getString(ConfigKeys.INTERLEAVED_BM_SESSION_THINK_TIME_DISTRIBUTION_KEY,
+            ConfigKeys.INTERLEAVED_BM_SESSION_THINK_TIME_DISTRIBUTION_DEFAULT));
+  }
+
+  public double getInterleavedBmSessionThinkTimeSigma() {
+    return getDouble(ConfigKeys.INTERLEAVED_BM_SESSION_THINK_TIME_SIGMA_KEY,
+            ConfigKeys.INTERLEAVED_BM_SESSION_THINK_TIME_SIGMA_DEFAULT);
+  }
+
+  public int getInterleavedBmSessionLength() {
+    return getInt(ConfigKeys.INTERLEAVED_BM_SESSION_LENGTH_KEY, ConfigKeys.INTERLEAVED_BM_SESSION_LENGTH_DEFAULT);
+  }
+
+  public long getInterleavedBmSessionPause() {
+    return getLong(ConfigKeys.INTERLEAVED_BM_SESSION_PAUSE_KEY, ConfigKeys.INTERLEAVED_BM_SESSION_PAUSE_DEFAULT);
+  }
+
+  /**
+   * @return the ops that every session repeats, empty if the ops are drawn
+   * using the interleaved percentages
+   */
+  public List<BenchmarkOperations> getInterleavedBmSessionOps() {
+    List<BenchmarkOperations> ops = new ArrayList<BenchmarkOperations>();
+    StringTokenizer st = new StringTokenizer(getString(ConfigKeys.INTERLEAVED_BM_SESSION_OPS_KEY,
+            ConfigKeys.INTERLEAVED_BM_SESSION_OPS_DEFAULT), ", ");
+    while (st.hasMoreTokens()) {
+      ops.add(BenchmarkOperations.valueOf(st.nextToken()));
+    }
+    return ops;
+  }
+
+  public boolean isInterleavedBmSessionOwnClient() {
+    return getBoolean(ConfigKeys.INTERLEAVED_BM_SESSION_OWN_CLIENT_KEY,
+            ConfigKeys.INTERLEAVED_BM_SESSION_OWN_CLIENT_DEFAULT);
+  }
+
+  public long getSaturationSearchStartOpsPerSec() {
+    return getLong(ConfigKeys.SATURATION_SEARCH_START_OPS_PER_SEC_KEY,
+            ConfigKeys.SATURATION_SEARCH_START_OPS_PER_SEC_DEFAULT);
+  }
+
+  public boolean isSaturationSearch() {
+    return getSaturationSearchStartOpsPerSec() > 0;
+  }
+
+  public long getSaturationSearchStepOpsPerSec() {
+    return getLong(ConfigKeys.SATURATION_SEARCH_STEP_OPS_PER_SEC_KEY,
+            ConfigKeys.SATURATION_SEARCH_STEP_OPS_PER_SEC_DEFAULT);
+  }
+
+  public int getSaturationSearchMaxSteps() {
+    return getInt(ConfigKeys.SATURATION_SEARCH_MAX_STEPS_KEY, ConfigKeys.SATURATION_SEARCH_MAX_STEPS_DEFAULT);
+  }
+
+  public int getSaturationSearchRefineSteps() {
+    return getInt(ConfigKeys.SATURATION_SEARCH_REFINE_STEPS_KEY, ConfigKeys.SATURATION_SEARCH_REFINE_STEPS_DEFAULT);
+  }
+
+  public double getSaturationSearchSloP99() {
+    return getDouble(ConfigKeys.SATURATION_SEARCH_SLO_P99_KEY, ConfigKeys.SATURATION_SEARCH_SLO_P99_DEFAULT);
+  }
+
+  public double getSaturationSearchSloErrorRate() {
+    return getDouble(ConfigKeys.SATURATION_SEARCH_SLO_ERROR_RATE_KEY,
+            ConfigKeys.SATURATION_SEARCH_SLO_ERROR_RATE_DEFAULT);
+  }
+
+  /**
+   * @return a copy of this configuration that offers the given load in the
+   * open loop mode. Used by the master to run the steps of the saturation
+   * search
+   */
+  public BMConfiguration withInterleavedBmTargetOpsPerSec(long targetOpsPerSec) {
+    BMConfiguration conf = fromProperties(props);
+    conf.props.setProperty(ConfigKeys.INTERLEAVED_BM_TARGET_OPS_PER_SEC_KEY, Long.toString(targetOpsPerSec));
+    return conf;
+  }
+
   public int getWarmUpPhaseWaitTime() {
     return getInt(ConfigKeys.WARM_UP_PHASE_WAIT_TIME_KEY, ConfigKeys.WARM_UP_PHASE_WAIT_TIME_DEFAULT);
   }
@@ -438,6 +790,68 @@ public class BMConfiguration implements Serializable {
     return getInt(ConfigKeys.TREE_DEPTH_KEY, ConfigKeys.TREE_DEPTH_DEFAULT);
   }
 
+  public boolean isCompactFilePool() {
+    return getBoolean(ConfigKeys.COMPACT_FILE_POOL_KEY, ConfigKeys.COMPACT_FILE_POOL_DEFAULT);
+  }
+
+  public FilePoolSharing getFilePoolSharing() {
+    return FilePoolSharing.valueOf(getString(ConfigKeys.FILE_POOL_SHARING_KEY, ConfigKeys.FILE_POOL_SHARING_DEFAULT));
+  }
+
+  public long getPrepopulateFiles() {
+    return getLong(ConfigKeys.PREPOPULATE_FILES_KEY, ConfigKeys.PREPOPULATE_FILES_DEFAULT);
+  }
+
+  public int getPrepopulateDepth() {
+    return getInt(ConfigKeys.PREPOPULATE_DEPTH_KEY, ConfigKeys.PREPOPULATE_DEPTH_DEFAULT);
+  }
+
+  /**
+   * @return the tree created before the warm up, or null
+   */
+  public TreeDescription getPrepopulateTree() {
+    if (getPrepopulateFiles() <= 0) {
+      return null;
+    }
+    return new TreeDescription(getBaseDir() + "/hops_tree", getDirPerDir(), getFilesPerDir(),
+            getPrepopulateFiles(), getPrepopulateDepth());
+  }
+
+  /**
+   * @return local dir of the slaves for the manifests of their pools, or null
+   */
+  public String getNamespaceManifestDir() {
+    return getString(ConfigKeys.NAMESPACE_MANIFEST_DIR_KEY, ConfigKeys.NAMESPACE_MANIFEST_DIR_DEFAULT);
+  }
+
+  public boolean isNamespaceManifestReuse() {
+    return getBoolean(ConfigKeys.NAMESPACE_MANIFEST_REUSE_KEY, ConfigKeys.NAMESPACE_MANIFEST_REUSE_DEFAULT);
+  }
+
+  public AccessDistribution getAccessDistribution() {
+    return AccessDistribution.valueOf(getString(ConfigKeys.ACCESS_DISTRIBUTION_KEY, ConfigKeys.ACCESS_DISTRIBUTION_DEFAULT));
+  }
+
+  public double getAccessDistributionZipfianTheta() {
+    return getDouble(ConfigKeys.ACCESS_DISTRIBUTION_ZIPFIAN_THETA_KEY, ConfigKeys.ACCESS_DISTRIBUTION_ZIPFIAN_THETA_DEFAULT);
+  }
+
+  public double getAccessDistributionHotspotDataFraction() {
+    return getDouble(ConfigKeys.ACCESS_DISTRIBUTION_HOTSPOT_DATA_FRACTION_KEY, ConfigKeys.ACCESS_DISTRIBUTION_HOTSPOT_DATA_FRACTION_DEFAULT);
+  }
+
+  public double getAccessDistributionHotspotOpsFraction() {
+    return getDouble(ConfigKeys.ACCESS_DISTRIBUTION_HOTSPOT_OPS_FRACTION_KEY, ConfigKeys.ACCESS_DISTRIBUTION_HOTSPOT_OPS_FRACTION_DEFAULT);
+  }
+
+  /**
+   * @return a new sampler for the file pool of one thread
+   */
+  public AccessSampler newAccessSampler() {
+    return getAccessDistribution().newSampler(getAccessDistributionZipfianTheta(),
+            getAccessDistributionHotspotDataFraction(), getAccessDistributionHotspotOpsFraction());
+  }
+
   public long getRawFileChangeUserPhaseDuration() {
     return getLong(ConfigKeys.RAW_FILE_CHANGE_USER_PHASE_DURATION_KEY, ConfigKeys.RAW_FILE_CHANGE_USER_PHASE_DURATION_DEFAULT);
   }
@@ -486,6 +900,27 @@ public class BMConfiguration implements Serializable {
     return getString(ConfigKeys.CEPH_AUTH_ID_KEY, ConfigKeys.CEPH_AUTH_ID_DEFAULT);
   }
 
+  public LatencyDistribution getInMemoryFsLatency() {
+    return LatencyDistribution.valueOf(getString(ConfigKeys.INMEMORY_FS_LATENCY_KEY,
+            ConfigKeys.INMEMORY_FS_LATENCY_DEFAULT));
+  }
+
+  public long getInMemoryFsLatencyMean() {
+    return getLong(ConfigKeys.INMEMORY_FS_LATENCY_MEAN_KEY, ConfigKeys.INMEMORY_FS_LATENCY_MEAN_DEFAULT);
+  }
+
+  public double getInMemoryFsLatencySigma() {
+    return getDouble(ConfigKeys.INMEMORY_FS_LATENCY_SIGMA_KEY, ConfigKeys.INMEMORY_FS_LATENCY_SIGMA_DEFAULT);
+  }
+
+  public String getInMemoryFsLatencyStore() {
+    return getString(ConfigKeys.INMEMORY_FS_LATENCY_STORE_KEY, ConfigKeys.INMEMORY_FS_LATENCY_STORE_DEFAULT).trim();
+  }
+
+  public String getInMemoryFsLatencyOp() {
+    return getString(ConfigKeys.INMEMORY_FS_LATENCY_OP_KEY, ConfigKeys.INMEMORY_FS_LATENCY_OP_DEFAULT);
+  }
+
 
   public boolean testFailover(){
     return getBoolean(ConfigKeys.TEST_FAILOVER, ConfigKeys.TEST_FAILOVER_DEFAULT);
@@ -515,6 +950,10 @@ public class BMConfiguration implements Serializable {
     return getString(ConfigKeys.DISK_FILES_PATH, ConfigKeys.DISK_FILES_PATH_DEFAULT);
   }
 
+  public int getDiskFilesPrefetch(){
+    return getInt(ConfigKeys.DISK_FILES_PREFETCH_KEY, ConfigKeys.DISK_FILES_PREFETCH_DEFAULT);
+  }
+
   public List<String> getFailOverNameNodes(){
     List<String> namenodesList = new LinkedList<String>();
     String namenodes = getString(ConfigKeys.FAILOVER_NAMENODES,ConfigKeys.FAILOVER_NAMENODES_DEFAULT);
@@ -586,6 +1025,8 @@ public class BMConfiguration implements Serializable {
   public Properties getFsConfig() {
     Properties dfsClientConf = new Properties();
     dfsClientConf.setProperty(ConfigKeys.FS_DEFAULTFS_KEY, getNameNodeRpcAddress());
+    dfsClientConf.setProperty(ConfigKeys.NUM_SLAVE_FS_CLIENTS_KEY, Integer.toString(getSlaveNumFsClients()));
+    dfsClientConf.setProperty(ConfigKeys.FILE_PAYLOAD_INCOMPRESSIBLE_KEY, Boolean.toString(isFilePayloadIncompressible()));
     if (getBenchMarkFileSystemName() == BenchMarkFileSystemName.HDFS) {
       System.out.println("Creating config for HDFS");
       dfsClientConf.setProperty("dfs.ha.namenodes."+getDfsNameService(),props.getProperty("dfs.ha.namenodes."+getDfsNameService()));
@@ -619,6 +1060,15 @@ public class BMConfiguration implements Serializable {
     } else if (getBenchMarkFileSystemName() == BenchMarkFileSystemName.MapRFS) {
       System.out.println("Creating config for MapR-FS");
       //FS_DEFAULTFS_KEY is already defined
+    } else if (getBenchMarkFileSystemName() == BenchMarkFileSystemName.InMemory) {
+      System.out.println("Creating config for the in memory file system");
+      dfsClientConf.setProperty(ConfigKeys.FS_DEFAULTFS_KEY, InMemoryFileSystem.SCHEME + ":///");
+      dfsClientConf.setProperty("fs." + InMemoryFileSystem.SCHEME + ".impl", InMemoryFileSystem.class.getName());
+      dfsClientConf.setProperty(ConfigKeys.INMEMORY_FS_LATENCY_KEY, getInMemoryFsLatency().name());
+      dfsClientConf.setProperty(ConfigKeys.INMEMORY_FS_LATENCY_MEAN_KEY, Long.toString(getInMemoryFsLatencyMean()));
+      dfsClientConf.setProperty(ConfigKeys.INMEMORY_FS_LATENCY_SIGMA_KEY, Double.toString(getInMemoryFsLatencySigma()));
+      dfsClientConf.setProperty(ConfigKeys.INMEMORY_FS_LATENCY_STORE_KEY, getInMemoryFsLatencyStore());
+      dfsClientConf.setProperty(ConfigKeys.INMEMORY_FS_LATENCY_OP_KEY, getInMemoryFsLatencyOp());
     } else {
       throw new UnsupportedOperationException(getBenchMarkFileSystemName() + " is not yet supported");
     }
@@ -635,6 +1085,11 @@ public class BMConfiguration implements Serializable {
     return Long.parseLong(val);
   }
 
+  private double getDouble(String key, double defaultVal) {
+    String val = props.getProperty(key, Double.toString(defaultVal));
+    return Double.parseDouble(val);
+  }
+
   private short getShort(String key, short defaultVal) {
     String val = props.getProperty(key, Short.toString(defaultVal));
     return Short.parseShort(val);
@@ -654,17 +1109,13 @@ public class BMConfiguration implements Serializable {
   }
 
   private BigDecimal getBigDecimal(String key, double defaultVal) {
-    if (!DFSOperationsUtils.isTwoDecimalPlace(defaultVal)) {
-      throw new IllegalArgumentException("Wrong default Value. Only one decimal place is supported. Value " + defaultVal + " key: " + key);
+    String val = props.getProperty(key, Double.toString(defaultVal)).trim();
+    try {
+      // parse the string directly so that the value keeps all of its decimal places
+      return new BigDecimal(val);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Wrong value for " + key + ". Expecting a number. Got: " + val);
     }
-
-    double userVal = Double.parseDouble(props.getProperty(key, Double.toString(defaultVal)));
-    if (!DFSOperationsUtils.isTwoDecimalPlace(userVal)) {
-      throw new IllegalArgumentException("Wrong user value. Only one decimal place is supported. Value " + userVal + " key: " + key);
-    }
-
-    //System.out.println(key+" value "+userVal);
-    return new BigDecimal(userVal, new MathContext(4, RoundingMode.HALF_UP));
   }
 
 
@@ -40,17 +40,99 @@ public class ConfigKeys {
     public static int NO_OF_NDB_DATANODES_DEFAULT = 0;
     
     public static String BENCHMARK_TYPE_KEY = "benchmark.type";
-    public static String BENCHMARK_TYPE_DEFAULT = "RAW";// "Type. RAW | INTERLEAVED | BM ."
+    public static String BENCHMARK_TYPE_DEFAULT = "RAW";// "Type. RAW | INTERLEAVED | BR | REPLAY | SCENARIO ."
     
     public static String GENERATE_PERCENTILES_KEY = "generate.percentiles";
     public static boolean   GENERATE_PERCENTILES_DEFAULT = false;
     
     public static String INTERLEAVED_BM_DURATION_KEY = "interleaved.bm.duration";
     public static long   INTERLEAVED_BM_DURATION_DEFAULT = 60*1000;
+
+    // aggregate ops/sec of all the slaves. 0 = closed loop
+    public static String INTERLEAVED_BM_TARGET_OPS_PER_SEC_KEY = "interleaved.bm.target.ops.per.sec";
+    public static long   INTERLEAVED_BM_TARGET_OPS_PER_SEC_DEFAULT = 0;
+
+    public static String INTERLEAVED_BM_ARRIVAL_DISTRIBUTION_KEY = "interleaved.bm.arrival.distribution";
+    public static String INTERLEAVED_BM_ARRIVAL_DISTRIBUTION_DEFAULT = "POISSON"; // FIXED | POISSON
+
+    public static String INTERLEAVED_BM_SESSIONS_KEY = "interleaved.bm.sessions";
+    public static int    INTERLEAVED_BM_SESSIONS_DEFAULT = 0; // simulated clients per slave. 0 = no sessions
+
+    public static String INTERLEAVED_BM_SESSION_THINK_TIME_KEY = "interleaved.bm.session.think.time"; // ms
+    public static long   INTERLEAVED_BM_SESSION_THINK_TIME_DEFAULT = 1000;
+
+    public static String INTERLEAVED_BM_SESSION_THINK_TIME_DISTRIBUTION_KEY = "interleaved.bm.session.think.time.distribution";
+    public static String INTERLEAVED_BM_SESSION_THINK_TIME_DISTRIBUTION_DEFAULT = "EXPONENTIAL"; // NONE | FIXED | EXPONENTIAL | LOGNORMAL
+
+    public static String INTERLEAVED_BM_SESSION_THINK_TIME_SIGMA_KEY = "interleaved.bm.session.think.time.sigma";
+    public static double INTERLEAVED_BM_SESSION_THINK_TIME_SIGMA_DEFAULT = 1;
+
+    public static String INTERLEAVED_BM_SESSION_LENGTH_KEY = "interleaved.bm.session.length"; // mean ops. 0 = endless
+    public static int    INTERLEAVED_BM_SESSION_LENGTH_DEFAULT = 20;
+
+    public static String INTERLEAVED_BM_SESSION_PAUSE_KEY = "interleaved.bm.session.pause"; // ms
+    public static long   INTERLEAVED_BM_SESSION_PAUSE_DEFAULT = 10000;
+
+    public static String INTERLEAVED_BM_SESSION_OPS_KEY = "interleaved.bm.session.ops";
+    public static String INTERLEAVED_BM_SESSION_OPS_DEFAULT = ""; // empty = drawn using the interleaved percentages
+
+    public static String INTERLEAVED_BM_SESSION_OWN_CLIENT_KEY = "interleaved.bm.session.own.client";
+    public static boolean INTERLEAVED_BM_SESSION_OWN_CLIENT_DEFAULT = false;
+
+    // offered load of the first step of the saturation search. 0 = no search
+    public static String SATURATION_SEARCH_START_OPS_PER_SEC_KEY = "saturation.search.start.ops.per.sec";
+    public static long   SATURATION_SEARCH_START_OPS_PER_SEC_DEFAULT = 0;
+
+    public static String SATURATION_SEARCH_STEP_OPS_PER_SEC_KEY = "saturation.search.step.ops.per.sec";
+    public static long   SATURATION_SEARCH_STEP_OPS_PER_SEC_DEFAULT = 1000;
+
+    public static String SATURATION_SEARCH_MAX_STEPS_KEY = "saturation.search.max.steps";
+    public static int    SATURATION_SEARCH_MAX_STEPS_DEFAULT = 20;
+
+    // steps that bisect the load between the last step that met the slo and the first one that did not
+    public static String SATURATION_SEARCH_REFINE_STEPS_KEY = "saturation.search.refine.steps";
+    public static int    SATURATION_SEARCH_REFINE_STEPS_DEFAULT = 2;
+
+    // ms. p99 response time of all the ops
+    public static String SATURATION_SEARCH_SLO_P99_KEY = "saturation.search.slo.p99";
+    public static double SATURATION_SEARCH_SLO_P99_DEFAULT = 100;
+
+    // failed ops / all ops
+    public static String SATURATION_SEARCH_SLO_ERROR_RATE_KEY = "saturation.search.slo.error.rate";
+    public static double SATURATION_SEARCH_SLO_ERROR_RATE_DEFAULT = 0.01;
+
+    public static String SATURATION_FILE_NAME = "saturation.csv";
+
+    // comma separated list of audit log / binary trace files or dirs. read by every slave
+    public static String REPLAY_BM_TRACE_FILES_KEY = "replay.bm.trace.files";
+    public static String REPLAY_BM_TRACE_FILES_DEFAULT = null;
+
+    // 1 = original rate, 2 = twice as fast. 0 = as fast as possible
+    public static String REPLAY_BM_SPEEDUP_KEY = "replay.bm.speedup";
+    public static double REPLAY_BM_SPEEDUP_DEFAULT = 1.0;
+
+    // 0 = replay the whole trace
+    public static String REPLAY_BM_MAX_DURATION_KEY = "replay.bm.max.duration";
+    public static long   REPLAY_BM_MAX_DURATION_DEFAULT = 0;
+
+    public static String REPLAY_BM_PREPOPULATE_KEY = "replay.bm.prepopulate";
+    public static boolean REPLAY_BM_PREPOPULATE_DEFAULT = true;
+
+    public static String REPLAY_BM_WORKLOAD_NAME_KEY = "replay.bm.workload.name";
+    public static String REPLAY_BM_WORKLOAD_NAME_DEFAULT = "replay";
+
+    // stages and phases of the scenario benchmark. read by the master
+    public static String SCENARIO_BM_FILE_KEY = "scenario.bm.file";
+    public static String SCENARIO_BM_FILE_DEFAULT = null;
     
     public static String RAW_CREATE_PHASE_MAX_FILES_TO_CRAETE_KEY = "raw.create.phase.max.files.to.create";
     public static long RAW_CREATE_PHASE_MAX_FILES_TO_CRAETE_DEFAULT = Long.MAX_VALUE;
     
+    // ClientProtocol RPCs kept in flight by each slave thread for the metadata
+    // phases of the RAW benchmark. 0 = use the FileSystem API
+    public static String RAW_RPC_PIPELINE_DEPTH_KEY = "raw.rpc.pipeline.depth";
+    public static int    RAW_RPC_PIPELINE_DEPTH_DEFAULT = 0;
+
     public static String RAW_CREATE_FILES_PHASE_DURATION_KEY = "raw.create.files.phase.duration";
     public static long    RAW_CREATE_FILES_PHASE_DURATION_DEFAULT = 0; 
     
@@ -161,6 +243,21 @@ public class ConfigKeys {
     
     public static String CEPH_AUTH_ID_KEY = "ceph.auth.id";
     public static String CEPH_AUTH_ID_DEFAULT = "user";
+
+    public static String INMEMORY_FS_LATENCY_KEY = "inmemory.fs.latency";
+    public static String INMEMORY_FS_LATENCY_DEFAULT = "NONE"; // NONE | FIXED | LOGNORMAL | HISTOGRAM
+
+    public static String INMEMORY_FS_LATENCY_MEAN_KEY = "inmemory.fs.latency.mean"; // us
+    public static long   INMEMORY_FS_LATENCY_MEAN_DEFAULT = 1000;
+
+    public static String INMEMORY_FS_LATENCY_SIGMA_KEY = "inmemory.fs.latency.sigma";
+    public static double INMEMORY_FS_LATENCY_SIGMA_DEFAULT = 0.5;
+
+    public static String INMEMORY_FS_LATENCY_STORE_KEY = "inmemory.fs.latency.store";
+    public static String INMEMORY_FS_LATENCY_STORE_DEFAULT = "";
+
+    public static String INMEMORY_FS_LATENCY_OP_KEY = "inmemory.fs.latency.op";
+    public static String INMEMORY_FS_LATENCY_OP_DEFAULT = "ALL";
     
     public static String BR_BENCHMARK_DURATION_KEY = "br.benchmark.duration";
     public static int BR_BENCHMARK_DURATION_DEFAULT = 0;
@@ -219,11 +316,17 @@ public class ConfigKeys {
     public static String APPEND_FILE_SIZE_IN_Bytes_KEY= "append.size";
     public static long   APPEND_FILE_SIZE_IN_Bytes_DEFAULT = 0;
 
+    public static String  FILE_PAYLOAD_INCOMPRESSIBLE_KEY = "file.payload.incompressible";
+    public static boolean FILE_PAYLOAD_INCOMPRESSIBLE_DEFAULT = false;
+
     public static String READ_FILES_FROM_DISK= "read.files.from.disk";
     public static boolean READ_FILES_FROM_DISK_DEFAULT=false;
 
     public static String DISK_FILES_PATH="disk.files.path";
     public static String DISK_FILES_PATH_DEFAULT="~";
+
+    public static String DISK_FILES_PREFETCH_KEY="disk.files.prefetch";
+    public static int    DISK_FILES_PREFETCH_DEFAULT=64;
     
     public static String DIR_PER_DIR_KEY= "dir.per.dir";
     public static int    DIR_PER_DIR_DEFAULT = 2;
@@ -237,8 +340,45 @@ public class ConfigKeys {
     public static String  TREE_DEPTH_KEY = "tree.depth";
     public static int     TREE_DEPTH_DEFAULT = 3;
 
+    public static String  COMPACT_FILE_POOL_KEY = "compact.file.pool";
+    public static boolean COMPACT_FILE_POOL_DEFAULT = false;
+
+    public static String  FILE_POOL_SHARING_KEY = "file.pool.sharing";
+    public static String  FILE_POOL_SHARING_DEFAULT = "NONE"; // NONE | SLAVE | CLUSTER
+
+    public static String  PREPOPULATE_FILES_KEY = "prepopulate.files";
+    public static long    PREPOPULATE_FILES_DEFAULT = 0;
+
+    public static String  PREPOPULATE_DEPTH_KEY = "prepopulate.depth";
+    public static int     PREPOPULATE_DEPTH_DEFAULT = 0;
+
+    public static String  NAMESPACE_MANIFEST_DIR_KEY = "namespace.manifest.dir";
+    public static String  NAMESPACE_MANIFEST_DIR_DEFAULT = null;
+
+    public static String  NAMESPACE_MANIFEST_REUSE_KEY = "namespace.manifest.reuse";
+    public static boolean NAMESPACE_MANIFEST_REUSE_DEFAULT = false;
+
+    public static String  ACCESS_DISTRIBUTION_KEY = "access.distribution";
+    public static String  ACCESS_DISTRIBUTION_DEFAULT = "UNIFORM"; // UNIFORM | ZIPFIAN | LATEST | HOTSPOT
+
+    public static String  ACCESS_DISTRIBUTION_ZIPFIAN_THETA_KEY = "access.distribution.zipfian.theta";
+    public static double  ACCESS_DISTRIBUTION_ZIPFIAN_THETA_DEFAULT = 0.99;
+
+    public static String  ACCESS_DISTRIBUTION_HOTSPOT_DATA_FRACTION_KEY = "access.distribution.hotspot.data.fraction";
+    public static double  ACCESS_DISTRIBUTION_HOTSPOT_DATA_FRACTION_DEFAULT = 0.2;
+
+    public static String  ACCESS_DISTRIBUTION_HOTSPOT_OPS_FRACTION_KEY = "access.distribution.hotspot.ops.fraction";
+    public static double  ACCESS_DISTRIBUTION_HOTSPOT_OPS_FRACTION_DEFAULT = 0.8;
+
     public static String NUM_SLAVE_THREADS_KEY = "num.slave.threads";
     public static int    NUM_SLAVE_THREADS_DEFAULT = 1;
+
+    public static String SLAVE_CLIENT_ENGINE_KEY = "slave.client.engine";
+    public static String SLAVE_CLIENT_ENGINE_DEFAULT = "PLATFORM"; // PLATFORM | VIRTUAL
+
+    // FileSystem clients shared by all the threads of a slave. 0 = one client per thread
+    public static String NUM_SLAVE_FS_CLIENTS_KEY = "num.slave.fs.clients";
+    public static int    NUM_SLAVE_FS_CLIENTS_DEFAULT = 0;
       
     public static String BASE_DIR_KEY = "base.dir";
     public static String BASE_DIR_DEFAULT = "/test";
@@ -251,17 +391,36 @@ public class ConfigKeys {
     
     public static String REMOTE_LOGGING_PORT_KEY = "remote.logging.port";
     public static int    REMOTE_LOGGING_PORT_DEFAULT = 6666;
+
+    public static String LIVE_METRICS_PORT_KEY = "live.metrics.port";
+    public static int    LIVE_METRICS_PORT_DEFAULT = 6667;
+
+    public static String LIVE_METRICS_INTERVAL_KEY = "live.metrics.interval";
+    public static long   LIVE_METRICS_INTERVAL_DEFAULT = 5000;
     
     public static String SLAVE_LISTENING_PORT_KEY = "slave.listening.port";
     public static int    SLAVE_LISTENING_PORT_DEFAULT = 5555;
     
     public static String MASTER_LISTENING_PORT_KEY = "master.listening.port";
     public static int    MASTER_LISTENING_PORT_DEFAULT = 4444;
+
+    public static String CONTROL_PROTOCOL_KEY = "control.protocol";
+    public static String CONTROL_PROTOCOL_DEFAULT = "BINARY";
+
+    public static String PHASE_START_DELAY_KEY = "phase.start.delay";
+    public static long   PHASE_START_DELAY_DEFAULT = 2000;
+
+    public static String TIMELINE_WINDOW_KEY = "timeline.window";
+    public static long   TIMELINE_WINDOW_DEFAULT = 1000;
+    public static String TIMELINE_FILE_NAME = "timeline.csv";
     
     public static String RESULTS_DIR_KEY = "results.dir";
     public static String RESULTS_DIR_DEFAULT =     ".";
     public static String TEXT_RESULT_FILE_NAME =   "hopsresults.txt";
     public static String BINARY_RESULT_FILE_NAME = "hopsresults.hopsbin";
+
+    public static String RESULTS_STORE_KEY = "results.store";
+    public static String RESULTS_STORE_DEFAULT = "";
     
     public static String FILES_TO_CRAETE_IN_WARM_UP_PHASE_KEY = "files.to.create.in.warmup.phase";
     public static int    FILES_TO_CRAETE_IN_WARM_UP_PHASE_DEFAULT = 10;
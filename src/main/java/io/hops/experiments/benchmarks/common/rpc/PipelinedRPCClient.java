@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.benchmarks.common.rpc;
+
+import io.hops.experiments.benchmarks.common.BenchmarkOperations;
+import io.hops.experiments.benchmarks.common.ClientEngine;
+import io.hops.experiments.controller.Logger;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.NameNodeProxies;
+import org.apache.hadoop.hdfs.protocol.ClientProtocol;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.ipc.RPC;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Issues metadata operations directly as ClientProtocol RPCs, bypassing the
+ * FileSystem API, and lets a benchmark thread keep many of them in flight.
+ *
+ * All the calls go through one namenode proxy. The hadoop IPC client
+ * multiplexes concurrent calls on the same proxy over a single connection
+ * (calls are matched to responses by call id), so N outstanding submit()s
+ * are N pipelined requests on the connection. The proxy does not go through
+ * the HopsFS namenode selector, so the client is only used with one
+ * namenode. Shut it down at the end of the phase.
+ *
+ * The calls are blocking, hence each outstanding call occupies an issuer
+ * thread, so the client needs virtual threads. The IPC client waits for the
+ * response in Object.wait(), which before JDK 24 also holds the carrier
+ * thread of the virtual thread, i.e. the JVM adds carriers up to one per
+ * call in flight.
+ *
+ * Results are handed back through a completion queue that is drained by the
+ * submitting thread, so the thread confined FilePool and latency histograms of
+ * the benchmark thread are never touched by the issuers.
+ *
+ * Only metadata operations are supported. READ_FILE only fetches the block
+ * locations of the file, i.e. the namenode part of a read. RENAME_FILE is
+ * not, the pools can only record the rename of the file they handed out
+ * last, i.e. a rename has to finish before the next file is picked.
+ *
+ * @author salman
+ */
+public class PipelinedRPCClient {
+
+  private static final FsPermission FILE_PERMISSION = new FsPermission((short) 0777);
+  private static final FsPermission DIR_PERMISSION = new FsPermission((short) 0755);
+
+  private final ClientProtocol namenode;
+  private final ExecutorService issuers;
+  private final String user = System.getProperty("user.name");
+
+  public PipelinedRPCClient(Configuration conf, ClientEngine engine, int maxInFlight) throws IOException {
+    if (engine != ClientEngine.VIRTUAL || !ClientEngine.isVirtualSupported()) {
+      throw new UnsupportedOperationException("The pipelined RPC client needs virtual threads. JVM "
+              + System.getProperty("java.version") + ", client engine " + engine);
+    }
+    if (ClientEngine.isVirtualPinnedByMonitors()) {
+      Logger.printMsg("JVM " + System.getProperty("java.version") + " pins the virtual threads waiting for"
+              + " RPC responses. The " + maxInFlight + " calls in flight may take as many carrier threads");
+    }
+    NameNodeProxies.ProxyAndInfo<ClientProtocol> proxyInfo =
+            NameNodeProxies.createProxy(conf, FileSystem.getDefaultUri(conf), ClientProtocol.class);
+    this.namenode = proxyInfo.getProxy();
+    this.issuers = engine.newExecutor(maxInFlight);
+  }
+
+  public static boolean isSupported(BenchmarkOperations op) {
+    return op != BenchmarkOperations.CREATE_FILE && op != BenchmarkOperations.APPEND_FILE
+            && op != BenchmarkOperations.RENAME_FILE;
+  }
+
+  /**
+   * @param completions the result of the call is added to this queue
+   */
+  public void submit(final BenchmarkOperations op, final String path, final BlockingQueue<Completion> completions) {
+    final long startTime = System.nanoTime();
+    issuers.execute(new Runnable() {
+      @Override
+      public void run() {
+        Throwable error = null;
+        try {
+          call(op, path);
+        } catch (Throwable e) {
+          error = e;
+        }
+        completions.add(new Completion(op, path, System.nanoTime() - startTime, error));
+      }
+    });
+  }
+
+  private void call(BenchmarkOperations op, String path) throws IOException {
+    if (op == BenchmarkOperations.SET_REPLICATION) {
+      namenode.setReplication(path, (short) 3);
+    } else if (op == BenchmarkOperations.FILE_INFO
+            || op == BenchmarkOperations.DIR_INFO) {
+      if (namenode.getFileInfo(path) == null) {
+        throw new IOException("File does not exist: " + path);
+      }
+    } else if (op == BenchmarkOperations.CHMOD_FILE
+            || op == BenchmarkOperations.CHMOD_DIR) {
+      namenode.setPermission(path, FILE_PERMISSION);
+    } else if (op == BenchmarkOperations.LS_FILE
+            || op == BenchmarkOperations.LS_DIR) {
+      if (namenode.getListing(path, HdfsFileStatus.EMPTY_NAME, false) == null) {
+        throw new IOException("File does not exist: " + path);
+      }
+    } else if (op == BenchmarkOperations.READ_FILE) {
+      namenode.getBlockLocations(path, 0, 1);
+    } else if (op == BenchmarkOperations.MKDIRS) {
+      namenode.mkdirs(path, DIR_PERMISSION, true);
+    } else if (op == BenchmarkOperations.DELETE_FILE) {
+      namenode.delete(path, true);
+    } else if (op == BenchmarkOperations.CHOWN_FILE
+            || op == BenchmarkOperations.CHOWN_DIR) {
+      namenode.setOwner(path, user, user);
+    } else {
+      throw new UnsupportedOperationException(op + " is not supported by the pipelined RPC client");
+    }
+  }
+
+  public void shutdown() {
+    issuers.shutdown();
+    RPC.stopProxy(namenode);
+  }
+
+  public static class Completion {
+    private final BenchmarkOperations op;
+    private final String path;
+    private final long latency;
+    private final Throwable error;
+
+    Completion(BenchmarkOperations op, String path, long latency, Throwable error) {
+      this.op = op;
+      this.path = path;
+      this.latency = latency;
+      this.error = error;
+    }
+
+    public BenchmarkOperations getOp() {
+      return op;
+    }
+
+    public String getPath() {
+      return path;
+    }
+
+    /**
+     * @return time in ns from the start of the call until the response
+     */
+    public long getLatency() {
+      return latency;
+    }
+
+    public boolean isSuccessful() {
+      return error == null;
+    }
+
+    public Throwable getError() {
+      return error;
+    }
+  }
+}
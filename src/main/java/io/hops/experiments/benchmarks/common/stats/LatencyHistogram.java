@@ -0,0 +1,328 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.benchmarks.common.stats;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Fixed memory log-linear latency histogram (HdrHistogram style).
+ *
+ * Values are bucketed by their most significant bit and then linearly into
+ * 2^SUB_BUCKET_BITS sub buckets, i.e. the relative error of a reported value
+ * is less than 1%. Values below 2^(SUB_BUCKET_BITS+1) are recorded exactly.
+ *
+ * The histogram is not thread safe. Each worker thread records into its own
+ * instance and the instances are merged using add() once the workers are done.
+ *
+ * On the wire (Java serialization and the .responses files) the histogram is
+ * written using encode(), i.e. a versioned header followed by the deflated,
+ * varint encoded, run length compressed bucket counts. Encoded histograms can
+ * be merged directly using addEncoded().
+ *
+ * @author salman
+ */
+public class LatencyHistogram implements Serializable {
+
+  public static final double[] REPORTED_PERCENTILES;
+
+  static {
+    double[] points = new double[9 + 9 + 10];
+    int i = 0;
+    for (int p = 10; p <= 90; p += 10) {
+      points[i++] = p;
+    }
+    for (int p = 91; p <= 99; p++) {
+      points[i++] = p;
+    }
+    for (int p = 1; p <= 10; p++) {
+      points[i++] = 99 + p / 10.0;
+    }
+    REPORTED_PERCENTILES = points;
+  }
+
+  static final int SUB_BUCKET_BITS = 7;
+  static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  // ~68 sec in ns. Larger values are counted in the last bucket
+  static final int MAX_VALUE_BITS = 36;
+  static final long MAX_TRACKABLE_VALUE = (1L << MAX_VALUE_BITS) - 1;
+  static final int BUCKETS = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+  static final byte ENCODING_VERSION = 1;
+
+  private transient long[] counts = new long[BUCKETS];
+  private transient long totalCount = 0;
+  private transient long sum = 0;
+  private transient long min = Long.MAX_VALUE;
+  private transient long max = 0;
+
+  public void recordValue(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    counts[indexFor(value)]++;
+    totalCount++;
+    sum += value;
+    if (value < min) {
+      min = value;
+    }
+    if (value > max) {
+      max = value;
+    }
+  }
+
+  public void add(LatencyHistogram other) {
+    if (other == null || other.totalCount == 0) {
+      return;
+    }
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] += other.counts[i];
+    }
+    totalCount += other.totalCount;
+    sum += other.sum;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = 0;
+    }
+    totalCount = 0;
+    sum = 0;
+    min = Long.MAX_VALUE;
+    max = 0;
+  }
+
+  public long getTotalCount() {
+    return totalCount;
+  }
+
+  public long getMin() {
+    return totalCount == 0 ? 0 : min;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  public double getMean() {
+    return totalCount == 0 ? 0 : (double) sum / (double) totalCount;
+  }
+
+  /**
+   * @param percentile [0, 100]
+   * @return the highest value that is equivalent to the value at the given
+   * percentile. 0 if the histogram is empty
+   */
+  public long getValueAtPercentile(double percentile) {
+    if (totalCount == 0) {
+      return 0;
+    }
+    double pct = Math.min(Math.max(percentile, 0), 100);
+    long rank = Math.max(1, (long) Math.ceil((pct / 100.0) * totalCount));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.max(Math.min(highestEquivalentValue(i), max), getMin());
+      }
+    }
+    return max;
+  }
+
+  /**
+   * Same as getValueAtPercentile for each point, in one pass over the buckets
+   *
+   * @param percentiles [0, 100] in ascending order
+   */
+  public long[] getValuesAtPercentiles(double[] percentiles) {
+    long[] values = new long[percentiles.length];
+    if (totalCount == 0) {
+      return values;
+    }
+    int bucket = 0;
+    long seen = counts[0];
+    for (int p = 0; p < percentiles.length; p++) {
+      if (p > 0 && percentiles[p] < percentiles[p - 1]) {
+        throw new IllegalArgumentException("The percentiles should be in ascending order");
+      }
+      double pct = Math.min(Math.max(percentiles[p], 0), 100);
+      long rank = Math.max(1, (long) Math.ceil((pct / 100.0) * totalCount));
+      while (seen < rank && bucket < BUCKETS - 1) {
+        seen += counts[++bucket];
+      }
+      values[p] = seen >= rank ? Math.max(Math.min(highestEquivalentValue(bucket), max), getMin()) : max;
+    }
+    return values;
+  }
+
+  /**
+   * Encoding
+   * [version][sub bucket bits][max value bits] followed by deflated
+   * [total count][sum][min][max][(zeros skipped, count)*] all varints.
+   */
+  public byte[] encode() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+    bytes.write(ENCODING_VERSION);
+    bytes.write(SUB_BUCKET_BITS);
+    bytes.write(MAX_VALUE_BITS);
+    DeflaterOutputStream out = new DeflaterOutputStream(bytes);
+    try {
+      writeVarLong(out, totalCount);
+      writeVarLong(out, sum);
+      writeVarLong(out, getMin());
+      writeVarLong(out, max);
+      int zeros = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        if (counts[i] == 0) {
+          zeros++;
+        } else {
+          writeVarLong(out, zeros);
+          writeVarLong(out, counts[i]);
+          zeros = 0;
+        }
+      }
+    } finally {
+      out.close();
+    }
+    return bytes.toByteArray();
+  }
+
+  public static LatencyHistogram decode(byte[] encoded) throws IOException {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.addEncoded(encoded);
+    return histogram;
+  }
+
+  /**
+   * Merges an encoded histogram in to this histogram without decoding it to
+   * an intermediate object
+   */
+  public void addEncoded(byte[] encoded) throws IOException {
+    if (encoded.length < 3) {
+      throw new IOException("Truncated histogram encoding");
+    }
+    if (encoded[0] != ENCODING_VERSION) {
+      throw new IOException("Unsupported histogram encoding version " + encoded[0]);
+    }
+    if (encoded[1] != SUB_BUCKET_BITS || encoded[2] != MAX_VALUE_BITS) {
+      throw new IOException("Incompatible histogram layout. Sub bucket bits: " + encoded[1]
+              + " Max value bits: " + encoded[2]);
+    }
+    InputStream in = new InflaterInputStream(
+            new ByteArrayInputStream(encoded, 3, encoded.length - 3));
+    try {
+      long otherTotalCount = readVarLong(in);
+      long otherSum = readVarLong(in);
+      long otherMin = readVarLong(in);
+      long otherMax = readVarLong(in);
+      long seen = 0;
+      int index = 0;
+      while (seen < otherTotalCount) {
+        index += (int) readVarLong(in);
+        long count = readVarLong(in);
+        if (index >= BUCKETS) {
+          throw new IOException("Corrupt histogram encoding. Bucket " + index);
+        }
+        counts[index++] += count;
+        seen += count;
+      }
+      if (otherTotalCount > 0) {
+        totalCount += otherTotalCount;
+        sum += otherSum;
+        min = Math.min(min, otherMin);
+        max = Math.max(max, otherMax);
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    byte[] encoded = encode();
+    out.writeInt(encoded.length);
+    out.write(encoded);
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    byte[] encoded = new byte[in.readInt()];
+    in.readFully(encoded);
+    counts = new long[BUCKETS];
+    min = Long.MAX_VALUE;
+    addEncoded(encoded);
+  }
+
+  static void writeVarLong(OutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  static long readVarLong(InputStream in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.read();
+      if (b < 0) {
+        throw new IOException("Truncated histogram encoding");
+      }
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed varint in histogram encoding");
+  }
+
+  static int indexFor(long value) {
+    if (value > MAX_TRACKABLE_VALUE) {
+      value = MAX_TRACKABLE_VALUE;
+    }
+    int msb = 63 - Long.numberOfLeadingZeros(value);
+    int shift = Math.max(0, msb - SUB_BUCKET_BITS);
+    return (shift * SUB_BUCKET_COUNT) + (int) (value >>> shift);
+  }
+
+  static long lowestEquivalentValue(int index) {
+    if (index < 2 * SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = (index >> SUB_BUCKET_BITS) - 1;
+    long subBucket = (index & (SUB_BUCKET_COUNT - 1)) | SUB_BUCKET_COUNT;
+    return subBucket << shift;
+  }
+
+  static long highestEquivalentValue(int index) {
+    if (index < 2 * SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = (index >> SUB_BUCKET_BITS) - 1;
+    return lowestEquivalentValue(index) + (1L << shift) - 1;
+  }
+}
@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.benchmarks.common.stats;
+
+import io.hops.experiments.benchmarks.common.BenchmarkOperations;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One LatencyHistogram per BenchmarkOperations. Histograms are only allocated
+ * for the operations that are actually recorded.
+ *
+ * Not thread safe. Each worker owns an instance and the instances are
+ * merged using add() after the workers have finished.
+ *
+ * @author salman
+ */
+public class OperationHistograms implements Serializable {
+
+  private final LatencyHistogram[] histograms =
+          new LatencyHistogram[BenchmarkOperations.values().length];
+
+  public void recordValue(BenchmarkOperations op, long value) {
+    getOrCreate(op).recordValue(value);
+  }
+
+  public void add(OperationHistograms other) {
+    if (other == null) {
+      return;
+    }
+    for (int i = 0; i < histograms.length; i++) {
+      if (other.histograms[i] != null) {
+        getOrCreate(i).add(other.histograms[i]);
+      }
+    }
+  }
+
+  public void add(BenchmarkOperations op, LatencyHistogram histogram) {
+    getOrCreate(op).add(histogram);
+  }
+
+  /**
+   * @return histogram for the op or null if the op was never recorded
+   */
+  public LatencyHistogram get(BenchmarkOperations op) {
+    return histograms[op.ordinal()];
+  }
+
+  public List<BenchmarkOperations> getOperations() {
+    BenchmarkOperations[] ops = BenchmarkOperations.values();
+    List<BenchmarkOperations> recorded = new ArrayList<BenchmarkOperations>();
+    for (int i = 0; i < histograms.length; i++) {
+      if (histograms[i] != null && histograms[i].getTotalCount() > 0) {
+        recorded.add(ops[i]);
+      }
+    }
+    return recorded;
+  }
+
+  /**
+   * @return all operations merged in to one histogram
+   */
+  public LatencyHistogram getCombined() {
+    LatencyHistogram combined = new LatencyHistogram();
+    for (LatencyHistogram histogram : histograms) {
+      combined.add(histogram);
+    }
+    return combined;
+  }
+
+  public void reset() {
+    for (LatencyHistogram histogram : histograms) {
+      if (histogram != null) {
+        histogram.reset();
+      }
+    }
+  }
+
+  private LatencyHistogram getOrCreate(BenchmarkOperations op) {
+    return getOrCreate(op.ordinal());
+  }
+
+  private LatencyHistogram getOrCreate(int index) {
+    LatencyHistogram histogram = histograms[index];
+    if (histogram == null) {
+      histogram = new LatencyHistogram();
+      histograms[index] = histogram;
+    }
+    return histogram;
+  }
+}
@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.benchmarks.common.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter updated by many threads and read now and then, e.g. the ops
+ * completed by the workers of a slave. Each thread adds to one of several
+ * cells, picked by its thread id and padded to their own cache lines, so
+ * the threads do not all contend on one atomic. Same idea as LongAdder,
+ * which needs Java 8.
+ *
+ * sum() is not a snapshot, adds that run concurrently may or may not be
+ * counted.
+ *
+ * @author salman
+ */
+public class StripedCounter {
+
+  // 16 longs = 128 bytes between two cells
+  private static final int PADDING = 16;
+  private static final int MAX_STRIPES = 64;
+
+  private final AtomicLongArray cells;
+  private final int mask;
+
+  public StripedCounter() {
+    int stripes = 1;
+    while (stripes < 2 * Runtime.getRuntime().availableProcessors() && stripes < MAX_STRIPES) {
+      stripes <<= 1;
+    }
+    this.mask = stripes - 1;
+    this.cells = new AtomicLongArray(stripes * PADDING);
+  }
+
+  public void increment() {
+    add(1);
+  }
+
+  public void add(long x) {
+    cells.getAndAdd(cell(), x);
+  }
+
+  public long sum() {
+    long sum = 0;
+    for (int i = 0; i <= mask; i++) {
+      sum += cells.get(i * PADDING);
+    }
+    return sum;
+  }
+
+  @Override
+  public String toString() {
+    return Long.toString(sum());
+  }
+
+  private int cell() {
+    long id = Thread.currentThread().getId();
+    return ((int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask) * PADDING;
+  }
+}
@@ -0,0 +1,235 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.benchmarks.common.stats;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Ops completed in fixed time windows of a phase. Window i covers
+ * [epoch + i * windowMs, epoch + (i + 1) * windowMs). All the slaves use the
+ * start time of the phase sent by the master as the epoch, so window i of
+ * every slave covers the same wall clock time and the master merges the
+ * timelines window by window.
+ *
+ * Each worker thread records into its own Recorder, which adds its counts to
+ * the timeline once per window. The timeline itself is thread safe.
+ *
+ * @author salman
+ */
+public class Timeline implements Serializable {
+
+  static final byte ENCODING_VERSION = 1;
+
+  private final long epoch;
+  private final long windowMs;
+  private int windows = 0;
+  private long[] successful = new long[64];
+  private long[] failed = new long[64];
+  private LatencyHistogram[] latencies = new LatencyHistogram[64];
+
+  public Timeline(long epoch, long windowMs) {
+    if (windowMs <= 0) {
+      throw new IllegalArgumentException("Timeline window should be greater than zero. Got: " + windowMs);
+    }
+    this.epoch = epoch;
+    this.windowMs = windowMs;
+  }
+
+  public long getEpoch() {
+    return epoch;
+  }
+
+  public long getWindowMs() {
+    return windowMs;
+  }
+
+  public synchronized int getWindows() {
+    return windows;
+  }
+
+  public synchronized long getSuccessful(int window) {
+    return successful[window];
+  }
+
+  public synchronized long getFailed(int window) {
+    return failed[window];
+  }
+
+  /**
+   * @return latencies of the window or null if none were recorded
+   */
+  public synchronized LatencyHistogram getLatencies(int window) {
+    return latencies[window];
+  }
+
+  public synchronized void add(int window, long successfulOps, long failedOps,
+          LatencyHistogram windowLatencies) {
+    if (window >= successful.length) {
+      int length = Math.max(window + 1, successful.length * 2);
+      successful = Arrays.copyOf(successful, length);
+      failed = Arrays.copyOf(failed, length);
+      latencies = Arrays.copyOf(latencies, length);
+    }
+    windows = Math.max(windows, window + 1);
+    successful[window] += successfulOps;
+    failed[window] += failedOps;
+    if (windowLatencies != null && windowLatencies.getTotalCount() > 0) {
+      if (latencies[window] == null) {
+        latencies[window] = new LatencyHistogram();
+      }
+      latencies[window].add(windowLatencies);
+    }
+  }
+
+  /**
+   * merges the timeline of another slave. The windows are matched by number
+   */
+  public void add(Timeline other) {
+    if (other == null) {
+      return;
+    }
+    if (other.windowMs != windowMs) {
+      throw new IllegalArgumentException("Timeline windows do not match. " + windowMs + " ms vs "
+              + other.windowMs + " ms");
+    }
+    synchronized (other) {
+      for (int i = 0; i < other.windows; i++) {
+        add(i, other.successful[i], other.failed[i], other.latencies[i]);
+      }
+    }
+  }
+
+  /**
+   * Encoding
+   * [version][epoch][window ms][windows] followed by
+   * [successful][failed][histogram length][encoded histogram]* per window.
+   * The histogram length is -1 if the window has no latencies.
+   */
+  public synchronized byte[] encode() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + windows * 32);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(ENCODING_VERSION);
+    out.writeLong(epoch);
+    out.writeLong(windowMs);
+    out.writeInt(windows);
+    for (int i = 0; i < windows; i++) {
+      out.writeLong(successful[i]);
+      out.writeLong(failed[i]);
+      if (latencies[i] == null) {
+        out.writeInt(-1);
+      } else {
+        byte[] encoded = latencies[i].encode();
+        out.writeInt(encoded.length);
+        out.write(encoded);
+      }
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  public static Timeline decode(byte[] encoded) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+    byte version = in.readByte();
+    if (version != ENCODING_VERSION) {
+      throw new IOException("Unsupported timeline encoding version " + version);
+    }
+    Timeline timeline = new Timeline(in.readLong(), in.readLong());
+    int windows = in.readInt();
+    for (int i = 0; i < windows; i++) {
+      long successfulOps = in.readLong();
+      long failedOps = in.readLong();
+      int length = in.readInt();
+      LatencyHistogram windowLatencies = null;
+      if (length >= 0) {
+        byte[] histogram = new byte[length];
+        in.readFully(histogram);
+        windowLatencies = LatencyHistogram.decode(histogram);
+      }
+      timeline.add(i, successfulOps, failedOps, windowLatencies);
+    }
+    return timeline;
+  }
+
+  public Recorder newRecorder() {
+    return new Recorder();
+  }
+
+  /**
+   * Records the ops of one thread. Not thread safe.
+   */
+  public class Recorder {
+    private int window = -1;
+    private long windowEnd = Long.MIN_VALUE;
+    private long successfulOps = 0;
+    private long failedOps = 0;
+    private LatencyHistogram windowLatencies = null;
+
+    public void recordSuccess() {
+      roll();
+      successfulOps++;
+    }
+
+    /**
+     * @param latency in ns
+     */
+    public void recordSuccess(long latency) {
+      roll();
+      successfulOps++;
+      if (windowLatencies == null) {
+        windowLatencies = new LatencyHistogram();
+      }
+      windowLatencies.recordValue(latency);
+    }
+
+    public void recordFailure() {
+      roll();
+      failedOps++;
+    }
+
+    /**
+     * adds the counts of the current window to the timeline. Called when
+     * the thread is done
+     */
+    public void flush() {
+      if (window >= 0 && (successfulOps > 0 || failedOps > 0)) {
+        add(window, successfulOps, failedOps, windowLatencies);
+      }
+      successfulOps = 0;
+      failedOps = 0;
+      if (windowLatencies != null) {
+        windowLatencies.reset();
+      }
+    }
+
+    private void roll() {
+      long now = System.currentTimeMillis();
+      if (now < windowEnd) {
+        return;
+      }
+      flush();
+      // ops finishing before the epoch are counted in the first window
+      window = (int) (Math.max(0, now - epoch) / windowMs);
+      windowEnd = epoch + (window + 1) * windowMs;
+    }
+  }
+}
@@ -0,0 +1,41 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.benchmarks.interleaved;
+
+import java.util.Random;
+
+/**
+ * Inter arrival times of the operations in the open loop mode
+ *
+ * @author salman
+ */
+public enum ArrivalDistribution {
+  FIXED,   // constant rate
+  POISSON; // exponentially distributed inter arrival times
+
+  /**
+   * @param meanIntervalNs mean time between two consecutive ops of a thread
+   * @return time to wait after the previous intended start time
+   */
+  public long nextInterval(long meanIntervalNs, Random rand) {
+    if (this == FIXED) {
+      return meanIntervalNs;
+    }
+    // 1 - nextDouble() is in (0, 1]
+    return (long) (-Math.log(1 - rand.nextDouble()) * meanIntervalNs);
+  }
+}
@@ -36,8 +36,11 @@ public class InterleavedBMResults extends BMResult {
   private final Map<BenchmarkOperations,double[][]> percentile;
   private final String workloadName;
   private final double avgOpLatency;
+  private final Map<BenchmarkOperations,double[][]> responseTimePercentile;
+  private final double avgOpResponseTime;
 
-  public InterleavedBMResults(int noOfExpectedNNs, int noOfActualAliveNNs, int noOfNDBDataNodes, String workloadName, double speed, double duration, double successfulOps, double failedOps, Map<BenchmarkOperations,double[][]> percentile,double avgOpLatency) {
+  public InterleavedBMResults(int noOfExpectedNNs, int noOfActualAliveNNs, int noOfNDBDataNodes, String workloadName, double speed, double duration, double successfulOps, double failedOps, Map<BenchmarkOperations,double[][]> percentile,double avgOpLatency,
+                              Map<BenchmarkOperations,double[][]> responseTimePercentile, double avgOpResponseTime) {
     super(noOfExpectedNNs, noOfActualAliveNNs, noOfNDBDataNodes, BenchmarkType.INTERLEAVED);
     this.speed = speed;
     this.duration = duration;
@@ -46,6 +49,8 @@ public class InterleavedBMResults extends BMResult {
     this.percentile = percentile;
     this.workloadName = workloadName;
     this.avgOpLatency = avgOpLatency;
+    this.responseTimePercentile = responseTimePercentile;
+    this.avgOpResponseTime = avgOpResponseTime;
   }
 
   public String getWorkloadName() {
@@ -76,6 +81,18 @@ public class InterleavedBMResults extends BMResult {
     return avgOpLatency;
   }
 
+  /**
+   * percentiles of the latencies measured from the intended start time of
+   * the ops. empty in the closed loop mode
+   */
+  public Map<BenchmarkOperations,double[][]> getResponseTimePercentile(){
+    return responseTimePercentile;
+  }
+
+  public double getAvgOpResponseTime() {
+    return avgOpResponseTime;
+  }
+
   @Override
   public String toString() {
 
@@ -83,6 +100,7 @@ public class InterleavedBMResults extends BMResult {
             + " Successful-Ops: " + DFSOperationsUtils.round(successfulOps)
             + " Failed-Ops: " + DFSOperationsUtils.round(failedOps)
             + " Avg-Ops-Latency: " + DFSOperationsUtils.round(avgOpLatency)
+            + (avgOpResponseTime > 0 ? " Avg-Ops-Response-Time: " + DFSOperationsUtils.round(avgOpResponseTime) : "")
             + " Avg-Test-Duration-sec " + DFSOperationsUtils.round(duration)
             + " No of Expected NNs : "+super.getNoOfExpectedAliveNNs()
             + " No of Actual Alive NNs : "+super.getNoOfAcutallAliveNNs();
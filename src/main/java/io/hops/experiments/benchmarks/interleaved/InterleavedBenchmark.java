@@ -22,13 +22,18 @@ import io.hops.experiments.benchmarks.common.BenchMarkFileSystemName;
 import io.hops.experiments.benchmarks.common.Benchmark;
 import io.hops.experiments.benchmarks.common.BenchmarkOperations;
 import io.hops.experiments.benchmarks.common.commands.NamespaceWarmUp;
+import io.hops.experiments.benchmarks.common.stats.OperationHistograms;
+import io.hops.experiments.benchmarks.common.stats.StripedCounter;
+import io.hops.experiments.benchmarks.common.stats.Timeline;
 import io.hops.experiments.benchmarks.interleaved.coin.InterleavedMultiFaceCoin;
+import io.hops.experiments.controller.LiveMetrics;
 import io.hops.experiments.controller.Logger;
 import io.hops.experiments.controller.commands.BenchmarkCommand;
 import io.hops.experiments.controller.commands.WarmUpCommand;
+import io.hops.experiments.fs.LatencyDistribution;
+import io.hops.experiments.fs.LatencyInjector;
 import io.hops.experiments.utils.DFSOperationsUtils;
 import io.hops.experiments.workload.generator.FilePool;
-import org.apache.commons.math3.stat.descriptive.SynchronizedDescriptiveStatistics;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 
@@ -39,7 +44,8 @@ import java.io.InputStreamReader;
 import java.net.InetAddress;
 import java.util.*;
 import java.util.concurrent.Callable;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * @author salman
@@ -48,14 +54,17 @@ public class InterleavedBenchmark extends Benchmark {
 
   private long duration;
   private long startTime = 0;
-  AtomicLong operationsCompleted = new AtomicLong(0);
-  AtomicLong operationsFailed = new AtomicLong(0);
-  Map<BenchmarkOperations, AtomicLong> operationsStats = new HashMap<BenchmarkOperations, AtomicLong>();
-  HashMap<BenchmarkOperations, ArrayList<Long>> opsExeTimes = new HashMap<BenchmarkOperations, ArrayList<Long>>();
-  SynchronizedDescriptiveStatistics avgLatency = new SynchronizedDescriptiveStatistics();
-
-  public InterleavedBenchmark(Configuration conf, BMConfiguration bmConf) {
-    super(conf, bmConf);
+  private long startTimeNs = 0;
+  private Timeline timeline;
+  // mean time between two ops of a worker in the open loop mode. 0 = closed loop
+  private long opIntervalNs = 0;
+  // the workers run simulated clients with think times
+  private boolean sessionMode = false;
+  final StripedCounter operationsCompleted = new StripedCounter();
+  final StripedCounter operationsFailed = new StripedCounter();
+
+  public InterleavedBenchmark(Configuration conf, BMConfiguration bmConf, int slaveId, int numSlaves) {
+    super(conf, bmConf, slaveId, numSlaves);
   }
 
   @Override
@@ -69,7 +78,6 @@ public class InterleavedBenchmark extends Benchmark {
     if (bmConf.getFilesToCreateInWarmUpPhase() > 1) {
       List workers = new ArrayList<BaseWarmUp>();
       // Stage 1
-      threadsWarmedUp.set(0);
       for (int i = 0; i < bmConf.getSlaveNumThreads(); i++) {
         Callable worker = new BaseWarmUp(1, bmConf, "Warming up. Stage1: Creating Parent Dirs. ");
         workers.add(worker);
@@ -78,7 +86,6 @@ public class InterleavedBenchmark extends Benchmark {
       workers.clear();
 
       // Stage 2
-      threadsWarmedUp.set(0);
       for (int i = 0; i < bmConf.getSlaveNumThreads(); i++) {
         Callable worker = new BaseWarmUp(bmConf.getFilesToCreateInWarmUpPhase() - 1,
                 bmConf, "Warming up. Stage2: Creating files/dirs. ");
@@ -99,12 +106,35 @@ public class InterleavedBenchmark extends Benchmark {
 
     duration = config.getInterleavedBmDuration();
     System.out.println("Starting " + command.getBenchMarkType() + " for duration " + duration);
-    List workers = new ArrayList<Worker>();
-    for (int i = 0; i < bmConf.getSlaveNumThreads(); i++) {
-      Callable worker = new Worker(config);
+    opIntervalNs = 0;
+    if (config.isInterleavedBmOpenLoop()) {
+      // every thread of every connected slave gets an equal share of the target rate
+      long totalThreads = (long) numSlaves * bmConf.getSlaveNumThreads();
+      double perThreadOpsPerSec = config.getInterleavedBmTargetOpsPerSec() / (double) totalThreads;
+      opIntervalNs = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / perThreadOpsPerSec));
+      Logger.printMsg("Open loop mode. Target " + config.getInterleavedBmTargetOpsPerSec()
+              + " ops/sec. " + config.getInterleavedBmArrivalDistribution() + " arrivals every "
+              + opIntervalNs + " ns per thread");
+    }
+    int sessions = config.getInterleavedBmSessions();
+    int threads = bmConf.getSlaveNumThreads();
+    sessionMode = sessions > 0;
+    if (sessionMode) {
+      Logger.printMsg("Session mode. " + sessions + " clients on " + threads + " threads. "
+              + config.getInterleavedBmSessionThinkTimeDistribution() + " think times of "
+              + config.getInterleavedBmSessionThinkTime() + " ms");
+    }
+    List<Worker> workers = new ArrayList<Worker>();
+    for (int i = 0; i < threads; i++) {
+      // the threads of all the slaves are spread over the first interval so
+      // that fixed arrivals add up to a constant rate instead of bursts
+      long firstArrivalNs = opIntervalNs * (slaveId * threads + i) / ((long) numSlaves * threads);
+      Worker worker = new Worker(config, sessions / threads + (i < sessions % threads ? 1 : 0), firstArrivalNs);
       workers.add(worker);
     }
+    timeline = new Timeline(waitForStart(), bmConf.getTimelineWindow());
     startTime = System.currentTimeMillis();
+    startTimeNs = System.nanoTime();
 
     FailOverMonitor failOverTester = null;
     List<String> failOverLog = null;
@@ -134,33 +164,66 @@ public class InterleavedBenchmark extends Benchmark {
 
     System.out.println("Finished " + command.getBenchMarkType() + " in " + totalTime);
 
-    double speed = (operationsCompleted.get() / (double) totalTime) * 1000;
+    double speed = (operationsCompleted.sum() / (double) totalTime) * 1000;
+
+    // the workers have finished. merge the per thread histograms
+    OperationHistograms opsExeTimes = new OperationHistograms();
+    OperationHistograms opsResponseTimes = new OperationHistograms();
+    long exeTimeSum = 0;
+    for (Worker worker : workers) {
+      opsExeTimes.add(worker.getOpsExeTimes());
+      opsResponseTimes.add(worker.getOpsResponseTimes());
+      exeTimeSum += worker.getExeTimeSum();
+      worker.flushTimeline();
+    }
+    double avgOpLatency = operationsCompleted.sum() > 0 ? exeTimeSum / (double) operationsCompleted.sum() : 0;
 
     InterleavedBenchmarkCommand.Response response =
-            new InterleavedBenchmarkCommand.Response(totalTime, operationsCompleted.get(), operationsFailed.get(), speed, opsExeTimes, avgLatency.getMean(), failOverLog, getAliveNNsCount());
+            new InterleavedBenchmarkCommand.Response(totalTime, operationsCompleted.sum(), operationsFailed.sum(), speed, opsExeTimes, avgOpLatency, failOverLog, getAliveNNsCount(),
+                    opsResponseTimes, timeline);
     return response;
   }
 
-  public class Worker implements Callable {
+  public class Worker implements Callable<Object> {
 
     private FileSystem dfs;
     private FilePool filePool;
     private InterleavedMultiFaceCoin opCoin;
     private BMConfiguration config = null;
-    private long lastMsg = System.currentTimeMillis();
-
-    public Worker(BMConfiguration config) throws IOException {
+    private final OperationHistograms opsExeTimes = new OperationHistograms();
+    // latency measured from the intended start time. only used in the open loop mode
+    private final OperationHistograms opsResponseTimes = new OperationHistograms();
+    // the histograms are only filled with generate.percentiles
+    private final boolean percentiles = bmConf.isPercentileEnabled();
+    private long exeTimeSum = 0;
+    private final Random rand = new Random();
+    private Timeline.Recorder timelineRecorder;
+    private LiveMetrics.Recorder liveRecorder;
+    // simulated clients run by the worker in the session mode
+    private final int numSessions;
+    // offset of the thread's arrivals from the start in the open loop mode
+    private final long firstArrivalNs;
+
+    public Worker(BMConfiguration config, int numSessions, long firstArrivalNs) throws IOException {
       this.config = config;
-      this.lastMsg = System.currentTimeMillis();
+      this.numSessions = numSessions;
+      this.firstArrivalNs = firstArrivalNs;
     }
 
     @Override
     public Object call() throws Exception {
+      liveRecorder = liveMetrics.newRecorder();
+      try {
+        return runWorker();
+      } finally {
+        liveMetrics.release(liveRecorder);
+      }
+    }
+
+    private Object runWorker() throws Exception {
+      timelineRecorder = timeline.newRecorder();
       dfs = DFSOperationsUtils.getDFSClient(conf);
-      filePool = DFSOperationsUtils.getFilePool(conf, bmConf.getBaseDir(),
-              bmConf.getDirPerDir(), bmConf.getFilesPerDir(), bmConf.isFixedDepthTree(),
-              bmConf.getTreeDepth(), bmConf.getFileSizeDistribution(),
-              bmConf.getReadFilesFromDisk(), bmConf.getDiskNameSpacePath());
+      filePool = DFSOperationsUtils.getFilePool(conf, bmConf, slaveId, numSlaves);
       opCoin = new InterleavedMultiFaceCoin(config.getInterleavedBmCreateFilesPercentage(),
               config.getInterleavedBmAppendFilePercentage(),
               config.getInterleavedBmReadFilesPercentage(),
@@ -177,19 +240,31 @@ public class InterleavedBenchmark extends Benchmark {
               config.getInterleavedBmFileChangeOwnerPercentage(),
               config.getInterleavedBmDirChangeOwnerPercentage()
       );
+      if (sessionMode) {
+        runSessions();
+        return null;
+      }
+      ArrivalDistribution arrivals = config.getInterleavedBmArrivalDistribution();
+      long intendedStartTime = startTimeNs + firstArrivalNs;
       while (true) {
         try {
           if ((System.currentTimeMillis() - startTime) > duration) {
             return null;
           }
 
-          BenchmarkOperations op = opCoin.flip();
+          if (opIntervalNs > 0) {
+            // open loop. if the thread has fallen behind the schedule then the
+            // op is issued immediately and the delay shows up in the response time
+            intendedStartTime += arrivals.nextInterval(opIntervalNs, rand);
+            long wait;
+            while ((wait = intendedStartTime - System.nanoTime()) > 0) {
+              LockSupport.parkNanos(wait);
+            }
+          }
 
-          performOperation(op);
+          BenchmarkOperations op = opCoin.flip();
 
-          if (!config.testFailover()) {
-            log();
-          }
+          performOperation(dfs, op, intendedStartTime);
 
         } catch (Exception e) {
           Logger.error(e);
@@ -197,98 +272,171 @@ public class InterleavedBenchmark extends Benchmark {
       }
     }
 
+    /**
+     * Runs the sessions of the worker until the end of the benchmark. The
+     * next op of a client is due a think time after its previous op or a
+     * pause after its previous session. The worker runs the due ops in order
+     * so the time that an op waits for the worker shows up in its response
+     * time.
+     */
+    private void runSessions() throws IOException {
+      LatencyDistribution distribution = config.getInterleavedBmSessionThinkTimeDistribution();
+      double sigma = config.getInterleavedBmSessionThinkTimeSigma();
+      LatencyInjector thinkTimes = new LatencyInjector(distribution,
+              TimeUnit.MILLISECONDS.toNanos(config.getInterleavedBmSessionThinkTime()), sigma, null);
+      LatencyInjector pauses = new LatencyInjector(distribution,
+              TimeUnit.MILLISECONDS.toNanos(config.getInterleavedBmSessionPause()), sigma, null);
+      List<BenchmarkOperations> sessionOps = config.getInterleavedBmSessionOps();
+      int sessionLength = config.getInterleavedBmSessionLength();
+      long endTimeNs = startTimeNs + TimeUnit.MILLISECONDS.toNanos(duration);
+
+      PriorityQueue<Session> sessions = new PriorityQueue<Session>(Math.max(1, numSessions));
+      List<FileSystem> ownClients = new ArrayList<FileSystem>();
+      try {
+        if (config.isInterleavedBmSessionOwnClient()) {
+          for (int i = 0; i < numSessions; i++) {
+            ownClients.add(FileSystem.newInstance(conf));
+          }
+        }
+        // spread the first ops of the clients over a think time
+        long firstOpTime = System.nanoTime();
+        for (int i = 0; i < numSessions; i++) {
+          FileSystem client = ownClients.isEmpty() ? dfs : ownClients.get(i);
+          sessions.add(new Session(client, firstOpTime + thinkTimes.nextLatency()));
+        }
+
+        while (!sessions.isEmpty()) {
+          Session session = sessions.poll();
+          long wait;
+          while ((wait = Math.min(session.nextOpTime, endTimeNs) - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+          }
+          if (System.nanoTime() >= endTimeNs) {
+            return;
+          }
+
+          BenchmarkOperations op;
+          boolean endOfSession;
+          if (sessionOps.isEmpty()) {
+            op = opCoin.flip();
+            // geometrically distributed session lengths
+            endOfSession = sessionLength > 0 && rand.nextInt(sessionLength) == 0;
+          } else {
+            op = sessionOps.get(session.opsDone);
+            endOfSession = session.opsDone + 1 == sessionOps.size();
+          }
+          try {
+            performOperation(session.dfs, op, session.nextOpTime);
+          } catch (Exception e) {
+            Logger.error(e);
+          }
 
-    private void log() throws IOException {
-
-      // Send a log message once every five second.
-      // The logger also tires to rate limit the log messages
-      // using the canILog() methods. canILog method is synchronized
-      // method. Calling it frequently can slightly impact the performance
-      // It is better that each thread call the canILog() method only
-      // once every five sec
-      if ((System.currentTimeMillis() - lastMsg) > 5000) {
-        lastMsg = System.currentTimeMillis();
-        String message = "";
-        if (Logger.canILog()) {
-          message += DFSOperationsUtils.format(25, "Completed Ops: " + operationsCompleted + " ");
-          message += DFSOperationsUtils.format(25, "Failed Ops: " + operationsFailed + " ");
-          message += DFSOperationsUtils.format(25, "Speed: " + DFSOperationsUtils.round(speedPSec(operationsCompleted.get(), startTime)));
-//          if (avgLatency.getN() > 0) {
-//            message += DFSOperationsUtils.format(20, "Avg. Op Latency: " + avgLatency.getMean() + " ms");
-//          }
-//
-//          SortedSet<BenchmarkOperations> sorted = new TreeSet<BenchmarkOperations>();
-//          sorted.addAll(operationsStats.keySet());
-//
-//          for (BenchmarkOperations op : sorted) {
-//            AtomicLong stat = operationsStats.get(op);
-//            if (stat != null) {
-//
-//              double percent = DFSOperationsUtils.round(((double) stat.get() / operationsCompleted.get()) * 100);
-//              String msg = op + ": [" + percent + "%] ";
-//              message += DFSOperationsUtils.format(op.toString().length() + 14, msg);
-//            }
-//          }
-          Logger.printMsg(message);
+          if (endOfSession) {
+            session.opsDone = 0;
+            session.nextOpTime = System.nanoTime() + pauses.nextLatency();
+          } else {
+            session.opsDone++;
+            session.nextOpTime = System.nanoTime() + thinkTimes.nextLatency();
+          }
+          sessions.add(session);
+        }
+      } finally {
+        for (FileSystem client : ownClients) {
+          try {
+            client.close();
+          } catch (IOException e) {
+            Logger.error(e);
+          }
         }
       }
     }
 
-    private void performOperation(BenchmarkOperations opType) throws IOException {
+    private void performOperation(FileSystem dfs, BenchmarkOperations opType, long intendedStartTime) throws IOException {
       String path = BMOperationsUtils.getPath(opType, filePool);
       if (path != null) {
         boolean retVal = false;
         long opExeTime = 0;
+        long opResponseTime = 0;
         try {
           long opStartTime = 0L;
           opStartTime = System.nanoTime();
 
           BMOperationsUtils.performOp(dfs, opType, filePool, path, config.getReplicationFactor(),
                   config.getAppendFileSize());
-          opExeTime = System.nanoTime() - opStartTime;
+          long opEndTime = System.nanoTime();
+          opExeTime = opEndTime - opStartTime;
+          if (opIntervalNs > 0 || sessionMode) {
+            opResponseTime = opEndTime - intendedStartTime;
+          }
           retVal = true;
         } catch (Exception e) {
           Logger.error(e);
         }
-        updateStats(opType, retVal, opExeTime);
+        updateStats(opType, retVal, opExeTime, opResponseTime);
       } else {
         Logger.printMsg("Could not perform operation " + opType + ". Got Null from the file pool");
 //                System.exit(-1);
       }
     }
 
-    private void updateStats(BenchmarkOperations opType, boolean success, long opExeTime) {
-      AtomicLong stat = operationsStats.get(opType);
-      if (stat == null) { // this should be synchronized to get accurate stats. However, this will slow down and these stats are just for log messages. Some inconsistencies are OK
-        stat = new AtomicLong(0);
-        operationsStats.put(opType, stat);
-      }
-      stat.incrementAndGet();
-
+    private void updateStats(BenchmarkOperations opType, boolean success, long opExeTime, long opResponseTime) {
       if (success) {
-        operationsCompleted.incrementAndGet();
-        avgLatency.addValue(opExeTime);
-        if (bmConf.isPercentileEnabled()) {
-          synchronized (opsExeTimes) {
-            ArrayList<Long> times = opsExeTimes.get(opType);
-            if (times == null) {
-              times = new ArrayList<Long>();
-              opsExeTimes.put(opType, times);
-            }
-            times.add(opExeTime);
+        operationsCompleted.increment();
+        exeTimeSum += opExeTime;
+        timelineRecorder.recordSuccess(opExeTime);
+        liveRecorder.recordSuccess(opType, opExeTime);
+        if (percentiles) {
+          opsExeTimes.recordValue(opType, opExeTime);
+          if (opIntervalNs > 0 || sessionMode) {
+            opsResponseTimes.recordValue(opType, opResponseTime);
           }
         }
       } else {
-        operationsFailed.incrementAndGet();
+        operationsFailed.increment();
+        timelineRecorder.recordFailure();
+        liveRecorder.recordFailure();
       }
 
     }
+
+    OperationHistograms getOpsExeTimes() {
+      return opsExeTimes;
+    }
+
+    OperationHistograms getOpsResponseTimes() {
+      return opsResponseTimes;
+    }
+
+    long getExeTimeSum() {
+      return exeTimeSum;
+    }
+
+    void flushTimeline() {
+      if (timelineRecorder != null) {
+        timelineRecorder.flush();
+      }
+    }
   }
 
-  private double speedPSec(long ops, long startTime) {
-    long timePassed = (System.currentTimeMillis() - startTime);
-    double opsPerMSec = (double) (ops) / (double) timePassed;
-    return opsPerMSec * 1000;
+  /**
+   * A simulated client of the session mode
+   */
+  static class Session implements Comparable<Session> {
+    final FileSystem dfs;
+    // when the next op of the client is due, in ns
+    long nextOpTime;
+    // ops done in the current session
+    int opsDone = 0;
+
+    Session(FileSystem dfs, long nextOpTime) {
+      this.dfs = dfs;
+      this.nextOpTime = nextOpTime;
+    }
+
+    @Override
+    public int compareTo(Session other) {
+      return nextOpTime < other.nextOpTime ? -1 : (nextOpTime == other.nextOpTime ? 0 : 1);
+    }
   }
 
   FailOverMonitor startFailoverTestDeamon(List<List<String>> commands, long failoverTestDuration, long failoverTestStartTime, long namenodeRestartTP, boolean canIKillNamenodes) {
@@ -329,11 +477,11 @@ public class InterleavedBenchmark extends Benchmark {
       while (!stop) {
         long speed = 0;
         if (previousSuccessfulOps == 0) {
-          speed = operationsCompleted.get();
+          speed = operationsCompleted.sum();
           previousSuccessfulOps = speed;
         } else {
-          speed = (operationsCompleted.get() - previousSuccessfulOps);
-          previousSuccessfulOps = operationsCompleted.get();
+          speed = (operationsCompleted.sum() - previousSuccessfulOps);
+          previousSuccessfulOps = operationsCompleted.sum();
         }
 
         log.add(tick + " " + speed);
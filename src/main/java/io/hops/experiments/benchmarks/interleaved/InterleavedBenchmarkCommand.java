@@ -16,13 +16,12 @@
  */
 package io.hops.experiments.benchmarks.interleaved;
 
-import io.hops.experiments.benchmarks.common.BenchmarkOperations;
 import io.hops.experiments.benchmarks.common.config.BMConfiguration;
+import io.hops.experiments.benchmarks.common.stats.OperationHistograms;
+import io.hops.experiments.benchmarks.common.stats.Timeline;
 import io.hops.experiments.controller.commands.BenchmarkCommand;
 import io.hops.experiments.benchmarks.common.BenchmarkType;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
 /**
@@ -55,13 +54,15 @@ public class InterleavedBenchmarkCommand {
         private final long totalFailedOps;
         private final double opsPerSec;
         private final double avgOpLatency;
-        private final HashMap<BenchmarkOperations, ArrayList<Long>> opsExeTimes;
+        private final OperationHistograms opsExeTimes;
         private final List<String> failOverLog;
         private final int nnCount;
+        private final OperationHistograms opsResponseTimes;
+        private final Timeline timeline;
 
         public Response(long runTime, long totalSuccessfulOps, long totalFailedOps, double opsPerSec,
-                        HashMap<BenchmarkOperations, ArrayList<Long>> opsExeTimes, double avgOpLatency, List<String> failOverLog,
-                        int nnCount) {
+                        OperationHistograms opsExeTimes, double avgOpLatency, List<String> failOverLog,
+                        int nnCount, OperationHistograms opsResponseTimes, Timeline timeline) {
             this.runTime = runTime;
             this.totalSuccessfulOps = totalSuccessfulOps;
             this.totalFailedOps = totalFailedOps;
@@ -70,12 +71,22 @@ public class InterleavedBenchmarkCommand {
             this.failOverLog = failOverLog;
             this.avgOpLatency = avgOpLatency;
             this.nnCount = nnCount;
+            this.opsResponseTimes = opsResponseTimes;
+            this.timeline = timeline;
         }
 
-        public HashMap<BenchmarkOperations, ArrayList<Long>> getOpsExeTimes() {
+        public OperationHistograms getOpsExeTimes() {
             return opsExeTimes;
         }
 
+        /**
+         * latencies measured from the intended start time of the ops.
+         * empty in the closed loop mode
+         */
+        public OperationHistograms getOpsResponseTimes() {
+            return opsResponseTimes;
+        }
+
 
         public long getRunTime() {
             return runTime;
@@ -104,5 +115,9 @@ public class InterleavedBenchmarkCommand {
         public int getNnCount() {
             return nnCount;
         }
+
+        public Timeline getTimeline() {
+            return timeline;
+        }
     }
 }
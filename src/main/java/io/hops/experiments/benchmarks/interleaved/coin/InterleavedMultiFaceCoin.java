@@ -16,19 +16,21 @@
  */
 package io.hops.experiments.benchmarks.interleaved.coin;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Random;
 import io.hops.experiments.benchmarks.common.BenchmarkOperations;
+import io.hops.experiments.benchmarks.common.coin.AliasSampler;
+import io.hops.experiments.benchmarks.common.coin.SplitMix64Random;
 import io.hops.experiments.utils.DFSOperationsUtils;
 
 import java.math.BigDecimal;
-import java.math.MathContext;
-import java.math.RoundingMode;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
+ * Picks the next operation of the interleaved benchmark according to the
+ * configured percentages. The percentages can have any number of decimal
+ * places but must add up to exactly 100.
+ *
+ * Not thread safe. Each worker uses its own coin.
  *
  * @author salman
  */
@@ -49,11 +51,10 @@ public class InterleavedMultiFaceCoin {
   private BigDecimal dirInfo;
   private BigDecimal fileChown;
   private BigDecimal dirChown;
-  //private BigDecimal 
-  private Random rand;
-  private BigDecimal expansion = new BigDecimal(100.00,new MathContext(4,RoundingMode.HALF_UP));
-  //1000 face dice
-  ArrayList<BenchmarkOperations> dice = new ArrayList<BenchmarkOperations>();
+  private final SplitMix64Random rand = new SplitMix64Random();
+  private BenchmarkOperations[] faces;
+  private BigDecimal[] weights;
+  private AliasSampler sampler;
 
   public InterleavedMultiFaceCoin(BigDecimal create, BigDecimal append, BigDecimal read, BigDecimal rename, BigDecimal delete, BigDecimal lsFile,
                                   BigDecimal lsDir, BigDecimal chmodFiles, BigDecimal chmodDirs, BigDecimal mkdirs,
@@ -75,8 +76,6 @@ public class InterleavedMultiFaceCoin {
     this.fileChown = fileChown;
     this.dirChown = dirChown;
 
-    this.rand = new Random(System.currentTimeMillis());
-
     createCoin();
   }
 
@@ -96,93 +95,43 @@ public class InterleavedMultiFaceCoin {
       throw new IllegalArgumentException("All probabilities should add to 100. Got: " + total);
     }
 
-    
-    for (int i = 0; i < create.multiply(expansion).intValueExact(); i++) {
-      dice.add(BenchmarkOperations.CREATE_FILE);
-    }
-
-    for (int i = 0; i < append.multiply(expansion).intValueExact(); i++) {
-      dice.add(BenchmarkOperations.APPEND_FILE);
-    }
-
-    for (int i = 0; i < read.multiply(expansion).intValueExact(); i++) {
-      dice.add(BenchmarkOperations.READ_FILE);
-    }
-
-    for (int i = 0; i < rename.multiply(expansion).intValueExact(); i++) {
-      dice.add(BenchmarkOperations.RENAME_FILE);
-    }
-
-    
-    for (int i = 0; i < delete.multiply(expansion).intValueExact(); i++) {
-      dice.add(BenchmarkOperations.DELETE_FILE);
-    }
-
-    for (int i = 0; i < lsFile.multiply(expansion).intValueExact(); i++) {
-      dice.add(BenchmarkOperations.LS_FILE);
-    }
-
-    for (int i = 0; i < lsDir.multiply(expansion).intValueExact(); i++) {
-      dice.add(BenchmarkOperations.LS_DIR);
-    }
-
-    for (int i = 0; i < chmodFiles.multiply(expansion).intValueExact(); i++) {
-      dice.add(BenchmarkOperations.CHMOD_FILE);
-    }
-
-    for (int i = 0; i < chmodDirs.multiply(expansion).intValueExact(); i++) {
-      dice.add(BenchmarkOperations.CHMOD_DIR);
-    }
-
-    for (int i = 0; i < mkdirs.multiply(expansion).intValueExact(); i++) {
-      dice.add(BenchmarkOperations.MKDIRS);
-    }
-
-    for (int i = 0; i < setReplication.multiply(expansion).intValueExact(); i++) {
-      dice.add(BenchmarkOperations.SET_REPLICATION);
-    }
-
-    for (int i = 0; i < fileInfo.multiply(expansion).intValueExact(); i++) {
-      dice.add(BenchmarkOperations.FILE_INFO);
-    }
+    faces = new BenchmarkOperations[]{BenchmarkOperations.CREATE_FILE, BenchmarkOperations.APPEND_FILE,
+            BenchmarkOperations.READ_FILE, BenchmarkOperations.RENAME_FILE, BenchmarkOperations.DELETE_FILE,
+            BenchmarkOperations.LS_FILE, BenchmarkOperations.LS_DIR, BenchmarkOperations.CHMOD_FILE,
+            BenchmarkOperations.CHMOD_DIR, BenchmarkOperations.MKDIRS, BenchmarkOperations.SET_REPLICATION,
+            BenchmarkOperations.FILE_INFO, BenchmarkOperations.DIR_INFO, BenchmarkOperations.CHOWN_FILE,
+            BenchmarkOperations.CHOWN_DIR};
+    weights = new BigDecimal[]{create, append, read, rename, delete, lsFile, lsDir, chmodFiles,
+            chmodDirs, mkdirs, setReplication, fileInfo, dirInfo, fileChown, dirChown};
+    sampler = new AliasSampler(weights);
+  }
 
-    for (int i = 0; i < dirInfo.multiply(expansion).intValueExact(); i++) {
-      dice.add(BenchmarkOperations.DIR_INFO);
-    }
-    
-    for (int i = 0; i < fileChown.multiply(expansion).intValueExact(); i++) {
-      dice.add(BenchmarkOperations.CHOWN_FILE);
-    }
-    
-    for (int i = 0; i < dirChown.multiply(expansion).intValueExact(); i++) {
-      dice.add(BenchmarkOperations.CHOWN_DIR);
-    }
+  public BenchmarkOperations flip() {
+    return faces[sampler.sample(rand)];
+  }
 
-    double expectedSize = expansion.multiply(new BigDecimal(100)).intValueExact();
-    if (dice.size() != expectedSize) {
-      Map<BenchmarkOperations, Integer> counts = new HashMap<BenchmarkOperations, Integer>();
-      for (BenchmarkOperations op : dice) {
-        Integer opCount = counts.get(op);
-        if (opCount == null) {
-          opCount = new Integer(0);
-        }
-        opCount++;
-        counts.put(op, opCount);
-      }
-      for (BenchmarkOperations op : counts.keySet()) {
-        double percent = ((double) counts.get(op) / ((double)expectedSize) * 100);
-                
-        System.out.println(op + " count " + counts.get(op) + ",  " + DFSOperationsUtils.round(percent) + "%");
+  /**
+   * @return configured percentage of the operation
+   */
+  public BigDecimal getPercentage(BenchmarkOperations op) {
+    for (int i = 0; i < faces.length; i++) {
+      if (faces[i] == op) {
+        return weights[i];
       }
-      throw new IllegalStateException("Dice is not properfly created. Dice should have  " + expectedSize + " faces. Found " + dice.size());
     }
-
-    Collections.shuffle(dice);
+    return BigDecimal.ZERO;
   }
 
-  public BenchmarkOperations flip() {
-    int choice = rand.nextInt(100 * expansion.intValueExact());
-    return dice.get(choice);
+  /**
+   * @return probability, in [0, 1], with which flip() returns the operation
+   */
+  public double getProbability(BenchmarkOperations op) {
+    for (int i = 0; i < faces.length; i++) {
+      if (faces[i] == op) {
+        return sampler.getProbability(i);
+      }
+    }
+    return 0;
   }
 
   public void testFlip() {
@@ -204,10 +153,4 @@ public class InterleavedMultiFaceCoin {
       System.out.println(op + ": count: "+counts.get(op)+"        " + DFSOperationsUtils.round(percent)+"%");
     }
   }
-  
-//  public static void main(String [] argv){
-//    System.out.println(new BigDecimal((double)0.09,new MathContext(4,RoundingMode.HALF_UP)).multiply(new BigDecimal(100)).intValueExact());
-//    
-//    
-//  }
 }
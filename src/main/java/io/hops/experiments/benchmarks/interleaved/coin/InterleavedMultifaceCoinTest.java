@@ -19,11 +19,11 @@ package io.hops.experiments.benchmarks.interleaved.coin;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.HashMap;
 
 import io.hops.experiments.benchmarks.common.BenchmarkOperations;
 import io.hops.experiments.utils.DFSOperationsUtils;
-import java.math.BigDecimal;
 
 /**
  *
@@ -33,27 +33,39 @@ public class InterleavedMultifaceCoinTest {
     public static void main(String [] argv) throws FileNotFoundException, IOException{
       
       
+        // percentages with more decimal places than the old 10000 face dice could represent
         InterleavedMultiFaceCoin coin = new InterleavedMultiFaceCoin(
-                new BigDecimal(5),
-                new BigDecimal(5),
-                new BigDecimal(10),
-                new BigDecimal(10),
-                new BigDecimal(10),
-                new BigDecimal(10),
-                new BigDecimal(10),
-                new BigDecimal(10),
-                new BigDecimal(10),
-                new BigDecimal(5),
-                new BigDecimal(5),
-                new BigDecimal(5),
-                new BigDecimal(5),
-                new BigDecimal(0),
+                new BigDecimal("5.0005"),
+                new BigDecimal("4.9995"),
+                new BigDecimal("10"),
+                new BigDecimal("10"),
+                new BigDecimal("10"),
+                new BigDecimal("10"),
+                new BigDecimal("9.875"),
+                new BigDecimal("10.125"),
+                new BigDecimal("10"),
+                new BigDecimal("5"),
+                new BigDecimal("5"),
+                new BigDecimal("5"),
+                new BigDecimal("4.999999"),
+                new BigDecimal("0.000001"),
                 new BigDecimal(0)
                 );
+
+        // the alias table must reproduce the percentages exactly (up to double precision)
+        for (BenchmarkOperations op : BenchmarkOperations.values()) {
+            double expected = coin.getPercentage(op).doubleValue() / 100;
+            double actual = coin.getProbability(op);
+            if (Math.abs(expected - actual) > 1e-12) {
+                throw new IllegalStateException("Wrong probability for " + op + ". Expected: " + expected
+                        + " Got: " + actual);
+            }
+        }
+        System.out.println("Alias table matches the configured percentages");
+
         HashMap<BenchmarkOperations,Integer> map  = new HashMap<BenchmarkOperations,Integer>();
         
-        int times = 100000;
-        
+        int times = 1000000;
         for(int i =0 ; i < times;i++){
             BenchmarkOperations op = coin.flip();
             
@@ -20,10 +20,9 @@ package io.hops.experiments.benchmarks.rawthroughput;
 import io.hops.experiments.benchmarks.common.BMResult;
 import io.hops.experiments.benchmarks.common.BenchmarkOperations;
 import io.hops.experiments.benchmarks.common.BenchmarkType;
+import io.hops.experiments.benchmarks.common.stats.LatencyHistogram;
 import io.hops.experiments.utils.DFSOperationsUtils;
 
-import java.util.List;
-
 /**
  *
  * @author salman
@@ -34,12 +33,12 @@ public class RawBMResults extends BMResult {
   private final double successfulOps;
   private final double failedOps;
   private final BenchmarkOperations operationType;
-  private final List<Long> latencies;
+  private final LatencyHistogram latencies;
 
   public RawBMResults(int noOfExpectedNNs, int noOfActualAliveNNs, int noOfNDBDataNodes,
                       BenchmarkOperations operationType, double speed, double duration,
                       double successfulOps, double failedOps,
-                      List<Long> latencies) {
+                      LatencyHistogram latencies) {
     super(noOfExpectedNNs, noOfActualAliveNNs, noOfNDBDataNodes,  BenchmarkType.RAW);
     this.speed = speed;
     this.duration = duration;
@@ -69,7 +68,7 @@ public class RawBMResults extends BMResult {
     return operationType;
   }
 
-  public List<Long> getLatencies(){
+  public LatencyHistogram getLatencies(){
     return latencies;
   }
 
@@ -17,17 +17,24 @@
 package io.hops.experiments.benchmarks.rawthroughput;
 
 import io.hops.experiments.benchmarks.common.config.BMConfiguration;
+import io.hops.experiments.benchmarks.common.config.ConfigKeys;
 import io.hops.experiments.utils.BMOperationsUtils;
 
 import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import io.hops.experiments.benchmarks.common.BenchMarkFileSystemName;
 import io.hops.experiments.benchmarks.common.coin.FileSizeMultiFaceCoin;
 import io.hops.experiments.benchmarks.common.commands.NamespaceWarmUp;
+import io.hops.experiments.benchmarks.common.rpc.PipelinedRPCClient;
+import io.hops.experiments.benchmarks.common.stats.LatencyHistogram;
+import io.hops.experiments.benchmarks.common.stats.StripedCounter;
+import io.hops.experiments.benchmarks.common.stats.Timeline;
+import io.hops.experiments.controller.LiveMetrics;
 import io.hops.experiments.controller.Logger;
 import io.hops.experiments.controller.commands.WarmUpCommand;
 import io.hops.experiments.utils.DFSOperationsUtils;
@@ -44,14 +51,15 @@ import org.apache.hadoop.fs.FileSystem;
  */
 public class RawBenchmark extends Benchmark {
 
-  private AtomicInteger successfulOps = new AtomicInteger(0);
-  private AtomicInteger failedOps = new AtomicInteger(0);
+  private StripedCounter successfulOps = new StripedCounter();
+  private StripedCounter failedOps = new StripedCounter();
   private long phaseStartTime;
   private long phaseDurationInMS;
-  private final ArrayList<Long> opsExeTimes = new ArrayList<Long>();
+  private Timeline timeline;
+  private PipelinedRPCClient rpcClient;
 
-  public RawBenchmark(Configuration conf, BMConfiguration bmConf) {
-    super(conf, bmConf);
+  public RawBenchmark(Configuration conf, BMConfiguration bmConf, int slaveId, int numSlaves) {
+    super(conf, bmConf, slaveId, numSlaves);
   }
 
   @Override
@@ -65,7 +73,6 @@ public class RawBenchmark extends Benchmark {
     if (bmConf.getFilesToCreateInWarmUpPhase() > 1) {
       List workers = new ArrayList<BaseWarmUp>();
       // Stage 1
-      threadsWarmedUp.set(0);
       for (int i = 0; i < bmConf.getSlaveNumThreads(); i++) {
         Callable worker = new BaseWarmUp(1, bmConf, "Warming up. Stage1: Creating Parent Dirs. ");
         workers.add(worker);
@@ -74,7 +81,6 @@ public class RawBenchmark extends Benchmark {
       workers.clear();
 
       // Stage 2
-      threadsWarmedUp.set(0);
       for (int i = 0; i < bmConf.getSlaveNumThreads(); i++) {
         Callable worker = new BaseWarmUp(bmConf.getFilesToCreateInWarmUpPhase() - 1, bmConf,
                 "Warming up. Stage2: Creating files/dirs. ");
@@ -99,56 +105,99 @@ public class RawBenchmark extends Benchmark {
   }
 
   private RawBenchmarkCommand.Response startTestPhase(BenchmarkOperations opType, long duration, String baseDir) throws InterruptedException, UnknownHostException, IOException {
-    List workers = new LinkedList<Callable>();
-    for (int i = 0; i < bmConf.getSlaveNumThreads(); i++) {
-      Callable worker = new Generic(baseDir, opType);
-      workers.add(worker);
+    int pipelineDepth = 0;
+    if (bmConf.getRawRpcPipelineDepth() > 0 && PipelinedRPCClient.isSupported(opType)) {
+      pipelineDepth = bmConf.getRawRpcPipelineDepth();
+      int namenodes = getAliveNNsCount();
+      if (namenodes > 1) {
+        throw new UnsupportedOperationException(ConfigKeys.RAW_RPC_PIPELINE_DEPTH_KEY + " can not be used with "
+                + namenodes + " namenodes. The pipelined calls would all go to one namenode");
+      }
+      rpcClient = new PipelinedRPCClient(conf, bmConf.getSlaveClientEngine(),
+              pipelineDepth * bmConf.getSlaveNumThreads());
     }
-    setMeasurementVariables(duration);
 
-    Logger.resetTimer();
+    long actualExecutionTime;
+    List<Generic> workers = new LinkedList<Generic>();
+    try {
+      for (int i = 0; i < bmConf.getSlaveNumThreads(); i++) {
+        Generic worker = new Generic(baseDir, opType, pipelineDepth);
+        workers.add(worker);
+      }
+      long epoch = waitForStart();
+      setMeasurementVariables(duration, epoch);
+
+      Logger.resetTimer();
 
-    executor.invokeAll(workers);// blocking call
-    long phaseFinishTime = System.currentTimeMillis();
-    long actualExecutionTime = (phaseFinishTime - phaseStartTime);
+      executor.invokeAll(workers);// blocking call
+      long phaseFinishTime = System.currentTimeMillis();
+      actualExecutionTime = (phaseFinishTime - phaseStartTime);
+    } finally {
+      if (rpcClient != null) {
+        rpcClient.shutdown();
+        rpcClient = null;
+      }
+    }
 
-    double speed = ((double) successfulOps.get() / (double) actualExecutionTime); // p / ms
+    double speed = ((double) successfulOps.sum() / (double) actualExecutionTime); // p / ms
     speed = speed * 1000;
 
+    // the workers have finished. merge the per thread histograms
+    LatencyHistogram opsExeTimes = new LatencyHistogram();
+    for (Generic worker : workers) {
+      opsExeTimes.add(worker.getOpsExeTimes());
+      worker.flushTimeline();
+    }
+
     RawBenchmarkCommand.Response response =
             new RawBenchmarkCommand.Response(opType,
-                    actualExecutionTime, successfulOps.get(), failedOps.get(), speed, getAliveNNsCount(), opsExeTimes);
+                    actualExecutionTime, successfulOps.sum(), failedOps.sum(), speed, getAliveNNsCount(), opsExeTimes,
+                    timeline);
     return response;
   }
 
-  public class Generic implements Callable {
+  public class Generic implements Callable<Object> {
 
     private BenchmarkOperations opType;
     private FileSystem dfs;
     private FilePool filePool;
     private String baseDir;
-    private long lastLog = System.currentTimeMillis();
+    private final int pipelineDepth;
+    private final LatencyHistogram opsExeTimes = new LatencyHistogram();
+    private Timeline.Recorder timelineRecorder;
+    private LiveMetrics.Recorder liveRecorder;
 
-    public Generic(String baseDir, BenchmarkOperations opType) throws IOException {
+    public Generic(String baseDir, BenchmarkOperations opType, int pipelineDepth) throws IOException {
       this.baseDir = baseDir;
       this.opType = opType;
+      this.pipelineDepth = pipelineDepth;
     }
 
     Map<Long, Long> stats = new HashMap<Long, Long>();
 
     @Override
     public Object call() throws Exception {
+      liveRecorder = liveMetrics.newRecorder();
+      try {
+        return runWorker();
+      } finally {
+        liveMetrics.release(liveRecorder);
+      }
+    }
+
+    private Object runWorker() throws Exception {
+      timelineRecorder = timeline.newRecorder();
       try {
         dfs = DFSOperationsUtils.getDFSClient(conf);
-        filePool = DFSOperationsUtils.getFilePool(conf, bmConf.getBaseDir(),
-                bmConf.getDirPerDir(), bmConf.getFilesPerDir(), bmConf.isFixedDepthTree(),
-                bmConf.getTreeDepth(), bmConf.getFileSizeDistribution(),
-                bmConf.getReadFilesFromDisk(), bmConf.getDiskNameSpacePath());
+        filePool = DFSOperationsUtils.getFilePool(conf, bmConf, slaveId, numSlaves);
       } catch (Exception e) {
         Logger.error(e);
         e.printStackTrace();
         throw e;
       }
+      if (pipelineDepth > 0) {
+        return callPipelined();
+      }
       while (true) {
         try {
 
@@ -159,7 +208,7 @@ public class RawBenchmark extends Benchmark {
           } else if ((System.currentTimeMillis() - phaseStartTime) > phaseDurationInMS) {
             return null;
           } else if (opType == BenchmarkOperations.CREATE_FILE &&
-                  bmConf.getRawBmMaxFilesToCreate() < (long) (successfulOps.get() + filesCreatedInWarmupPhase.get())) {
+                  bmConf.getRawBmMaxFilesToCreate() < (long) (successfulOps.sum() + filesCreatedInWarmupPhase.get())) {
             return null;
           } else if (opType == BenchmarkOperations.CREATE_FILE &&
                   bmConf.getReadFilesFromDisk() && !filePool.hasMoreFilesToWrite()) {
@@ -187,66 +236,80 @@ public class RawBenchmark extends Benchmark {
           }
           logStats(opType, time);
 
-          logMessage();
-
         } catch (Throwable e) {
-          failedOps.incrementAndGet();
+          failedOps.increment();
+          timelineRecorder.recordFailure();
+          liveRecorder.recordFailure();
           Logger.error(e);
         }
       }
     }
 
+    /*
+     * Keeps pipelineDepth RPCs in flight. The completions are processed
+     * by this thread so the file pool is only accessed by this thread.
+     */
+    private Object callPipelined() throws InterruptedException {
+      BlockingQueue<PipelinedRPCClient.Completion> completions =
+              new LinkedBlockingQueue<PipelinedRPCClient.Completion>();
+      int inFlight = 0;
+      boolean done = false;
+      while (true) {
+        while (!done && inFlight < pipelineDepth) {
+          String path = BMOperationsUtils.getPath(opType, filePool);
+          if (path == null || (System.currentTimeMillis() - phaseStartTime) > phaseDurationInMS) {
+            done = true;
+          } else {
+            rpcClient.submit(opType, path, completions);
+            inFlight++;
+          }
+        }
+
+        if (inFlight == 0) {
+          return null;
+        }
+
+        PipelinedRPCClient.Completion completion = completions.take();
+        inFlight--;
+        if (completion.isSuccessful()) {
+          logStats(opType, completion.getLatency());
+        } else {
+          failedOps.increment();
+          timelineRecorder.recordFailure();
+          liveRecorder.recordFailure();
+          Logger.error(completion.getError());
+        }
+      }
+    }
+
     private void logStats(BenchmarkOperations type, long time) {
       if (bmConf.isPercentileEnabled()) {
-        synchronized (opsExeTimes) {
-          opsExeTimes.add(time);
-        }
+        opsExeTimes.recordValue(time);
+        timelineRecorder.recordSuccess(time);
+        liveRecorder.recordSuccess(type, time);
+      } else {
+        timelineRecorder.recordSuccess();
+        liveRecorder.recordSuccess();
       }
-      successfulOps.incrementAndGet();
+      successfulOps.increment();
     }
 
-    private void logMessage() {
-      // Send a log message once every five second.
-      // The logger also tires to rate limit the log messages
-      // using the canILog() methods. canILog method is synchronized
-      // method. Calling it frequently can slightly impact the performance
-      // It is better that each thread call the canILog() method only
-      // once every five sec
-      if ((System.currentTimeMillis() - lastLog) > 5000) {
-        lastLog = System.currentTimeMillis();
-        if (Logger.canILog()) {
-          Logger.printMsg("Successful " + opType + " ops " + successfulOps.get() + " Failed ops " + failedOps.get() + " Speed: " + DFSOperationsUtils.round(speedPSec(successfulOps, phaseStartTime)));
-
-          //log file size distribution
-          /*synchronized (this) {
-            String msg = "";
-            Long total = new Long(0);
-            for (Long size : stats.keySet()) {
-              Long count = stats.get(size);
-              total += count;
-            }
-            for (Long size : stats.keySet()) {
-              Long count = stats.get(size);
-              msg += "  Size: " + size + " Percentage: " + (count / (double) total) * 100+"\n";
-            }
-            Logger.printMsg("Ratio: " + msg);
-          }*/
-        }
+    LatencyHistogram getOpsExeTimes() {
+      return opsExeTimes;
+    }
+
+    void flushTimeline() {
+      if (timelineRecorder != null) {
+        timelineRecorder.flush();
       }
     }
   }
 
-  private void setMeasurementVariables(long duration) {
+  private void setMeasurementVariables(long duration, long epoch) {
     phaseDurationInMS = duration;
     phaseStartTime = System.currentTimeMillis();
-    successfulOps = new AtomicInteger(0);
-    failedOps = new AtomicInteger(0);
-    opsExeTimes.clear();
-  }
-
-  public double speedPSec(AtomicInteger ops, long startTime) {
-    long timePassed = (System.currentTimeMillis() - startTime);
-    double opsPerMSec = (double) (ops.get()) / (double) timePassed;
-    return opsPerMSec * 1000;
+    timeline = new Timeline(epoch, bmConf.getTimelineWindow());
+    successfulOps = new StripedCounter();
+    failedOps = new StripedCounter();
   }
 }
@@ -20,9 +20,8 @@ package io.hops.experiments.benchmarks.rawthroughput;
 import io.hops.experiments.controller.commands.BenchmarkCommand;
 import io.hops.experiments.benchmarks.common.BenchmarkOperations;
 import io.hops.experiments.benchmarks.common.BenchmarkType;
-
-import java.util.ArrayList;
-import java.util.HashMap;
+import io.hops.experiments.benchmarks.common.stats.LatencyHistogram;
+import io.hops.experiments.benchmarks.common.stats.Timeline;
 
 
 /**
@@ -62,11 +61,12 @@ public class RawBenchmarkCommand {
         private final long totalFailedOps;
         private final double opsPerSec;
         private final int nnCount;
-        private final ArrayList<Long> opsExeTimes;
+        private final LatencyHistogram opsExeTimes;
+        private final Timeline timeline;
 
         public Response(BenchmarkOperations phase, long runTime, long totalSuccessfulOps,
                         long totalFailedOps, double opsPerSec, int nnCount,
-                        ArrayList<Long> opsExeTimes) {
+                        LatencyHistogram opsExeTimes, Timeline timeline) {
             this.phase = phase;
             this.runTime = runTime;
             this.totalSuccessfulOps = totalSuccessfulOps;
@@ -74,6 +74,7 @@ public class RawBenchmarkCommand {
             this.opsPerSec = opsPerSec;
             this.nnCount = nnCount;
             this.opsExeTimes = opsExeTimes;
+            this.timeline = timeline;
         }
 
         public BenchmarkOperations getPhase() {
@@ -100,8 +101,12 @@ public class RawBenchmarkCommand {
           return nnCount;
         }
 
-        public ArrayList<Long> getOpsExeTimes(){
+        public LatencyHistogram getOpsExeTimes(){
             return opsExeTimes;
         }
+
+        public Timeline getTimeline() {
+            return timeline;
+        }
     }
 }
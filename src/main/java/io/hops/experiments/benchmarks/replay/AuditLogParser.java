@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.benchmarks.replay;
+
+import io.hops.experiments.benchmarks.common.BenchmarkOperations;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+
+/**
+ * Parses the namenode audit log (FSNamesystem.audit), e.g.
+ *
+ * 2015-03-12 10:15:32,123 INFO FSNamesystem.audit: allowed=true ugi=bob (auth:SIMPLE) ip=/10.0.0.1 cmd=open src=/a/b dst=null perm=null
+ *
+ * with the fields after "allowed=" separated by tabs.
+ *
+ * The audit log does not say whether the path is a file or a dir. listStatus
+ * is replayed as LS_DIR and the rest as the file variants of the ops.
+ * Denied calls and the commands that the benchmark does not support are
+ * skipped.
+ *
+ * Not thread safe.
+ *
+ * @author salman
+ */
+public class AuditLogParser {
+
+  private static final String ALLOWED = "allowed=";
+  private static final int TIMESTAMP_LENGTH = "yyyy-MM-dd HH:mm:ss,SSS".length();
+  private static final int SECONDS_LENGTH = "yyyy-MM-dd HH:mm:ss".length();
+
+  private final SimpleDateFormat secondsFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+  // consecutive lines are mostly in the same second
+  private String lastSeconds = null;
+  private long lastSecondsMillis = 0;
+
+  /**
+   * @return the record or null if the line is not a replayable audit event
+   */
+  public TraceRecord parse(String line) {
+    int allowed = line.indexOf(ALLOWED);
+    if (allowed < TIMESTAMP_LENGTH || !line.startsWith("true", allowed + ALLOWED.length())) {
+      return null;
+    }
+
+    String cmd = null;
+    String src = null;
+    String dst = null;
+    int start = allowed;
+    while (start < line.length()) {
+      int end = line.indexOf('\t', start);
+      if (end < 0) {
+        end = line.length();
+      }
+      if (line.startsWith("cmd=", start)) {
+        cmd = line.substring(start + 4, end);
+      } else if (line.startsWith("src=", start)) {
+        src = line.substring(start + 4, end);
+      } else if (line.startsWith("dst=", start)) {
+        dst = line.substring(start + 4, end);
+      }
+      start = end + 1;
+    }
+
+    BenchmarkOperations op = toOperation(cmd);
+    if (op == null || src == null || src.equals("null")) {
+      return null;
+    }
+    if (op == BenchmarkOperations.RENAME_FILE) {
+      if (dst == null || dst.equals("null")) {
+        return null;
+      }
+    } else {
+      dst = null;
+    }
+
+    long timestamp;
+    try {
+      timestamp = parseTimestamp(line);
+    } catch (ParseException e) {
+      return null;
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    return new TraceRecord(timestamp, op, src, dst);
+  }
+
+  private long parseTimestamp(String line) throws ParseException {
+    String seconds = line.substring(0, SECONDS_LENGTH);
+    if (!seconds.equals(lastSeconds)) {
+      lastSecondsMillis = secondsFormat.parse(seconds).getTime();
+      lastSeconds = seconds;
+    }
+    return lastSecondsMillis + Integer.parseInt(line.substring(SECONDS_LENGTH + 1, TIMESTAMP_LENGTH));
+  }
+
+  static BenchmarkOperations toOperation(String cmd) {
+    if (cmd == null) {
+      return null;
+    } else if (cmd.equals("create")) {
+      return BenchmarkOperations.CREATE_FILE;
+    } else if (cmd.equals("append")) {
+      return BenchmarkOperations.APPEND_FILE;
+    } else if (cmd.equals("open")) {
+      return BenchmarkOperations.READ_FILE;
+    } else if (cmd.equals("mkdirs")) {
+      return BenchmarkOperations.MKDIRS;
+    } else if (cmd.equals("listStatus")) {
+      return BenchmarkOperations.LS_DIR;
+    } else if (cmd.equals("getfileinfo")) {
+      return BenchmarkOperations.FILE_INFO;
+    } else if (cmd.equals("setPermission")) {
+      return BenchmarkOperations.CHMOD_FILE;
+    } else if (cmd.equals("setOwner")) {
+      return BenchmarkOperations.CHOWN_FILE;
+    } else if (cmd.equals("setReplication")) {
+      return BenchmarkOperations.SET_REPLICATION;
+    } else if (cmd.equals("delete")) {
+      return BenchmarkOperations.DELETE_FILE;
+    } else if (cmd.startsWith("rename")) {
+      // "rename" and "rename (options=[...])"
+      return BenchmarkOperations.RENAME_FILE;
+    }
+    return null;
+  }
+}
@@ -0,0 +1,375 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.benchmarks.replay;
+
+import io.hops.experiments.benchmarks.common.Benchmark;
+import io.hops.experiments.benchmarks.common.BenchmarkOperations;
+import io.hops.experiments.benchmarks.common.commands.NamespaceWarmUp;
+import io.hops.experiments.benchmarks.common.config.BMConfiguration;
+import io.hops.experiments.benchmarks.common.stats.OperationHistograms;
+import io.hops.experiments.benchmarks.common.stats.StripedCounter;
+import io.hops.experiments.benchmarks.common.stats.Timeline;
+import io.hops.experiments.benchmarks.interleaved.InterleavedBenchmarkCommand;
+import io.hops.experiments.controller.LiveMetrics;
+import io.hops.experiments.controller.Logger;
+import io.hops.experiments.controller.commands.BenchmarkCommand;
+import io.hops.experiments.controller.commands.WarmUpCommand;
+import io.hops.experiments.utils.BMOperationsUtils;
+import io.hops.experiments.utils.DFSOperationsUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays namenode audit logs (or binary traces made from them).
+ *
+ * Every slave streams the whole trace and keeps the ops that TracePartitioner
+ * maps to one of its threads. All the ops on a path go to the same thread and
+ * a thread executes its ops in trace order, so a file is created before it is
+ * read, renamed or deleted. The ops on the destination of a rename, and on
+ * the direct children of a dir that the trace created or renamed, go to the
+ * thread of the rename or the mkdirs, so they run after it. Other ops on different
+ * paths, e.g. a create whose parent dirs a create on another thread makes,
+ * are only ordered by their timestamps.
+ *
+ * The ops are issued at their trace time divided by the speedup, measured
+ * from the start of the replay. The response time of an op is measured from
+ * that time, i.e. it includes the time the thread was behind the schedule.
+ * With speedup 0 the threads replay their ops back to back.
+ *
+ * The trace paths are replayed under the base dir. In the warm up phase the
+ * paths that are used in the trace before they are created are created, i.e.
+ * the part of the namespace that existed before the trace started.
+ *
+ * @author salman
+ */
+public class ReplayBenchmark extends Benchmark {
+
+  // records buffered per worker. the reader blocks when a worker falls behind
+  private static final int QUEUE_CAPACITY = 10000;
+
+  private final String baseDir;
+  private long startTime = 0;
+  private long startTimeNs = 0;
+  private Timeline timeline;
+  private long traceStartTime = 0;
+  private double speedup = 1;
+  private long maxDuration = 0;
+  final StripedCounter operationsCompleted = new StripedCounter();
+  final StripedCounter operationsFailed = new StripedCounter();
+  AtomicLong pathsPrepopulated = new AtomicLong(0);
+
+  public ReplayBenchmark(Configuration conf, BMConfiguration bmConf, int slaveId, int numSlaves) {
+    super(conf, bmConf, slaveId, numSlaves);
+    String dir = bmConf.getBaseDir();
+    this.baseDir = dir.endsWith("/") ? dir.substring(0, dir.length() - 1) : dir;
+  }
+
+  private int getPartitions() {
+    return numSlaves * bmConf.getSlaveNumThreads();
+  }
+
+  private boolean isMine(int partition) {
+    return partition % numSlaves == slaveId;
+  }
+
+  private int getThread(int partition) {
+    return partition / numSlaves;
+  }
+
+  @Override
+  protected WarmUpCommand.Response warmUp(WarmUpCommand.Request cmd)
+          throws IOException, InterruptedException {
+    if (!bmConf.isReplayBmPrepopulate()) {
+      return new NamespaceWarmUp.Response();
+    }
+
+    int threads = bmConf.getSlaveNumThreads();
+    final List<List<String>> dirs = new ArrayList<List<String>>();
+    final List<List<String>> files = new ArrayList<List<String>>();
+    for (int i = 0; i < threads; i++) {
+      dirs.add(new ArrayList<String>());
+      files.add(new ArrayList<String>());
+    }
+
+    // find the paths that are used before the trace creates them
+    Set<String> seen = new HashSet<String>();
+    TracePartitioner partitioner = new TracePartitioner(getPartitions());
+    TraceReader reader = new TraceReader(TraceReader.listTraceFiles(bmConf.getReplayBmTraceFiles()));
+    try {
+      TraceRecord record;
+      while ((record = reader.next()) != null) {
+        BenchmarkOperations op = record.getOp();
+        int partition = partitioner.route(record);
+        if (!isMine(partition)) {
+          continue;
+        }
+        if (seen.add(record.getSrc())) {
+          if (op == BenchmarkOperations.LS_DIR) {
+            dirs.get(getThread(partition)).add(record.getSrc());
+          } else if (op != BenchmarkOperations.CREATE_FILE && op != BenchmarkOperations.MKDIRS) {
+            files.get(getThread(partition)).add(record.getSrc());
+          }
+        }
+        if (op == BenchmarkOperations.RENAME_FILE) {
+          // the rename creates the destination
+          seen.add(record.getDst());
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    seen = null;
+
+    List<Callable<Object>> workers = new ArrayList<Callable<Object>>();
+    for (int i = 0; i < threads; i++) {
+      final List<String> threadDirs = dirs.get(i);
+      final List<String> threadFiles = files.get(i);
+      workers.add(new Callable<Object>() {
+        @Override
+        public Object call() throws Exception {
+          FileSystem dfs = DFSOperationsUtils.getDFSClient(conf);
+          for (String dir : threadDirs) {
+            prepopulate(dfs, dir, true);
+          }
+          for (String file : threadFiles) {
+            prepopulate(dfs, file, false);
+          }
+          return null;
+        }
+      });
+    }
+    executor.invokeAll(workers); // blocking call
+    Logger.printMsg("Finished. Warmup Phase. Created " + pathsPrepopulated.get()
+            + " paths that the trace uses before creating them");
+    return new NamespaceWarmUp.Response();
+  }
+
+  private void prepopulate(FileSystem dfs, String path, boolean dir) {
+    try {
+      if (dir) {
+        DFSOperationsUtils.mkdirs(dfs, baseDir + path);
+      } else {
+        DFSOperationsUtils.createEmptyFile(dfs, baseDir + path, bmConf.getReplicationFactor());
+      }
+      pathsPrepopulated.incrementAndGet();
+      if (Logger.canILog()) {
+        Logger.printMsg("Warming up. Created " + pathsPrepopulated.get() + " paths");
+      }
+    } catch (Exception e) {
+      Logger.error(e);
+    }
+  }
+
+  @Override
+  protected BenchmarkCommand.Response processCommandInternal(BenchmarkCommand.Request command)
+          throws IOException, InterruptedException {
+    BMConfiguration config = ((ReplayBenchmarkCommand.Request) command).getConfig();
+    speedup = config.getReplayBmSpeedup();
+    maxDuration = config.getReplayBmMaxDuration();
+    System.out.println("Starting " + command.getBenchMarkType() + " at " + speedup + "x. Slave "
+            + slaveId + " of " + numSlaves);
+
+    List<Worker> workers = new ArrayList<Worker>();
+    List<Future<Object>> futures = new ArrayList<Future<Object>>();
+    long dispatched = 0;
+    TraceReader reader = new TraceReader(TraceReader.listTraceFiles(config.getReplayBmTraceFiles()));
+    try {
+      TraceRecord record = reader.next();
+      if (record == null) {
+        throw new IllegalStateException("The trace " + config.getReplayBmTraceFiles() + " is empty");
+      }
+      // all the slaves read the same trace so they agree on the start time
+      traceStartTime = record.getTimestamp();
+
+      for (int i = 0; i < bmConf.getSlaveNumThreads(); i++) {
+        workers.add(new Worker(config));
+      }
+      timeline = new Timeline(waitForStart(), bmConf.getTimelineWindow());
+      startTime = System.currentTimeMillis();
+      startTimeNs = System.nanoTime();
+      Logger.resetTimer();
+      for (Worker worker : workers) {
+        futures.add(executor.submit(worker));
+      }
+
+      TracePartitioner partitioner = new TracePartitioner(getPartitions());
+      while (record != null) {
+        if (maxDuration > 0) {
+          if (speedup > 0 && (record.getTimestamp() - traceStartTime) / speedup > maxDuration) {
+            break;
+          }
+          if (System.currentTimeMillis() - startTime > maxDuration) {
+            break;
+          }
+        }
+        int partition = partitioner.route(record);
+        if (isMine(partition)) {
+          workers.get(getThread(partition)).queue.put(record);
+          dispatched++;
+        }
+        record = reader.next();
+      }
+    } finally {
+      reader.close();
+      for (Worker worker : workers) {
+        worker.queue.put(TraceRecord.END);
+      }
+    }
+
+    for (Future<Object> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        Logger.error(e.getCause());
+      }
+    }
+
+    long totalTime = System.currentTimeMillis() - startTime;
+    System.out.println("Finished " + command.getBenchMarkType() + " in " + totalTime + ". Dispatched "
+            + dispatched + " ops");
+
+    double speed = (operationsCompleted.sum() / (double) totalTime) * 1000;
+
+    OperationHistograms opsExeTimes = new OperationHistograms();
+    OperationHistograms opsResponseTimes = new OperationHistograms();
+    for (Worker worker : workers) {
+      opsExeTimes.add(worker.opsExeTimes);
+      opsResponseTimes.add(worker.opsResponseTimes);
+      worker.timelineRecorder.flush();
+    }
+
+    return new InterleavedBenchmarkCommand.Response(totalTime, operationsCompleted.sum(),
+            operationsFailed.sum(), speed, opsExeTimes, opsExeTimes.getCombined().getMean(), null,
+            getAliveNNsCount(), opsResponseTimes, timeline);
+  }
+
+  private class Worker implements Callable<Object> {
+
+    private final BlockingQueue<TraceRecord> queue = new ArrayBlockingQueue<TraceRecord>(QUEUE_CAPACITY);
+    private final BMConfiguration config;
+    private final OperationHistograms opsExeTimes = new OperationHistograms();
+    // latency measured from the scheduled time of the op
+    private final OperationHistograms opsResponseTimes = new OperationHistograms();
+    private Timeline.Recorder timelineRecorder;
+    private LiveMetrics.Recorder liveRecorder;
+
+    Worker(BMConfiguration config) {
+      this.config = config;
+    }
+
+    @Override
+    public Object call() throws Exception {
+      liveRecorder = liveMetrics.newRecorder();
+      try {
+        return runWorker();
+      } finally {
+        liveMetrics.release(liveRecorder);
+      }
+    }
+
+    private Object runWorker() throws Exception {
+      timelineRecorder = timeline.newRecorder();
+      FileSystem dfs = null;
+      try {
+        dfs = DFSOperationsUtils.getDFSClient(conf);
+      } catch (IOException e) {
+        Logger.error(e);
+      }
+
+      // keep draining the queue even if the ops can not be replayed,
+      // otherwise the reader blocks forever
+      while (true) {
+        TraceRecord record = queue.take();
+        if (record == TraceRecord.END) {
+          return null;
+        }
+        if (dfs == null) {
+          operationsFailed.increment();
+          timelineRecorder.recordFailure();
+          liveRecorder.recordFailure();
+          continue;
+        }
+        if (maxDuration > 0 && System.currentTimeMillis() - startTime > maxDuration) {
+          continue;
+        }
+
+        long scheduledTime = 0;
+        if (speedup > 0) {
+          scheduledTime = startTimeNs + (long) ((record.getTimestamp() - traceStartTime) * 1000000L / speedup);
+          long wait;
+          while ((wait = scheduledTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+          }
+        }
+
+        boolean success = false;
+        long opStartTime = System.nanoTime();
+        try {
+          success = performOperation(dfs, record);
+        } catch (Exception e) {
+          Logger.error(e);
+        }
+        long opEndTime = System.nanoTime();
+
+        if (success) {
+          operationsCompleted.increment();
+          opsExeTimes.recordValue(record.getOp(), opEndTime - opStartTime);
+          timelineRecorder.recordSuccess(opEndTime - opStartTime);
+          liveRecorder.recordSuccess(record.getOp(), opEndTime - opStartTime);
+          if (speedup > 0) {
+            opsResponseTimes.recordValue(record.getOp(), opEndTime - scheduledTime);
+          }
+        } else {
+          operationsFailed.increment();
+          timelineRecorder.recordFailure();
+          liveRecorder.recordFailure();
+        }
+      }
+    }
+
+    private boolean performOperation(FileSystem dfs, TraceRecord record) throws IOException {
+      String path = baseDir + record.getSrc();
+      BenchmarkOperations op = record.getOp();
+      if (op == BenchmarkOperations.CREATE_FILE) {
+        // the audit log does not have the file sizes
+        DFSOperationsUtils.createEmptyFile(dfs, path, config.getReplicationFactor());
+        return true;
+      } else if (op == BenchmarkOperations.RENAME_FILE) {
+        return DFSOperationsUtils.renameFile(dfs, new Path(path), new Path(baseDir + record.getDst()));
+      } else if (op == BenchmarkOperations.DELETE_FILE) {
+        return DFSOperationsUtils.deleteFile(dfs, path);
+      } else {
+        return BMOperationsUtils.performOp(dfs, op, null, path, config.getReplicationFactor(),
+                config.getAppendFileSize());
+      }
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.benchmarks.replay;
+
+import io.hops.experiments.benchmarks.common.BenchmarkOperations;
+
+import java.util.TreeMap;
+
+/**
+ * Maps the records of a trace to the partitions, i.e. the threads of all
+ * the slaves. A path hashes to a partition, except that
+ *
+ * - the destination of a rename goes to the partition of the rename, so
+ *   the ops on the destination run after the rename, and
+ * - the direct children of a dir that the trace creates, or renames, go to
+ *   the partition of the mkdirs or the rename, so that creating a file in
+ *   a new dir runs after the mkdirs.
+ *
+ * Deeper paths are not pinned, so one early mkdirs of e.g. /user does not
+ * send the rest of the trace to one thread. A deeper path is ordered after
+ * the mkdirs of its parent, which is pinned to the parent of that dir and
+ * so on. Every slave reads the whole trace in the same order, so they all
+ * build the same map. An entry is kept until its path, or a dir above it,
+ * is deleted or renamed.
+ *
+ * @author salman
+ */
+class TracePartitioner {
+
+  private final int partitions;
+  // sorted, so that the entries under a deleted dir are found together
+  private final TreeMap<String, Integer> owners = new TreeMap<String, Integer>();
+
+  TracePartitioner(int partitions) {
+    this.partitions = partitions;
+  }
+
+  /**
+   * Call for every record of the trace, in trace order.
+   */
+  int route(TraceRecord record) {
+    String src = record.getSrc();
+    int partition = getPartition(src);
+    BenchmarkOperations op = record.getOp();
+    if (op == BenchmarkOperations.MKDIRS) {
+      owners.put(src, partition);
+    } else if (op == BenchmarkOperations.RENAME_FILE && record.getDst() != null) {
+      removeSubtree(src);
+      owners.put(record.getDst(), partition);
+    } else if (op == BenchmarkOperations.DELETE_FILE) {
+      removeSubtree(src);
+    }
+    return partition;
+  }
+
+  private int getPartition(String path) {
+    if (!owners.isEmpty()) {
+      Integer owner = owners.get(path);
+      if (owner != null) {
+        return owner;
+      }
+      int slash = path.lastIndexOf('/');
+      if (slash > 0) {
+        owner = owners.get(path.substring(0, slash));
+        if (owner != null) {
+          return owner;
+        }
+      }
+    }
+    return TraceRecord.partition(path, partitions);
+  }
+
+  private void removeSubtree(String path) {
+    owners.remove(path);
+    // the paths that start with path/. '0' follows '/'
+    owners.subMap(path + "/", path + "0").clear();
+  }
+}
@@ -0,0 +1,212 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.benchmarks.replay;
+
+import io.hops.experiments.benchmarks.common.BenchmarkOperations;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams the records of a list of trace files one after the other. Each file
+ * can be a binary trace written by TraceWriter or an audit log, plain or
+ * gzipped. The format is detected from the first bytes of the file.
+ *
+ * Not thread safe.
+ *
+ * @author salman
+ */
+public class TraceReader implements Closeable {
+
+  private static final BenchmarkOperations[] OPS = BenchmarkOperations.values();
+
+  private final List<File> files;
+  private int nextFile = 0;
+
+  // current file. only one of them is open
+  private BufferedReader textIn;
+  private AuditLogParser parser;
+  private DataInputStream binaryIn;
+  private long lastTimestamp;
+  private byte[] lastSrc;
+
+  public TraceReader(List<File> files) {
+    this.files = files;
+  }
+
+  /**
+   * @return the next record or null at the end of the last file
+   */
+  public TraceRecord next() throws IOException {
+    while (true) {
+      if (textIn == null && binaryIn == null) {
+        if (nextFile >= files.size()) {
+          return null;
+        }
+        open(files.get(nextFile++));
+      }
+      TraceRecord record = binaryIn != null ? nextBinary() : nextText();
+      if (record != null) {
+        return record;
+      }
+      closeCurrent();
+    }
+  }
+
+  private TraceRecord nextText() throws IOException {
+    String line;
+    while ((line = textIn.readLine()) != null) {
+      TraceRecord record = parser.parse(line);
+      if (record != null) {
+        return record;
+      }
+    }
+    return null;
+  }
+
+  private TraceRecord nextBinary() throws IOException {
+    long zigzag = TraceWriter.readVarLong(binaryIn, true);
+    if (zigzag < 0) {
+      return null;
+    }
+    lastTimestamp += (zigzag >>> 1) ^ -(zigzag & 1);
+
+    int ordinal = binaryIn.readUnsignedByte();
+    if (ordinal >= OPS.length) {
+      throw new IOException("Corrupt trace. Unknown op " + ordinal);
+    }
+
+    int shared = (int) TraceWriter.readVarLong(binaryIn, false);
+    int suffix = (int) TraceWriter.readVarLong(binaryIn, false);
+    if (shared > lastSrc.length) {
+      throw new IOException("Corrupt trace. Shared prefix " + shared + " is longer than the previous path");
+    }
+    byte[] src = new byte[shared + suffix];
+    System.arraycopy(lastSrc, 0, src, 0, shared);
+    binaryIn.readFully(src, shared, suffix);
+    lastSrc = src;
+
+    String dst = null;
+    int dstLength = (int) TraceWriter.readVarLong(binaryIn, false);
+    if (dstLength > 0) {
+      byte[] dstBytes = new byte[dstLength - 1];
+      binaryIn.readFully(dstBytes);
+      dst = new String(dstBytes, TraceWriter.UTF8);
+    }
+    return new TraceRecord(lastTimestamp, OPS[ordinal], new String(src, TraceWriter.UTF8), dst);
+  }
+
+  private void open(File file) throws IOException {
+    InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+    try {
+      in.mark(TraceWriter.MAGIC.length + 1);
+      byte[] header = new byte[TraceWriter.MAGIC.length + 1];
+      int read = 0;
+      int n;
+      while (read < header.length && (n = in.read(header, read, header.length - read)) > 0) {
+        read += n;
+      }
+
+      if (read == header.length && Arrays.equals(Arrays.copyOf(header, TraceWriter.MAGIC.length), TraceWriter.MAGIC)) {
+        if (header[TraceWriter.MAGIC.length] != TraceWriter.VERSION) {
+          throw new IOException("Unsupported trace version " + header[TraceWriter.MAGIC.length] + " in " + file);
+        }
+        binaryIn = new DataInputStream(new BufferedInputStream(new GZIPInputStream(in, 64 * 1024), 64 * 1024));
+        lastTimestamp = 0;
+        lastSrc = new byte[0];
+      } else {
+        in.reset();
+        if (read >= 2 && (header[0] & 0xFF) == 0x1f && (header[1] & 0xFF) == 0x8b) {
+          in = new GZIPInputStream(in, 64 * 1024);
+        }
+        textIn = new BufferedReader(new InputStreamReader(in, TraceWriter.UTF8), 64 * 1024);
+        parser = new AuditLogParser();
+      }
+    } catch (IOException e) {
+      in.close();
+      throw e;
+    }
+  }
+
+  private void closeCurrent() throws IOException {
+    if (textIn != null) {
+      textIn.close();
+      textIn = null;
+    }
+    if (binaryIn != null) {
+      binaryIn.close();
+      binaryIn = null;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    closeCurrent();
+    nextFile = files.size();
+  }
+
+  /**
+   * @param paths comma separated list of files and dirs
+   */
+  public static List<File> listTraceFiles(String paths) {
+    List<String> list = new ArrayList<String>();
+    StringTokenizer st = new StringTokenizer(paths, ",");
+    while (st.hasMoreTokens()) {
+      list.add(st.nextToken().trim());
+    }
+    return listTraceFiles(list);
+  }
+
+  /**
+   * Dirs are expanded to the files in them in name order, e.g. the rotated
+   * hdfs-audit.log.2015-03-12 files.
+   */
+  public static List<File> listTraceFiles(List<String> paths) {
+    List<File> files = new ArrayList<File>();
+    for (String path : paths) {
+      File file = new File(path);
+      if (file.isDirectory()) {
+        File[] children = file.listFiles();
+        if (children != null) {
+          Arrays.sort(children);
+          for (File child : children) {
+            if (child.isFile() && !child.isHidden()) {
+              files.add(child);
+            }
+          }
+        }
+      } else if (file.isFile()) {
+        files.add(file);
+      } else {
+        throw new IllegalArgumentException("Trace file " + path + " does not exist");
+      }
+    }
+    return files;
+  }
+}
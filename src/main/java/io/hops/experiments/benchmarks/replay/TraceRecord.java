@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.benchmarks.replay;
+
+import io.hops.experiments.benchmarks.common.BenchmarkOperations;
+
+/**
+ * One operation of a trace.
+ *
+ * @author salman
+ */
+public class TraceRecord {
+
+  // marks the end of a worker's queue
+  static final TraceRecord END = new TraceRecord(Long.MAX_VALUE, null, null, null);
+
+  private final long timestamp;
+  private final BenchmarkOperations op;
+  private final String src;
+  private final String dst;
+
+  /**
+   * @param timestamp ms since epoch
+   * @param dst destination of a rename. null for other ops
+   */
+  public TraceRecord(long timestamp, BenchmarkOperations op, String src, String dst) {
+    this.timestamp = timestamp;
+    this.op = op;
+    this.src = src;
+    this.dst = dst;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public BenchmarkOperations getOp() {
+    return op;
+  }
+
+  public String getSrc() {
+    return src;
+  }
+
+  public String getDst() {
+    return dst;
+  }
+
+  /**
+   * All the ops on the same path map to the same partition, so they are
+   * replayed by the same thread in trace order.
+   */
+  public static int partition(String path, int partitions) {
+    int h = path.hashCode();
+    // String.hashCode is weak in the low bits for paths that only differ at the end
+    h *= 0x9E3779B9;
+    h ^= h >>> 16;
+    return (h & Integer.MAX_VALUE) % partitions;
+  }
+
+  @Override
+  public String toString() {
+    return timestamp + " " + op + " " + src + (dst != null ? " -> " + dst : "");
+  }
+}
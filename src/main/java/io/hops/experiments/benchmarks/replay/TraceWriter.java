@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.benchmarks.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the compact binary trace format.
+ *
+ * [magic "HBTR"][version] followed by gzipped records
+ * [timestamp delta, zigzag varint][op ordinal][length of the prefix shared with
+ * the previous src, varint][rest of src, varint length + utf8][dst, varint
+ * length + 1 (0 = null) + utf8]
+ *
+ * Consecutive audit events mostly touch nearby paths, so front coding the
+ * paths and delta coding the timestamps makes the trace a fraction of the
+ * size of the audit log and much cheaper to parse on the slaves.
+ *
+ * Run main() to convert audit logs.
+ *
+ * @author salman
+ */
+public class TraceWriter implements Closeable {
+
+  static final byte[] MAGIC = {'H', 'B', 'T', 'R'};
+  static final byte VERSION = 1;
+  static final String UTF8 = "UTF-8";
+
+  private final OutputStream out;
+  private long lastTimestamp = 0;
+  private byte[] lastSrc = new byte[0];
+  private long recordsWritten = 0;
+
+  public TraceWriter(String file) throws IOException {
+    OutputStream fileOut = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+    fileOut.write(MAGIC);
+    fileOut.write(VERSION);
+    this.out = new BufferedOutputStream(new GZIPOutputStream(fileOut, 64 * 1024), 64 * 1024);
+  }
+
+  public void write(TraceRecord record) throws IOException {
+    long delta = record.getTimestamp() - lastTimestamp;
+    writeVarLong(out, (delta << 1) ^ (delta >> 63));
+    lastTimestamp = record.getTimestamp();
+
+    out.write(record.getOp().ordinal());
+
+    byte[] src = record.getSrc().getBytes(UTF8);
+    int shared = 0;
+    int max = Math.min(src.length, lastSrc.length);
+    while (shared < max && src[shared] == lastSrc[shared]) {
+      shared++;
+    }
+    writeVarLong(out, shared);
+    writeVarLong(out, src.length - shared);
+    out.write(src, shared, src.length - shared);
+    lastSrc = src;
+
+    if (record.getDst() == null) {
+      writeVarLong(out, 0);
+    } else {
+      byte[] dst = record.getDst().getBytes(UTF8);
+      writeVarLong(out, dst.length + 1);
+      out.write(dst);
+    }
+    recordsWritten++;
+  }
+
+  public long getRecordsWritten() {
+    return recordsWritten;
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+  static void writeVarLong(OutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  /**
+   * @return -1 if the stream ended before the first byte
+   */
+  static long readVarLong(InputStream in, boolean eofAllowed) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.read();
+      if (b < 0) {
+        if (eofAllowed && shift == 0) {
+          return -1;
+        }
+        throw new IOException("Truncated trace");
+      }
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed varint in trace");
+  }
+
+  /**
+   * Converts audit logs (and/or binary traces) to one binary trace.
+   * The inputs are read in the given order.
+   */
+  public static void main(String[] argv) throws IOException {
+    if (argv.length < 2) {
+      System.out.println("Usage: TraceWriter <output trace> <audit log file or dir>...");
+      System.exit(1);
+    }
+    TraceReader reader = new TraceReader(TraceReader.listTraceFiles(
+            new ArrayList<String>(Arrays.asList(argv).subList(1, argv.length))));
+    TraceWriter writer = new TraceWriter(argv[0]);
+    try {
+      TraceRecord record;
+      while ((record = reader.next()) != null) {
+        writer.write(record);
+      }
+    } finally {
+      reader.close();
+      writer.close();
+    }
+    System.out.println("Wrote " + writer.getRecordsWritten() + " records to " + argv[0]);
+  }
+}
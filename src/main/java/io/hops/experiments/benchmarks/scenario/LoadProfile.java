@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.benchmarks.scenario;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offered load of a phase. The rate goes linearly from zero to the target
+ * rate during the ramp up, holds it and goes back to zero during the ramp
+ * down. Maps the n-th op of the phase to the time at which it is due, i.e.
+ * the inverse of the number of ops offered since the start of the phase.
+ *
+ * @author salman
+ */
+public class LoadProfile {
+
+  private final double opsPerNs;
+  private final double rampUpNs;
+  private final double holdNs;
+  private final double rampDownNs;
+
+  public LoadProfile(double opsPerSec, long rampUpMs, long durationMs, long rampDownMs) {
+    if (opsPerSec <= 0) {
+      throw new IllegalArgumentException("The rate should be greater than zero. Got: " + opsPerSec);
+    }
+    if (rampUpMs < 0 || rampDownMs < 0 || rampUpMs + rampDownMs > durationMs) {
+      throw new IllegalArgumentException("Wrong ramps. Up: " + rampUpMs + " Down: " + rampDownMs
+              + " Duration: " + durationMs);
+    }
+    this.opsPerNs = opsPerSec / TimeUnit.SECONDS.toNanos(1);
+    this.rampUpNs = TimeUnit.MILLISECONDS.toNanos(rampUpMs);
+    this.holdNs = TimeUnit.MILLISECONDS.toNanos(durationMs - rampUpMs - rampDownMs);
+    this.rampDownNs = TimeUnit.MILLISECONDS.toNanos(rampDownMs);
+  }
+
+  /**
+   * @param op ops offered before this one by all the threads of all the slaves
+   * @return ns after the start of the phase at which the op is due, or -1 if
+   * the phase ends before
+   */
+  public long getDueTime(double op) {
+    // ramp up, rate * t / rampUp ops/ns
+    double rampUpOps = opsPerNs * rampUpNs / 2;
+    if (op < rampUpOps) {
+      return (long) Math.sqrt(2 * rampUpNs * op / opsPerNs);
+    }
+    op -= rampUpOps;
+    double holdOps = opsPerNs * holdNs;
+    if (op < holdOps) {
+      return (long) (rampUpNs + op / opsPerNs);
+    }
+    op -= holdOps;
+    // ramp down, rate * (rampDown - t) / rampDown ops/ns
+    double rampDownOps = opsPerNs * rampDownNs / 2;
+    if (op < rampDownOps) {
+      double left = Math.sqrt(Math.max(0, rampDownNs * rampDownNs - 2 * rampDownNs * op / opsPerNs));
+      return (long) (rampUpNs + holdNs + rampDownNs - left);
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.benchmarks.scenario;
+
+import io.hops.experiments.benchmarks.common.BenchmarkOperations;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+/**
+ * A capacity test made of stages that run one after the other. A scenario
+ * file has a line per stage followed by a line per phase of the stage:
+ *
+ * <pre>
+ * # comment
+ * stage create
+ * phase mkdirs  ops=MKDIRS duration=30000
+ * phase files   ops=CREATE_FILE duration=60000 threads=64
+ * stage read-with-deletes
+ * phase reads   ops=READ_FILE:80,FILE_INFO:20 rate=20000 duration=120000 ramp.up=30000 ramp.down=30000
+ * phase deletes ops=DELETE_FILE rate=200 threads=4 delay=30000 duration=60000
+ * </pre>
+ *
+ * Phase keys. ops, op names with optional weights, and duration (ms) are
+ * required.
+ * <ul>
+ * <li>rate: ops/sec of all the slaves together. 0 = the threads issue
+ * the ops back to back</li>
+ * <li>threads: threads per slave. 0 = num.slave.threads</li>
+ * <li>delay: ms after the start of the stage at which the phase starts</li>
+ * <li>ramp.up, ramp.down: ms at the start and the end of the phase during
+ * which the rate goes linearly from zero to rate and back. Without a rate
+ * the threads start and stop one by one</li>
+ * </ul>
+ *
+ * @author salman
+ */
+public class Scenario {
+
+  private final List<ScenarioStage> stages;
+
+  public Scenario(List<ScenarioStage> stages) {
+    if (stages.isEmpty()) {
+      throw new IllegalArgumentException("The scenario has no stages");
+    }
+    this.stages = stages;
+  }
+
+  public List<ScenarioStage> getStages() {
+    return stages;
+  }
+
+  public static Scenario load(String file) throws IOException {
+    BufferedReader reader = new BufferedReader(new FileReader(file));
+    try {
+      List<ScenarioStage> stages = new ArrayList<ScenarioStage>();
+      Set<String> names = new HashSet<String>();
+      String stageName = null;
+      List<ScenarioPhase> phases = null;
+      String line;
+      int lineNo = 0;
+      while ((line = reader.readLine()) != null) {
+        lineNo++;
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        StringTokenizer st = new StringTokenizer(line);
+        String type = st.nextToken();
+        if (!st.hasMoreTokens()) {
+          throw new IllegalArgumentException(file + ":" + lineNo + " " + type + " has no name");
+        }
+        String name = st.nextToken();
+        if (type.equals("stage")) {
+          if (phases != null) {
+            stages.add(new ScenarioStage(stageName, phases));
+          }
+          stageName = name;
+          phases = new ArrayList<ScenarioPhase>();
+        } else if (type.equals("phase")) {
+          if (phases == null) {
+            throw new IllegalArgumentException(file + ":" + lineNo + " phase " + name + " is not in a stage");
+          }
+          // the phases are reported as stage.phase
+          if (!names.add(stageName + "." + name)) {
+            throw new IllegalArgumentException(file + ":" + lineNo + " phase " + name + " is defined twice");
+          }
+          try {
+            phases.add(parsePhase(name, st));
+          } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(file + ":" + lineNo + " " + e.getMessage(), e);
+          }
+        } else {
+          throw new IllegalArgumentException(file + ":" + lineNo + " expecting a stage or a phase. Got: " + type);
+        }
+      }
+      if (phases != null) {
+        stages.add(new ScenarioStage(stageName, phases));
+      }
+      return new Scenario(stages);
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static ScenarioPhase parsePhase(String name, StringTokenizer st) {
+    List<BenchmarkOperations> ops = new ArrayList<BenchmarkOperations>();
+    List<BigDecimal> weights = new ArrayList<BigDecimal>();
+    double rate = 0;
+    int threads = 0;
+    long delay = 0;
+    long duration = 0;
+    long rampUp = 0;
+    long rampDown = 0;
+    while (st.hasMoreTokens()) {
+      String token = st.nextToken();
+      int eq = token.indexOf('=');
+      if (eq <= 0) {
+        throw new IllegalArgumentException("Expecting key=value. Got: " + token);
+      }
+      String key = token.substring(0, eq);
+      String value = token.substring(eq + 1);
+      if (key.equals("ops")) {
+        StringTokenizer opsSt = new StringTokenizer(value, ",");
+        while (opsSt.hasMoreTokens()) {
+          String op = opsSt.nextToken();
+          int colon = op.indexOf(':');
+          if (colon < 0) {
+            ops.add(BenchmarkOperations.valueOf(op));
+            weights.add(BigDecimal.ONE);
+          } else {
+            ops.add(BenchmarkOperations.valueOf(op.substring(0, colon)));
+            weights.add(new BigDecimal(op.substring(colon + 1)));
+          }
+        }
+      } else if (key.equals("rate")) {
+        rate = Double.parseDouble(value);
+      } else if (key.equals("threads")) {
+        threads = Integer.parseInt(value);
+      } else if (key.equals("delay")) {
+        delay = Long.parseLong(value);
+      } else if (key.equals("duration")) {
+        duration = Long.parseLong(value);
+      } else if (key.equals("ramp.up")) {
+        rampUp = Long.parseLong(value);
+      } else if (key.equals("ramp.down")) {
+        rampDown = Long.parseLong(value);
+      } else {
+        throw new IllegalArgumentException("Unknown key " + key);
+      }
+    }
+    return new ScenarioPhase(name, ops.toArray(new BenchmarkOperations[ops.size()]),
+            weights.toArray(new BigDecimal[weights.size()]), rate, threads, delay, duration, rampUp, rampDown);
+  }
+}
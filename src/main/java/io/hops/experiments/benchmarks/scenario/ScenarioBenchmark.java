@@ -0,0 +1,356 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.benchmarks.scenario;
+
+import io.hops.experiments.benchmarks.common.Benchmark;
+import io.hops.experiments.benchmarks.common.BenchmarkOperations;
+import io.hops.experiments.benchmarks.common.coin.AliasSampler;
+import io.hops.experiments.benchmarks.common.coin.SplitMix64Random;
+import io.hops.experiments.benchmarks.common.commands.NamespaceWarmUp;
+import io.hops.experiments.benchmarks.common.config.BMConfiguration;
+import io.hops.experiments.benchmarks.common.stats.OperationHistograms;
+import io.hops.experiments.benchmarks.common.stats.StripedCounter;
+import io.hops.experiments.benchmarks.common.stats.Timeline;
+import io.hops.experiments.benchmarks.interleaved.ArrivalDistribution;
+import io.hops.experiments.benchmarks.interleaved.InterleavedBenchmarkCommand;
+import io.hops.experiments.controller.LiveMetrics;
+import io.hops.experiments.controller.Logger;
+import io.hops.experiments.controller.commands.BenchmarkCommand;
+import io.hops.experiments.controller.commands.WarmUpCommand;
+import io.hops.experiments.utils.BMOperationsUtils;
+import io.hops.experiments.utils.DFSOperationsUtils;
+import io.hops.experiments.workload.generator.FilePool;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the stages of a scenario sent by the master. The phases of a stage
+ * run together, each on its own threads.
+ *
+ * The i-th thread of a stage always uses the i-th client and file pool of the
+ * slave, so the files created in a stage are found by the same threads in
+ * the later stages. Phases that run together use different file pools. Use
+ * file.pool.sharing to let them work on the same files, e.g. to delete the
+ * files that another phase reads.
+ *
+ * @author salman
+ */
+public class ScenarioBenchmark extends Benchmark {
+
+  private final List<Slot> slots = new ArrayList<Slot>();
+  private long stageStartNs;
+
+  public ScenarioBenchmark(Configuration conf, BMConfiguration bmConf, int slaveId, int numSlaves) {
+    super(conf, bmConf, slaveId, numSlaves);
+  }
+
+  @Override
+  protected WarmUpCommand.Response warmUp(WarmUpCommand.Request cmd)
+          throws IOException, InterruptedException {
+    // same two stages as the interleaved benchmark, filling the pools of
+    // the first num.slave.threads threads of the stages
+    if (bmConf.getFilesToCreateInWarmUpPhase() > 1) {
+      List<Callable<Object>> workers = new ArrayList<Callable<Object>>();
+      for (int i = 0; i < bmConf.getSlaveNumThreads(); i++) {
+        Slot slot = getSlot(i);
+        workers.add(new BaseWarmUp(1, bmConf, "Warming up. Stage1: Creating Parent Dirs. ",
+                slot.dfs, slot.filePool));
+      }
+      executor.invokeAll(workers); // blocking call
+      workers.clear();
+
+      for (int i = 0; i < bmConf.getSlaveNumThreads(); i++) {
+        Slot slot = getSlot(i);
+        workers.add(new BaseWarmUp(bmConf.getFilesToCreateInWarmUpPhase() - 1, bmConf,
+                "Warming up. Stage2: Creating files/dirs. ", slot.dfs, slot.filePool));
+      }
+      executor.invokeAll(workers); // blocking call
+      Logger.printMsg("Finished. Warmup Phase. Created (" + bmConf.getSlaveNumThreads() + "*"
+              + bmConf.getFilesToCreateInWarmUpPhase() + ") = "
+              + (bmConf.getSlaveNumThreads() * bmConf.getFilesToCreateInWarmUpPhase()) + " files. ");
+    }
+    return new NamespaceWarmUp.Response();
+  }
+
+  @Override
+  protected BenchmarkCommand.Response processCommandInternal(BenchmarkCommand.Request command)
+          throws IOException, InterruptedException {
+    ScenarioBenchmarkCommand.Request request = (ScenarioBenchmarkCommand.Request) command;
+    BMConfiguration config = request.getConfig();
+    ScenarioStage stage = request.getStage();
+    Logger.printMsg("Starting stage " + stage.getName() + " for duration " + stage.getDuration());
+
+    List<PhaseRun> runs = new ArrayList<PhaseRun>();
+    List<Worker> workers = new ArrayList<Worker>();
+    for (ScenarioPhase phase : stage.getPhases()) {
+      int threads = phase.getThreads() > 0 ? phase.getThreads() : bmConf.getSlaveNumThreads();
+      PhaseRun run = new PhaseRun(phase, threads);
+      runs.add(run);
+      Logger.printMsg("Phase " + phase);
+      for (int i = 0; i < threads; i++) {
+        Worker worker = new Worker(config, run, getSlot(workers.size()), i);
+        run.workers.add(worker);
+        workers.add(worker);
+      }
+    }
+
+    ExecutorService stageExecutor = bmConf.getSlaveClientEngine().newExecutor(workers.size());
+    try {
+      long epoch = waitForStart();
+      stageStartNs = System.nanoTime();
+      for (PhaseRun run : runs) {
+        run.timeline = new Timeline(epoch + run.phase.getDelay(), bmConf.getTimelineWindow());
+        run.startNs = stageStartNs + TimeUnit.MILLISECONDS.toNanos(run.phase.getDelay());
+        run.endNs = run.startNs;
+      }
+      Logger.resetTimer();
+      stageExecutor.invokeAll(workers); // blocking call
+    } finally {
+      stageExecutor.shutdown();
+    }
+
+    int nnCount = getAliveNNsCount();
+    List<InterleavedBenchmarkCommand.Response> responses = new ArrayList<InterleavedBenchmarkCommand.Response>();
+    for (PhaseRun run : runs) {
+      long runTime = Math.max(1, TimeUnit.NANOSECONDS.toMillis(run.endNs - run.startNs));
+      double speed = (run.operationsCompleted.sum() / (double) runTime) * 1000;
+      OperationHistograms opsExeTimes = new OperationHistograms();
+      OperationHistograms opsResponseTimes = new OperationHistograms();
+      long exeTimeSum = 0;
+      for (Worker worker : run.workers) {
+        opsExeTimes.add(worker.opsExeTimes);
+        opsResponseTimes.add(worker.opsResponseTimes);
+        exeTimeSum += worker.exeTimeSum;
+        worker.timelineRecorder.flush();
+      }
+      long completed = run.operationsCompleted.sum();
+      double avgOpLatency = completed > 0 ? exeTimeSum / (double) completed : 0;
+      Logger.printMsg("Finished phase " + run.phase.getName() + " in " + runTime);
+      responses.add(new InterleavedBenchmarkCommand.Response(runTime, run.operationsCompleted.sum(),
+              run.operationsFailed.sum(), speed, opsExeTimes, avgOpLatency, null, nnCount,
+              opsResponseTimes, run.timeline));
+    }
+    return new ScenarioBenchmarkCommand.Response(responses);
+  }
+
+  @Override
+  protected List<FilePool> getWarmUpPools() throws IOException {
+    List<FilePool> pools = new ArrayList<FilePool>();
+    for (int i = 0; i < bmConf.getSlaveNumThreads(); i++) {
+      pools.add(getSlot(i).filePool);
+    }
+    return pools;
+  }
+
+  private Slot getSlot(int index) throws IOException {
+    while (slots.size() <= index) {
+      slots.add(new Slot(DFSOperationsUtils.newDFSClient(conf),
+              DFSOperationsUtils.newFilePool(conf, bmConf, slaveId, numSlaves)));
+    }
+    return slots.get(index);
+  }
+
+  private static void parkUntil(long timeNs) {
+    long wait;
+    while ((wait = timeNs - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(wait);
+    }
+  }
+
+  /**
+   * client and file pool used by one thread of a stage at a time
+   */
+  private static class Slot {
+    final FileSystem dfs;
+    final FilePool filePool;
+
+    Slot(FileSystem dfs, FilePool filePool) {
+      this.dfs = dfs;
+      this.filePool = filePool;
+    }
+  }
+
+  /**
+   * A phase of the current stage
+   */
+  private static class PhaseRun {
+    final ScenarioPhase phase;
+    final int threads;
+    final List<Worker> workers = new ArrayList<Worker>();
+    final StripedCounter operationsCompleted = new StripedCounter();
+    final StripedCounter operationsFailed = new StripedCounter();
+    Timeline timeline;
+    long startNs;
+    // when the last thread of the phase finished
+    long endNs;
+
+    PhaseRun(ScenarioPhase phase, int threads) {
+      this.phase = phase;
+      this.threads = threads;
+    }
+
+    synchronized void finished(long timeNs) {
+      endNs = Math.max(endNs, timeNs);
+    }
+  }
+
+  private class Worker implements Callable<Object> {
+
+    private final BMConfiguration config;
+    private final PhaseRun run;
+    private final ScenarioPhase phase;
+    private final Slot slot;
+    // index of the thread among the threads of the phase on all the slaves
+    private final int thread;
+    private final int totalThreads;
+    private final OperationHistograms opsExeTimes = new OperationHistograms();
+    // latency measured from the intended start time. only used with a rate
+    private final OperationHistograms opsResponseTimes = new OperationHistograms();
+    // the histograms are only filled with generate.percentiles
+    private final boolean percentiles = bmConf.isPercentileEnabled();
+    private long exeTimeSum = 0;
+    private final SplitMix64Random rand = new SplitMix64Random();
+    private final AliasSampler opSampler;
+    private Timeline.Recorder timelineRecorder;
+    private LiveMetrics.Recorder liveRecorder;
+
+    Worker(BMConfiguration config, PhaseRun run, Slot slot, int index) {
+      this.config = config;
+      this.run = run;
+      this.phase = run.phase;
+      this.slot = slot;
+      this.thread = slaveId * run.threads + index;
+      this.totalThreads = numSlaves * run.threads;
+      this.opSampler = new AliasSampler(phase.getWeights());
+    }
+
+    @Override
+    public Object call() throws Exception {
+      timelineRecorder = run.timeline.newRecorder();
+      liveRecorder = liveMetrics.newRecorder();
+      long phaseStartNs = run.startNs;
+      long phaseEndNs = phaseStartNs + TimeUnit.MILLISECONDS.toNanos(phase.getDuration());
+      try {
+        if (phase.isOpenLoop()) {
+          runOpenLoop(phaseStartNs, phaseEndNs);
+        } else {
+          runClosedLoop(phaseStartNs, phaseEndNs);
+        }
+      } finally {
+        run.finished(System.nanoTime());
+        liveMetrics.release(liveRecorder);
+      }
+      return null;
+    }
+
+    /**
+     * the threads of all the slaves take turns to issue the ops of the load
+     * profile. With POISSON arrivals the turns are spread exponentially
+     */
+    private void runOpenLoop(long phaseStartNs, long phaseEndNs) {
+      LoadProfile profile = new LoadProfile(phase.getOpsPerSec(), phase.getRampUp(), phase.getDuration(),
+              phase.getRampDown());
+      ArrivalDistribution arrivals = config.getInterleavedBmArrivalDistribution();
+      Random arrivalRand = new Random();
+      // in millionths of an op
+      final long scale = 1000000L;
+      long position = thread * scale;
+      while (true) {
+        long dueTime = profile.getDueTime(position / (double) scale);
+        if (dueTime < 0) {
+          return;
+        }
+        long intendedStartTime = phaseStartNs + dueTime;
+        parkUntil(intendedStartTime);
+        if (System.nanoTime() >= phaseEndNs) {
+          return;
+        }
+        performOperation(nextOp(), intendedStartTime);
+        position += arrivals.nextInterval(totalThreads * scale, arrivalRand);
+      }
+    }
+
+    /**
+     * the threads start one by one during the ramp up and stop one by one
+     * during the ramp down
+     */
+    private void runClosedLoop(long phaseStartNs, long phaseEndNs) {
+      long rampUpNs = TimeUnit.MILLISECONDS.toNanos(phase.getRampUp());
+      long rampDownNs = TimeUnit.MILLISECONDS.toNanos(phase.getRampDown());
+      long startNs = phaseStartNs + rampUpNs * thread / totalThreads;
+      long stopNs = phaseEndNs - rampDownNs + rampDownNs * (thread + 1) / totalThreads;
+      parkUntil(startNs);
+      while (System.nanoTime() < stopNs) {
+        performOperation(nextOp(), 0);
+      }
+    }
+
+    private BenchmarkOperations nextOp() {
+      return phase.getOps()[opSampler.sample(rand)];
+    }
+
+    private void performOperation(BenchmarkOperations opType, long intendedStartTime) {
+      String path = BMOperationsUtils.getPath(opType, slot.filePool);
+      if (path == null) {
+        Logger.printMsg("Could not perform operation " + opType + ". Got Null from the file pool");
+        return;
+      }
+      boolean retVal = false;
+      long opExeTime = 0;
+      long opResponseTime = 0;
+      try {
+        long opStartTime = System.nanoTime();
+        BMOperationsUtils.performOp(slot.dfs, opType, slot.filePool, path, config.getReplicationFactor(),
+                config.getAppendFileSize());
+        long opEndTime = System.nanoTime();
+        opExeTime = opEndTime - opStartTime;
+        if (phase.isOpenLoop()) {
+          opResponseTime = opEndTime - intendedStartTime;
+        }
+        retVal = true;
+      } catch (Exception e) {
+        Logger.error(e);
+      }
+
+      if (retVal) {
+        run.operationsCompleted.increment();
+        exeTimeSum += opExeTime;
+        timelineRecorder.recordSuccess(opExeTime);
+        liveRecorder.recordSuccess(opType, opExeTime);
+        if (percentiles) {
+          opsExeTimes.recordValue(opType, opExeTime);
+          if (phase.isOpenLoop()) {
+            opsResponseTimes.recordValue(opType, opResponseTime);
+          }
+        }
+      } else {
+        run.operationsFailed.increment();
+        timelineRecorder.recordFailure();
+        liveRecorder.recordFailure();
+      }
+    }
+  }
+}
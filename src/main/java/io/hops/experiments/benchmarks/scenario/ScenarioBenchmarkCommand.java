@@ -0,0 +1,72 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.benchmarks.scenario;
+
+import io.hops.experiments.benchmarks.common.BenchmarkType;
+import io.hops.experiments.benchmarks.common.config.BMConfiguration;
+import io.hops.experiments.benchmarks.interleaved.InterleavedBenchmarkCommand;
+import io.hops.experiments.controller.commands.BenchmarkCommand;
+
+import java.util.List;
+
+/**
+ * Runs one stage of a scenario. The slaves reply with an
+ * InterleavedBenchmarkCommand.Response per phase of the stage, so the phases
+ * are reported and compiled like interleaved runs.
+ *
+ * @author salman
+ */
+public class ScenarioBenchmarkCommand {
+
+  public static class Request implements BenchmarkCommand.Request {
+    private final BMConfiguration config;
+    private final ScenarioStage stage;
+
+    public Request(BMConfiguration config, ScenarioStage stage) {
+      this.config = config;
+      this.stage = stage;
+    }
+
+    public BMConfiguration getConfig() {
+      return config;
+    }
+
+    public ScenarioStage getStage() {
+      return stage;
+    }
+
+    @Override
+    public BenchmarkType getBenchMarkType() {
+      return BenchmarkType.SCENARIO;
+    }
+  }
+
+  public static class Response implements BenchmarkCommand.Response {
+    private final List<InterleavedBenchmarkCommand.Response> phases;
+
+    public Response(List<InterleavedBenchmarkCommand.Response> phases) {
+      this.phases = phases;
+    }
+
+    /**
+     * @return the results of the phases in the order of the stage
+     */
+    public List<InterleavedBenchmarkCommand.Response> getPhases() {
+      return phases;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.benchmarks.scenario;
+
+import io.hops.experiments.benchmarks.common.BenchmarkOperations;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * One line of a scenario. The threads of a phase issue a mix of ops for the
+ * duration of the phase, back to back or at a target rate.
+ *
+ * @author salman
+ */
+public class ScenarioPhase implements Serializable {
+
+  private final String name;
+  private final BenchmarkOperations[] ops;
+  private final BigDecimal[] weights;
+  // aggregate rate of all slaves. 0 = closed loop
+  private final double opsPerSec;
+  // threads per slave. 0 = num.slave.threads
+  private final int threads;
+  // ms after the start of the stage
+  private final long delay;
+  private final long duration;
+  private final long rampUp;
+  private final long rampDown;
+
+  public ScenarioPhase(String name, BenchmarkOperations[] ops, BigDecimal[] weights, double opsPerSec,
+          int threads, long delay, long duration, long rampUp, long rampDown) {
+    if (ops.length == 0 || ops.length != weights.length) {
+      throw new IllegalArgumentException("Phase " + name + " has no ops");
+    }
+    for (BigDecimal weight : weights) {
+      if (weight.signum() <= 0) {
+        throw new IllegalArgumentException("Phase " + name + ". Op weights should be greater than zero");
+      }
+    }
+    if (opsPerSec < 0 || threads < 0 || delay < 0 || rampUp < 0 || rampDown < 0) {
+      throw new IllegalArgumentException("Phase " + name
+              + ". The rate, threads, delay and ramps can not be negative");
+    }
+    if (duration <= 0) {
+      throw new IllegalArgumentException("Phase " + name + ". The duration should be greater than zero");
+    }
+    if (rampUp + rampDown > duration) {
+      throw new IllegalArgumentException("Phase " + name + ". The ramps are longer than the phase");
+    }
+    this.name = name;
+    this.ops = ops;
+    this.weights = weights;
+    this.opsPerSec = opsPerSec;
+    this.threads = threads;
+    this.delay = delay;
+    this.duration = duration;
+    this.rampUp = rampUp;
+    this.rampDown = rampDown;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public BenchmarkOperations[] getOps() {
+    return ops;
+  }
+
+  public BigDecimal[] getWeights() {
+    return weights;
+  }
+
+  public double getOpsPerSec() {
+    return opsPerSec;
+  }
+
+  public boolean isOpenLoop() {
+    return opsPerSec > 0;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public long getDelay() {
+    return delay;
+  }
+
+  public long getDuration() {
+    return duration;
+  }
+
+  public long getRampUp() {
+    return rampUp;
+  }
+
+  public long getRampDown() {
+    return rampDown;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder(name).append(" ops=");
+    for (int i = 0; i < ops.length; i++) {
+      sb.append(i > 0 ? "," : "").append(ops[i].name()).append(":").append(weights[i].toPlainString());
+    }
+    return sb.append(" rate=").append(opsPerSec).append(" threads=").append(threads)
+            .append(" delay=").append(delay).append(" duration=").append(duration)
+            .append(" ramp.up=").append(rampUp).append(" ramp.down=").append(rampDown).toString();
+  }
+}
@@ -0,0 +1,60 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.benchmarks.scenario;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Phases of a scenario that run together. The stages of a scenario run one
+ * after the other.
+ *
+ * @author salman
+ */
+public class ScenarioStage implements Serializable {
+
+  private final String name;
+  private final List<ScenarioPhase> phases;
+
+  public ScenarioStage(String name, List<ScenarioPhase> phases) {
+    if (phases.isEmpty()) {
+      throw new IllegalArgumentException("Stage " + name + " has no phases");
+    }
+    this.name = name;
+    this.phases = Collections.unmodifiableList(phases);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public List<ScenarioPhase> getPhases() {
+    return phases;
+  }
+
+  /**
+   * @return ms from the start of the stage until its last phase ends
+   */
+  public long getDuration() {
+    long duration = 0;
+    for (ScenarioPhase phase : phases) {
+      duration = Math.max(duration, phase.getDelay() + phase.getDuration());
+    }
+    return duration;
+  }
+}
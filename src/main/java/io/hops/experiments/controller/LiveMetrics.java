@@ -0,0 +1,314 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.controller;
+
+import io.hops.experiments.benchmarks.common.BenchmarkOperations;
+import io.hops.experiments.benchmarks.common.stats.LatencyHistogram;
+import io.hops.experiments.benchmarks.common.stats.OperationHistograms;
+import io.hops.experiments.benchmarks.common.stats.StripedCounter;
+import io.hops.experiments.utils.DFSOperationsUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Live progress of the slaves.
+ *
+ * The worker threads count their ops in striped counters and record the
+ * latencies in a histogram of their own, so reporting progress never takes
+ * a lock shared with other workers. A worker gets a recorder when it starts
+ * and releases it when it ends, so the recorders of finished phases and
+ * threads are not kept. Once per interval a reporter thread
+ * collects the histograms, prints the progress of the slave and sends it to
+ * the master in one datagram
+ *
+ *   [int MAGIC][byte VERSION][int slave id][long time][long successful ops]
+ *   [long failed ops][int ops] ([op name][long count][int length][histogram])*
+ *
+ * The op counts are totals since the slave started, so a lost datagram only
+ * delays the next reading. The histograms cover the last interval. The
+ * master's Listener merges the datagrams of all the slaves and prints the
+ * cluster throughput and the p50 / p99 of each op.
+ *
+ * @author salman
+ */
+public class LiveMetrics {
+
+  static final int MAGIC = 0x48424C4D;  // HBLM
+  static final byte VERSION = 1;
+  private static final int MAX_DATAGRAM = 60 * 1024;
+
+  private final StripedCounter successful = new StripedCounter();
+  private final StripedCounter failed = new StripedCounter();
+  private final List<Recorder> recorders = new CopyOnWriteArrayList<Recorder>();
+  // latencies of the released recorders not yet reported
+  private final OperationHistograms released = new OperationHistograms();
+
+  /**
+   * @return a recorder for one worker. release it when the worker ends
+   */
+  public Recorder newRecorder() {
+    Recorder recorder = new Recorder();
+    recorders.add(recorder);
+    return recorder;
+  }
+
+  public void release(Recorder recorder) {
+    if (recorder == null || !recorders.remove(recorder)) {
+      return;
+    }
+    synchronized (released) {
+      recorder.drainTo(released);
+    }
+  }
+
+  public long getSuccessfulOps() {
+    return successful.sum();
+  }
+
+  public long getFailedOps() {
+    return failed.sum();
+  }
+
+  public class Recorder {
+    // only shared with the reporter thread
+    private final OperationHistograms latencies = new OperationHistograms();
+
+    /**
+     * @param latency in ns
+     */
+    public void recordSuccess(BenchmarkOperations op, long latency) {
+      successful.increment();
+      synchronized (this) {
+        latencies.recordValue(op, latency);
+      }
+    }
+
+    public void recordSuccess() {
+      successful.increment();
+    }
+
+    public void recordFailure() {
+      failed.increment();
+    }
+
+    private synchronized void drainTo(OperationHistograms interval) {
+      interval.add(latencies);
+      latencies.reset();
+    }
+  }
+
+  /**
+   * starts the thread that reports the progress of the slave every interval
+   */
+  public void startReporter(final InetAddress master, final int port, final long interval,
+          final int slaveId) {
+    Thread reporter = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          report(master, port, interval, slaveId);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (IOException e) {
+          Logger.error(e);
+        }
+      }
+    }, "LiveMetricsReporter");
+    reporter.setDaemon(true);
+    reporter.start();
+  }
+
+  private void report(InetAddress master, int port, long interval, int slaveId)
+          throws IOException, InterruptedException {
+    DatagramSocket socket = new DatagramSocket();
+    OperationHistograms intervalLatencies = new OperationHistograms();
+    long lastTime = System.currentTimeMillis();
+    long lastSuccessful = 0;
+    while (true) {
+      Thread.sleep(interval);
+      intervalLatencies.reset();
+      for (Recorder recorder : recorders) {
+        recorder.drainTo(intervalLatencies);
+      }
+      synchronized (released) {
+        intervalLatencies.add(released);
+        released.reset();
+      }
+      long now = System.currentTimeMillis();
+      long successfulOps = successful.sum();
+      long failedOps = failed.sum();
+      if (successfulOps == lastSuccessful && intervalLatencies.getOperations().isEmpty()) {
+        lastTime = now;
+        continue;  // idle, e.g. between the phases
+      }
+
+      double speed = (successfulOps - lastSuccessful) * 1000.0 / Math.max(1, now - lastTime);
+      System.out.println("Successful ops " + successfulOps + " Failed ops " + failedOps
+              + " Speed: " + DFSOperationsUtils.round(speed));
+      lastTime = now;
+      lastSuccessful = successfulOps;
+
+      byte[] data = encode(slaveId, now, successfulOps, failedOps, intervalLatencies);
+      if (data.length > MAX_DATAGRAM) {
+        data = encode(slaveId, now, successfulOps, failedOps, null);
+      }
+      try {
+        socket.send(new DatagramPacket(data, data.length, master, port));
+      } catch (IOException e) { // reporting should not crash the slave
+        Logger.error(e);
+      }
+    }
+  }
+
+  static byte[] encode(int slaveId, long time, long successfulOps, long failedOps,
+          OperationHistograms latencies) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(MAGIC);
+    out.writeByte(VERSION);
+    out.writeInt(slaveId);
+    out.writeLong(time);
+    out.writeLong(successfulOps);
+    out.writeLong(failedOps);
+    if (latencies == null) {
+      out.writeInt(0);
+    } else {
+      List<BenchmarkOperations> ops = latencies.getOperations();
+      out.writeInt(ops.size());
+      for (BenchmarkOperations op : ops) {
+        LatencyHistogram histogram = latencies.get(op);
+        byte[] encoded = histogram.encode();
+        out.writeUTF(op.name());
+        out.writeLong(histogram.getTotalCount());
+        out.writeInt(encoded.length);
+        out.write(encoded);
+      }
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Runs on the master. Prints the cluster throughput once every slave has
+   * reported since the last print.
+   */
+  public static class Listener implements Runnable {
+
+    private final int port;
+    private final int numSlaves;
+    // slave id -> {time, successful ops} of the last report
+    private final Map<Integer, long[]> lastReports = new HashMap<Integer, long[]>();
+    private final Map<Integer, Double> speeds = new HashMap<Integer, Double>();
+    private final OperationHistograms latencies = new OperationHistograms();
+    private final Map<BenchmarkOperations, Long> opCounts = new HashMap<BenchmarkOperations, Long>();
+    private volatile boolean running = true;
+
+    public Listener(int port, int numSlaves) {
+      this.port = port;
+      this.numSlaves = numSlaves;
+    }
+
+    @Override
+    public void run() {
+      DatagramSocket socket;
+      try {
+        socket = new DatagramSocket(port, InetAddress.getByName("0.0.0.0"));
+      } catch (IOException e) {
+        e.printStackTrace();
+        return;
+      }
+      byte[] buffer = new byte[64 * 1024];
+      while (running) {
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        try {
+          socket.receive(packet);
+          process(new DataInputStream(new ByteArrayInputStream(buffer, 0, packet.getLength())));
+        } catch (IOException e) { // bad datagrams are dropped
+          System.out.println("Dropped live metrics from " + packet.getAddress() + " " + e);
+        }
+      }
+      socket.close();
+    }
+
+    private void process(DataInputStream in) throws IOException {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not a live metrics datagram");
+      }
+      byte version = in.readByte();
+      if (version != VERSION) {
+        throw new IOException("Unsupported live metrics version " + version);
+      }
+      int slaveId = in.readInt();
+      long time = in.readLong();
+      long successfulOps = in.readLong();
+      in.readLong();  // failed ops
+      int ops = in.readInt();
+      for (int i = 0; i < ops; i++) {
+        BenchmarkOperations op = BenchmarkOperations.valueOf(in.readUTF());
+        long count = in.readLong();
+        byte[] encoded = new byte[in.readInt()];
+        in.readFully(encoded);
+        latencies.add(op, LatencyHistogram.decode(encoded));
+        Long total = opCounts.get(op);
+        opCounts.put(op, (total == null ? 0 : total) + count);
+      }
+
+      long[] last = lastReports.put(slaveId, new long[]{time, successfulOps});
+      if (last != null && time > last[0] && successfulOps >= last[1]) {
+        speeds.put(slaveId, (successfulOps - last[1]) * 1000.0 / (time - last[0]));
+      }
+      if (speeds.size() == numSlaves) {
+        print();
+      }
+    }
+
+    private void print() {
+      double speed = 0;
+      for (double slaveSpeed : speeds.values()) {
+        speed += slaveSpeed;
+      }
+      StringBuilder msg = new StringBuilder("Live cluster speed: ");
+      msg.append(DFSOperationsUtils.round(speed)).append(" ops/sec");
+      for (BenchmarkOperations op : latencies.getOperations()) {
+        LatencyHistogram histogram = latencies.get(op);
+        msg.append("  ").append(op).append(" [").append(opCounts.get(op)).append(" ops")
+                .append(" p50: ").append(DFSOperationsUtils.round(histogram.getValueAtPercentile(50) / 1000000.0))
+                .append(" ms p99: ").append(DFSOperationsUtils.round(histogram.getValueAtPercentile(99) / 1000000.0))
+                .append(" ms]");
+      }
+      Master.blueColoredText(msg.toString());
+      speeds.clear();
+      latencies.reset();
+      opCounts.clear();
+    }
+
+    public void stop() {
+      running = false;
+    }
+  }
+}
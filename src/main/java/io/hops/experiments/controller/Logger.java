@@ -26,9 +26,6 @@ import java.io.ObjectOutputStream;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.StringTokenizer;
 
 /**
  *
@@ -120,12 +117,9 @@ public class Logger {
 
     private int port;
     private boolean running = true;
-    private Map<String, Double> speedMap = new HashMap<String, Double>();
-    private final int maxSlaves;
 
-    public LogListener(int port, int maxSlaves) {
+    public LogListener(int port) {
       this.port = port;
-      this.maxSlaves = maxSlaves;
     }
 
     @Override
@@ -146,7 +140,6 @@ public class Logger {
           ObjectInputStream is = new ObjectInputStream(in);
           String msg = (String) is.readObject();
           System.out.println(DFSOperationsUtils.format(20,recvPacket.getAddress().getHostName()+" -> ") + msg);
-          continuousAggSpeed(recvPacket.getAddress().getHostName(), msg);
           is.close();
           in.close();
           recvPacket = null;
@@ -158,34 +151,6 @@ public class Logger {
       }
     }
 
-    public synchronized void continuousAggSpeed(String address, String msg){
-      try{
-        String token = "Speed:";
-        if(msg.contains(token)){
-          StringTokenizer st = new StringTokenizer(msg, " ");
-          while(st.hasMoreTokens()){
-            String t = st.nextToken();
-            if (t.compareToIgnoreCase(token)==0){
-              String speedStr = st.nextToken();
-              Double speed = Double.parseDouble(speedStr);
-              speedMap.put(address, speed);
-              break;
-            }
-          }
-        }
-
-        if(speedMap.size() == maxSlaves ){
-          double aggSpeed = 0;
-          for(Double speed: speedMap.values()){
-            aggSpeed += speed;
-          }
-          Master.blueColoredText("Current Aggregated Speed is "+aggSpeed);
-          speedMap.clear();
-        }
-      }catch(NumberFormatException e){
-      }
- }
-
     public void stop() {
       this.running = false;
     }
@@ -25,25 +25,46 @@ import io.hops.experiments.benchmarks.common.BenchmarkType;
 import io.hops.experiments.benchmarks.common.commands.NamespaceWarmUp;
 import io.hops.experiments.benchmarks.common.config.ConfigKeys;
 import io.hops.experiments.benchmarks.common.config.BMConfiguration;
+import io.hops.experiments.benchmarks.common.stats.LatencyHistogram;
+import io.hops.experiments.benchmarks.common.stats.OperationHistograms;
+import io.hops.experiments.benchmarks.common.stats.Timeline;
 import io.hops.experiments.benchmarks.interleaved.InterleavedBMResults;
 import io.hops.experiments.benchmarks.interleaved.InterleavedBenchmarkCommand;
+import io.hops.experiments.benchmarks.replay.ReplayBenchmarkCommand;
 import io.hops.experiments.benchmarks.rawthroughput.RawBMResults;
 import io.hops.experiments.benchmarks.rawthroughput.RawBenchmarkCommand;
 import io.hops.experiments.benchmarks.rawthroughput.RawBenchmarkCreateCommand;
+import io.hops.experiments.benchmarks.scenario.Scenario;
+import io.hops.experiments.benchmarks.scenario.ScenarioBenchmarkCommand;
+import io.hops.experiments.benchmarks.scenario.ScenarioStage;
+import io.hops.experiments.controller.channel.ControlChannel;
+import io.hops.experiments.controller.commands.BenchmarkCommand;
+import io.hops.experiments.controller.commands.ClockSync;
 import io.hops.experiments.controller.commands.Handshake;
 import io.hops.experiments.controller.commands.KillSlave;
+import io.hops.experiments.controller.commands.PeerFiles;
+import io.hops.experiments.controller.commands.StartAt;
 import io.hops.experiments.controller.commands.WarmUpCommand;
 import io.hops.experiments.results.compiler.InterleavedBMResultsAggregator;
 import io.hops.experiments.results.compiler.RawBMResultAggregator;
+import io.hops.experiments.results.store.ResultStore;
+import io.hops.experiments.workload.generator.FilePoolSharing;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 
 import java.io.*;
 import java.net.InetAddress;
-import java.net.Socket;
 import java.net.UnknownHostException;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -51,10 +72,18 @@ import java.util.*;
  */
 public class Master {
 
-  Set<InetAddress> misbehavingSlaves = new HashSet<InetAddress>();
+  Set<InetAddress> misbehavingSlaves = Collections.synchronizedSet(new HashSet<InetAddress>());
   Map<InetAddress, SlaveConnection> slavesConnections = new HashMap<InetAddress, SlaveConnection>();
   List<BMResult> results = new ArrayList<BMResult>();
+  // cluster wide timeline of each phase
+  Map<String, Timeline> timelines = new LinkedHashMap<String, Timeline>();
+  // rows for the result store
+  List<ResultStore.Row> storeRows = new ArrayList<ResultStore.Row>();
+  final long runId = System.currentTimeMillis();
   BMConfiguration config;
+  // talks to all the slaves in parallel
+  ScheduledExecutorService dispatcher;
+  private static final int CLOCK_SYNC_ROUNDS = 5;
 
   public static void main(String[] argv) throws Exception {
     String configFilePath = "master.properties";
@@ -76,18 +105,24 @@ public class Master {
 
       removeExistingResultsFiles();
       
-      startRemoteLogger(config.getSlavesList().size());
+      startRemoteLogger();
+
+      startLiveMetricsListener(config.getSlavesList().size());
 
       connectSlaves();
 
       handShakeWithSlaves(); // Let all the clients know show is the master
 
+      syncSlaveClocks();
+
       warmUpSlaves();
 
       //start the commander
       startCommander();
 
       generateResultsFile();
+
+      appendToResultStore();
       
       printAllResults();
     } catch (Exception e) {
@@ -98,20 +133,34 @@ public class Master {
     }
   }
 
-  private void startRemoteLogger(int maxSlaves) {
-    Logger.LogListener listener = new Logger.LogListener(config.getRemoteLoggingPort(),maxSlaves);
+  private void startRemoteLogger() {
+    Logger.LogListener listener = new Logger.LogListener(config.getRemoteLoggingPort());
     Thread thread = new Thread(listener);
     thread.start();
     System.out.println("Logger started.");
   }
 
+  private void startLiveMetricsListener(int numSlaves) {
+    LiveMetrics.Listener listener = new LiveMetrics.Listener(config.getLiveMetricsPort(), numSlaves);
+    Thread thread = new Thread(listener);
+    thread.setDaemon(true);
+    thread.start();
+    System.out.println("Live metrics listener started.");
+  }
+
   private void startCommander() throws IOException, InterruptedException, ClassNotFoundException {
     if (config.getBenchMarkType() == BenchmarkType.RAW) {
       startRawCommander();
+    } else if (config.getBenchMarkType() == BenchmarkType.INTERLEAVED && config.isSaturationSearch()) {
+      startSaturationSearchCommander();
     } else if (config.getBenchMarkType() == BenchmarkType.INTERLEAVED) {
       startInterleavedCommander();
     } else if (config.getBenchMarkType() == BenchmarkType.BR) {
       startBlockReportingCommander();
+    } else if (config.getBenchMarkType() == BenchmarkType.REPLAY) {
+      startReplayCommander();
+    } else if (config.getBenchMarkType() == BenchmarkType.SCENARIO) {
+      startScenarioCommander();
     } else {
       throw new IllegalStateException("Unsupported Benchmark ");
     }
@@ -219,7 +268,7 @@ public class Master {
     prompt();
     BlockReportingBenchmarkCommand.Request request = new BlockReportingBenchmarkCommand.Request();
 
-    sendToAllSlaves(request, 0/*delay*/);
+    startOnAllSlaves(request);
 
     Collection<Object> responses = receiveFromAllSlaves(Integer.MAX_VALUE);
     DescriptiveStatistics successfulOps = new DescriptiveStatistics();
@@ -257,19 +306,165 @@ public class Master {
     prompt();
     InterleavedBenchmarkCommand.Request request =
             new InterleavedBenchmarkCommand.Request(config);
-    sendToAllSlaves(request, 0/*delay*/);
+    startOnAllSlaves(request);
 
-    Thread.sleep(config.getInterleavedBmDuration());
+    Thread.sleep(config.getPhaseStartDelay() + config.getInterleavedBmDuration());
     Collection<Object> responses = receiveFromAllSlaves(60 * 1000 /*sec wait*/);
+    mergeTimelines(BenchmarkType.INTERLEAVED.toString(), responses);
     InterleavedBMResults result = InterleavedBMResultsAggregator.processInterleavedResults(responses, config);
     printMasterResultMessages(result);
+    addInterleavedStoreRows(result, BenchmarkType.INTERLEAVED.toString(), responses);
+  }
+
+  /**
+   * runs the interleaved benchmark in the open loop mode at increasing loads
+   * until the p99 response time or the error rate of all the slaves misses
+   * the slo. Then bisects the load between the last step that met the slo
+   * and the first one that did not
+   */
+  private void startSaturationSearchCommander() throws IOException, ClassNotFoundException, InterruptedException {
+    System.out.println("Starting Saturation Search ...");
+    prompt();
+    List<SaturationStep> steps = new ArrayList<SaturationStep>();
+    SaturationStep saturation = null;
+    long failedLoad = 0;
+    long load = config.getSaturationSearchStartOpsPerSec();
+    for (int i = 0; i < config.getSaturationSearchMaxSteps(); i++) {
+      SaturationStep step = runSaturationStep(load);
+      steps.add(step);
+      if (!step.meetsSlo) {
+        failedLoad = load;
+        break;
+      }
+      saturation = step;
+      load += config.getSaturationSearchStepOpsPerSec();
+    }
+
+    if (failedLoad > 0) {
+      long goodLoad = saturation == null ? 0 : saturation.offered;
+      for (int i = 0; i < config.getSaturationSearchRefineSteps() && failedLoad - goodLoad > 1; i++) {
+        SaturationStep step = runSaturationStep(goodLoad + (failedLoad - goodLoad) / 2);
+        steps.add(step);
+        if (step.meetsSlo) {
+          saturation = step;
+          goodLoad = step.offered;
+        } else {
+          failedLoad = step.offered;
+        }
+      }
+    } else {
+      printMasterLogMessages("All the steps met the SLO. Increase " + ConfigKeys.SATURATION_SEARCH_MAX_STEPS_KEY
+              + " or " + ConfigKeys.SATURATION_SEARCH_STEP_OPS_PER_SEC_KEY + " to saturate the file system");
+    }
+
+    writeSaturationCurve(steps, config.getResultsDir() + ConfigKeys.SATURATION_FILE_NAME);
+    if (saturation == null) {
+      printMasterLogMessages("No step met the SLO. The lowest offered load was " + steps.get(0).offered + " ops/sec");
+    } else {
+      blueColoredText("Saturation point: " + saturation.offered + " ops/sec offered, "
+              + String.format("%.2f", saturation.achieved) + " ops/sec achieved, p99 "
+              + String.format("%.2f", saturation.p99) + " ms, error rate "
+              + String.format("%.4f", saturation.errorRate));
+    }
+  }
+
+  private SaturationStep runSaturationStep(long offered) throws IOException, ClassNotFoundException,
+          InterruptedException {
+    printMasterLogMessages("Saturation search. Offering " + offered + " ops/sec");
+    BMConfiguration stepConfig = config.withInterleavedBmTargetOpsPerSec(offered);
+    startOnAllSlaves(new InterleavedBenchmarkCommand.Request(stepConfig));
+
+    Thread.sleep(config.getPhaseStartDelay() + config.getInterleavedBmDuration());
+    Collection<Object> responses = receiveFromAllSlaves(60 * 1000 /*sec wait*/);
+    String phase = BenchmarkType.INTERLEAVED + "-" + offered;
+    mergeTimelines(phase, responses);
+    InterleavedBMResults result = InterleavedBMResultsAggregator.processInterleavedResults(responses, stepConfig,
+            stepConfig.getInterleavedBmWorkloadName() + "-" + offered);
+    printMasterResultMessages(result);
+    addInterleavedStoreRows(result, phase, responses);
+
+    // response times include the time the ops were behind the schedule
+    OperationHistograms responseTimes = new OperationHistograms();
+    for (Object obj : responses) {
+      responseTimes.add(((InterleavedBenchmarkCommand.Response) obj).getOpsResponseTimes());
+    }
+    LatencyHistogram latencies = responseTimes.getCombined();
+    double allOps = result.getSuccessfulOps() + result.getFailedOps();
+
+    SaturationStep step = new SaturationStep();
+    step.offered = offered;
+    step.achieved = result.getSpeed();
+    step.successfulOps = result.getSuccessfulOps();
+    step.failedOps = result.getFailedOps();
+    step.errorRate = allOps > 0 ? result.getFailedOps() / allOps : 1;
+    step.p50 = latencies.getValueAtPercentile(50) / 1000000.0;
+    step.p99 = latencies.getValueAtPercentile(99) / 1000000.0;
+    step.meetsSlo = allOps > 0 && step.p99 <= config.getSaturationSearchSloP99()
+            && step.errorRate <= config.getSaturationSearchSloErrorRate();
+    printMasterLogMessages("Offered " + offered + " ops/sec. Achieved " + String.format("%.2f", step.achieved)
+            + " ops/sec, p99 " + String.format("%.2f", step.p99) + " ms, error rate "
+            + String.format("%.4f", step.errorRate) + (step.meetsSlo ? ". Met the SLO" : ". Missed the SLO"));
+    return step;
+  }
+
+  private void startReplayCommander() throws IOException, ClassNotFoundException, InterruptedException {
+    System.out.println("Starting Replay Benchmark ...");
+    prompt();
+    ReplayBenchmarkCommand.Request request = new ReplayBenchmarkCommand.Request(config);
+    startOnAllSlaves(request);
+
+    // the length of the replay depends on the trace
+    int timeout = Integer.MAX_VALUE;
+    if (config.getReplayBmMaxDuration() > 0) {
+      timeout = (int) Math.min(Integer.MAX_VALUE,
+              config.getPhaseStartDelay() + config.getReplayBmMaxDuration() + 60 * 1000);
+    }
+    Collection<Object> responses = receiveFromAllSlaves(timeout);
+    mergeTimelines(BenchmarkType.REPLAY.toString(), responses);
+    InterleavedBMResults result = InterleavedBMResultsAggregator.processInterleavedResults(responses, config,
+            config.getReplayBmWorkloadName());
+    printMasterResultMessages(result);
+    addInterleavedStoreRows(result, BenchmarkType.REPLAY.toString(), responses);
+  }
+
+  /**
+   * runs the stages of the scenario one after the other. Every phase of a
+   * stage is reported as stage.phase
+   */
+  private void startScenarioCommander() throws IOException, ClassNotFoundException, InterruptedException {
+    System.out.println("Starting Scenario Benchmark ...");
+    prompt();
+    Scenario scenario = Scenario.load(config.getScenarioBmFile());
+    for (ScenarioStage stage : scenario.getStages()) {
+      printMasterLogMessages("Starting stage " + stage.getName() + " with " + stage.getPhases().size()
+              + " phases for " + stage.getDuration() + " ms");
+      startOnAllSlaves(new ScenarioBenchmarkCommand.Request(config, stage));
+
+      Thread.sleep(config.getPhaseStartDelay() + stage.getDuration());
+      Collection<Object> responses = receiveFromAllSlaves(60 * 1000 /*sec wait*/);
+      for (int i = 0; i < stage.getPhases().size(); i++) {
+        String phase = stage.getName() + "." + stage.getPhases().get(i).getName();
+        List<Object> phaseResponses = new ArrayList<Object>();
+        for (Object obj : responses) {
+          if (!(obj instanceof ScenarioBenchmarkCommand.Response)) {
+            throw new IllegalStateException("Wrong response received from the client");
+          }
+          phaseResponses.add(((ScenarioBenchmarkCommand.Response) obj).getPhases().get(i));
+        }
+        mergeTimelines(phase, phaseResponses);
+        InterleavedBMResults result = InterleavedBMResultsAggregator.processInterleavedResults(phaseResponses,
+                config, phase);
+        printMasterResultMessages(result);
+        addInterleavedStoreRows(result, phase, phaseResponses);
+      }
+    }
   }
 
   private void handShakeWithSlaves() throws IOException, ClassNotFoundException {
     //send request
     printMasterLogMessages("Starting Hand Shake Protocol");
     prompt();
-    sendHandshakeToAllSlaves(new Handshake.Request(config));
+    sendHandshakeToAllSlaves();
     Collection<Object> allResponses = receiveFromAllSlaves(60 * 1000 /*sec wait*/);
 
     for (Object response : allResponses) {
@@ -286,7 +481,9 @@ public class Master {
     prompt();
     WarmUpCommand.Request warmUpCommand = null;
     if (config.getBenchMarkType() == BenchmarkType.INTERLEAVED
-            || config.getBenchMarkType() == BenchmarkType.RAW) {
+            || config.getBenchMarkType() == BenchmarkType.RAW
+            || config.getBenchMarkType() == BenchmarkType.REPLAY
+            || config.getBenchMarkType() == BenchmarkType.SCENARIO) {
       warmUpCommand = new NamespaceWarmUp.Request(config.getBenchMarkType(), config.getFilesToCreateInWarmUpPhase(), config.getReplicationFactor(),
               config.getFileSizeDistribution(), config.getAppendFileSize(),
               config.getBaseDir(), config.getReadFilesFromDisk(), config.getDiskNameSpacePath());
@@ -306,6 +503,16 @@ public class Master {
         throw new IllegalStateException("Disobedient slave. Sent me something other than hand shake response");
       }
     }
+
+    if (config.getFilePoolSharing() == FilePoolSharing.CLUSTER) {
+      // the slaves read each other's files, tell them how many there are
+      long[] files = new long[slavesConnections.size()];
+      for (Object response : allResponses) {
+        NamespaceWarmUp.Response warmUpResponse = (NamespaceWarmUp.Response) response;
+        files[warmUpResponse.getSlaveId()] = warmUpResponse.getSharedFiles();
+      }
+      sendToAllSlaves(new PeerFiles(files), 0/*delay*/);
+    }
     printMasterLogMessages("All Slaves Warmed Up");
   }
 
@@ -316,16 +523,107 @@ public class Master {
             + request.getDurationInMS() / (double) (1000 * 60) + " mins");
     prompt();
 
-    sendToAllSlaves(request,0/*delay*/);
+    startOnAllSlaves(request);
 
-    Collection<Object> responses = receiveFromAllSlaves((int) (request.getDurationInMS() + 10 * 1000)/*sec wait*/);
+    Collection<Object> responses = receiveFromAllSlaves((int) (config.getPhaseStartDelay()
+            + request.getDurationInMS() + 10 * 1000)/*sec wait*/);
+    mergeTimelines(request.getPhase().toString(), responses);
 
     RawBMResults result = RawBMResultAggregator.processSlaveResponses(responses, request, config);
     printMasterResultMessages(result);
+
+    // the ops are stored by name, like in the control protocol
+    String op = request.getPhase().name();
+    Timeline timeline = timelines.get(request.getPhase().toString());
+    storeRows.add(newStoreRow(result, op, op)
+            .set(ResultStore.Column.SUCCESSFUL_OPS, result.getSuccessfulOps())
+            .set(ResultStore.Column.FAILED_OPS, result.getFailedOps())
+            .set(ResultStore.Column.SPEED, result.getSpeed())
+            .set(ResultStore.Column.DURATION, result.getDuration())
+            .set(ResultStore.Column.LATENCIES, result.getLatencies() == null ? null : result.getLatencies().encode())
+            .set(ResultStore.Column.TIMELINE, timeline == null ? null : timeline.encode()));
+  }
+
+  /**
+   * one row for the whole phase and one row per op. The slaves do not count
+   * the failed ops per op
+   */
+  private void addInterleavedStoreRows(InterleavedBMResults result, String timelinePhase,
+          Collection<Object> responses) throws IOException {
+    OperationHistograms latencies = new OperationHistograms();
+    for (Object obj : responses) {
+      latencies.add(((InterleavedBenchmarkCommand.Response) obj).getOpsExeTimes());
+    }
+    Timeline timeline = timelines.get(timelinePhase);
+    storeRows.add(newStoreRow(result, result.getWorkloadName(), ResultStore.ALL_OPS)
+            .set(ResultStore.Column.SUCCESSFUL_OPS, result.getSuccessfulOps())
+            .set(ResultStore.Column.FAILED_OPS, result.getFailedOps())
+            .set(ResultStore.Column.SPEED, result.getSpeed())
+            .set(ResultStore.Column.DURATION, result.getDuration())
+            .set(ResultStore.Column.LATENCIES, latencies.getCombined().encode())
+            .set(ResultStore.Column.TIMELINE, timeline == null ? null : timeline.encode()));
+    for (BenchmarkOperations op : latencies.getOperations()) {
+      LatencyHistogram histogram = latencies.get(op);
+      storeRows.add(newStoreRow(result, result.getWorkloadName(), op.name())
+              .set(ResultStore.Column.SUCCESSFUL_OPS, (double) histogram.getTotalCount())
+              .set(ResultStore.Column.SPEED, histogram.getTotalCount() / result.getDuration())
+              .set(ResultStore.Column.DURATION, result.getDuration())
+              .set(ResultStore.Column.LATENCIES, histogram.encode()));
+    }
+  }
+
+  private ResultStore.Row newStoreRow(BMResult result, String phase, String op) throws UnknownHostException {
+    return new ResultStore.Row()
+            .set(ResultStore.Column.RUN_ID, runId)
+            .set(ResultStore.Column.FILE_SYSTEM, config.getBenchMarkFileSystemName().toString())
+            .set(ResultStore.Column.BENCHMARK, config.getBenchMarkType().toString())
+            .set(ResultStore.Column.PHASE, phase)
+            .set(ResultStore.Column.OP, op)
+            .set(ResultStore.Column.EXPECTED_NNS, result.getNoOfExpectedAliveNNs())
+            .set(ResultStore.Column.ALIVE_NNS, result.getNoOfAcutallAliveNNs())
+            .set(ResultStore.Column.NDB_NODES, result.getNoOfNDBDataNodes())
+            .set(ResultStore.Column.SLAVES, config.getSlavesList().size())
+            .set(ResultStore.Column.THREADS, config.getSlaveNumThreads());
+  }
+
+  private void appendToResultStore() throws IOException {
+    if (config.getResultsStore().isEmpty() || storeRows.isEmpty()) {
+      return;
+    }
+    ResultStore store = new ResultStore(config.getResultsStore());
+    store.append(storeRows);
+    printMasterLogMessages("Appended " + storeRows.size() + " rows to the result store "
+            + store.getDir() + ". It has " + store.getRows() + " rows");
+  }
+
+  /**
+   * merges the timelines of the slaves. Window i of every slave covers the
+   * same time as the slaves start the phase together
+   */
+  private void mergeTimelines(String phase, Collection<Object> responses) {
+    Timeline merged = null;
+    for (Object obj : responses) {
+      Timeline timeline = null;
+      if (obj instanceof RawBenchmarkCommand.Response) {
+        timeline = ((RawBenchmarkCommand.Response) obj).getTimeline();
+      } else if (obj instanceof InterleavedBenchmarkCommand.Response) {
+        timeline = ((InterleavedBenchmarkCommand.Response) obj).getTimeline();
+      }
+      if (timeline != null) {
+        if (merged == null) {
+          merged = new Timeline(timeline.getEpoch(), timeline.getWindowMs());
+        }
+        merged.add(timeline);
+      }
+    }
+    if (merged != null) {
+      timelines.put(phase, merged);
+    }
   }
 
   private void connectSlaves() throws IOException {
     if (config != null) {
+      dispatcher = Executors.newScheduledThreadPool(Math.max(1, config.getSlavesList().size()));
       List<InetAddress> slaves = config.getSlavesList();
       for (InetAddress slave : slaves) {
         printMasterLogMessages("Connecting to slave " + slave);
@@ -344,42 +642,125 @@ public class Master {
     }
   }
 
-  private void sendHandshakeToAllSlaves(Handshake.Request handshake) throws
-          IOException {
-    if (!slavesConnections.isEmpty()) {
-      int slaveId = 0;
-      for (InetAddress slave : slavesConnections.keySet()) {
-        SlaveConnection conn = slavesConnections.get(slave);
-        handshake.setSlaveId(slaveId++);
-        conn.sendToSlave(handshake);
-      }
+  private void sendHandshakeToAllSlaves() throws IOException {
+    List<Future<?>> sends = new ArrayList<Future<?>>();
+    int slaveId = 0;
+    for (final SlaveConnection conn : slavesConnections.values()) {
+      final Handshake.Request handshake = new Handshake.Request(config);
+      handshake.setSlaveId(slaveId++);
+      handshake.setNumSlaves(slavesConnections.size());
+      sends.add(dispatcher.submit(new Runnable() {
+        @Override
+        public void run() {
+          conn.sendToSlave(handshake);
+        }
+      }));
     }
+    waitFor(sends);
   }
 
-  private void sendToAllSlaves(Object obj, int delay) throws IOException {
-    if (!slavesConnections.isEmpty()) {
-      for (InetAddress slave : slavesConnections.keySet()) {
-        SlaveConnection conn = slavesConnections.get(slave);
-        conn.sendToSlave(obj);
-        try{
-          Thread.sleep(delay);
-        }catch(InterruptedException e){}
-      }
+  private void syncSlaveClocks() throws IOException {
+    List<Future<?>> syncs = new ArrayList<Future<?>>();
+    for (final SlaveConnection conn : slavesConnections.values()) {
+      syncs.add(dispatcher.submit(new Runnable() {
+        @Override
+        public void run() {
+          conn.syncClock();
+        }
+      }));
+    }
+    waitFor(syncs);
+  }
+
+  /**
+   * the slaves are sent the command in parallel. If there is a delay then
+   * the i-th slave gets it i * delay ms after the first one
+   */
+  private void sendToAllSlaves(final Object obj, int delay) throws IOException {
+    List<Future<?>> sends = new ArrayList<Future<?>>();
+    long sendAt = 0;
+    for (final SlaveConnection conn : slavesConnections.values()) {
+      sends.add(dispatcher.schedule(new Runnable() {
+        @Override
+        public void run() {
+          conn.sendToSlave(obj);
+        }
+      }, sendAt, TimeUnit.MILLISECONDS));
+      sendAt += delay;
     }
+    waitFor(sends);
   }
 
-  private Collection<Object> receiveFromAllSlaves(int timeout) throws ClassNotFoundException, UnknownHostException, IOException {
-    Map<InetAddress, Object> responses = new HashMap<InetAddress, Object>();
-    if (!slavesConnections.isEmpty()) {
-      for (InetAddress slave : slavesConnections.keySet()) {
-        SlaveConnection conn = slavesConnections.get(slave);
-        Object obj = conn.recvFromSlave(timeout);
+  /**
+   * sends the command to all the slaves in parallel. The slaves set up the
+   * phase and start their clients together at the same wall clock time, set
+   * phase.start.delay ms from now and translated to the clock of each slave.
+   */
+  private void startOnAllSlaves(final BenchmarkCommand.Request command) throws IOException {
+    final long startTime = System.currentTimeMillis() + config.getPhaseStartDelay();
+    List<Future<?>> sends = new ArrayList<Future<?>>();
+    for (final SlaveConnection conn : slavesConnections.values()) {
+      sends.add(dispatcher.submit(new Runnable() {
+        @Override
+        public void run() {
+          conn.sendToSlave(new StartAt(startTime + conn.getClockOffset()));
+          conn.sendToSlave(command);
+        }
+      }));
+    }
+    waitFor(sends);
+  }
+
+  /**
+   * waits for the responses of all the slaves in parallel. The timeout is
+   * for all the slaves together
+   */
+  private Collection<Object> receiveFromAllSlaves(int timeout) throws IOException {
+    final long deadline = timeout == Integer.MAX_VALUE ? Long.MAX_VALUE
+            : System.currentTimeMillis() + timeout;
+    CompletionService<Object> recvs = new ExecutorCompletionService<Object>(dispatcher);
+    for (final SlaveConnection conn : slavesConnections.values()) {
+      recvs.submit(new Callable<Object>() {
+        @Override
+        public Object call() {
+          int remaining = Integer.MAX_VALUE;
+          if (deadline != Long.MAX_VALUE) {
+            remaining = (int) Math.max(1, deadline - System.currentTimeMillis());
+          }
+          return conn.recvFromSlave(remaining);
+        }
+      });
+    }
+    List<Object> responses = new ArrayList<Object>();
+    try {
+      for (int i = 0; i < slavesConnections.size(); i++) {
+        Object obj = waitFor(recvs.take());
         if (obj != null) {
-          responses.put(slave, obj);
+          responses.add(obj);
         }
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for the slaves");
+    }
+    return responses;
+  }
+
+  private void waitFor(List<Future<?>> futures) throws IOException {
+    for (Future<?> future : futures) {
+      waitFor(future);
+    }
+  }
+
+  private <T> T waitFor(Future<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for the slaves");
+    } catch (ExecutionException e) {
+      throw new IOException("Failed to talk to a slave", e.getCause());
     }
-    return responses.values();
   }
 
   private void prompt() throws IOException {
@@ -434,12 +815,57 @@ public class Master {
         filePath = config.getResultsDir();
         filePath += rawResult.getOperationType()+".csv";
         out = new FileWriter(filePath, false);
-        for(long l : rawResult.getLatencies()){
-          out.write(((double)l/1000000.0)+"\n");
+        LatencyHistogram latencies = rawResult.getLatencies();
+        long[] values = latencies.getValuesAtPercentiles(LatencyHistogram.REPORTED_PERCENTILES);
+        for (int i = 0; i < values.length; i++) {
+          out.write(LatencyHistogram.REPORTED_PERCENTILES[i] + "," + (values[i] / 1000000.0) + "\n");
         }
         out.close();
       }
     }
+
+    if (!timelines.isEmpty()) {
+      writeTimelines(config.getResultsDir() + ConfigKeys.TIMELINE_FILE_NAME);
+    }
+  }
+
+  private void writeTimelines(String filePath) throws IOException {
+    printMasterLogMessages("Writing timeline to " + filePath);
+    FileWriter out = new FileWriter(filePath, false);
+    out.write("phase,window,start.sec,successful.ops,failed.ops,ops.per.sec,avg.ms,p50.ms,p90.ms,p99.ms,p99.9.ms,max.ms\n");
+    for (Map.Entry<String, Timeline> entry : timelines.entrySet()) {
+      Timeline timeline = entry.getValue();
+      double windowSec = timeline.getWindowMs() / 1000.0;
+      for (int i = 0; i < timeline.getWindows(); i++) {
+        out.write(entry.getKey() + "," + i + "," + (i * windowSec) + "," + timeline.getSuccessful(i)
+                + "," + timeline.getFailed(i) + "," + (timeline.getSuccessful(i) / windowSec));
+        LatencyHistogram latencies = timeline.getLatencies(i);
+        if (latencies != null) {
+          out.write("," + latencies.getMean() / 1000000.0
+                  + "," + latencies.getValueAtPercentile(50) / 1000000.0
+                  + "," + latencies.getValueAtPercentile(90) / 1000000.0
+                  + "," + latencies.getValueAtPercentile(99) / 1000000.0
+                  + "," + latencies.getValueAtPercentile(99.9) / 1000000.0
+                  + "," + latencies.getMax() / 1000000.0);
+        } else {
+          out.write(",,,,,,");
+        }
+        out.write("\n");
+      }
+    }
+    out.close();
+  }
+
+  private void writeSaturationCurve(List<SaturationStep> steps, String filePath) throws IOException {
+    printMasterLogMessages("Writing saturation curve to " + filePath);
+    FileWriter out = new FileWriter(filePath, false);
+    out.write("step,offered.ops.per.sec,achieved.ops.per.sec,successful.ops,failed.ops,error.rate,p50.ms,p99.ms,meets.slo\n");
+    for (int i = 0; i < steps.size(); i++) {
+      SaturationStep step = steps.get(i);
+      out.write(i + "," + step.offered + "," + step.achieved + "," + step.successfulOps + "," + step.failedOps
+              + "," + step.errorRate + "," + step.p50 + "," + step.p99 + "," + step.meetsSlo + "\n");
+    }
+    out.close();
   }
 
   private void redColoredText(String msg) {
@@ -479,50 +905,84 @@ public class Master {
     System.out.println("\n\n\n");
   }
 
+  /**
+   * one point of the throughput / latency curve of the saturation search
+   */
+  private static class SaturationStep {
+    long offered;
+    double achieved;
+    double successfulOps;
+    double failedOps;
+    double errorRate;
+    double p50;
+    double p99;
+    boolean meetsSlo;
+  }
+
   public class SlaveConnection {
 
-    private final Socket socket;
+    private final InetAddress slave;
+    private final ControlChannel channel;
+    // slave clock - master clock in ms
+    private volatile long clockOffset = 0;
 
     SlaveConnection(InetAddress slaveInetAddress, int slavePort) throws IOException {
-      socket = new Socket(slaveInetAddress, slavePort);
+      slave = slaveInetAddress;
+      channel = config.getControlProtocol().connect(slaveInetAddress, slavePort);
     }
 
     public void sendToSlave(Object obj) {
 
-      if (isSlaveHealthy(socket.getInetAddress())) {
+      if (isSlaveHealthy(slave)) {
         try {
-          printMasterLogMessages("SEND " + obj.getClass().getCanonicalName() + " to " + socket.getInetAddress());
-          socket.setSendBufferSize(ConfigKeys.BUFFER_SIZE);
-          ObjectOutputStream sendToSlave = new ObjectOutputStream(socket.getOutputStream());
-          sendToSlave.writeObject(obj);
+          printMasterLogMessages("SEND " + obj.getClass().getCanonicalName() + " to " + slave);
+          channel.send(obj);
         } catch (Exception e) {
-          handleMisBehavingSlave(socket.getInetAddress());
+          handleMisBehavingSlave(slave);
         }
       } else {
-        printMasterLogMessages("*** ERROR send request to " + socket.getInetAddress() + " is ignored ");
+        printMasterLogMessages("*** ERROR send request to " + slave + " is ignored ");
       }
     }
 
     public Object recvFromSlave(int timeout) {
-      if (isSlaveHealthy(socket.getInetAddress())) {
+      if (isSlaveHealthy(slave)) {
         try {
-          socket.setSoTimeout(timeout);
-          socket.setReceiveBufferSize(ConfigKeys.BUFFER_SIZE);
-          ObjectInputStream recvFromSlave = new ObjectInputStream(socket.getInputStream());
-          Object obj = recvFromSlave.readObject();
-          printMasterLogMessages("RECVD " + obj.getClass().getCanonicalName() + " from " + socket.getInetAddress());
-          socket.setSoTimeout(Integer.MAX_VALUE);
+          Object obj = channel.receive(timeout);
+          printMasterLogMessages("RECVD " + obj.getClass().getCanonicalName() + " from " + slave);
           return obj;
         } catch (Exception e) {
-          handleMisBehavingSlave(socket.getInetAddress());
+          handleMisBehavingSlave(slave);
           return null;
         }
       } else {
-        printMasterLogMessages("*** ERROR recv request from " + socket.getInetAddress() + " is ignored ");
+        printMasterLogMessages("*** ERROR recv request from " + slave + " is ignored ");
         return null;
       }
     }
 
+    void syncClock() {
+      long bestRoundTrip = Long.MAX_VALUE;
+      for (int i = 0; i < CLOCK_SYNC_ROUNDS; i++) {
+        long sent = System.currentTimeMillis();
+        sendToSlave(new ClockSync.Request());
+        Object obj = recvFromSlave(60 * 1000);
+        long received = System.currentTimeMillis();
+        if (!(obj instanceof ClockSync.Response)) {
+          return;
+        }
+        if (received - sent < bestRoundTrip) {
+          bestRoundTrip = received - sent;
+          clockOffset = ((ClockSync.Response) obj).getSlaveTime() - (sent + received) / 2;
+        }
+      }
+      printMasterLogMessages("Clock of " + slave + " is " + clockOffset + " ms ahead. Round trip " + bestRoundTrip + " ms");
+    }
+
+    long getClockOffset() {
+      return clockOffset;
+    }
+
     private void handleMisBehavingSlave(InetAddress slave) {
       misbehavingSlaves.add(slave);
       printMasterLogMessages("*** Slaved Failed. " + slave);
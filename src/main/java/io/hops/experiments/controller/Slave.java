@@ -18,22 +18,25 @@
 package io.hops.experiments.controller;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 
 import io.hops.experiments.benchmarks.common.config.BMConfiguration;
 import io.hops.experiments.benchmarks.common.config.SlaveArgsReader;
+import io.hops.experiments.controller.channel.ControlChannel;
+import io.hops.experiments.controller.channel.ControlProtocol;
 import io.hops.experiments.controller.commands.BenchmarkCommand;
+import io.hops.experiments.controller.commands.ClockSync;
 import io.hops.experiments.controller.commands.Handshake;
 import io.hops.experiments.controller.commands.KillSlave;
-import io.hops.experiments.benchmarks.common.config.ConfigKeys;
+import io.hops.experiments.controller.commands.PeerFiles;
+import io.hops.experiments.controller.commands.StartAt;
 import org.apache.hadoop.conf.Configuration;
 import io.hops.experiments.benchmarks.common.Benchmark;
-import java.net.ServerSocket;
-import java.net.Socket;
 
 /**
  *
@@ -49,8 +52,8 @@ public class Slave {
         }
         new Slave().start(configFilePath);
     }
-    private ServerSocket slaveServerSocket = null;
-    private Socket connectionWithMaster = null;
+    private ServerSocketChannel slaveServerSocket = null;
+    private ControlChannel connectionWithMaster = null;
     private InetAddress masterIP = null;
     private Benchmark benchmark;
     private SlaveArgsReader args;
@@ -70,9 +73,11 @@ public class Slave {
         Object obj = receiveRequestFromMaster();
 
         int slaveId = 0;
+        int numSlaves = 1;
         if (obj instanceof Handshake.Request) {
             bmConf = ((Handshake.Request) obj).getBmConf();
             slaveId = ((Handshake.Request) obj).getSlaveId();
+            numSlaves = ((Handshake.Request) obj).getNumSlaves();
             if (bmConf.isEnableRemoteLogging()) {
                 Logger.setEnableRemoteLogging(true);
                 Logger.setLoggerIp(masterIP);
@@ -86,7 +91,9 @@ public class Slave {
               dfsClientConf.set(keyStr, val);
             }
             
-            benchmark = Benchmark.getBenchmark(dfsClientConf, bmConf, slaveId);
+            benchmark = Benchmark.getBenchmark(dfsClientConf, bmConf, slaveId, numSlaves);
+            benchmark.getLiveMetrics().startReporter(masterIP, bmConf.getLiveMetricsPort(),
+                    bmConf.getLiveMetricsInterval(), slaveId);
 
             sendResponseToMaster(new Handshake.Response());
         } else {
@@ -97,7 +104,13 @@ public class Slave {
     private void startListener() throws Exception{
         while (true) {
             Object obj = receiveRequestFromMaster();
-            if (obj instanceof BenchmarkCommand.Request) {
+            if (obj instanceof ClockSync.Request) {
+                connectionWithMaster.send(new ClockSync.Response(System.currentTimeMillis()));
+            } else if (obj instanceof StartAt) {
+                benchmark.setStartAt(((StartAt) obj).getStartTime());
+            } else if (obj instanceof PeerFiles) {
+                benchmark.setPeerFiles(((PeerFiles) obj).getFiles());
+            } else if (obj instanceof BenchmarkCommand.Request) {
                 BenchmarkCommand.Request command = (BenchmarkCommand.Request) obj;
                 if (!command.getBenchMarkType().equals(bmConf.getBenchMarkType())) {
                     throw new IllegalStateException("BenchMarkType Mismatch. Expecting " + bmConf.getBenchMarkType() + " Got: " + command.getBenchMarkType());
@@ -110,17 +123,24 @@ public class Slave {
 
     private void connect() throws SocketException, UnknownHostException, IOException {
         System.out.println("Waiting for connection from master ... ");
-        slaveServerSocket = new ServerSocket(args.getSlaveListeningPort());
-        connectionWithMaster = slaveServerSocket.accept();
-        masterIP =  connectionWithMaster.getInetAddress();
+        slaveServerSocket = ServerSocketChannel.open();
+        slaveServerSocket.socket().bind(new InetSocketAddress(args.getSlaveListeningPort()));
+        SocketChannel channel = slaveServerSocket.accept();
+        masterIP = channel.socket().getInetAddress();
+        connectionWithMaster = ControlProtocol.accept(channel);
         System.out.print("Connected to master");
     }
 
     private Object receiveRequestFromMaster() throws IOException, ClassNotFoundException {
-        connectionWithMaster.setReceiveBufferSize(ConfigKeys.BUFFER_SIZE);
-        ObjectInputStream recvFromMaster =  new ObjectInputStream(connectionWithMaster.getInputStream());
-        Object obj = recvFromMaster.readObject();
+        Object obj = connectionWithMaster.receive(0);
         if (obj instanceof KillSlave) {
+            if (benchmark != null) {
+                try {
+                    benchmark.finish();
+                } catch (Exception e) {
+                    Logger.error(e);
+                }
+            }
             System.exit(0);
         }
         return obj;
@@ -129,9 +149,7 @@ public class Slave {
     private void sendResponseToMaster(Object obj) throws IOException {
         System.out.println("Sending response to master ... ");
         long startTime = System.currentTimeMillis();
-        connectionWithMaster.setSendBufferSize(ConfigKeys.BUFFER_SIZE);
-        ObjectOutputStream sendToMaster = new ObjectOutputStream(connectionWithMaster.getOutputStream());
-        sendToMaster.writeObject(obj);
+        connectionWithMaster.send(obj);
         System.out.println("Sent response to master. Time: "+(System.currentTimeMillis() - startTime)+" ms");
     }
 }
@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.controller.channel;
+
+import io.hops.experiments.benchmarks.common.config.ConfigKeys;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Binary protocol over one non blocking socket channel.
+ *
+ * The master opens the connection with the MAGIC bytes and the VERSION.
+ * After that each message is a frame
+ *
+ *   [int length][byte type][fields]
+ *
+ * where length covers the type and the fields. The types and the fields are
+ * defined in ControlMessages, they do not depend on the java classes of the
+ * messages. A slave only accepts a master of the same VERSION.
+ *
+ * @author salman
+ */
+public class BinaryControlChannel implements ControlChannel {
+
+  static final byte[] MAGIC = {'H', 'B', 'C', 'P'};
+  static final byte VERSION = 5;
+  private static final int MAX_FRAME = 256 * 1024 * 1024;
+
+  private final SocketChannel channel;
+  private final Selector selector;
+  private final ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+  private final ByteArrayOutputStream frameBytes = new ByteArrayOutputStream(4096);
+
+  BinaryControlChannel(SocketChannel channel) throws IOException {
+    this.channel = channel;
+    channel.socket().setTcpNoDelay(true);
+    channel.socket().setSendBufferSize(ConfigKeys.BUFFER_SIZE);
+    channel.socket().setReceiveBufferSize(ConfigKeys.BUFFER_SIZE);
+    channel.configureBlocking(false);
+    this.selector = Selector.open();
+  }
+
+  /**
+   * master side. sends the header of the connection
+   */
+  static BinaryControlChannel open(SocketChannel channel) throws IOException {
+    BinaryControlChannel binary = new BinaryControlChannel(channel);
+    ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 1);
+    header.put(MAGIC).put(VERSION).flip();
+    binary.writeFully(header);
+    return binary;
+  }
+
+  /**
+   * slave side. the magic bytes have already been read
+   */
+  static BinaryControlChannel accept(SocketChannel channel) throws IOException {
+    BinaryControlChannel binary = new BinaryControlChannel(channel);
+    ByteBuffer version = ByteBuffer.allocate(1);
+    binary.readFully(version, Long.MAX_VALUE);
+    if (version.get(0) != VERSION) {
+      binary.close();
+      throw new IOException("Unsupported control protocol version " + version.get(0)
+              + ". Expecting " + VERSION);
+    }
+    return binary;
+  }
+
+  @Override
+  public void send(Object msg) throws IOException {
+    frameBytes.reset();
+    DataOutputStream out = new DataOutputStream(frameBytes);
+    out.writeInt(0);  // length, filled in below
+    ControlMessages.write(out, msg);
+    out.flush();
+    ByteBuffer frame = ByteBuffer.wrap(frameBytes.toByteArray());
+    frame.putInt(0, frame.limit() - 4);
+    writeFully(frame);
+  }
+
+  @Override
+  public Object receive(int timeout) throws IOException {
+    long deadline = (timeout <= 0 || timeout == Integer.MAX_VALUE)
+            ? Long.MAX_VALUE : System.currentTimeMillis() + timeout;
+    lengthBuffer.clear();
+    readFully(lengthBuffer, deadline);
+    int length = lengthBuffer.getInt(0);
+    if (length <= 0 || length > MAX_FRAME) {
+      throw new IOException("Invalid frame length " + length + " from " + getRemoteAddress());
+    }
+    ByteBuffer frame = ByteBuffer.allocate(length);
+    readFully(frame, deadline);
+    return ControlMessages.read(new DataInputStream(new ByteArrayInputStream(frame.array())));
+  }
+
+  @Override
+  public String getRemoteAddress() {
+    return String.valueOf(channel.socket().getInetAddress());
+  }
+
+  @Override
+  public void close() throws IOException {
+    selector.close();
+    channel.close();
+  }
+
+  private void writeFully(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.write(buffer) == 0) {
+        await(SelectionKey.OP_WRITE, Long.MAX_VALUE);
+      }
+    }
+  }
+
+  private void readFully(ByteBuffer buffer, long deadline) throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer);
+      if (read < 0) {
+        throw new EOFException("Connection closed by " + getRemoteAddress());
+      } else if (read == 0) {
+        await(SelectionKey.OP_READ, deadline);
+      }
+    }
+  }
+
+  private void await(int op, long deadline) throws IOException {
+    long wait = 0;  // forever
+    if (deadline != Long.MAX_VALUE) {
+      wait = deadline - System.currentTimeMillis();
+      if (wait <= 0) {
+        throw new SocketTimeoutException("No message from " + getRemoteAddress());
+      }
+    }
+    SelectionKey key = channel.keyFor(selector);
+    if (key == null) {
+      channel.register(selector, op);
+    } else {
+      key.interestOps(op);
+    }
+    selector.select(wait);
+    selector.selectedKeys().clear();
+  }
+}
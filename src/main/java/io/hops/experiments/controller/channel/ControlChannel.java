@@ -0,0 +1,40 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.controller.channel;
+
+import java.io.IOException;
+
+/**
+ * Connection between the master and a slave. Messages are sent and received
+ * one at a time over the same connection for the whole benchmark.
+ *
+ * @author salman
+ */
+public interface ControlChannel {
+
+  void send(Object msg) throws IOException;
+
+  /**
+   * @param timeout in ms. 0 or Integer.MAX_VALUE waits forever
+   * @throws java.net.SocketTimeoutException if nothing arrives in time
+   */
+  Object receive(int timeout) throws IOException;
+
+  String getRemoteAddress();
+
+  void close() throws IOException;
+}
@@ -0,0 +1,457 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.controller.channel;
+
+import io.hops.experiments.benchmarks.blockreporting.BlockReportingBenchmarkCommand;
+import io.hops.experiments.benchmarks.blockreporting.BlockReportingWarmUp;
+import io.hops.experiments.benchmarks.common.BenchmarkOperations;
+import io.hops.experiments.benchmarks.common.BenchmarkType;
+import io.hops.experiments.benchmarks.common.commands.NamespaceWarmUp;
+import io.hops.experiments.benchmarks.common.config.BMConfiguration;
+import io.hops.experiments.benchmarks.common.stats.LatencyHistogram;
+import io.hops.experiments.benchmarks.common.stats.OperationHistograms;
+import io.hops.experiments.benchmarks.common.stats.Timeline;
+import io.hops.experiments.benchmarks.interleaved.InterleavedBenchmarkCommand;
+import io.hops.experiments.benchmarks.rawthroughput.RawBenchmarkCommand;
+import io.hops.experiments.benchmarks.rawthroughput.RawBenchmarkCreateCommand;
+import io.hops.experiments.benchmarks.replay.ReplayBenchmarkCommand;
+import io.hops.experiments.benchmarks.scenario.ScenarioBenchmarkCommand;
+import io.hops.experiments.benchmarks.scenario.ScenarioPhase;
+import io.hops.experiments.benchmarks.scenario.ScenarioStage;
+import io.hops.experiments.controller.commands.ClockSync;
+import io.hops.experiments.controller.commands.Handshake;
+import io.hops.experiments.controller.commands.KillSlave;
+import io.hops.experiments.controller.commands.PeerFiles;
+import io.hops.experiments.controller.commands.StartAt;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Binary encoding of the messages exchanged by the master and the slaves.
+ *
+ * Each message starts with its type byte. The type numbers are part of the
+ * protocol, never reuse or renumber them; add a new type and bump
+ * BinaryControlChannel.VERSION instead. Enums are sent by name and the
+ * configuration as its properties, so the encoding does not depend on the
+ * java classes.
+ *
+ * @author salman
+ */
+class ControlMessages {
+
+  static final byte HANDSHAKE_REQUEST = 1;
+  static final byte HANDSHAKE_RESPONSE = 2;
+  static final byte KILL_SLAVE = 3;
+  static final byte NAMESPACE_WARMUP_REQUEST = 4;
+  static final byte NAMESPACE_WARMUP_RESPONSE = 5;
+  static final byte BR_WARMUP_REQUEST = 6;
+  static final byte BR_WARMUP_RESPONSE = 7;
+  static final byte RAW_REQUEST = 8;
+  static final byte RAW_CREATE_REQUEST = 9;
+  static final byte RAW_RESPONSE = 10;
+  static final byte INTERLEAVED_REQUEST = 11;
+  static final byte INTERLEAVED_RESPONSE = 12;
+  static final byte REPLAY_REQUEST = 13;
+  static final byte BR_REQUEST = 14;
+  static final byte BR_RESPONSE = 15;
+  static final byte CLOCK_SYNC_REQUEST = 16;
+  static final byte CLOCK_SYNC_RESPONSE = 17;
+  static final byte START_AT = 18;
+  static final byte SCENARIO_REQUEST = 19;
+  static final byte SCENARIO_RESPONSE = 20;
+  static final byte PEER_FILES = 21;
+
+  static void write(DataOutputStream out, Object msg) throws IOException {
+    if (msg instanceof Handshake.Request) {
+      Handshake.Request request = (Handshake.Request) msg;
+      out.writeByte(HANDSHAKE_REQUEST);
+      writeConfig(out, request.getBmConf());
+      out.writeInt(request.getSlaveId());
+      out.writeInt(request.getNumSlaves());
+    } else if (msg instanceof Handshake.Response) {
+      out.writeByte(HANDSHAKE_RESPONSE);
+    } else if (msg instanceof KillSlave) {
+      out.writeByte(KILL_SLAVE);
+    } else if (msg instanceof NamespaceWarmUp.Request) {
+      NamespaceWarmUp.Request request = (NamespaceWarmUp.Request) msg;
+      out.writeByte(NAMESPACE_WARMUP_REQUEST);
+      out.writeUTF(request.getBenchMarkType().name());
+      out.writeInt(request.getFilesToCreate());
+      out.writeShort(request.getReplicationFactor());
+      writeString(out, request.getFileSizeDistribution());
+      out.writeLong(request.getAppendSize());
+      writeString(out, request.getBaseDir());
+      out.writeBoolean(request.isReadFilesFromDisk());
+      writeString(out, request.getDiskFilsPath());
+    } else if (msg instanceof NamespaceWarmUp.Response) {
+      NamespaceWarmUp.Response response = (NamespaceWarmUp.Response) msg;
+      out.writeByte(NAMESPACE_WARMUP_RESPONSE);
+      out.writeInt(response.getSlaveId());
+      out.writeLong(response.getSharedFiles());
+    } else if (msg instanceof BlockReportingWarmUp.Request) {
+      out.writeByte(BR_WARMUP_REQUEST);
+      writeConfig(out, ((BlockReportingWarmUp.Request) msg).getBMConf());
+    } else if (msg instanceof BlockReportingWarmUp.Response) {
+      out.writeByte(BR_WARMUP_RESPONSE);
+    } else if (msg instanceof RawBenchmarkCreateCommand.Request) {
+      RawBenchmarkCreateCommand.Request request = (RawBenchmarkCreateCommand.Request) msg;
+      out.writeByte(RAW_CREATE_REQUEST);
+      out.writeLong(request.getMaxFilesToCreate());
+      out.writeUTF(request.getPhase().name());
+      out.writeLong(request.getDurationInMS());
+    } else if (msg instanceof RawBenchmarkCommand.Request) {
+      RawBenchmarkCommand.Request request = (RawBenchmarkCommand.Request) msg;
+      out.writeByte(RAW_REQUEST);
+      out.writeUTF(request.getPhase().name());
+      out.writeLong(request.getDurationInMS());
+    } else if (msg instanceof RawBenchmarkCommand.Response) {
+      RawBenchmarkCommand.Response response = (RawBenchmarkCommand.Response) msg;
+      out.writeByte(RAW_RESPONSE);
+      out.writeUTF(response.getPhase().name());
+      out.writeLong(response.getRunTime());
+      out.writeLong(response.getTotalSuccessfulOps());
+      out.writeLong(response.getTotalFailedOps());
+      out.writeDouble(response.getOpsPerSec());
+      out.writeInt(response.getNnCount());
+      writeHistogram(out, response.getOpsExeTimes());
+      writeTimeline(out, response.getTimeline());
+    } else if (msg instanceof InterleavedBenchmarkCommand.Request) {
+      out.writeByte(INTERLEAVED_REQUEST);
+      writeConfig(out, ((InterleavedBenchmarkCommand.Request) msg).getConfig());
+    } else if (msg instanceof InterleavedBenchmarkCommand.Response) {
+      out.writeByte(INTERLEAVED_RESPONSE);
+      writeInterleavedResponse(out, (InterleavedBenchmarkCommand.Response) msg);
+    } else if (msg instanceof ScenarioBenchmarkCommand.Request) {
+      ScenarioBenchmarkCommand.Request request = (ScenarioBenchmarkCommand.Request) msg;
+      out.writeByte(SCENARIO_REQUEST);
+      writeConfig(out, request.getConfig());
+      writeStage(out, request.getStage());
+    } else if (msg instanceof ScenarioBenchmarkCommand.Response) {
+      List<InterleavedBenchmarkCommand.Response> phases = ((ScenarioBenchmarkCommand.Response) msg).getPhases();
+      out.writeByte(SCENARIO_RESPONSE);
+      out.writeInt(phases.size());
+      for (InterleavedBenchmarkCommand.Response phase : phases) {
+        writeInterleavedResponse(out, phase);
+      }
+    } else if (msg instanceof ReplayBenchmarkCommand.Request) {
+      out.writeByte(REPLAY_REQUEST);
+      writeConfig(out, ((ReplayBenchmarkCommand.Request) msg).getConfig());
+    } else if (msg instanceof BlockReportingBenchmarkCommand.Request) {
+      out.writeByte(BR_REQUEST);
+    } else if (msg instanceof BlockReportingBenchmarkCommand.Response) {
+      BlockReportingBenchmarkCommand.Response response = (BlockReportingBenchmarkCommand.Response) msg;
+      out.writeByte(BR_RESPONSE);
+      out.writeInt(response.getSuccessfulOps());
+      out.writeInt(response.getFailedOps());
+      out.writeDouble(response.getSpeed());
+      out.writeDouble(response.getAvgTimePerReport());
+      out.writeDouble(response.getAvgTimeTogetNewNameNode());
+      out.writeInt(response.getNnCount());
+    } else if (msg instanceof ClockSync.Request) {
+      out.writeByte(CLOCK_SYNC_REQUEST);
+    } else if (msg instanceof ClockSync.Response) {
+      out.writeByte(CLOCK_SYNC_RESPONSE);
+      out.writeLong(((ClockSync.Response) msg).getSlaveTime());
+    } else if (msg instanceof StartAt) {
+      out.writeByte(START_AT);
+      out.writeLong(((StartAt) msg).getStartTime());
+    } else if (msg instanceof PeerFiles) {
+      long[] files = ((PeerFiles) msg).getFiles();
+      out.writeByte(PEER_FILES);
+      out.writeInt(files.length);
+      for (long count : files) {
+        out.writeLong(count);
+      }
+    } else {
+      throw new IllegalArgumentException("No binary encoding for " + msg.getClass().getName());
+    }
+  }
+
+  static Object read(DataInputStream in) throws IOException {
+    byte type = in.readByte();
+    switch (type) {
+      case HANDSHAKE_REQUEST: {
+        Handshake.Request request = new Handshake.Request(readConfig(in));
+        request.setSlaveId(in.readInt());
+        request.setNumSlaves(in.readInt());
+        return request;
+      }
+      case HANDSHAKE_RESPONSE:
+        return new Handshake.Response();
+      case KILL_SLAVE:
+        return new KillSlave();
+      case NAMESPACE_WARMUP_REQUEST:
+        return new NamespaceWarmUp.Request(BenchmarkType.valueOf(in.readUTF()), in.readInt(),
+                in.readShort(), readString(in), in.readLong(), readString(in), in.readBoolean(),
+                readString(in));
+      case NAMESPACE_WARMUP_RESPONSE:
+        return new NamespaceWarmUp.Response(in.readInt(), in.readLong());
+      case BR_WARMUP_REQUEST:
+        return new BlockReportingWarmUp.Request(readConfig(in));
+      case BR_WARMUP_RESPONSE:
+        return new BlockReportingWarmUp.Response();
+      case RAW_REQUEST:
+        return new RawBenchmarkCommand.Request(BenchmarkOperations.valueOf(in.readUTF()), in.readLong());
+      case RAW_CREATE_REQUEST:
+        return new RawBenchmarkCreateCommand.Request(in.readLong(),
+                BenchmarkOperations.valueOf(in.readUTF()), in.readLong());
+      case RAW_RESPONSE:
+        return new RawBenchmarkCommand.Response(BenchmarkOperations.valueOf(in.readUTF()),
+                in.readLong(), in.readLong(), in.readLong(), in.readDouble(), in.readInt(),
+                readHistogram(in), readTimeline(in));
+      case INTERLEAVED_REQUEST:
+        return new InterleavedBenchmarkCommand.Request(readConfig(in));
+      case INTERLEAVED_RESPONSE:
+        return readInterleavedResponse(in);
+      case SCENARIO_REQUEST:
+        return new ScenarioBenchmarkCommand.Request(readConfig(in), readStage(in));
+      case SCENARIO_RESPONSE: {
+        int size = in.readInt();
+        List<InterleavedBenchmarkCommand.Response> phases = new ArrayList<InterleavedBenchmarkCommand.Response>(size);
+        for (int i = 0; i < size; i++) {
+          phases.add(readInterleavedResponse(in));
+        }
+        return new ScenarioBenchmarkCommand.Response(phases);
+      }
+      case REPLAY_REQUEST:
+        return new ReplayBenchmarkCommand.Request(readConfig(in));
+      case BR_REQUEST:
+        return new BlockReportingBenchmarkCommand.Request();
+      case BR_RESPONSE:
+        return new BlockReportingBenchmarkCommand.Response(in.readInt(), in.readInt(),
+                in.readDouble(), in.readDouble(), in.readDouble(), in.readInt());
+      case CLOCK_SYNC_REQUEST:
+        return new ClockSync.Request();
+      case CLOCK_SYNC_RESPONSE:
+        return new ClockSync.Response(in.readLong());
+      case START_AT:
+        return new StartAt(in.readLong());
+      case PEER_FILES: {
+        long[] files = new long[in.readInt()];
+        for (int i = 0; i < files.length; i++) {
+          files[i] = in.readLong();
+        }
+        return new PeerFiles(files);
+      }
+      default:
+        throw new IOException("Unknown message type " + type);
+    }
+  }
+
+  private static void writeConfig(DataOutputStream out, BMConfiguration conf) throws IOException {
+    Properties props = conf.toProperties();
+    out.writeInt(props.size());
+    for (Map.Entry<Object, Object> entry : props.entrySet()) {
+      writeString(out, (String) entry.getKey());
+      writeString(out, (String) entry.getValue());
+    }
+  }
+
+  private static BMConfiguration readConfig(DataInputStream in) throws IOException {
+    Properties props = new Properties();
+    int size = in.readInt();
+    for (int i = 0; i < size; i++) {
+      props.setProperty(readString(in), readString(in));
+    }
+    return BMConfiguration.fromProperties(props);
+  }
+
+  private static void writeInterleavedResponse(DataOutputStream out, InterleavedBenchmarkCommand.Response response)
+          throws IOException {
+    out.writeLong(response.getRunTime());
+    out.writeLong(response.getTotalSuccessfulOps());
+    out.writeLong(response.getTotalFailedOps());
+    out.writeDouble(response.getOpsPerSec());
+    writeHistograms(out, response.getOpsExeTimes());
+    out.writeDouble(response.getAvgOpLatency());
+    writeStrings(out, response.getFailOverLog());
+    out.writeInt(response.getNnCount());
+    writeHistograms(out, response.getOpsResponseTimes());
+    writeTimeline(out, response.getTimeline());
+  }
+
+  private static InterleavedBenchmarkCommand.Response readInterleavedResponse(DataInputStream in) throws IOException {
+    return new InterleavedBenchmarkCommand.Response(in.readLong(), in.readLong(), in.readLong(),
+            in.readDouble(), readHistograms(in), in.readDouble(), readStrings(in), in.readInt(),
+            readHistograms(in), readTimeline(in));
+  }
+
+  private static void writeStage(DataOutputStream out, ScenarioStage stage) throws IOException {
+    writeString(out, stage.getName());
+    out.writeInt(stage.getPhases().size());
+    for (ScenarioPhase phase : stage.getPhases()) {
+      writeString(out, phase.getName());
+      out.writeInt(phase.getOps().length);
+      for (int i = 0; i < phase.getOps().length; i++) {
+        out.writeUTF(phase.getOps()[i].name());
+        writeString(out, phase.getWeights()[i].toString());
+      }
+      out.writeDouble(phase.getOpsPerSec());
+      out.writeInt(phase.getThreads());
+      out.writeLong(phase.getDelay());
+      out.writeLong(phase.getDuration());
+      out.writeLong(phase.getRampUp());
+      out.writeLong(phase.getRampDown());
+    }
+  }
+
+  private static ScenarioStage readStage(DataInputStream in) throws IOException {
+    String name = readString(in);
+    int size = in.readInt();
+    List<ScenarioPhase> phases = new ArrayList<ScenarioPhase>(size);
+    for (int i = 0; i < size; i++) {
+      String phaseName = readString(in);
+      int opCount = in.readInt();
+      BenchmarkOperations[] ops = new BenchmarkOperations[opCount];
+      BigDecimal[] weights = new BigDecimal[opCount];
+      for (int j = 0; j < opCount; j++) {
+        ops[j] = BenchmarkOperations.valueOf(in.readUTF());
+        weights[j] = new BigDecimal(readString(in));
+      }
+      phases.add(new ScenarioPhase(phaseName, ops, weights, in.readDouble(), in.readInt(), in.readLong(),
+              in.readLong(), in.readLong(), in.readLong()));
+    }
+    return new ScenarioStage(name, phases);
+  }
+
+  private static void writeHistogram(DataOutputStream out, LatencyHistogram histogram) throws IOException {
+    if (histogram == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] encoded = histogram.encode();
+    out.writeInt(encoded.length);
+    out.write(encoded);
+  }
+
+  private static LatencyHistogram readHistogram(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] encoded = new byte[length];
+    in.readFully(encoded);
+    return LatencyHistogram.decode(encoded);
+  }
+
+  private static void writeHistograms(DataOutputStream out, OperationHistograms histograms) throws IOException {
+    if (histograms == null) {
+      out.writeInt(-1);
+      return;
+    }
+    List<BenchmarkOperations> ops = histograms.getOperations();
+    out.writeInt(ops.size());
+    for (BenchmarkOperations op : ops) {
+      out.writeUTF(op.name());
+      writeHistogram(out, histograms.get(op));
+    }
+  }
+
+  private static OperationHistograms readHistograms(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    if (size < 0) {
+      return null;
+    }
+    OperationHistograms histograms = new OperationHistograms();
+    for (int i = 0; i < size; i++) {
+      histograms.add(BenchmarkOperations.valueOf(in.readUTF()), readHistogram(in));
+    }
+    return histograms;
+  }
+
+  private static void writeTimeline(DataOutputStream out, Timeline timeline) throws IOException {
+    if (timeline == null) {
+      out.writeInt(-1);
+      return;
+    }
+    int windows = timeline.getWindows();
+    out.writeInt(windows);
+    out.writeLong(timeline.getEpoch());
+    out.writeLong(timeline.getWindowMs());
+    for (int i = 0; i < windows; i++) {
+      out.writeLong(timeline.getSuccessful(i));
+      out.writeLong(timeline.getFailed(i));
+      writeHistogram(out, timeline.getLatencies(i));
+    }
+  }
+
+  private static Timeline readTimeline(DataInputStream in) throws IOException {
+    int windows = in.readInt();
+    if (windows < 0) {
+      return null;
+    }
+    Timeline timeline = new Timeline(in.readLong(), in.readLong());
+    for (int i = 0; i < windows; i++) {
+      timeline.add(i, in.readLong(), in.readLong(), readHistogram(in));
+    }
+    return timeline;
+  }
+
+  private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+    if (strings == null) {
+      out.writeInt(-1);
+      return;
+    }
+    out.writeInt(strings.size());
+    for (String string : strings) {
+      writeString(out, string);
+    }
+  }
+
+  private static List<String> readStrings(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    if (size < 0) {
+      return null;
+    }
+    List<String> strings = new ArrayList<String>(size);
+    for (int i = 0; i < size; i++) {
+      strings.add(readString(in));
+    }
+    return strings;
+  }
+
+  /**
+   * writeUTF is limited to 64 KB, long strings such as the file size
+   * distribution or the fail over log lines are sent as UTF-8 bytes
+   */
+  private static void writeString(DataOutputStream out, String string) throws IOException {
+    if (string == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = string.getBytes("UTF-8");
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, "UTF-8");
+  }
+}
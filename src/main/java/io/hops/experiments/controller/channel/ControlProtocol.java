@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.controller.channel;
+
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Protocol used between the master and the slaves.
+ *
+ * BINARY versioned binary messages, see BinaryControlChannel.
+ * JAVA   java serialized objects, see JavaObjectChannel.
+ *
+ * The master picks the protocol. The slaves detect it from the first bytes
+ * of the connection.
+ *
+ * @author salman
+ */
+public enum ControlProtocol {
+  BINARY,
+  JAVA;
+
+  // first bytes of a java serialization stream
+  private static final byte JAVA_STREAM_MAGIC_0 = (byte) 0xAC;
+  private static final byte JAVA_STREAM_MAGIC_1 = (byte) 0xED;
+
+  /**
+   * master side
+   */
+  public ControlChannel connect(InetAddress address, int port) throws IOException {
+    if (this == JAVA) {
+      Socket socket = new Socket(address, port);
+      return new JavaObjectChannel(socket, socket.getInputStream());
+    }
+    return BinaryControlChannel.open(SocketChannel.open(new InetSocketAddress(address, port)));
+  }
+
+  /**
+   * slave side
+   *
+   * @param channel a blocking channel accepted from the master
+   */
+  public static ControlChannel accept(SocketChannel channel) throws IOException {
+    ByteBuffer magic = ByteBuffer.allocate(BinaryControlChannel.MAGIC.length);
+    magic.limit(2);
+    readFully(channel, magic);
+    if (magic.get(0) == JAVA_STREAM_MAGIC_0 && magic.get(1) == JAVA_STREAM_MAGIC_1) {
+      PushbackInputStream in = new PushbackInputStream(channel.socket().getInputStream(), 2);
+      in.unread(magic.array(), 0, 2);
+      return new JavaObjectChannel(channel.socket(), in);
+    }
+
+    magic.limit(magic.capacity());
+    readFully(channel, magic);
+    for (int i = 0; i < magic.capacity(); i++) {
+      if (magic.get(i) != BinaryControlChannel.MAGIC[i]) {
+        channel.close();
+        throw new IOException("Unknown control protocol from " + channel.socket().getInetAddress());
+      }
+    }
+    return BinaryControlChannel.accept(channel);
+  }
+
+  private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        throw new IOException("Connection closed by " + channel.socket().getInetAddress());
+      }
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.controller.channel;
+
+import io.hops.experiments.benchmarks.common.config.ConfigKeys;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+
+/**
+ * The original protocol. Every message is a java serialized object in its
+ * own object stream, so the master and the slaves must run the same classes.
+ *
+ * @author salman
+ */
+public class JavaObjectChannel implements ControlChannel {
+
+  private final Socket socket;
+  private final InputStream in;
+
+  /**
+   * @param in the input stream of the socket, possibly with the bytes read
+   * by the protocol detection pushed back
+   */
+  JavaObjectChannel(Socket socket, InputStream in) throws IOException {
+    this.socket = socket;
+    this.in = in;
+    socket.setSendBufferSize(ConfigKeys.BUFFER_SIZE);
+    socket.setReceiveBufferSize(ConfigKeys.BUFFER_SIZE);
+  }
+
+  @Override
+  public void send(Object msg) throws IOException {
+    ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+    out.writeObject(msg);
+    out.flush();
+  }
+
+  @Override
+  public Object receive(int timeout) throws IOException {
+    socket.setSoTimeout(timeout == Integer.MAX_VALUE ? 0 : timeout);
+    try {
+      return new ObjectInputStream(in).readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IOException("Unknown message class: " + e.getMessage());
+    } finally {
+      socket.setSoTimeout(0);
+    }
+  }
+
+  @Override
+  public String getRemoteAddress() {
+    return String.valueOf(socket.getInetAddress());
+  }
+
+  @Override
+  public void close() throws IOException {
+    socket.close();
+  }
+}
@@ -0,0 +1,45 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.controller.commands;
+
+import java.io.Serializable;
+
+/**
+ * Measures the offset between the clocks of the master and a slave. The
+ * master sends a few requests and keeps the sample with the shortest round
+ * trip, offset = slaveTime - (sent + received) / 2.
+ *
+ * @author salman
+ */
+public class ClockSync implements Serializable {
+
+  public static class Request implements Serializable {
+  }
+
+  public static class Response implements Serializable {
+
+    private final long slaveTime;
+
+    public Response(long slaveTime) {
+      this.slaveTime = slaveTime;
+    }
+
+    public long getSlaveTime() {
+      return slaveTime;
+    }
+  }
+}
@@ -34,6 +34,7 @@ public class Handshake implements Serializable {
 
     BMConfiguration bmConf;
     private  int slaveId;
+    private  int numSlaves;
 
     public Request(BMConfiguration bmConf) {
       this.bmConf = bmConf;
@@ -50,6 +51,18 @@ public class Handshake implements Serializable {
     public void setSlaveId(int slaveId) {
       this.slaveId = slaveId;
     }
+
+    /**
+     * @return number of slaves taking part in the benchmark. the slave ids
+     * are 0 .. numSlaves - 1
+     */
+    public int getNumSlaves() {
+      return numSlaves;
+    }
+
+    public void setNumSlaves(int numSlaves) {
+      this.numSlaves = numSlaves;
+    }
   }
 
   public static class Response implements Serializable {
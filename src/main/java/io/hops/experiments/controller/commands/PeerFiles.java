@@ -0,0 +1,40 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.controller.commands;
+
+import java.io.Serializable;
+
+/**
+ * Sent after the warm up when the slaves share their namespace
+ * (file.pool.sharing=CLUSTER). files[s] is the number of files that slave s
+ * issued, so the slaves can read each other's files, see SharedNamespace.
+ * No response.
+ *
+ * @author salman
+ */
+public class PeerFiles implements Serializable {
+
+  private final long[] files;
+
+  public PeerFiles(long[] files) {
+    this.files = files;
+  }
+
+  public long[] getFiles() {
+    return files;
+  }
+}
@@ -0,0 +1,39 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.controller.commands;
+
+import java.io.Serializable;
+
+/**
+ * Sent right before a benchmark command. The slave sets up the phase and
+ * then holds its clients until startTime, so that the clients of all the
+ * slaves start together. The time is in the slave's clock. No response.
+ *
+ * @author salman
+ */
+public class StartAt implements Serializable {
+
+  private final long startTime;
+
+  public StartAt(long startTime) {
+    this.startTime = startTime;
+  }
+
+  public long getStartTime() {
+    return startTime;
+  }
+}
@@ -0,0 +1,555 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.fs;
+
+import io.hops.experiments.benchmarks.common.config.ConfigKeys;
+import io.hops.experiments.benchmarks.common.stats.LatencyHistogram;
+import io.hops.experiments.results.store.ResultStore;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.ParentNotDirectoryException;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PositionedReadable;
+import org.apache.hadoop.fs.Seekable;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.util.Progressable;
+
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A stand-in for the metadata servers that lives in the JVM of the slave.
+ * Used to measure how many ops the harness itself can push and to check the
+ * latency reporting end to end without a cluster, see
+ * benchmark.filesystem.name=InMemory.
+ *
+ * The namespace is a tree of concurrent maps shared by all the clients of
+ * the JVM. Files only keep their length, reads return zeros. Every op first
+ * waits for a latency drawn from the configured LatencyDistribution.
+ *
+ * Each slave has its own namespace, so with file.pool.sharing=CLUSTER the
+ * ops on the files of the other slaves fail with FileNotFoundException.
+ *
+ * @author salman
+ */
+public class InMemoryFileSystem extends FileSystem {
+
+  public static final String SCHEME = "inmem";
+
+  private static final Node ROOT = Node.newDir(new FsPermission((short) 0755));
+  private static final Map<String, LatencyHistogram> storeLatencies =
+          new HashMap<String, LatencyHistogram>();
+
+  private URI uri;
+  private Path workingDir = new Path("/");
+  private LatencyInjector latency =
+          new LatencyInjector(LatencyDistribution.NONE, 0, 0, null);
+
+  @Override
+  public void initialize(URI name, Configuration conf) throws IOException {
+    super.initialize(name, conf);
+    setConf(conf);
+    uri = URI.create(SCHEME + ":///");
+    LatencyDistribution distribution = LatencyDistribution.valueOf(conf.get(
+            ConfigKeys.INMEMORY_FS_LATENCY_KEY, ConfigKeys.INMEMORY_FS_LATENCY_DEFAULT));
+    LatencyHistogram histogram = null;
+    if (distribution == LatencyDistribution.HISTOGRAM) {
+      histogram = getStoreLatencies(
+              conf.get(ConfigKeys.INMEMORY_FS_LATENCY_STORE_KEY, ConfigKeys.INMEMORY_FS_LATENCY_STORE_DEFAULT),
+              conf.get(ConfigKeys.INMEMORY_FS_LATENCY_OP_KEY, ConfigKeys.INMEMORY_FS_LATENCY_OP_DEFAULT));
+    }
+    latency = new LatencyInjector(distribution,
+            conf.getLong(ConfigKeys.INMEMORY_FS_LATENCY_MEAN_KEY, ConfigKeys.INMEMORY_FS_LATENCY_MEAN_DEFAULT) * 1000,
+            conf.getDouble(ConfigKeys.INMEMORY_FS_LATENCY_SIGMA_KEY, ConfigKeys.INMEMORY_FS_LATENCY_SIGMA_DEFAULT),
+            histogram);
+  }
+
+  /**
+   * @return the latencies of the op in all the runs in the store. The
+   * histograms are read once per JVM
+   */
+  static synchronized LatencyHistogram getStoreLatencies(String storeDir, String op) throws IOException {
+    String key = storeDir + "#" + op;
+    LatencyHistogram histogram = storeLatencies.get(key);
+    if (histogram == null) {
+      if (storeDir.trim().isEmpty()) {
+        throw new IllegalArgumentException(ConfigKeys.INMEMORY_FS_LATENCY_STORE_KEY + " is not set");
+      }
+      ResultStore store = new ResultStore(storeDir.trim());
+      boolean[] matches = store.where(ResultStore.Column.OP, op);
+      byte[][] latencies = store.getBlobs(ResultStore.Column.LATENCIES);
+      histogram = new LatencyHistogram();
+      for (int i = 0; i < matches.length; i++) {
+        if (matches[i] && latencies[i] != null) {
+          histogram.addEncoded(latencies[i]);
+        }
+      }
+      if (histogram.getTotalCount() == 0) {
+        throw new IllegalArgumentException("No latencies of " + op + " in the result store " + storeDir);
+      }
+      storeLatencies.put(key, histogram);
+    }
+    return histogram;
+  }
+
+  @Override
+  public String getScheme() {
+    return SCHEME;
+  }
+
+  @Override
+  public URI getUri() {
+    return uri;
+  }
+
+  @Override
+  public FSDataInputStream open(Path f, int bufferSize) throws IOException {
+    latency.delay();
+    Node node = getFile(f);
+    return new FSDataInputStream(new NodeInputStream(node.length));
+  }
+
+  @Override
+  public FSDataOutputStream create(Path f, FsPermission permission, boolean overwrite,
+          int bufferSize, short replication, long blockSize, Progressable progress)
+          throws IOException {
+    latency.delay();
+    Path path = absolute(f);
+    if (path.getParent() == null) {
+      throw new FileAlreadyExistsException("/ is a directory");
+    }
+    Node parent = mkdirs(components(path.getParent()), permission);
+    String name = path.getName();
+    Node file = Node.newFile(permission, replication, blockSize);
+    Node existing = parent.children.get(name);
+    if (existing != null && (existing.isDir() || !overwrite)) {
+      throw new FileAlreadyExistsException(path + " already exists");
+    }
+    if (overwrite) {
+      parent.children.put(name, file);
+    } else if (parent.children.putIfAbsent(name, file) != null) {
+      throw new FileAlreadyExistsException(path + " already exists");
+    }
+    return new FSDataOutputStream(new NodeOutputStream(file), statistics);
+  }
+
+  @Override
+  public FSDataOutputStream append(Path f, int bufferSize, Progressable progress)
+          throws IOException {
+    latency.delay();
+    Node file = getFile(f);
+    return new FSDataOutputStream(new NodeOutputStream(file), statistics, file.length);
+  }
+
+  @Override
+  public boolean rename(Path src, Path dst) throws IOException {
+    latency.delay();
+    String[] from = components(absolute(src));
+    String[] to = components(absolute(dst));
+    if (from.length == 0 || isAncestor(from, to)) {
+      return false;
+    }
+    Node srcParent = lookup(from, from.length - 1);
+    if (srcParent == null || !srcParent.isDir()) {
+      return false;
+    }
+    String srcName = from[from.length - 1];
+    Node node = srcParent.children.get(srcName);
+    if (node == null) {
+      return false;
+    }
+
+    Node dstParent;
+    String dstName;
+    Node target = lookup(to, to.length);
+    if (target != null && target.isDir()) {
+      // moved into the dir
+      dstParent = target;
+      dstName = srcName;
+    } else if (target != null || to.length == 0) {
+      return false;
+    } else {
+      dstParent = lookup(to, to.length - 1);
+      dstName = to[to.length - 1];
+    }
+    if (dstParent == null || !dstParent.isDir()) {
+      return false;
+    }
+    if (dstParent.children.putIfAbsent(dstName, node) != null) {
+      return false;
+    }
+    if (!srcParent.children.remove(srcName, node)) {
+      // renamed or deleted by someone else in the mean time
+      dstParent.children.remove(dstName, node);
+      return false;
+    }
+    return true;
+  }
+
+  @Override
+  public boolean delete(Path f, boolean recursive) throws IOException {
+    latency.delay();
+    String[] names = components(absolute(f));
+    if (names.length == 0) {
+      return false;
+    }
+    Node parent = lookup(names, names.length - 1);
+    if (parent == null || !parent.isDir()) {
+      return false;
+    }
+    Node node = parent.children.get(names[names.length - 1]);
+    if (node == null) {
+      return false;
+    }
+    if (node.isDir() && !recursive && !node.children.isEmpty()) {
+      throw new IOException(f + " is a non empty directory");
+    }
+    return parent.children.remove(names[names.length - 1], node);
+  }
+
+  @Override
+  public FileStatus[] listStatus(Path f) throws IOException {
+    latency.delay();
+    Path path = absolute(f);
+    Node node = getNode(path);
+    if (!node.isDir()) {
+      return new FileStatus[]{node.getStatus(makeQualified(path))};
+    }
+    List<FileStatus> statuses = new ArrayList<FileStatus>(node.children.size());
+    for (Map.Entry<String, Node> child : node.children.entrySet()) {
+      statuses.add(child.getValue().getStatus(makeQualified(new Path(path, child.getKey()))));
+    }
+    return statuses.toArray(new FileStatus[statuses.size()]);
+  }
+
+  @Override
+  public void setWorkingDirectory(Path newDir) {
+    workingDir = absolute(newDir);
+  }
+
+  @Override
+  public Path getWorkingDirectory() {
+    return workingDir;
+  }
+
+  @Override
+  public boolean mkdirs(Path f, FsPermission permission) throws IOException {
+    latency.delay();
+    String[] names = components(absolute(f));
+    Node node = lookup(names);
+    if (node != null && !node.isDir()) {
+      throw new FileAlreadyExistsException(f + " is not a directory");
+    }
+    mkdirs(names, permission);
+    return true;
+  }
+
+  @Override
+  public FileStatus getFileStatus(Path f) throws IOException {
+    latency.delay();
+    Path path = absolute(f);
+    return getNode(path).getStatus(makeQualified(path));
+  }
+
+  @Override
+  public void setPermission(Path p, FsPermission permission) throws IOException {
+    latency.delay();
+    getNode(absolute(p)).permission = permission;
+  }
+
+  @Override
+  public void setOwner(Path p, String username, String groupname) throws IOException {
+    latency.delay();
+    Node node = getNode(absolute(p));
+    synchronized (node) {
+      if (username != null) {
+        node.owner = username;
+      }
+      if (groupname != null) {
+        node.group = groupname;
+      }
+    }
+  }
+
+  @Override
+  public boolean setReplication(Path src, short replication) throws IOException {
+    latency.delay();
+    Node node = lookup(components(absolute(src)));
+    if (node == null || node.isDir()) {
+      return false;
+    }
+    node.replication = replication;
+    return true;
+  }
+
+  private Path absolute(Path path) {
+    return path.isAbsolute() ? path : new Path(workingDir, path);
+  }
+
+  private Node getNode(Path path) throws FileNotFoundException {
+    Node node = lookup(components(path));
+    if (node == null) {
+      throw new FileNotFoundException("File does not exist: " + path);
+    }
+    return node;
+  }
+
+  private Node getFile(Path f) throws FileNotFoundException {
+    Path path = absolute(f);
+    Node node = getNode(path);
+    if (node.isDir()) {
+      throw new FileNotFoundException(path + " is a directory");
+    }
+    return node;
+  }
+
+  private static Node lookup(String[] names) {
+    return lookup(names, names.length);
+  }
+
+  /**
+   * @return the node of the first depth components of the path or null
+   */
+  private static Node lookup(String[] names, int depth) {
+    Node node = ROOT;
+    for (int i = 0; i < depth; i++) {
+      if (!node.isDir()) {
+        return null;
+      }
+      node = node.children.get(names[i]);
+      if (node == null) {
+        return null;
+      }
+    }
+    return node;
+  }
+
+  /**
+   * creates the missing dirs of the path
+   *
+   * @return the last dir
+   */
+  private static Node mkdirs(String[] names, FsPermission permission) throws IOException {
+    Node node = ROOT;
+    for (int i = 0; i < names.length; i++) {
+      Node child = node.children.get(names[i]);
+      if (child == null) {
+        child = Node.newDir(permission);
+        Node existing = node.children.putIfAbsent(names[i], child);
+        if (existing != null) {
+          child = existing;
+        }
+      }
+      if (!child.isDir()) {
+        throw new ParentNotDirectoryException(join(names, i + 1) + " is not a directory");
+      }
+      node = child;
+    }
+    return node;
+  }
+
+  private static boolean isAncestor(String[] ancestor, String[] path) {
+    return ancestor.length <= path.length
+            && Arrays.equals(ancestor, Arrays.copyOf(path, ancestor.length));
+  }
+
+  private static String[] components(Path path) {
+    String pathStr = path.toUri().getPath();
+    List<String> names = new ArrayList<String>();
+    int start = 0;
+    while (start < pathStr.length()) {
+      int end = pathStr.indexOf('/', start);
+      if (end < 0) {
+        end = pathStr.length();
+      }
+      if (end > start) {
+        names.add(pathStr.substring(start, end));
+      }
+      start = end + 1;
+    }
+    return names.toArray(new String[names.size()]);
+  }
+
+  private static String join(String[] names, int depth) {
+    StringBuilder path = new StringBuilder();
+    for (int i = 0; i < depth; i++) {
+      path.append('/').append(names[i]);
+    }
+    return path.toString();
+  }
+
+  private static class Node {
+    // null for files
+    final ConcurrentHashMap<String, Node> children;
+    volatile long length = 0;
+    volatile short replication;
+    final long blockSize;
+    volatile long modificationTime = System.currentTimeMillis();
+    volatile FsPermission permission;
+    volatile String owner = System.getProperty("user.name");
+    volatile String group = "supergroup";
+
+    private Node(boolean dir, FsPermission permission, short replication, long blockSize) {
+      this.children = dir ? new ConcurrentHashMap<String, Node>() : null;
+      this.permission = permission;
+      this.replication = replication;
+      this.blockSize = blockSize;
+    }
+
+    static Node newDir(FsPermission permission) {
+      return new Node(true, permission, (short) 0, 0);
+    }
+
+    static Node newFile(FsPermission permission, short replication, long blockSize) {
+      return new Node(false, permission, replication, blockSize);
+    }
+
+    boolean isDir() {
+      return children != null;
+    }
+
+    synchronized void append(long bytes) {
+      length += bytes;
+      modificationTime = System.currentTimeMillis();
+    }
+
+    synchronized FileStatus getStatus(Path path) {
+      return new FileStatus(length, isDir(), replication, blockSize, modificationTime,
+              modificationTime, permission, owner, group, path);
+    }
+  }
+
+  /**
+   * counts the bytes written to a file, the data is dropped
+   */
+  private static class NodeOutputStream extends OutputStream {
+    private final Node node;
+    private long written = 0;
+    private boolean closed = false;
+
+    NodeOutputStream(Node node) {
+      this.node = node;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      written++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      written += len;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!closed) {
+        closed = true;
+        node.append(written);
+      }
+    }
+  }
+
+  /**
+   * reads length zeros. FSDataInputStream only wraps streams that can seek
+   */
+  private static class NodeInputStream extends InputStream implements Seekable,
+          PositionedReadable {
+    private final long length;
+    private long position = 0;
+
+    NodeInputStream(long length) {
+      this.length = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (position >= length) {
+        return -1;
+      }
+      position++;
+      return 0;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = read(position, b, off, len);
+      if (read > 0) {
+        position += read;
+      }
+      return read;
+    }
+
+    @Override
+    public int read(long pos, byte[] buffer, int offset, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (pos >= length) {
+        return -1;
+      }
+      int read = (int) Math.min(len, length - pos);
+      Arrays.fill(buffer, offset, offset + read, (byte) 0);
+      return read;
+    }
+
+    @Override
+    public void readFully(long pos, byte[] buffer, int offset, int len) throws IOException {
+      if (pos + len > length) {
+        throw new EOFException("Reading past the end of the file");
+      }
+      Arrays.fill(buffer, offset, offset + len, (byte) 0);
+    }
+
+    @Override
+    public void readFully(long pos, byte[] buffer) throws IOException {
+      readFully(pos, buffer, 0, buffer.length);
+    }
+
+    @Override
+    public void seek(long pos) throws IOException {
+      if (pos < 0 || pos > length) {
+        throw new EOFException("Seeking outside the file. Pos: " + pos + " Length: " + length);
+      }
+      position = pos;
+    }
+
+    @Override
+    public long getPos() throws IOException {
+      return position;
+    }
+
+    @Override
+    public boolean seekToNewSource(long targetPos) throws IOException {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.fs;
+
+import io.hops.experiments.benchmarks.common.coin.SplitMix64Random;
+import io.hops.experiments.benchmarks.common.stats.LatencyHistogram;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delays the calling thread for a latency drawn from a LatencyDistribution.
+ * Shared by the threads, each thread draws from its own random.
+ *
+ * The last SPIN_NS of a delay are spun as a parked thread wakes up tens of
+ * microseconds late.
+ *
+ * @author salman
+ */
+public class LatencyInjector {
+
+  static final long SPIN_NS = 50 * 1000;
+  // resolution of the HISTOGRAM distribution
+  static final int QUANTILES = 10000;
+
+  private final LatencyDistribution distribution;
+  private final long meanNs;
+  private final double mu;
+  private final double sigma;
+  private final long[] quantiles;
+  private final ThreadLocal<SplitMix64Random> rand = new ThreadLocal<SplitMix64Random>() {
+    @Override
+    protected SplitMix64Random initialValue() {
+      return new SplitMix64Random();
+    }
+  };
+
+  /**
+   * @param meanNs mean latency of FIXED, EXPONENTIAL and LOGNORMAL
+   * @param sigma standard deviation of the log of the LOGNORMAL latencies
+   * @param histogram latencies in ns to sample for HISTOGRAM
+   */
+  public LatencyInjector(LatencyDistribution distribution, long meanNs, double sigma,
+          LatencyHistogram histogram) {
+    if (meanNs < 0) {
+      throw new IllegalArgumentException("Mean latency can not be negative. Got: " + meanNs);
+    }
+    if (sigma < 0) {
+      throw new IllegalArgumentException("Sigma can not be negative. Got: " + sigma);
+    }
+    this.distribution = distribution;
+    this.meanNs = meanNs;
+    this.sigma = sigma;
+    // E[X] = exp(mu + sigma^2 / 2)
+    this.mu = Math.log(Math.max(meanNs, 1)) - sigma * sigma / 2;
+    if (distribution == LatencyDistribution.HISTOGRAM) {
+      if (histogram == null || histogram.getTotalCount() == 0) {
+        throw new IllegalArgumentException("The latency histogram is empty");
+      }
+      double[] percentiles = new double[QUANTILES];
+      for (int i = 0; i < QUANTILES; i++) {
+        percentiles[i] = (i + 0.5) * 100.0 / QUANTILES;
+      }
+      this.quantiles = histogram.getValuesAtPercentiles(percentiles);
+    } else {
+      this.quantiles = null;
+    }
+  }
+
+  public LatencyDistribution getDistribution() {
+    return distribution;
+  }
+
+  /**
+   * @return the next latency in ns
+   */
+  public long nextLatency() {
+    switch (distribution) {
+      case FIXED:
+        return meanNs;
+      case EXPONENTIAL:
+        // 1 - nextDouble() is in (0, 1]
+        return (long) (-Math.log(1 - rand.get().nextDouble()) * meanNs);
+      case LOGNORMAL:
+        return (long) Math.exp(mu + sigma * nextGaussian(rand.get()));
+      case HISTOGRAM:
+        return quantiles[rand.get().nextInt(QUANTILES)];
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * blocks the calling thread for the next latency
+   */
+  public void delay() throws InterruptedIOException {
+    if (distribution == LatencyDistribution.NONE) {
+      return;
+    }
+    long latency = nextLatency();
+    if (latency <= 0) {
+      return;
+    }
+    long deadline = System.nanoTime() + latency;
+    long remaining = latency;
+    while (remaining > SPIN_NS) {
+      LockSupport.parkNanos(remaining - SPIN_NS);
+      if (Thread.currentThread().isInterrupted()) {
+        throw new InterruptedIOException("Interrupted while injecting latency");
+      }
+      remaining = deadline - System.nanoTime();
+    }
+    while (deadline - System.nanoTime() > 0) {
+      // spin
+    }
+  }
+
+  // Box-Muller
+  private static double nextGaussian(SplitMix64Random rand) {
+    // 1 - nextDouble() is in (0, 1]
+    double u1 = 1 - rand.nextDouble();
+    double u2 = rand.nextDouble();
+    return Math.sqrt(-2 * Math.log(u1)) * Math.cos(2 * Math.PI * u2);
+  }
+}
@@ -17,18 +17,20 @@
 package io.hops.experiments.results.compiler;
 
 import io.hops.experiments.utils.DFSOperationsUtils;
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 
 /**
+ * Running summaries of the results of one benchmark config. The values are
+ * not kept, so memory does not grow with the number of result files.
  *
  * @author salman
  */
 public abstract class Aggregate {
 
-  private DescriptiveStatistics speed = new DescriptiveStatistics();
-  private DescriptiveStatistics sucessfulOps = new DescriptiveStatistics();
-  private DescriptiveStatistics failedOps = new DescriptiveStatistics();
-  private DescriptiveStatistics runDuration = new DescriptiveStatistics();
+  private SummaryStatistics speed = new SummaryStatistics();
+  private SummaryStatistics sucessfulOps = new SummaryStatistics();
+  private SummaryStatistics failedOps = new SummaryStatistics();
+  private SummaryStatistics runDuration = new SummaryStatistics();
 
   public Aggregate() {
   }
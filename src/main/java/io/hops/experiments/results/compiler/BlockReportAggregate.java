@@ -16,15 +16,15 @@
  */
 package io.hops.experiments.results.compiler;
 
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 
 /**
  *
  * @author salman
  */
 public class BlockReportAggregate extends Aggregate {
-  private final DescriptiveStatistics avgTimePerReport = new DescriptiveStatistics();
-  private final DescriptiveStatistics avgTimeToGetNameNodeToReport = new DescriptiveStatistics();
+  private final SummaryStatistics avgTimePerReport = new SummaryStatistics();
+  private final SummaryStatistics avgTimeToGetNameNodeToReport = new SummaryStatistics();
   
   public void addAvgTimePerPreport(double val){
     avgTimePerReport.addValue(val);
@@ -4,19 +4,16 @@
  */
 package io.hops.experiments.results.compiler;
 
-import com.google.common.primitives.Doubles;
 import io.hops.experiments.benchmarks.common.BenchmarkOperations;
 import io.hops.experiments.benchmarks.interleaved.InterleavedBenchmarkCommand;
 import io.hops.experiments.benchmarks.common.config.ConfigKeys;
-import java.io.EOFException;
+import io.hops.experiments.benchmarks.common.stats.LatencyHistogram;
+import io.hops.experiments.benchmarks.common.stats.OperationHistograms;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -24,11 +21,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import org.apache.commons.math3.stat.descriptive.rank.Percentile;
 
 /**
  *
@@ -36,45 +28,37 @@ import org.apache.commons.math3.stat.descriptive.rank.Percentile;
  */
 public class CalculatePercentiles {
 
-  private ExecutorService executor;
   public static void main(String argv[]) throws FileNotFoundException, IOException, ClassNotFoundException, InterruptedException {
-    new CalculatePercentiles().doShit(argv[0], argv[1], argv[2], Integer.parseInt(argv[3]));
+    new CalculatePercentiles().doShit(argv[0], argv[1], argv[2]);
   }
   
-  private void doShit(String src, String dst, String prefix, int noOfThreads) throws FileNotFoundException, IOException, ClassNotFoundException, InterruptedException {
-    this.executor = Executors.newFixedThreadPool(noOfThreads);
+  private void doShit(String src, String dst, String prefix) throws FileNotFoundException, IOException, ClassNotFoundException, InterruptedException {
     List<File> files = CompileResults.findFiles(src, ConfigKeys.RAW_RESPONSE_FILE_EXT);
-    List<InterleavedBenchmarkCommand.Response> responses = new ArrayList<InterleavedBenchmarkCommand.Response>();
-    
-    for (File file : files) {
-      FileInputStream fin = new FileInputStream(file);
-      ObjectInputStream ois = new ObjectInputStream(fin);
-      Object obj = null;
-      try {
-        while ((obj = ois.readObject()) != null) {
+
+    //merge the histograms of all the slaves as the files are read
+    final OperationHistograms allOpsExecutionTimes = new OperationHistograms();
+    CompileResults.readFiles(files, Runtime.getRuntime().availableProcessors(),
+            new CompileResults.ResultFileHandler() {
+      @Override
+      public void process(File file, List<Object> objects) {
+        for (Object obj : objects) {
           if (!(obj instanceof InterleavedBenchmarkCommand.Response)) {
             System.out.println("Wrong binary file " + file);
             System.exit(0);
           } else {
             InterleavedBenchmarkCommand.Response response = (InterleavedBenchmarkCommand.Response) obj;
-            responses.add(response);
+            allOpsExecutionTimes.add(response.getOpsExeTimes());
             System.out.println("No of Records "+response.getTotalSuccessfulOps());
           }
         }
-      } catch (EOFException e) {
-      } finally {
-        ois.close();
       }
-      
-      
-      
-    }
+    });
     System.out.println("Starting to process raw data ");
-    processResponses(responses, dst , prefix );
+    processHistograms(allOpsExecutionTimes, dst , prefix );
     System.exit(0);
   }
 
-  private void processResponses(List<InterleavedBenchmarkCommand.Response> responses, String path, String workloadName) throws IOException, InterruptedException {
+  private void processHistograms(OperationHistograms allOpsExecutionTimes, String path, String workloadName) throws IOException {
     Map<BenchmarkOperations, Map<Double,Double>> allOpsPercentiles = new HashMap<BenchmarkOperations, Map<Double,Double>>();
     Set<BenchmarkOperations> toProcess = new HashSet<BenchmarkOperations>();
     toProcess.add(BenchmarkOperations.CREATE_FILE);
@@ -84,83 +68,25 @@ public class CalculatePercentiles {
     toProcess.add(BenchmarkOperations.DIR_INFO);
     toProcess.add(BenchmarkOperations.FILE_INFO);
 
-    //gather data for calculating percentiles
-    Map<BenchmarkOperations, ArrayList<Long>> allOpsExecutionTimesList = new HashMap<BenchmarkOperations, ArrayList<Long>>();
-    for (Object obj : responses) {
-      InterleavedBenchmarkCommand.Response response = (InterleavedBenchmarkCommand.Response) obj;
-      HashMap<BenchmarkOperations, ArrayList<Long>> opsExeTimes = response.getOpsExeTimes();
-      for (BenchmarkOperations opType : opsExeTimes.keySet()) {
-        if (toProcess.contains(opType)) {
-          ArrayList<Long> opExeTimesFromSlave = opsExeTimes.get(opType);
-          ArrayList<Long> opAllExeTimes = allOpsExecutionTimesList.get(opType);
-          if (opAllExeTimes == null) {
-            opAllExeTimes = new ArrayList<Long>();
-            allOpsExecutionTimesList.put(opType, opAllExeTimes);
-          }
-          opAllExeTimes.addAll(opExeTimesFromSlave);
-        }
-      }
-    }
-
-    
-    for (BenchmarkOperations opType : allOpsExecutionTimesList.keySet()) {
+    NumberFormat formatter = new DecimalFormat("#0.0");
+    for (BenchmarkOperations opType : allOpsExecutionTimes.getOperations()) {
       if (toProcess.contains(opType)) {
         System.out.println("\n\nProcessing ...  " + opType);
-        ArrayList<Long> opAllExeTimes = allOpsExecutionTimesList.get(opType);
-        double[] toDouble = Doubles.toArray(opAllExeTimes);
-        List workers = new ArrayList<CalcPercentiles>();
-        Map<Double,Double> percentileMap = new ConcurrentHashMap<Double,Double>();
-
-        for (double percen = 10; percen <= 90.0; percen += 10) {
-          workers.add(new CalcPercentiles(percentileMap, toDouble, percen));
+        LatencyHistogram histogram = allOpsExecutionTimes.get(opType);
+        Map<Double,Double> percentileMap = new HashMap<Double,Double>();
+        long[] values = histogram.getValuesAtPercentiles(LatencyHistogram.REPORTED_PERCENTILES);
+        for (int i = 0; i < values.length; i++) {
+          double point = LatencyHistogram.REPORTED_PERCENTILES[i];
+          double value = values[i];
+          percentileMap.put(point, value);
+          System.out.println(" Percentile " + formatter.format(point) + " Value: " + formatter.format(value)+" ns "+formatter.format(value/1000000.0)+" ms ");
         }
-
-        for (double percen = 91; percen <= 99; percen += 1) {
-          workers.add(new CalcPercentiles(percentileMap, toDouble, percen));
-        }
-
-        workers.add(new CalcPercentiles(percentileMap, toDouble, 99));
-
-        for (double percen = 99.1; percen <= 100.0; percen += 0.1) {
-          workers.add(new CalcPercentiles(percentileMap, toDouble, percen));
-        }
-
-        executor.invokeAll(workers); //block untill all points are calculated
-
         allOpsPercentiles.put(opType, percentileMap);
-
       }
     }
     generatePercentileGraphs(allOpsPercentiles, path, workloadName);
   }
-  
-   protected class CalcPercentiles implements Callable {
-
-    final double[] data;
-    final double point;
-    final  Map<Double,Double> values;
-    CalcPercentiles(Map<Double,Double> values, double[] data, double point){
-      this.data = data;
-      this.point = point;
-      this.values= values;
-    }
-    
-    @Override
-    public Object call() throws Exception {
-      Percentile p = new Percentile();
-       double value = p.evaluate(data, point);
-       if(values.get(point) == null){
-         values.put(point, value);
-         NumberFormat formatter = new DecimalFormat("#0.0");
-         System.out.println(" Percentile " + formatter.format(point) + " Value: " + formatter.format(value)+" ns "+formatter.format(value/1000000.0)+" ms ");
-       }else{
-         throw new IllegalStateException("Dont calculate same data point twice");
-       }
-       return null;
-    }
-   }
 
-  
    private void generatePercentileGraphs(Map<BenchmarkOperations, Map<Double,Double>> allOpsPercentiles, String baseDir, String filesPrefix) throws IOException {
     String gnuplotFilePath = baseDir + "/" + filesPrefix + "-" + "percentiles.gnuplot";
 
@@ -18,13 +18,16 @@ package io.hops.experiments.results.compiler;
 
 import io.hops.experiments.benchmarks.common.config.ConfigKeys;
 import io.hops.experiments.benchmarks.common.BMResult;
+import io.hops.experiments.benchmarks.common.BenchMarkFileSystemName;
 import io.hops.experiments.benchmarks.blockreporting.BlockReportBMResults;
 import io.hops.experiments.benchmarks.interleaved.InterleavedBMResults;
 import io.hops.experiments.benchmarks.rawthroughput.RawBMResults;
 import io.hops.experiments.results.compiler.RawBMResultAggregator.CompiledResults;
+import io.hops.experiments.results.store.ResultStore;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
 
+import java.io.BufferedInputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
@@ -32,8 +35,15 @@ import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  *
@@ -52,7 +62,13 @@ public class CompileResults {
   @Option(name = "-force", usage = "Also take in to account failed experiments")
   private static boolean force = false;
 
-  public static void main(String argv[]) throws FileNotFoundException, IOException, ClassNotFoundException {
+  @Option(name = "-store", usage = "Location of a result store. Its raw and interleaved runs are compiled along with the result files")
+  private static String storeDir = null;
+
+  @Option(name = "-threads", usage = "Number of result files read in parallel")
+  private static int threads = Runtime.getRuntime().availableProcessors();
+
+  public static void main(String argv[]) throws FileNotFoundException, IOException, ClassNotFoundException, InterruptedException {
     new CompileResults().doShit(argv);
   }
 
@@ -71,7 +87,8 @@ public class CompileResults {
 
 
   }
-  private void doShit(String[] argv) throws FileNotFoundException, IOException, ClassNotFoundException {
+  private void doShit(String[] argv) throws FileNotFoundException, IOException, ClassNotFoundException,
+          InterruptedException {
     parseArgs(argv);
 
     File dir = new File(outputDir );
@@ -94,6 +111,14 @@ public class CompileResults {
     parseFiles(hdfsResulsFiles, hdfsRawAggregatredResults, hdfsInterleavedAggregatedResults, hdfsBlockReportAggregatedResults);
     System.out.println("Processing Hops Files");
     parseFiles(hopsResulsFiles, hopsRawAggregatredResults, hopsInterleavedAggregatedResults, hopsBlockReportAggregatedResults);
+    if (storeDir != null) {
+      ResultStore store = new ResultStore(storeDir);
+      System.out.println("Processing the result store " + storeDir + " with " + store.getRows() + " rows");
+      hdfsRawAggregatredResults.processStore(store, BenchMarkFileSystemName.HDFS.toString(), force);
+      hdfsInterleavedAggregatedResults.processStore(store, BenchMarkFileSystemName.HDFS.toString(), force);
+      hopsRawAggregatredResults.processStore(store, BenchMarkFileSystemName.HopsFS.toString(), force);
+      hopsInterleavedAggregatedResults.processStore(store, BenchMarkFileSystemName.HopsFS.toString(), force);
+    }
     generateOutputFiles(hdfsRawAggregatredResults, hdfsInterleavedAggregatedResults, hdfsBlockReportAggregatedResults,
             hopsRawAggregatredResults, hopsInterleavedAggregatedResults, hopsBlockReportAggregatedResults, outputDir);
   }
@@ -106,10 +131,10 @@ public class CompileResults {
       return allResultFiles;
     }
 
-    List<File> dirs = new ArrayList<File>();
+    Deque<File> dirs = new ArrayDeque<File>();
     dirs.add(root);
     while (!dirs.isEmpty()) {
-      File dir = dirs.remove(0);
+      File dir = dirs.poll();
 
       File[] contents = dir.listFiles();
       if (contents != null && contents.length > 0) {
@@ -129,62 +154,106 @@ public class CompileResults {
     return allResultFiles;
   }
 
-  private void parseFiles(List<File> files, RawBMResultAggregator rawAggregatredResults,
-          InterleavedBMResultsAggregator interleavedAggregatedResults,
-          BlockReportBMResultsAggregator blockReportAggregatedResults)
-          throws FileNotFoundException, IOException, ClassNotFoundException {
-    for (File file : files) {
-      System.out.println("Processing File " + file);
-      parsetFile(file, rawAggregatredResults, interleavedAggregatedResults, blockReportAggregatedResults);
-    }
+  private void parseFiles(List<File> files, final RawBMResultAggregator rawAggregatredResults,
+          final InterleavedBMResultsAggregator interleavedAggregatedResults,
+          final BlockReportBMResultsAggregator blockReportAggregatedResults)
+          throws IOException, ClassNotFoundException, InterruptedException {
+    readFiles(files, threads, new ResultFileHandler() {
+      @Override
+      public void process(File file, List<Object> objects) {
+        System.out.println("Processing File " + file);
+        processFile(file, objects, rawAggregatredResults, interleavedAggregatedResults,
+                blockReportAggregatedResults);
+      }
+    });
   }
 
-  private void parsetFile(File file,
-          RawBMResultAggregator rawAggregatredResults,
-          InterleavedBMResultsAggregator interleavedAggregatedResults,
-          BlockReportBMResultsAggregator blockReportAggregatedResults)
-          throws FileNotFoundException, IOException, ClassNotFoundException {
-    FileInputStream fin = new FileInputStream(file);
-    ObjectInputStream ois = new ObjectInputStream(fin);
+  /**
+   * Gets the objects of one result file. Called in the order of the files.
+   */
+  interface ResultFileHandler {
+    void process(File file, List<Object> objects) throws IOException;
+  }
 
-    Object obj = null;
+  /**
+   * Deserializes the files in parallel. A few files are read ahead of the
+   * handler, so only the files in flight are held in memory. The handler
+   * runs on the calling thread.
+   */
+  static void readFiles(List<File> files, int threads, ResultFileHandler handler)
+          throws IOException, ClassNotFoundException, InterruptedException {
+    ExecutorService readers = Executors.newFixedThreadPool(Math.max(1, threads));
     try {
-      while ((obj = ois.readObject()) != null) {
-        if (!(obj instanceof BMResult)) {
-          System.out.println("Wrong binary file " + file);
-          System.exit(0);
-        } else {
-          if(!validateResult((BMResult) obj, rawAggregatredResults, interleavedAggregatedResults, blockReportAggregatedResults)){
-            System.err.println(file+" Contains Invalid/Inconsistant results");
-           if(!force) {
-             System.err.println(file+" Will be ignored. ");
-             return;
-           }
-          }
+      Deque<Future<List<Object>>> inFlight = new ArrayDeque<Future<List<Object>>>();
+      int next = 0;
+      for (int i = 0; i < files.size(); i++) {
+        while (next < files.size() && inFlight.size() < 2 * Math.max(1, threads)) {
+          final File file = files.get(next++);
+          inFlight.add(readers.submit(new Callable<List<Object>>() {
+            @Override
+            public List<Object> call() throws IOException, ClassNotFoundException {
+              return readObjects(file);
+            }
+          }));
         }
+        handler.process(files.get(i), waitFor(inFlight.poll()));
       }
-    } catch (EOFException e) {
+    } finally {
+      readers.shutdownNow();
     }
+  }
 
-    //go the begenning of the file.
-    ois.close();
-    fin.close();
-    fin = new FileInputStream(file);
-    ois = new ObjectInputStream(fin);
+  private static List<Object> waitFor(Future<List<Object>> future)
+          throws IOException, ClassNotFoundException, InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      } else if (e.getCause() instanceof ClassNotFoundException) {
+        throw (ClassNotFoundException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
 
+  static List<Object> readObjects(File file) throws IOException, ClassNotFoundException {
+    List<Object> objects = new ArrayList<Object>();
+    ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
     try {
+      Object obj;
       while ((obj = ois.readObject()) != null) {
-        if (!(obj instanceof BMResult)) {
-          System.out.println("Wrong binary file " + file);
-          System.exit(0);
-        } else {
-          processResult((BMResult) obj, rawAggregatredResults, interleavedAggregatedResults, blockReportAggregatedResults);
-        }
+        objects.add(obj);
       }
     } catch (EOFException e) {
+    } finally {
+      ois.close();
+    }
+    return objects;
+  }
+
+  private void processFile(File file, List<Object> objects,
+          RawBMResultAggregator rawAggregatredResults,
+          InterleavedBMResultsAggregator interleavedAggregatedResults,
+          BlockReportBMResultsAggregator blockReportAggregatedResults) {
+    for (Object obj : objects) {
+      if (!(obj instanceof BMResult)) {
+        System.out.println("Wrong binary file " + file);
+        System.exit(0);
+      } else {
+        if(!validateResult((BMResult) obj, rawAggregatredResults, interleavedAggregatedResults, blockReportAggregatedResults)){
+          System.err.println(file+" Contains Invalid/Inconsistant results");
+         if(!force) {
+           System.err.println(file+" Will be ignored. ");
+           return;
+         }
+        }
+      }
+    }
+
+    for (Object obj : objects) {
+      processResult((BMResult) obj, rawAggregatredResults, interleavedAggregatedResults, blockReportAggregatedResults);
     }
-    ois.close();
-    fin.close();
   }
 
   private  boolean validateResult(BMResult result,
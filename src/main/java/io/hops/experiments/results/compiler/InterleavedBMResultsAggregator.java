@@ -18,10 +18,14 @@ package io.hops.experiments.results.compiler;
 
 import io.hops.experiments.benchmarks.common.BMResult;
 import io.hops.experiments.benchmarks.common.BenchmarkOperations;
+import io.hops.experiments.benchmarks.common.BenchmarkType;
 import io.hops.experiments.benchmarks.interleaved.InterleavedBMResults;
 import io.hops.experiments.benchmarks.interleaved.InterleavedBenchmarkCommand;
 import io.hops.experiments.benchmarks.common.config.ConfigKeys;
 import io.hops.experiments.benchmarks.common.config.BMConfiguration;
+import io.hops.experiments.benchmarks.common.stats.LatencyHistogram;
+import io.hops.experiments.benchmarks.common.stats.OperationHistograms;
+import io.hops.experiments.results.store.ResultStore;
 
 import java.io.*;
 import java.util.*;
@@ -41,41 +45,79 @@ public class InterleavedBMResultsAggregator extends Aggregator {
   public void processRecord(BMResult result) {
     //System.out.println(result);
     InterleavedBMResults ilResult = (InterleavedBMResults) result;
-    if(ilResult.getSpeed()<=0){
+    add(ilResult.getWorkloadName(), ilResult.getNoOfExpectedAliveNNs(), ilResult.getSpeed(),
+            ilResult.getFailedOps(), ilResult.getSuccessfulOps(), ilResult.getDuration());
+  }
+
+  private void add(String workloadName, int expectedNNs, double speed, double failedOps,
+          double successfulOps, double duration) {
+    if(speed<=0){
       return;
     }
 
-    String workloadName = ilResult.getWorkloadName();
     Map<Integer, InterleavedAggregate> workloadResults = allWorkloadsResults.get(workloadName);
     if (workloadResults == null) {
       workloadResults = new HashMap<Integer, InterleavedAggregate>();
       allWorkloadsResults.put(workloadName, workloadResults);
     }
 
-    InterleavedAggregate agg = workloadResults.get(ilResult.getNoOfExpectedAliveNNs());
+    InterleavedAggregate agg = workloadResults.get(expectedNNs);
 
     if (agg == null) {
       agg = new InterleavedAggregate();
-      workloadResults.put(ilResult.getNoOfExpectedAliveNNs(), agg);
+      workloadResults.put(expectedNNs, agg);
     }
 
-    agg.addSpeed(ilResult.getSpeed());
-    agg.addFailedOps(ilResult.getFailedOps());
-    agg.addSucessfulOps(ilResult.getSuccessfulOps());
-    agg.addRunDuration(ilResult.getDuration());
+    agg.addSpeed(speed);
+    agg.addFailedOps(failedOps);
+    agg.addSucessfulOps(successfulOps);
+    agg.addRunDuration(duration);
   }
 
   @Override
   public boolean validate(BMResult result) {
     InterleavedBMResults ilResult = (InterleavedBMResults) result;
-    if (ilResult.getSpeed() > 0 && ilResult.getNoOfAcutallAliveNNs() == ilResult.getNoOfExpectedAliveNNs()) {
+    return validate(ilResult.getSpeed(), ilResult.getNoOfExpectedAliveNNs(), ilResult.getNoOfAcutallAliveNNs());
+  }
+
+  private boolean validate(double speed, long expectedNNs, long aliveNNs) {
+    if (speed > 0 && aliveNNs == expectedNNs) {
       return true;
     }
-    System.err.println("Inconsistent/Wrong results.  Speed: "+ilResult.getSpeed()+
-        " Expected NNs: "+ilResult.getNoOfExpectedAliveNNs()+" Actual NNs: "+ilResult.getNoOfAcutallAliveNNs());
+    System.err.println("Inconsistent/Wrong results.  Speed: "+speed+
+        " Expected NNs: "+expectedNNs+" Actual NNs: "+aliveNNs);
     return false;
   }
 
+  /**
+   * Adds the interleaved, replay and scenario runs of a file system from a result
+   * store, using the rows that sum up the phases. Invalid runs are ignored
+   * unless force is set.
+   */
+  public void processStore(ResultStore store, String fileSystem, boolean force) throws IOException {
+    boolean[] interleaved = store.where(ResultStore.Column.BENCHMARK,
+            BenchmarkType.INTERLEAVED.toString(), BenchmarkType.REPLAY.toString(),
+            BenchmarkType.SCENARIO.toString());
+    boolean[] fs = store.where(ResultStore.Column.FILE_SYSTEM, fileSystem);
+    boolean[] all = store.where(ResultStore.Column.OP, ResultStore.ALL_OPS);
+    String[] workloads = store.getStrings(ResultStore.Column.PHASE);
+    long[] expectedNNs = store.getLongs(ResultStore.Column.EXPECTED_NNS);
+    long[] aliveNNs = store.getLongs(ResultStore.Column.ALIVE_NNS);
+    double[] speed = store.getDoubles(ResultStore.Column.SPEED);
+    double[] failedOps = store.getDoubles(ResultStore.Column.FAILED_OPS);
+    double[] successfulOps = store.getDoubles(ResultStore.Column.SUCCESSFUL_OPS);
+    double[] duration = store.getDoubles(ResultStore.Column.DURATION);
+
+    for (int i = 0; i < workloads.length; i++) {
+      if (interleaved[i] && fs[i] && all[i]) {
+        if (!validate(speed[i], expectedNNs[i], aliveNNs[i]) && !force) {
+          continue;
+        }
+        add(workloads[i], (int) expectedNNs[i], speed[i], failedOps[i], successfulOps[i], duration[i]);
+      }
+    }
+  }
+
   public Map<String, Map<Integer, InterleavedAggregate>> getResults() {
     return allWorkloadsResults;
   }
@@ -134,14 +176,24 @@ public class InterleavedBMResultsAggregator extends Aggregator {
   }
 
   public static InterleavedBMResults processInterleavedResults(Collection<Object> responses, BMConfiguration args) throws FileNotFoundException, IOException, InterruptedException {
-    Map<BenchmarkOperations, double[][]> allOpsPercentiles = new HashMap<BenchmarkOperations, double[][]>();
+    return processInterleavedResults(responses, args, args.getInterleavedBmWorkloadName());
+  }
+
+  /**
+   * also used for the replay benchmark, whose slaves reply with interleaved responses
+   */
+  public static InterleavedBMResults processInterleavedResults(Collection<Object> responses, BMConfiguration args,
+          String workloadName) throws FileNotFoundException, IOException, InterruptedException {
     System.out.println("Processing the results ");
     DescriptiveStatistics successfulOps = new DescriptiveStatistics();
     DescriptiveStatistics failedOps = new DescriptiveStatistics();
     DescriptiveStatistics speed = new DescriptiveStatistics();
     DescriptiveStatistics duration = new DescriptiveStatistics();
-    DescriptiveStatistics opsLatency = new DescriptiveStatistics();
+    OperationHistograms opsLatency = new OperationHistograms();
+    OperationHistograms opsResponseTime = new OperationHistograms();
     DescriptiveStatistics noOfNNs = new DescriptiveStatistics();
+    // without generate.percentiles the histograms are empty
+    double exeTimeSum = 0;
     for (Object obj : responses) {
       if (!(obj instanceof InterleavedBenchmarkCommand.Response)) {
         throw new IllegalStateException("Wrong response received from the client");
@@ -151,7 +203,9 @@ public class InterleavedBMResultsAggregator extends Aggregator {
         failedOps.addValue(response.getTotalFailedOps());
         speed.addValue(response.getOpsPerSec());
         duration.addValue(response.getRunTime());
-        opsLatency.addValue(response.getAvgOpLatency());
+        opsLatency.add(response.getOpsExeTimes());
+        exeTimeSum += response.getAvgOpLatency() * response.getTotalSuccessfulOps();
+        opsResponseTime.add(response.getOpsResponseTimes());
         noOfNNs.addValue(response.getNnCount());
       }
     }
@@ -171,28 +225,22 @@ public class InterleavedBMResultsAggregator extends Aggregator {
         ObjectOutputStream oos = new ObjectOutputStream(fout);
         oos.writeObject(response);
         oos.close();
-
-
-        System.out.println("Writing CSV results ");
-        HashMap<BenchmarkOperations, ArrayList<Long>> times = response.getOpsExeTimes();
-        for(BenchmarkOperations op : times.keySet()){
-          filePath=args.getResultsDir();
-          filePath+=op.toString()+".txt";
-          FileWriter out = new FileWriter(filePath, true);
-          for(Long time : times.get(op)){
-            out.write(((double)time/1000000.0)+"\n");
-          }
-          out.close();
-
-        }
       }
     }
 
+    System.out.println("Writing CSV results ");
+    // service time
+    Map<BenchmarkOperations, double[][]> allOpsPercentiles = writePercentiles(opsLatency, args.getResultsDir(), ".txt");
+    // response time, i.e. service time + the time an op was behind the schedule
+    Map<BenchmarkOperations, double[][]> allOpsResponseTimePercentiles = writePercentiles(opsResponseTime, args.getResultsDir(), "-response-time.txt");
+
     InterleavedBMResults result = new InterleavedBMResults(args.getNamenodeCount(),
             (int)Math.floor(noOfNNs.getMean()),
-            args.getNdbNodesCount(), args.getInterleavedBmWorkloadName(),
+            args.getNdbNodesCount(), workloadName,
             (successfulOps.getSum() / ((duration.getMean() / 1000))), (duration.getMean() / 1000),
-            (successfulOps.getSum()), (failedOps.getSum()), allOpsPercentiles, opsLatency.getMean());
+            (successfulOps.getSum()), (failedOps.getSum()), allOpsPercentiles,
+            successfulOps.getSum() > 0 ? exeTimeSum / successfulOps.getSum() : 0,
+            allOpsResponseTimePercentiles, opsResponseTime.getCombined().getMean());
 
 
 //    // failover testing
@@ -250,5 +298,24 @@ public class InterleavedBMResultsAggregator extends Aggregator {
     return result;
   }
 
- 
+  private static Map<BenchmarkOperations, double[][]> writePercentiles(OperationHistograms histograms,
+          String resultsDir, String fileSuffix) throws IOException {
+    Map<BenchmarkOperations, double[][]> allOpsPercentiles = new HashMap<BenchmarkOperations, double[][]>();
+    for (BenchmarkOperations op : histograms.getOperations()) {
+      LatencyHistogram histogram = histograms.get(op);
+      double[][] percentiles = new double[LatencyHistogram.REPORTED_PERCENTILES.length][2];
+      String filePath = resultsDir + op.toString() + fileSuffix;
+      long[] values = histogram.getValuesAtPercentiles(LatencyHistogram.REPORTED_PERCENTILES);
+      FileWriter out = new FileWriter(filePath, false);
+      for (int i = 0; i < percentiles.length; i++) {
+        double percentile = LatencyHistogram.REPORTED_PERCENTILES[i];
+        percentiles[i][0] = percentile;
+        percentiles[i][1] = values[i];
+        out.write(percentile + "," + (percentiles[i][1] / 1000000.0) + "\n");
+      }
+      out.close();
+      allOpsPercentiles.put(op, percentiles);
+    }
+    return allOpsPercentiles;
+  }
 }
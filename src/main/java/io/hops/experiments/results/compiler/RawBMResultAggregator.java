@@ -18,17 +18,22 @@ package io.hops.experiments.results.compiler;
 
 import io.hops.experiments.benchmarks.common.BMResult;
 import io.hops.experiments.benchmarks.common.BenchmarkOperations;
+import io.hops.experiments.benchmarks.common.BenchmarkType;
 import io.hops.experiments.benchmarks.rawthroughput.RawBMResults;
 import io.hops.experiments.benchmarks.rawthroughput.RawBenchmarkCommand;
 import io.hops.experiments.benchmarks.common.config.BMConfiguration;
+import io.hops.experiments.benchmarks.common.stats.LatencyHistogram;
+import io.hops.experiments.results.store.ResultStore;
 import io.hops.experiments.utils.DFSOperationsUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -51,41 +56,86 @@ public class RawBMResultAggregator extends Aggregator{
   @Override
   public void processRecord(BMResult result) {
     RawBMResults rResults = (RawBMResults)result;
-    if(rResults.getSpeed()<=0){
+    add(rResults.getNoOfExpectedAliveNNs(), rResults.getOperationType(), rResults.getSpeed(),
+            rResults.getFailedOps(), rResults.getSuccessfulOps(), rResults.getDuration());
+  }
+
+  private void add(int expectedNNs, BenchmarkOperations op, double speed, double failedOps,
+          double successfulOps, double duration) {
+    if(speed<=0){
       return;
     }
 
-    Map<BenchmarkOperations, RawAggregate> map = allResults.get(rResults.getNoOfExpectedAliveNNs());
+    Map<BenchmarkOperations, RawAggregate> map = allResults.get(expectedNNs);
 
     if (map == null) {
       map = new HashMap<BenchmarkOperations, RawAggregate>();
-      allResults.put(rResults.getNoOfExpectedAliveNNs(), map);
+      allResults.put(expectedNNs, map);
     }
 
-    RawAggregate agg = map.get(rResults.getOperationType());
+    RawAggregate agg = map.get(op);
     if (agg == null) {
       agg = new RawAggregate();
-      map.put(rResults.getOperationType(), agg);
+      map.put(op, agg);
     }
 
-    agg.addSpeed(rResults.getSpeed());
-    agg.addFailedOps(rResults.getFailedOps());
-    agg.addSucessfulOps(rResults.getSuccessfulOps());
-    agg.addRunDuration(rResults.getDuration());
+    agg.addSpeed(speed);
+    agg.addFailedOps(failedOps);
+    agg.addSucessfulOps(successfulOps);
+    agg.addRunDuration(duration);
   }
 
   @Override
   public boolean validate(BMResult result) {
     RawBMResults rResults = (RawBMResults)result;
-    if(rResults.getSpeed() > 0 && rResults.getNoOfExpectedAliveNNs() == rResults.getNoOfAcutallAliveNNs()){
+    return validate(rResults.getOperationType(), rResults.getSpeed(),
+            rResults.getNoOfExpectedAliveNNs(), rResults.getNoOfAcutallAliveNNs());
+  }
+
+  private boolean validate(BenchmarkOperations op, double speed, long expectedNNs, long aliveNNs) {
+    if(speed > 0 && expectedNNs == aliveNNs){
       return true;
     }
 
-    System.err.println("Inconsistent/Wrong results. "+rResults.getOperationType()+" Speed: "+rResults.getSpeed()+
-        " Expected NNs: "+rResults.getNoOfExpectedAliveNNs()+" Actual NNs: "+rResults.getNoOfAcutallAliveNNs());
+    System.err.println("Inconsistent/Wrong results. "+op+" Speed: "+speed+
+        " Expected NNs: "+expectedNNs+" Actual NNs: "+aliveNNs);
     return false;
   }
 
+  /**
+   * Adds the raw phases of a file system from a result store. The columns
+   * are read from the store, no result objects are built. Like a result
+   * file, a run with an invalid phase is ignored unless force is set.
+   */
+  public void processStore(ResultStore store, String fileSystem, boolean force) throws IOException {
+    boolean[] raw = store.where(ResultStore.Column.BENCHMARK, BenchmarkType.RAW.toString());
+    boolean[] fs = store.where(ResultStore.Column.FILE_SYSTEM, fileSystem);
+    long[] runs = store.getLongs(ResultStore.Column.RUN_ID);
+    String[] ops = store.getStrings(ResultStore.Column.OP);
+    long[] expectedNNs = store.getLongs(ResultStore.Column.EXPECTED_NNS);
+    long[] aliveNNs = store.getLongs(ResultStore.Column.ALIVE_NNS);
+    double[] speed = store.getDoubles(ResultStore.Column.SPEED);
+    double[] failedOps = store.getDoubles(ResultStore.Column.FAILED_OPS);
+    double[] successfulOps = store.getDoubles(ResultStore.Column.SUCCESSFUL_OPS);
+    double[] duration = store.getDoubles(ResultStore.Column.DURATION);
+
+    Set<Long> invalidRuns = new HashSet<Long>();
+    for (int i = 0; i < runs.length; i++) {
+      if (raw[i] && fs[i] && !validate(BenchmarkOperations.valueOf(ops[i]), speed[i], expectedNNs[i], aliveNNs[i])) {
+        invalidRuns.add(runs[i]);
+      }
+    }
+    for (int i = 0; i < runs.length; i++) {
+      if (raw[i] && fs[i]) {
+        if (!force && invalidRuns.contains(runs[i])) {
+          continue;
+        }
+        add((int) expectedNNs[i], BenchmarkOperations.valueOf(ops[i]), speed[i], failedOps[i],
+                successfulOps[i], duration[i]);
+      }
+    }
+  }
+
   CompiledResults processAllRecords() {
     CompiledResults cr = new CompiledResults();
 
@@ -372,7 +422,7 @@ public class RawBMResultAggregator extends Aggregator{
     DescriptiveStatistics speed = new DescriptiveStatistics();
     DescriptiveStatistics duration = new DescriptiveStatistics();
     DescriptiveStatistics noOfAliveNNs = new DescriptiveStatistics();
-    ArrayList<Long> latencies = new ArrayList<Long>();
+    LatencyHistogram latencies = new LatencyHistogram();
     for (Object obj : responses) {
       if (!(obj instanceof RawBenchmarkCommand.Response)
               || (obj instanceof RawBenchmarkCommand.Response
@@ -385,7 +435,7 @@ public class RawBMResultAggregator extends Aggregator{
         speed.addValue(response.getOpsPerSec());
         duration.addValue(response.getRunTime());
         noOfAliveNNs.addValue(response.getNnCount());
-        latencies.addAll(response.getOpsExeTimes());
+        latencies.add(response.getOpsExeTimes());
       }
     }
 
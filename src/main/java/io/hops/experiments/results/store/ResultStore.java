@@ -0,0 +1,402 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.results.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Results of many runs in a dir, one file per column. A row is one op of a
+ * phase of a run, see Column.
+ *
+ * The column files are only appended to. The commit file holds the number
+ * of rows and the committed length of each column file; it is replaced
+ * after the new values are synced, so a crashed append is cut off by the
+ * next one and never seen by the readers. Reading a column only reads its
+ * file.
+ *
+ * Columns can be added but not removed or changed. The rows that were
+ * appended before a column existed read as 0, NaN or null. A column file
+ * always starts at the first row, the next append fills the rows it
+ * missed, so a column that an older master did not append to is shorter
+ * than the store and its last rows read as null.
+ *
+ * @author salman
+ */
+public class ResultStore {
+
+  static final int MAGIC = 0x48425253;  // HBRS
+  static final int VERSION = 1;
+  private static final String COMMIT_FILE = "commit";
+  private static final String LOCK_FILE = "lock";
+  private static final String COLUMN_FILE_EXT = ".col";
+
+  /**
+   * op of the row that sums up all the ops of an interleaved or replay phase
+   */
+  public static final String ALL_OPS = "ALL";
+
+  public enum Type {
+    LONG, DOUBLE, STRING, BLOB
+  }
+
+  public enum Column {
+    RUN_ID(Type.LONG),          // start time of the master
+    FILE_SYSTEM(Type.STRING),
+    BENCHMARK(Type.STRING),     // BenchmarkType
+    PHASE(Type.STRING),         // op of a raw phase or the workload name
+    OP(Type.STRING),            // BenchmarkOperations.name() or ALL_OPS
+    EXPECTED_NNS(Type.LONG),
+    ALIVE_NNS(Type.LONG),
+    NDB_NODES(Type.LONG),
+    SLAVES(Type.LONG),
+    THREADS(Type.LONG),         // per slave
+    SUCCESSFUL_OPS(Type.DOUBLE),
+    FAILED_OPS(Type.DOUBLE),
+    SPEED(Type.DOUBLE),         // ops/sec
+    DURATION(Type.DOUBLE),      // sec
+    LATENCIES(Type.BLOB),       // LatencyHistogram.encode() in ns
+    TIMELINE(Type.BLOB);        // Timeline.encode() of the phase
+
+    private final Type type;
+
+    private Column(Type type) {
+      this.type = type;
+    }
+
+    public Type getType() {
+      return type;
+    }
+
+    String getFileName() {
+      return name().toLowerCase() + COLUMN_FILE_EXT;
+    }
+  }
+
+  public static class Row {
+    private final Object[] values = new Object[Column.values().length];
+
+    public Row set(Column column, long value) {
+      return set(column, Type.LONG, value);
+    }
+
+    public Row set(Column column, double value) {
+      return set(column, Type.DOUBLE, value);
+    }
+
+    public Row set(Column column, String value) {
+      return set(column, Type.STRING, value);
+    }
+
+    public Row set(Column column, byte[] value) {
+      return set(column, Type.BLOB, value);
+    }
+
+    private Row set(Column column, Type type, Object value) {
+      checkType(column, type);
+      values[column.ordinal()] = value;
+      return this;
+    }
+
+    Object get(Column column) {
+      return values[column.ordinal()];
+    }
+  }
+
+  private final File dir;
+  private long rows = 0;
+  // column file -> {rows, bytes} as of the last commit. Also keeps the
+  // columns of newer versions so that their commits are not lost
+  private final Map<String, long[]> committed = new LinkedHashMap<String, long[]>();
+
+  public ResultStore(String dir) throws IOException {
+    this.dir = new File(dir);
+    if (!this.dir.isDirectory() && !this.dir.mkdirs()) {
+      throw new IOException("Unable to create the result store " + dir);
+    }
+    readCommit();
+  }
+
+  public File getDir() {
+    return dir;
+  }
+
+  public synchronized long getRows() {
+    return rows;
+  }
+
+  /**
+   * Appends the rows and commits them. Several masters can append to the
+   * same store, the appends are serialized by a file lock.
+   */
+  public synchronized void append(List<Row> newRows) throws IOException {
+    if (newRows.isEmpty()) {
+      return;
+    }
+    RandomAccessFile lockFile = new RandomAccessFile(new File(dir, LOCK_FILE), "rw");
+    FileLock lock = lockFile.getChannel().lock();
+    try {
+      readCommit(); // another master may have appended
+      for (Column column : Column.values()) {
+        appendColumn(column, newRows);
+      }
+      rows += newRows.size();
+      writeCommit();
+    } finally {
+      lock.release();
+      lockFile.close();
+    }
+  }
+
+  private void appendColumn(Column column, List<Row> newRows) throws IOException {
+    File file = new File(dir, column.getFileName());
+    long[] state = committed.get(column.getFileName());
+    if (state == null) {
+      state = new long[]{0, 0};
+      committed.put(column.getFileName(), state);
+    }
+    // cut off the values of an append that did not commit
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(state[1]);
+    } finally {
+      raf.close();
+    }
+
+    FileOutputStream fout = new FileOutputStream(file, true);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fout));
+    try {
+      for (long i = state[0]; i < rows; i++) { // rows appended without this column
+        writeValue(out, column.getType(), null);
+      }
+      for (Row row : newRows) {
+        writeValue(out, column.getType(), row.get(column));
+      }
+      out.flush();
+      fout.getFD().sync();
+    } finally {
+      out.close();
+    }
+    state[0] = rows + newRows.size();
+    state[1] = file.length();
+  }
+
+  private static void writeValue(DataOutputStream out, Type type, Object value) throws IOException {
+    switch (type) {
+      case LONG:
+        out.writeLong(value == null ? 0 : (Long) value);
+        break;
+      case DOUBLE:
+        out.writeDouble(value == null ? Double.NaN : (Double) value);
+        break;
+      case STRING:
+        writeBytes(out, value == null ? null : ((String) value).getBytes("UTF-8"));
+        break;
+      case BLOB:
+        writeBytes(out, (byte[]) value);
+        break;
+      default:
+        throw new IllegalStateException("Unknown column type " + type);
+    }
+  }
+
+  private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+    if (bytes == null) {
+      out.writeInt(-1);
+    } else {
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private void writeCommit() throws IOException {
+    File tmp = new File(dir, COMMIT_FILE + ".tmp");
+    FileOutputStream fout = new FileOutputStream(tmp);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fout));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(rows);
+      out.writeInt(committed.size());
+      for (Map.Entry<String, long[]> entry : committed.entrySet()) {
+        out.writeUTF(entry.getKey());
+        out.writeLong(entry.getValue()[0]);
+        out.writeLong(entry.getValue()[1]);
+      }
+      out.flush();
+      fout.getFD().sync();
+    } finally {
+      out.close();
+    }
+    File commit = new File(dir, COMMIT_FILE);
+    if (!tmp.renameTo(commit) && !(commit.delete() && tmp.renameTo(commit))) {
+      throw new IOException("Unable to commit the result store " + dir);
+    }
+  }
+
+  private synchronized void readCommit() throws IOException {
+    committed.clear();
+    rows = 0;
+    File commit = new File(dir, COMMIT_FILE);
+    if (!commit.exists()) {
+      return;
+    }
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(commit)));
+    try {
+      if (in.readInt() != MAGIC) {
+        throw new IOException(dir + " is not a result store");
+      }
+      int version = in.readInt();
+      if (version > VERSION) {
+        throw new IOException("Unsupported result store version " + version);
+      }
+      rows = in.readLong();
+      int columns = in.readInt();
+      for (int i = 0; i < columns; i++) {
+        committed.put(in.readUTF(), new long[]{in.readLong(), in.readLong()});
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * @return whether the column of each row has one of the values
+   */
+  public boolean[] where(Column column, String... values) throws IOException {
+    String[] strings = getStrings(column);
+    boolean[] matches = new boolean[strings.length];
+    for (int i = 0; i < strings.length; i++) {
+      for (String value : values) {
+        if (value.equals(strings[i])) {
+          matches[i] = true;
+          break;
+        }
+      }
+    }
+    return matches;
+  }
+
+  public long[] getLongs(Column column) throws IOException {
+    checkType(column, Type.LONG);
+    Object[] values = readColumn(column);
+    long[] longs = new long[values.length];
+    for (int i = 0; i < values.length; i++) {
+      longs[i] = values[i] == null ? 0 : (Long) values[i];
+    }
+    return longs;
+  }
+
+  public double[] getDoubles(Column column) throws IOException {
+    checkType(column, Type.DOUBLE);
+    Object[] values = readColumn(column);
+    double[] doubles = new double[values.length];
+    for (int i = 0; i < values.length; i++) {
+      doubles[i] = values[i] == null ? Double.NaN : (Double) values[i];
+    }
+    return doubles;
+  }
+
+  public String[] getStrings(Column column) throws IOException {
+    checkType(column, Type.STRING);
+    Object[] values = readColumn(column);
+    String[] strings = new String[values.length];
+    for (int i = 0; i < values.length; i++) {
+      strings[i] = values[i] == null ? null : new String((byte[]) values[i], "UTF-8");
+    }
+    return strings;
+  }
+
+  public byte[][] getBlobs(Column column) throws IOException {
+    checkType(column, Type.BLOB);
+    Object[] values = readColumn(column);
+    byte[][] blobs = new byte[values.length][];
+    for (int i = 0; i < values.length; i++) {
+      blobs[i] = (byte[]) values[i];
+    }
+    return blobs;
+  }
+
+  /**
+   * @return the committed values of the column. The column file holds the
+   * rows [0, committed rows of the column), the rows after them are null
+   */
+  private synchronized Object[] readColumn(Column column) throws IOException {
+    Object[] values = new Object[(int) rows];
+    long[] state = committed.get(column.getFileName());
+    if (state == null || state[0] == 0) {
+      return values;
+    }
+    DataInputStream in;
+    try {
+      in = new DataInputStream(new BufferedInputStream(
+              new FileInputStream(new File(dir, column.getFileName())), 64 * 1024));
+    } catch (FileNotFoundException e) {
+      throw new IOException("Missing column file of the result store " + dir + ". " + e.getMessage());
+    }
+    try {
+      for (int i = 0; i < state[0] && i < rows; i++) {
+        values[i] = readValue(in, column.getType());
+      }
+    } catch (EOFException e) {
+      throw new IOException("Truncated column " + column + " in the result store " + dir);
+    } finally {
+      in.close();
+    }
+    return values;
+  }
+
+  private static Object readValue(DataInputStream in, Type type) throws IOException {
+    switch (type) {
+      case LONG:
+        return in.readLong();
+      case DOUBLE:
+        return in.readDouble();
+      case STRING:
+      case BLOB:
+        int length = in.readInt();
+        if (length < 0) {
+          return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+      default:
+        throw new IllegalStateException("Unknown column type " + type);
+    }
+  }
+
+  private static void checkType(Column column, Type type) {
+    if (column.getType() != type) {
+      throw new IllegalArgumentException("Column " + column + " is of type " + column.getType()
+              + " not " + type);
+    }
+  }
+}
@@ -58,6 +58,24 @@ public class BMOperationsUtils {
     }
 
     static final String RENAMED = "RN";
+
+    /**
+     * the new name of a file also counts the number of times it has been renamed
+     */
+    public static String getRenameDestination(String from) {
+      int currentCounter = 0;
+      String to = from;
+      if (from.contains(RENAMED)) {
+        int index1 = from.lastIndexOf(RENAMED);
+        int index2 = from.lastIndexOf("_");
+        String counter = from.substring(index1 + RENAMED.length() + 1, index2);
+        to = from.substring(0, index1 - 1);
+        currentCounter = Integer.parseInt(counter);
+      }
+      currentCounter++;
+      return to + "_" + RENAMED + "_" + currentCounter + "_" + "Times";
+    }
+
     public static boolean performOp(FileSystem dfs, BenchmarkOperations opType,
             FilePool filePool, String path, short replicationFactor,
             long appendSize) throws IOException {
@@ -83,19 +101,7 @@ public class BMOperationsUtils {
         DFSOperationsUtils.deleteFile(dfs, path);
       } else if (opType == BenchmarkOperations.RENAME_FILE) {
         String from = path;
-//        Count the number of times a files has been renamed
-        int currentCounter = 0;
-        String to = from;
-        if (from.contains(RENAMED)) {
-          int index1 = from.lastIndexOf(RENAMED);
-          int index2 = from.lastIndexOf("_");
-          String counter = from.substring(index1 + RENAMED.length() + 1, index2);
-          to = from.substring(0, index1 - 1);
-          currentCounter = Integer.parseInt(counter);
-        }
-        currentCounter++;
-        to = to + "_" + RENAMED + "_" + currentCounter + "_" + "Times";
-//        String to = from;
+        String to = getRenameDestination(from);
         if (DFSOperationsUtils.renameFile(dfs, new Path(from), new Path(to))) {
           filePool.fileRenamed(from, to);
         }
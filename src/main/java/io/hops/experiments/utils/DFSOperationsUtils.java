@@ -18,6 +18,9 @@
 package io.hops.experiments.utils;
 
 import io.hops.experiments.benchmarks.common.BenchMarkFileSystemName;
+import io.hops.experiments.benchmarks.common.coin.SplitMix64Random;
+import io.hops.experiments.benchmarks.common.config.BMConfiguration;
+import io.hops.experiments.benchmarks.common.config.ConfigKeys;
 import io.hops.experiments.workload.generator.FileTreeFromDiskGenerator;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.Path;
@@ -26,76 +29,192 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.Random;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.permission.FsPermission;
+import io.hops.experiments.workload.generator.AccessSampler;
+import io.hops.experiments.workload.generator.CompactFileTreeGenerator;
 import io.hops.experiments.workload.generator.FilePool;
+import io.hops.experiments.workload.generator.FilePoolSharing;
 import io.hops.experiments.workload.generator.FileTreeGenerator;
 import io.hops.experiments.workload.generator.FixeDepthFileTreeGenerator;
+import io.hops.experiments.workload.generator.SharedFileTreeGenerator;
+import io.hops.experiments.workload.generator.SharedNamespace;
+import io.hops.experiments.workload.generator.TreeDescription;
+import io.hops.experiments.workload.generator.TreeFilePool;
 
 public class DFSOperationsUtils {
 
-    private static final boolean SERVER_LESS_MODE=false; //only for testing. If enabled then the clients will not
-    private static Random rand = new Random(System.currentTimeMillis());
-                                                        // contact NNs
     private static ThreadLocal<FileSystem> dfsClients = new ThreadLocal<FileSystem>();
     private static ThreadLocal<FilePool> filePools = new ThreadLocal<FilePool>();
+    // data written by the creates and appends of a thread
+    private static ThreadLocal<byte[]> payloadPages = new ThreadLocal<byte[]>();
+    // handed to FilePool.getFileData, which may read file contents into it
+    private static ThreadLocal<byte[]> fileDataBuffers = new ThreadLocal<byte[]>();
+    private static final int PAYLOAD_PAGE_SIZE = 64 * 1024;
 
     private static AtomicInteger filePoolCount = new AtomicInteger(0);
+    private static AtomicInteger treePoolCount = new AtomicInteger(0);
     private static AtomicInteger dfsClientsCount = new AtomicInteger(0);
+    private static final Object sharedClientsLock = new Object();
+    private static FileSystem[] sharedClients = null;
+    private static int nextSharedClient = 0;
 
     public static FileSystem getDFSClient(Configuration conf) throws IOException {
-        if(SERVER_LESS_MODE){
-            serverLessModeRandomWait();
-            return null;
-        }
         FileSystem client = dfsClients.get();
         if (client == null) {
-            client = (FileSystem) FileSystem.newInstance(conf);
+            client = newDFSClient(conf);
             dfsClients.set(client);
-           System.out.println(Thread.currentThread().getName()  +
-                " Creating new client. Total: "+ dfsClientsCount.incrementAndGet()+" New Client is: "+client);
         }else{
             System.out.println("Reusing Existing Client "+client);
         }
         return client;
     }
 
+    /**
+     * @return a client that is not bound to the calling thread, or one of the
+     * shared clients if the slave shares its clients
+     */
+    public static FileSystem newDFSClient(Configuration conf) throws IOException {
+        int sharedClients = conf.getInt(ConfigKeys.NUM_SLAVE_FS_CLIENTS_KEY, ConfigKeys.NUM_SLAVE_FS_CLIENTS_DEFAULT);
+        if (sharedClients > 0) {
+            return getSharedDFSClient(conf, sharedClients);
+        }
+        FileSystem client = (FileSystem) FileSystem.newInstance(conf);
+        System.out.println(Thread.currentThread().getName() +
+            " Creating new client. Total: " + dfsClientsCount.incrementAndGet() + " New Client is: " + client);
+        return client;
+    }
+
+    /*
+     * threads are assigned the shared clients in round robin order
+     */
+    private static FileSystem getSharedDFSClient(Configuration conf, int poolSize) throws IOException {
+        synchronized (sharedClientsLock) {
+            if (sharedClients == null || sharedClients.length != poolSize) {
+                sharedClients = new FileSystem[poolSize];
+            }
+            int index = nextSharedClient++ % poolSize;
+            if (sharedClients[index] == null) {
+                sharedClients[index] = FileSystem.newInstance(conf);
+                System.out.println(Thread.currentThread().getName() +
+                    " Creating new shared client. Total: " + dfsClientsCount.incrementAndGet() + " New Client is: " + sharedClients[index]);
+            }
+            return sharedClients[index];
+        }
+    }
+
+    public static FilePool getFilePool(Configuration conf, BMConfiguration bmConf, int slaveId, int numSlaves) {
+        if (bmConf.getFilePoolSharing() != FilePoolSharing.NONE) {
+            FilePool filePool = filePools.get();
+            if (filePool == null) {
+                filePool = newFilePool(conf, bmConf, slaveId, numSlaves);
+                filePools.set(filePool);
+            }
+            return filePool;
+        }
+        if (bmConf.getPrepopulateTree() != null) {
+            FilePool filePool = filePools.get();
+            if (filePool == null) {
+                filePool = newFilePool(conf, bmConf, slaveId, numSlaves);
+                filePools.set(filePool);
+            }
+            return filePool;
+        }
+        return getFilePool(conf, bmConf.getBaseDir(), bmConf.getDirPerDir(), bmConf.getFilesPerDir(),
+                bmConf.isFixedDepthTree(), bmConf.getTreeDepth(), bmConf.getFileSizeDistribution(),
+                bmConf.getReadFilesFromDisk(), bmConf.getDiskNameSpacePath(), bmConf.getDiskFilesPrefetch(),
+                bmConf.isCompactFilePool(),
+                bmConf.newAccessSampler());
+    }
+
+    /**
+     * @return a file pool that is not bound to the calling thread. The caller
+     * makes sure that only one thread uses it at a time
+     */
+    public static FilePool newFilePool(Configuration conf, BMConfiguration bmConf, int slaveId, int numSlaves) {
+        FilePool filePool;
+        if (bmConf.getFilePoolSharing() != FilePoolSharing.NONE) {
+            SharedNamespace namespace = SharedNamespace.getInstance(bmConf.getBaseDir(), bmConf.getFilesPerDir(),
+                    bmConf.getDirPerDir(), bmConf.getFilePoolSharing(), slaveId, numSlaves);
+            filePool = new SharedFileTreeGenerator(namespace, bmConf.getFileSizeDistribution(),
+                    bmConf.newAccessSampler());
+            System.out.println("New shared FilePool " +filePool+" created. Total :"+ filePoolCount.incrementAndGet());
+        } else {
+            filePool = newFilePool(bmConf.getBaseDir(), bmConf.getDirPerDir(), bmConf.getFilesPerDir(),
+                    bmConf.isFixedDepthTree(), bmConf.getTreeDepth(), bmConf.getFileSizeDistribution(),
+                    bmConf.getReadFilesFromDisk(), bmConf.getDiskNameSpacePath(), bmConf.getDiskFilesPrefetch(),
+                    bmConf.isCompactFilePool(), bmConf.newAccessSampler());
+            TreeDescription tree = bmConf.getPrepopulateTree();
+            if (tree != null) {
+                filePool = newTreeFilePool(tree, bmConf, slaveId, numSlaves, filePool);
+            }
+        }
+        return filePool;
+    }
+
+    /*
+     * The first num.slave.threads pools of the slave get the partitions
+     * slaveId * num.slave.threads + i of the tree. The later pools, e.g. of
+     * the extra threads of a scenario, only have their own files.
+     */
+    private static FilePool newTreeFilePool(TreeDescription tree, BMConfiguration bmConf, int slaveId,
+            int numSlaves, FilePool filePool) {
+        int threads = bmConf.getSlaveNumThreads();
+        int index = treePoolCount.getAndIncrement();
+        if (index >= threads) {
+            return filePool;
+        }
+        FilePool treePool = new TreeFilePool(tree, slaveId * threads + index, Math.max(1, numSlaves) * threads,
+                filePool, bmConf.newAccessSampler());
+        System.out.println("New FilePool " + treePool + " created");
+        return treePool;
+    }
+
     public static FilePool getFilePool(Configuration conf, String baseDir,
             int dirsPerDir, int filesPerDir, boolean fixedDepthTree, int treeDepth, String fileSizeDistribution,
-                                       boolean readFilesFromDisk, String diskFilesPath) {
+                                       boolean readFilesFromDisk, String diskFilesPath, int diskFilesPrefetch,
+                                       boolean compactFilePool,
+                                       AccessSampler accessSampler) {
         FilePool filePool = filePools.get();
         if (filePool == null) {
-            if(fixedDepthTree){
-              filePool = new FixeDepthFileTreeGenerator(baseDir,treeDepth, fileSizeDistribution);
-            }if(readFilesFromDisk){
-              filePool = new FileTreeFromDiskGenerator(baseDir,filesPerDir, dirsPerDir,0, diskFilesPath);
-            } else{
-                filePool = new FileTreeGenerator(baseDir,filesPerDir, dirsPerDir,0, fileSizeDistribution);
-            }
-            
+            filePool = newFilePool(baseDir, dirsPerDir, filesPerDir, fixedDepthTree, treeDepth, fileSizeDistribution,
+                    readFilesFromDisk, diskFilesPath, diskFilesPrefetch, compactFilePool, accessSampler);
             filePools.set(filePool);
-            System.out.println("New FilePool " +filePool+" created. Total :"+ filePoolCount.incrementAndGet());
         }else{
             System.out.println("Reusing file pool obj "+filePool);
         }
         return filePool;
     }
+
+    private static FilePool newFilePool(String baseDir,
+            int dirsPerDir, int filesPerDir, boolean fixedDepthTree, int treeDepth, String fileSizeDistribution,
+                                       boolean readFilesFromDisk, String diskFilesPath, int diskFilesPrefetch,
+                                       boolean compactFilePool,
+                                       AccessSampler accessSampler) {
+        FilePool filePool;
+        if(readFilesFromDisk){
+          filePool = new FileTreeFromDiskGenerator(baseDir,filesPerDir, dirsPerDir,0, diskFilesPath, diskFilesPrefetch);
+        } else if(fixedDepthTree){
+          filePool = new FixeDepthFileTreeGenerator(baseDir,treeDepth, fileSizeDistribution, accessSampler);
+        } else if(compactFilePool){
+          filePool = new CompactFileTreeGenerator(baseDir,filesPerDir, dirsPerDir,0, fileSizeDistribution, accessSampler);
+        } else{
+            filePool = new FileTreeGenerator(baseDir,filesPerDir, dirsPerDir,0, fileSizeDistribution, accessSampler);
+        }
+        System.out.println("New FilePool " +filePool+" created. Total :"+ filePoolCount.incrementAndGet());
+        return filePool;
+    }
     
     public static void createFile(FileSystem dfs, String pathStr, short replication, FilePool filePool) throws IOException {
-        if(SERVER_LESS_MODE){
-            serverLessModeRandomWait();
-            return;
-        }
-
         FSDataOutputStream out = dfs.create(new Path(pathStr), replication);
         long size = filePool.getNewFileSize();
         if(size > 0){
-            byte[] buffer = new byte[64*1024];
+            byte[] buffer = getFileDataBuffer(dfs);
             long read = -1;
             do {
                 read = filePool.getFileData(buffer);
@@ -108,12 +227,25 @@ public class DFSOperationsUtils {
         out.close();
     }
 
-    public static void readFile(FileSystem dfs, String pathStr) throws IOException {
-        if(SERVER_LESS_MODE){
-            serverLessModeRandomWait();
-            return;
+    /**
+     * Writes size bytes of the thread's payload page
+     */
+    public static void createFile(FileSystem dfs, String pathStr, short replication, long size) throws IOException {
+        FSDataOutputStream out = dfs.create(new Path(pathStr), replication);
+        if (size > 0) {
+            byte[] page = getPayloadPage(dfs);
+            for (long bytesWritten = 0; bytesWritten < size; bytesWritten += page.length) {
+                out.write(page, 0, (int) Math.min(page.length, size - bytesWritten));
+            }
         }
+        out.close();
+    }
+
+    public static void createEmptyFile(FileSystem dfs, String pathStr, short replication) throws IOException {
+        dfs.create(new Path(pathStr), replication).close();
+    }
 
+    public static void readFile(FileSystem dfs, String pathStr) throws IOException {
         FSDataInputStream in = dfs.open(new Path(pathStr));
         try {
             byte b;
@@ -127,66 +259,34 @@ public class DFSOperationsUtils {
     }
 
     public static boolean renameFile(FileSystem dfs, Path from, Path to) throws IOException {
-        if(SERVER_LESS_MODE){
-            serverLessModeRandomWait();
-            return true;
-        }
         return dfs.rename(from, to);    
     }
 
     public static boolean deleteFile(FileSystem dfs, String pathStr) throws IOException {
-        if(SERVER_LESS_MODE){
-            serverLessModeRandomWait();
-            return true;
-        }
         return dfs.delete(new Path(pathStr), true);
     }
     
     public static void ls(FileSystem dfs, String pathStr) throws IOException {
-        if(SERVER_LESS_MODE){
-            serverLessModeRandomWait();
-            return;
-        }
        dfs.listStatus(new Path(pathStr));
     }
     
     public static void getInfo(FileSystem dfs, String pathStr) throws IOException {
-        if(SERVER_LESS_MODE){
-            serverLessModeRandomWait();
-            return;
-        }
        dfs.getFileStatus(new Path(pathStr));
     }
     
     public static void chmodPath(FileSystem dfs, String pathStr) throws IOException {
-        if(SERVER_LESS_MODE){
-            serverLessModeRandomWait();
-            return;
-        }
         dfs.setPermission(new Path(pathStr), new FsPermission((short)0777));
     }
     
     public static void mkdirs(FileSystem dfs, String pathStr) throws IOException {
-        if(SERVER_LESS_MODE){
-            serverLessModeRandomWait();
-            return;
-        }
         dfs.mkdirs(new Path(pathStr));
     }
     
     public static void chown(FileSystem dfs, String pathStr) throws IOException {
-        if(SERVER_LESS_MODE){
-            serverLessModeRandomWait();
-            return;
-        }
         dfs.setOwner(new Path(pathStr), System.getProperty("user.name"), System.getProperty("user.name"));
     }
     
     public static void setReplication(FileSystem dfs, String pathStr) throws IOException {
-        if(SERVER_LESS_MODE){
-            serverLessModeRandomWait();
-            return;
-        }
         dfs.setReplication(new Path(pathStr), (short)3);
     }
     
@@ -199,60 +299,69 @@ public class DFSOperationsUtils {
         return String.format(format, string);
     }
 
-    public static boolean isTwoDecimalPlace(double val) {
-        if (val == 0 || val == ((int) val)) {
-            return true;
-        } else {
-            String valStr = Double.toString(val);
-            int i = valStr.lastIndexOf('.');
-            if (i != -1 && (valStr.substring(i + 1).length() == 1 || valStr.substring(i + 1).length() == 2)) {
-                return true;
-            } else {
-                return false;
+    public static void appendFile(FileSystem dfs, String pathStr, long size) throws IOException {
+        FSDataOutputStream out = dfs.append(new Path(pathStr));
+        if (size > 0) {
+            byte[] page = getPayloadPage(dfs);
+            for (long bytesWritten = 0; bytesWritten < size; bytesWritten += page.length) {
+                out.write(page, 0, (int) Math.min(page.length, size - bytesWritten));
             }
         }
+        out.close();
     }
 
-    public static void appendFile(FileSystem dfs, String pathStr, long size) throws IOException {
-        if (SERVER_LESS_MODE) {
-            serverLessModeRandomWait();
-            return;
-        }
-
-        FSDataOutputStream out = dfs.append(new Path(pathStr));
-        if (size != 0) {
-            for (long bytesWritten = 0; bytesWritten < size; bytesWritten += 1) {
-                out.writeByte(1);
+    /**
+     * The page is allocated and filled once per thread. Zeros unless
+     * file.payload.incompressible is set, in which case it is filled with
+     * random bytes so that compressing the data does not shrink it.
+     */
+    private static byte[] getPayloadPage(FileSystem dfs) {
+        byte[] page = payloadPages.get();
+        if (page == null) {
+            page = new byte[PAYLOAD_PAGE_SIZE];
+            if (dfs.getConf().getBoolean(ConfigKeys.FILE_PAYLOAD_INCOMPRESSIBLE_KEY,
+                    ConfigKeys.FILE_PAYLOAD_INCOMPRESSIBLE_DEFAULT)) {
+                SplitMix64Random random = new SplitMix64Random();
+                for (int i = 0; i < page.length; i += 8) {
+                    long bits = random.nextLong();
+                    for (int j = 0; j < 8; j++) {
+                        page[i + j] = (byte) (bits >>> (j * 8));
+                    }
+                }
             }
+            payloadPages.set(page);
         }
-        out.close();
+        return page;
     }
 
-    public static int getActiveNameNodesCount(BenchMarkFileSystemName fsName, FileSystem dfs) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
-        if (SERVER_LESS_MODE) {
-            serverLessModeRandomWait();
-            return 0;
+    /**
+     * A copy of the payload page, so that the pools that read the data from
+     * the disk into it do not change the page written by the appends and
+     * the creates of a given size
+     */
+    private static byte[] getFileDataBuffer(FileSystem dfs) {
+        byte[] buffer = fileDataBuffers.get();
+        if (buffer == null) {
+            byte[] page = getPayloadPage(dfs);
+            buffer = Arrays.copyOf(page, page.length);
+            fileDataBuffers.set(buffer);
         }
+        return buffer;
+    }
 
+    public static int getActiveNameNodesCount(BenchMarkFileSystemName fsName, FileSystem dfs) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
         //it only works for HopsFS
         if (fsName == BenchMarkFileSystemName.HopsFS) {
             Class filesystem = dfs.getClass();
             Method method = filesystem.getMethod("getNameNodesCount");
             Object ret = method.invoke(dfs);
             return (Integer) ret;
-        } else if (fsName == BenchMarkFileSystemName.HDFS) {
+        } else if (fsName == BenchMarkFileSystemName.HDFS
+                || fsName == BenchMarkFileSystemName.InMemory) {
             return 1;
         } else {
             throw new UnsupportedOperationException("Implement get namenode count for other filesystems");
         }
     }
 
-    private static  void serverLessModeRandomWait(){
-//        try {
-//            Thread.sleep(rand.nextInt(100));
-//            Thread.sleep(1);
-//        } catch (InterruptedException e) {
-//            e.printStackTrace();
-//        }
-    }
 }
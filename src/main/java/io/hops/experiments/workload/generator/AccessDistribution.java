@@ -0,0 +1,50 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.workload.generator;
+
+/**
+ * How the file pools pick the existing file or dir for an operation.
+ * The files of a pool are ranked by creation order, 0 is the oldest.
+ *
+ * @author salman
+ */
+public enum AccessDistribution {
+  UNIFORM,  // every file is equally likely
+  ZIPFIAN,  // the i-th oldest file is picked with probability ~ 1 / i^theta
+  LATEST,   // zipfian over the files ranked from the newest
+  HOTSPOT;  // a fraction of the ops go to a fraction of the oldest files
+
+  /**
+   * @param zipfianTheta skew of ZIPFIAN and LATEST, in (0, 1)
+   * @param hotspotDataFraction size of the hot set of HOTSPOT, in [0, 1]
+   * @param hotspotOpsFraction fraction of the ops going to the hot set, in [0, 1]
+   * @return a sampler for one thread
+   */
+  public AccessSampler newSampler(double zipfianTheta, double hotspotDataFraction,
+          double hotspotOpsFraction) {
+    switch (this) {
+      case ZIPFIAN:
+        return new AccessSampler.Zipfian(zipfianTheta, false);
+      case LATEST:
+        return new AccessSampler.Zipfian(zipfianTheta, true);
+      case HOTSPOT:
+        return new AccessSampler.Hotspot(hotspotDataFraction, hotspotOpsFraction);
+      default:
+        return new AccessSampler.Uniform();
+    }
+  }
+}
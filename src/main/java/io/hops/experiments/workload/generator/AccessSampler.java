@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.workload.generator;
+
+import io.hops.experiments.benchmarks.common.coin.SplitMix64Random;
+
+/**
+ * Picks an index in [0, size) of a pool whose size changes between the
+ * calls. next() does not allocate and takes constant time, except that
+ * ZIPFIAN and LATEST update their normalization constant by one term for
+ * each file added to or removed from the pool since the previous call.
+ *
+ * Not thread safe, every thread has its own sampler.
+ *
+ * @author salman
+ */
+public abstract class AccessSampler {
+
+  protected final SplitMix64Random rand = new SplitMix64Random();
+
+  /**
+   * @param size number of files in the pool, > 0
+   */
+  public abstract int next(int size);
+
+  static class Uniform extends AccessSampler {
+    @Override
+    public int next(int size) {
+      return rand.nextInt(size);
+    }
+  }
+
+  /**
+   * The algorithm of Gray et al., "Quickly Generating Billion-Record
+   * Synthetic Databases", as used by YCSB.
+   */
+  static class Zipfian extends AccessSampler {
+    private final double theta;
+    private final double alpha;
+    private final double halfPowTheta;
+    private final double zeta2;
+    private final boolean latest;
+    private int n = 0;
+    private double zetan = 0;
+    private double eta;
+
+    Zipfian(double theta, boolean latest) {
+      if (theta <= 0 || theta >= 1) {
+        throw new IllegalArgumentException("Zipfian theta should be in (0, 1). Got: " + theta);
+      }
+      this.theta = theta;
+      this.latest = latest;
+      this.alpha = 1.0 / (1.0 - theta);
+      this.halfPowTheta = Math.pow(0.5, theta);
+      this.zeta2 = 1 + halfPowTheta;
+    }
+
+    @Override
+    public int next(int size) {
+      if (size != n) {
+        resize(size);
+      }
+      double u = rand.nextDouble();
+      double uz = u * zetan;
+      int rank;
+      if (uz < 1.0) {
+        rank = 0;
+      } else if (uz < 1.0 + halfPowTheta) {
+        rank = 1;
+      } else {
+        rank = (int) (n * Math.pow(eta * u - eta + 1, alpha));
+      }
+      if (rank >= n) {
+        rank = n - 1;
+      }
+      return latest ? n - 1 - rank : rank;
+    }
+
+    private void resize(int size) {
+      // zeta(n) = sum of 1 / i^theta for i in 1..n
+      if (size < n / 2) {
+        n = 0;
+        zetan = 0;
+      }
+      while (n < size) {
+        n++;
+        zetan += 1 / Math.pow(n, theta);
+      }
+      while (n > size) {
+        zetan -= 1 / Math.pow(n, theta);
+        n--;
+      }
+      eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta2 / zetan);
+    }
+  }
+
+  static class Hotspot extends AccessSampler {
+    private final double dataFraction;
+    private final double opsFraction;
+
+    Hotspot(double dataFraction, double opsFraction) {
+      if (dataFraction < 0 || dataFraction > 1 || opsFraction < 0 || opsFraction > 1) {
+        throw new IllegalArgumentException("Hotspot fractions should be in [0, 1]. Got: "
+                + dataFraction + ", " + opsFraction);
+      }
+      this.dataFraction = dataFraction;
+      this.opsFraction = opsFraction;
+    }
+
+    @Override
+    public int next(int size) {
+      int hot = (int) (size * dataFraction);
+      if (hot == 0 || hot == size) {
+        return rand.nextInt(size);
+      }
+      if (rand.nextDouble() < opsFraction) {
+        return rand.nextInt(hot);
+      }
+      return hot + rand.nextInt(size - hot);
+    }
+  }
+}
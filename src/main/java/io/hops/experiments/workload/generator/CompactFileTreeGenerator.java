@@ -0,0 +1,403 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.workload.generator;
+
+import io.hops.experiments.benchmarks.common.coin.FileSizeMultiFaceCoin;
+import io.hops.experiments.benchmarks.common.config.ConfigKeys;
+import io.hops.experiments.controller.Logger;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates the same namespace as FileTreeGenerator, but does not keep the
+ * paths of the created files as Strings.
+ *
+ * The dirs are numbered in the order they are generated. DirNamesGenerator
+ * enumerates all the dirs of a level before going one level deeper, so the
+ * path of a dir can be computed from its number. A file is stored as (dir
+ * number, file number, times renamed) in three int arrays, i.e. 12 bytes per
+ * file instead of a String of ~100 chars. The paths are built on demand in a
+ * reusable StringBuilder.
+ *
+ * Like the other pools it is used by one thread only.
+ *
+ * The manifest keeps the files as tree coordinates in creation order,
+ * delta coded, i.e. a few bytes per file.
+ *
+ * @author salman
+ */
+public class CompactFileTreeGenerator implements PersistentFilePool {
+
+  // same names as NameSpaceGenerator and BMOperationsUtils.getRenameDestination
+  private static final String DIR_PREFIX = "/hops_dir";
+  private static final String FILE_PREFIX = "/hops_file_";
+  private static final String RENAMED_PREFIX = "_RN_";
+  private static final String RENAMED_SUFFIX = "_Times";
+  private static final int THRESHOLD = 3;
+
+  private final AccessSampler accessSampler;
+  // the dir of the pool whose manifest was loaded
+  private String threadDir;
+  private int threadDirDepth;
+  private final int filesPerDir;
+  private final int dirPerDir;
+
+  // dirs [headDir, nextDir) have room for more files, see NameSpaceGenerator
+  private int nextDir = 0;
+  private int headDir = 0;
+  private int filesInHeadDir = 0;
+  private int fileCounter = 0;
+  // file handed out by getFileToCreate()
+  private int pendingDir = -1;
+  private int pendingFile = -1;
+
+  private int[] fileDirs = new int[1024];
+  private int[] fileNumbers = new int[1024];
+  private int[] fileRenames = new int[1024];
+  private int fileCount = 0;
+  private int currIndex = -1;
+
+  private final StringBuilder pathBuilder = new StringBuilder(128);
+
+  private final FileSizeMultiFaceCoin fileSizeCoin;
+  private long currentFileSize = -1;
+  private long currentFileDataRead = -1;
+
+  public CompactFileTreeGenerator(String baseDir, int filesPerDir,
+          int dirPerDir, int initialTreeDepth, String fileDistribution) {
+    this(baseDir, filesPerDir, dirPerDir, initialTreeDepth, fileDistribution, null);
+  }
+
+  /**
+   * @param accessSampler picks the files for reads, renames etc. null = uniform
+   */
+  public CompactFileTreeGenerator(String baseDir, int filesPerDir,
+          int dirPerDir, int initialTreeDepth, String fileDistribution, AccessSampler accessSampler) {
+    if (filesPerDir <= 0 || dirPerDir <= 0) {
+      throw new IllegalArgumentException("Files and dirs per dir should be greater than zero");
+    }
+    this.filesPerDir = filesPerDir;
+    this.dirPerDir = dirPerDir;
+    this.accessSampler = accessSampler != null ? accessSampler : new AccessSampler.Uniform();
+    this.threadDir = FileTreeGenerator.getThreadDir(baseDir, UUID.randomUUID(), initialTreeDepth, new Random());
+    this.threadDirDepth = countSlashes(threadDir);
+    if (fileDistribution == null) {
+      fileDistribution = ConfigKeys.FILE_SIZE_IN_Bytes_DEFAULT;
+    }
+    this.fileSizeCoin = new FileSizeMultiFaceCoin(fileDistribution);
+  }
+
+  @Override
+  public String getDirToCreate() {
+    return buildDirPath(nextDir++).toString();
+  }
+
+  @Override
+  public String getFileToCreate() {
+    if (headDir == nextDir) {
+      nextDir++;
+    }
+    pendingDir = headDir;
+    pendingFile = fileCounter++;
+    if (++filesInHeadDir >= filesPerDir) {
+      headDir++;
+      filesInHeadDir = 0;
+    }
+    return buildFilePath(pendingDir, pendingFile, 0);
+  }
+
+  @Override
+  public void fileCreationSucceeded(String file) {
+    if (pendingFile < 0) {
+      throw new IllegalStateException("No file was handed out for creation. File: " + file);
+    }
+    if (fileCount == fileDirs.length) {
+      int capacity = fileDirs.length * 2;
+      fileDirs = Arrays.copyOf(fileDirs, capacity);
+      fileNumbers = Arrays.copyOf(fileNumbers, capacity);
+      fileRenames = Arrays.copyOf(fileRenames, capacity);
+    }
+    fileDirs[fileCount] = pendingDir;
+    fileNumbers[fileCount] = pendingFile;
+    fileRenames[fileCount] = 0;
+    fileCount++;
+    pendingDir = -1;
+    pendingFile = -1;
+  }
+
+  @Override
+  public String getFileToRead() {
+    return getRandomFile();
+  }
+
+  @Override
+  public String getFileToRename() {
+    return getRandomFile();
+  }
+
+  @Override
+  public void fileRenamed(String from, String to) {
+    if (currIndex < 0 || currIndex >= fileCount
+            || !from.equals(buildFilePath(fileDirs[currIndex], fileNumbers[currIndex], fileRenames[currIndex]))) {
+      throw new IllegalStateException("File name did not match.");
+    }
+    fileRenames[currIndex]++;
+  }
+
+  @Override
+  public String getFileToDelete() {
+    if (fileCount == 0) {
+      return null;
+    }
+    currIndex = --fileCount;
+    return buildFilePath(fileDirs[currIndex], fileNumbers[currIndex], fileRenames[currIndex]);
+  }
+
+  @Override
+  public String getDirToStat() {
+    return getRandomDir();
+  }
+
+  @Override
+  public String getFileToStat() {
+    return getRandomFile();
+  }
+
+  @Override
+  public String getFilePathToChangePermissions() {
+    return getRandomFile();
+  }
+
+  @Override
+  public String getDirPathToChangePermissions() {
+    return getRandomDir();
+  }
+
+  @Override
+  public String getFileToInfo() {
+    return getRandomFile();
+  }
+
+  @Override
+  public String getDirToInfo() {
+    return getRandomDir();
+  }
+
+  @Override
+  public String getFileToSetReplication() {
+    return getRandomFile();
+  }
+
+  @Override
+  public String getFileToAppend() {
+    return getRandomFile();
+  }
+
+  @Override
+  public String getFileToChown() {
+    return getRandomFile();
+  }
+
+  @Override
+  public String getDirToChown() {
+    return getRandomDir();
+  }
+
+  @Override
+  public long getFileData(byte[] buffer) throws IOException {
+    long toRead = -1;
+    if ((currentFileDataRead + buffer.length) >= currentFileSize) {
+      toRead = currentFileSize - currentFileDataRead;
+    } else {
+      toRead = buffer.length;
+    }
+
+    if (toRead > 0) {
+      currentFileDataRead += toRead;
+      return toRead;
+    } else {
+      return -1;
+    }
+  }
+
+  @Override
+  public long getNewFileSize() throws IOException {
+    currentFileSize = fileSizeCoin.getFileSize();
+    currentFileDataRead = 0;
+    return currentFileSize;
+  }
+
+  @Override
+  public boolean hasMoreFilesToWrite() {
+    return true;
+  }
+
+  @Override
+  public void writeManifest(DataOutput out) throws IOException {
+    NamespaceManifest.writeString(out, threadDir);
+    NamespaceManifest.writeVarLong(out, filesPerDir);
+    NamespaceManifest.writeVarLong(out, dirPerDir);
+    NamespaceManifest.writeVarLong(out, nextDir);
+    NamespaceManifest.writeVarLong(out, headDir);
+    NamespaceManifest.writeVarLong(out, filesInHeadDir);
+    NamespaceManifest.writeVarLong(out, fileCounter);
+    NamespaceManifest.writeVarLong(out, fileCount);
+    int previousDir = 0;
+    int previousFile = 0;
+    for (int i = 0; i < fileCount; i++) {
+      NamespaceManifest.writeVarSignedLong(out, fileDirs[i] - previousDir);
+      NamespaceManifest.writeVarSignedLong(out, fileNumbers[i] - previousFile);
+      NamespaceManifest.writeVarLong(out, fileRenames[i]);
+      previousDir = fileDirs[i];
+      previousFile = fileNumbers[i];
+    }
+  }
+
+  @Override
+  public void readManifest(ByteBuffer in) throws IOException {
+    if (fileCount > 0 || fileCounter > 0 || nextDir > 0) {
+      throw new IllegalStateException("Can not load a manifest into a pool that created files");
+    }
+    String dir = NamespaceManifest.readString(in);
+    int manifestFilesPerDir = NamespaceManifest.readVarInt(in);
+    int manifestDirPerDir = NamespaceManifest.readVarInt(in);
+    if (manifestFilesPerDir != filesPerDir || manifestDirPerDir != dirPerDir) {
+      throw new IllegalStateException("The manifest has " + manifestFilesPerDir + " files and "
+              + manifestDirPerDir + " dirs per dir. Expected " + filesPerDir + " and " + dirPerDir);
+    }
+    nextDir = NamespaceManifest.readVarInt(in);
+    headDir = NamespaceManifest.readVarInt(in);
+    filesInHeadDir = NamespaceManifest.readVarInt(in);
+    fileCounter = NamespaceManifest.readVarInt(in);
+    int count = NamespaceManifest.readVarInt(in);
+    int capacity = Math.max(fileDirs.length, count);
+    fileDirs = new int[capacity];
+    fileNumbers = new int[capacity];
+    fileRenames = new int[capacity];
+    int previousDir = 0;
+    int previousFile = 0;
+    for (int i = 0; i < count; i++) {
+      previousDir += (int) NamespaceManifest.readVarSignedLong(in);
+      previousFile += (int) NamespaceManifest.readVarSignedLong(in);
+      fileDirs[i] = previousDir;
+      fileNumbers[i] = previousFile;
+      fileRenames[i] = NamespaceManifest.readVarInt(in);
+    }
+    fileCount = count;
+    threadDir = dir;
+    threadDirDepth = countSlashes(threadDir);
+  }
+
+  public int getFileCount() {
+    return fileCount;
+  }
+
+  private String getRandomFile() {
+    for (int i = 0; i < fileCount; i++) {
+      currIndex = accessSampler.next(fileCount);
+      // dir slashes + the file name
+      if (threadDirDepth + getDirDepth(fileDirs[currIndex]) + 1 < THRESHOLD) {
+        continue;
+      }
+      return buildFilePath(fileDirs[currIndex], fileNumbers[currIndex], fileRenames[currIndex]);
+    }
+    Logger.printMsg("Error: Unable to getRandomFile from file pool: " + this + " PoolSize is: " + fileCount);
+    return null;
+  }
+
+  private String getRandomDir() {
+    for (int i = 0; i < fileCount; i++) {
+      currIndex = accessSampler.next(fileCount);
+      if (threadDirDepth + getDirDepth(fileDirs[currIndex]) < THRESHOLD) {
+        continue;
+      }
+      return buildDirPath(fileDirs[currIndex]).toString();
+    }
+    Logger.printMsg("Error: Unable to getRandomDir from file pool: " + this + " PoolSize is: " + fileCount);
+    return null;
+  }
+
+  private String buildFilePath(int dir, int file, int renames) {
+    StringBuilder path = buildDirPath(dir);
+    appendFileName(path, file, renames);
+    return path.toString();
+  }
+
+  private StringBuilder buildDirPath(int dir) {
+    pathBuilder.setLength(0);
+    pathBuilder.append(threadDir);
+    appendDirPath(pathBuilder, dir, dirPerDir);
+    return pathBuilder;
+  }
+
+  private int getDirDepth(int dir) {
+    return getDirDepth(dir, dirPerDir);
+  }
+
+  static void appendFileName(StringBuilder path, long file, int renames) {
+    path.append(FILE_PREFIX).append(file);
+    if (renames > 0) {
+      // BMOperationsUtils.getRenameDestination replaces the counter
+      path.append(RENAMED_PREFIX).append(renames).append(RENAMED_SUFFIX);
+    }
+  }
+
+  /**
+   * DirNamesGenerator generates the dirPerDir dirs of the first level,
+   * then the dirPerDir^2 dirs of the second level and so on. Within a level
+   * the path components are the digits of the dir's rank in base dirPerDir.
+   */
+  static void appendDirPath(StringBuilder path, long dir, int dirPerDir) {
+    long rank = dir;
+    long levelSize = dirPerDir;
+    while (rank >= levelSize) {
+      rank -= levelSize;
+      levelSize *= dirPerDir;
+    }
+    for (long divisor = levelSize / dirPerDir; divisor > 0; divisor /= dirPerDir) {
+      path.append(DIR_PREFIX).append(rank / divisor);
+      rank %= divisor;
+    }
+  }
+
+  static int getDirDepth(long dir, int dirPerDir) {
+    long rank = dir;
+    long levelSize = dirPerDir;
+    int depth = 1;
+    while (rank >= levelSize) {
+      rank -= levelSize;
+      levelSize *= dirPerDir;
+      depth++;
+    }
+    return depth;
+  }
+
+  private static int countSlashes(String path) {
+    int count = 0;
+    for (int i = 0; i < path.length(); i++) {
+      if (path.charAt(i) == '/') {
+        count++;
+      }
+    }
+    return count;
+  }
+}
@@ -5,22 +5,39 @@ import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Iterator;
-import java.util.List;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Catalogue of the files under a local dir, shared by all the threads of the
+ * slave. A background thread memory maps the files in catalogue order and
+ * loads them into the page cache, keeping up to prefetch files ahead of the
+ * threads that copy them to the file system. A file is unmapped when it is
+ * closed, so at most prefetch files plus one per thread are mapped.
+ */
 public class DiskNameSpaceReader {
     private static DiskNameSpaceReader instance = null;
     private static String instancePath = null;
-    private static List<File> list = null;
 
+    private final File[] files;
+    private final BlockingQueue<DiskFile> prefetched;
+    private volatile boolean prefetcherDone = false;
 
-    public synchronized static DiskNameSpaceReader getInstance(String path) {
+    public synchronized static DiskNameSpaceReader getInstance(String path, int prefetch) {
         if (instance == null) {
-            instance = new DiskNameSpaceReader(path);
+            instance = new DiskNameSpaceReader(path, prefetch);
             instancePath = path;
         }
 
-        if (instancePath != path) {
+        if (!instancePath.equals(path)) {
             throw new IllegalArgumentException("DiskNameSpaceReader is a singleton." +
                     " It can not handle multiple paths");
         }
@@ -28,32 +45,194 @@ public class DiskNameSpaceReader {
         return instance;
     }
 
-    private static void readDir(String path) {
+    private static File[] readDir(String path) {
         long startTime = System.currentTimeMillis();
-        FileUtils files = new FileUtils();
-        list = (List<File>) files.listFiles(new File(path), null, true);
+        Collection<File> list = FileUtils.listFiles(new File(path), null, true);
         Logger.printMsg("Reading the namespace containing " + list.size() + " files from the disk took " + (System.currentTimeMillis() - startTime) + " ms");
+        return list.toArray(new File[list.size()]);
     }
 
-    private DiskNameSpaceReader(String path) {
-        readDir(path);
+    private DiskNameSpaceReader(String path, int prefetch) {
+        if (prefetch <= 0) {
+            throw new IllegalArgumentException("Prefetch should be greater than zero. Got: " + prefetch);
+        }
+        files = readDir(path);
+        prefetched = new ArrayBlockingQueue<DiskFile>(prefetch);
+        Thread prefetcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                prefetch();
+            }
+        }, "DiskNameSpacePrefetcher");
+        prefetcher.setDaemon(true);
+        prefetcher.start();
+    }
+
+    private void prefetch() {
+        try {
+            for (File file : files) {
+                try {
+                    prefetched.put(DiskFile.open(file));
+                } catch (IOException e) {
+                    Logger.error(e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            prefetcherDone = true;
+        }
     }
 
-    public synchronized File getFile() throws IOException {
-        while (list.size() > 0) {
-            File file = list.remove(0);
-//            if (file.length() <= (64 * 1024)) {
-                return file.getCanonicalFile();
- //           }
+    /**
+     * @return the next file or null if all the files have been handed out
+     */
+    public DiskFile getFile() throws IOException {
+        try {
+            while (true) {
+                DiskFile file = prefetched.poll(100, TimeUnit.MILLISECONDS);
+                if (file != null) {
+                    return file;
+                }
+                if (prefetcherDone && prefetched.isEmpty()) {
+                    return null;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the next file");
         }
-        return null;
     }
 
-    public synchronized boolean hasMoreFiles() {
-        if (list.size() > 0) {
-            return true;
-        } else {
-            return false;
+    public boolean hasMoreFiles() {
+        return !prefetcherDone || !prefetched.isEmpty();
+    }
+
+    /**
+     * A file mapped into memory. Files larger than a mapping can be are read
+     * through their channel. Not thread safe, a file is read by one thread.
+     */
+    public static class DiskFile {
+        private final File file;
+        private final long length;
+        private MappedByteBuffer mapped;
+        private final FileChannel channel;
+        private long position = 0;
+
+        private DiskFile(File file, long length, MappedByteBuffer mapped, FileChannel channel) {
+            this.file = file;
+            this.length = length;
+            this.mapped = mapped;
+            this.channel = channel;
+        }
+
+        static DiskFile open(File file) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                return new DiskFile(file, length, null, channel);
+            }
+            try {
+                // the mapping stays valid after the channel is closed
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                mapped.load();
+                return new DiskFile(file, length, mapped, null);
+            } finally {
+                raf.close();
+            }
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public long length() {
+            return length;
+        }
+
+        /**
+         * @return bytes copied into the buffer or -1 at the end of the file
+         */
+        public int read(byte[] buffer) throws IOException {
+            if (position >= length) {
+                return -1;
+            }
+            int toRead = (int) Math.min(buffer.length, length - position);
+            if (mapped != null) {
+                mapped.get(buffer, 0, toRead);
+            } else {
+                toRead = channel.read(ByteBuffer.wrap(buffer, 0, toRead), position);
+                if (toRead < 0) {
+                    return -1;
+                }
+            }
+            position += toRead;
+            return toRead;
+        }
+
+        public void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+            }
+            if (mapped != null) {
+                // reading an unmapped buffer crashes the JVM, so drop it first
+                MappedByteBuffer buffer = mapped;
+                mapped = null;
+                // the next read returns -1
+                position = length;
+                Unmapper.unmap(buffer);
+            }
+        }
+    }
+
+    /**
+     * Releases a mapping without waiting for the GC to collect the buffer.
+     * There is no public API for it, so it calls the JDK internals: the
+     * buffer's cleaner up to Java 8 and Unsafe.invokeCleaner since Java 9.
+     * If neither is there the mapping is released by the GC.
+     */
+    private static class Unmapper {
+        private static final Object UNSAFE;
+        private static final Method INVOKE_CLEANER;
+        private static volatile boolean failed = false;
+
+        static {
+            Object unsafe = null;
+            Method invokeCleaner = null;
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                unsafe = theUnsafe.get(null);
+            } catch (Exception e) {
+                // before Java 9, use the cleaner of the buffer
+                invokeCleaner = null;
+            }
+            UNSAFE = unsafe;
+            INVOKE_CLEANER = invokeCleaner;
+        }
+
+        static void unmap(MappedByteBuffer buffer) {
+            if (failed) {
+                return;
+            }
+            try {
+                if (INVOKE_CLEANER != null) {
+                    INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                } else {
+                    Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                    cleanerMethod.setAccessible(true);
+                    Object cleaner = cleanerMethod.invoke(buffer);
+                    if (cleaner != null) {
+                        cleaner.getClass().getMethod("clean").invoke(cleaner);
+                    }
+                }
+            } catch (Exception e) {
+                failed = true;
+                Logger.printMsg("Unable to unmap the disk files, leaving them to the GC. " + e);
+            }
         }
     }
 }
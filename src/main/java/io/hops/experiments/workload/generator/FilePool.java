@@ -60,6 +60,13 @@ public interface FilePool {
   
   public String getDirToChown();
 
+  /**
+   * The buffer is the thread's own copy of its payload page. Pools that
+   * generate the data only return how many of its bytes to write, the pools
+   * that copy files from the disk read into it.
+   *
+   * @return number of bytes to write from the buffer or -1 at the end of the file
+   */
   public long getFileData(byte[] buffer) throws IOException;
 
   public long getNewFileSize() throws IOException;
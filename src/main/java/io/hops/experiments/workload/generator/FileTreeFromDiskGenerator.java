@@ -16,19 +16,7 @@
  */
 package io.hops.experiments.workload.generator;
 
-import io.hops.experiments.benchmarks.common.coin.FileSizeMultiFaceCoin;
-import io.hops.experiments.controller.Logger;
-
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.net.InetAddress;
-import java.net.UnknownHostException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
-import java.util.UUID;
 
 /**
  *
@@ -36,21 +24,26 @@ import java.util.UUID;
  */
 public class FileTreeFromDiskGenerator extends FileTreeGenerator {
 
-    private File currentFile = null;
-    private FileInputStream inputStream = null;
+    private DiskNameSpaceReader.DiskFile currentFile = null;
 
     DiskNameSpaceReader diskNameSpaceReader = null;
 
     public FileTreeFromDiskGenerator(String baseDir, int filesPerDir,
-                                     int dirPerDir, int initialTreeDepth, String path) {
+                                     int dirPerDir, int initialTreeDepth, String path, int prefetch) {
         super(baseDir, filesPerDir, dirPerDir, initialTreeDepth, null);
-        diskNameSpaceReader = DiskNameSpaceReader.getInstance(path);
+        diskNameSpaceReader = DiskNameSpaceReader.getInstance(path, prefetch);
     }
 
     @Override
     public long getFileData(byte[] buffer) throws IOException {
-        if(inputStream != null){
-            return  inputStream.read(buffer);
+        if(currentFile != null){
+            int read = currentFile.read(buffer);
+            if (read < 0) {
+                // unmap it now, the thread may not create another file
+                currentFile.close();
+                currentFile = null;
+            }
+            return read;
         } else {
             return -1;
         }
@@ -59,22 +52,16 @@ public class FileTreeFromDiskGenerator extends FileTreeGenerator {
 
     @Override
     public long getNewFileSize() throws IOException {
-        if(inputStream != null){
+        if(currentFile != null){
            //close the old file
-            inputStream.close();
+            currentFile.close();
         }
         currentFile = diskNameSpaceReader.getFile();
         if (currentFile != null) {
-            System.out.println("File: " + currentFile.getCanonicalPath() + " Size: " + currentFile.length());
-            inputStream = new FileInputStream(currentFile.getAbsoluteFile());
             return currentFile.length();
         } else {
-            inputStream = null;
-            currentFile = null;
             return 0;
         }
-
-
     }
 
     @Override
@@ -88,4 +75,3 @@ public class FileTreeFromDiskGenerator extends FileTreeGenerator {
         return super.getFileToDelete();
     }
 }
-
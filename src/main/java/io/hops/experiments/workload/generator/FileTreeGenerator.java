@@ -21,17 +21,21 @@ import io.hops.experiments.benchmarks.common.config.ConfigKeys;
 import io.hops.experiments.controller.Logger;
 import org.apache.commons.lang.StringUtils;
 
+import java.io.DataOutput;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 /**
+ * The manifest keeps the paths sorted and front coded. A pool that loads it
+ * creates its new files in its own thread dir.
  *
  * @author salman
  */
-public class FileTreeGenerator implements FilePool {
+public class FileTreeGenerator implements PersistentFilePool {
 
   private Random rand1;
   private UUID uuid = null;
@@ -44,10 +48,20 @@ public class FileTreeGenerator implements FilePool {
   private FileSizeMultiFaceCoin fileSizeCoin;
   private long currentFileSize = -1;
   private long currentFileDataRead = -1;
+  private final AccessSampler accessSampler;
 
   public FileTreeGenerator(String baseDir, int filesPerDir,
           int dirPerDir, int initialTreeDepth, String fileDistribution) {
+    this(baseDir, filesPerDir, dirPerDir, initialTreeDepth, fileDistribution, null);
+  }
+
+  /**
+   * @param accessSampler picks the files for reads, renames etc. null = uniform
+   */
+  public FileTreeGenerator(String baseDir, int filesPerDir,
+          int dirPerDir, int initialTreeDepth, String fileDistribution, AccessSampler accessSampler) {
 
+    this.accessSampler = accessSampler != null ? accessSampler : new AccessSampler.Uniform();
     this.allThreadFiles = new ArrayList<String>(10000);
     this.allThreadDirs = new ArrayList<String>(10000);
     this.rand1 = new Random(System.currentTimeMillis());
@@ -60,11 +74,21 @@ public class FileTreeGenerator implements FilePool {
     fileSizeCoin = new FileSizeMultiFaceCoin(fileDistribution);
 
 
+    threadDir = getThreadDir(baseDir, uuid, initialTreeDepth, rand1);
+
+    nameSpaceGenerator = new NameSpaceGenerator(threadDir, filesPerDir, dirPerDir);
+  }
+
+  /**
+   * @return a dir that is unique to the calling pool, i.e. base dir / machine
+   * name / uuid padded with added_depth_X dirs up to initialTreeDepth
+   */
+  static String getThreadDir(String baseDir, UUID uuid, int initialTreeDepth, Random rand) {
     String machineName = "";
     try {
       machineName = InetAddress.getLocalHost().getHostName();
     } catch (UnknownHostException e) {
-      machineName = "Client_Machine+" + rand1.nextInt();
+      machineName = "Client_Machine+" + rand.nextInt();
     }
 
     baseDir = baseDir.trim();
@@ -72,6 +96,7 @@ public class FileTreeGenerator implements FilePool {
       baseDir = baseDir + "/";
     }
 
+    String threadDir;
     if(baseDir.compareTo("/")==0){
       threadDir = baseDir + machineName+"_"+uuid;
     }else{
@@ -80,15 +105,12 @@ public class FileTreeGenerator implements FilePool {
 
     String[] comp = PathUtils.getPathNames(threadDir);
 
-    int more = 0;
     if (initialTreeDepth - comp.length > 0) {
-      more = initialTreeDepth - comp.length;
       for (int i = comp.length; i < (initialTreeDepth); i++) {
         threadDir += "/added_depth_" + i;
       }
     }
-
-    nameSpaceGenerator = new NameSpaceGenerator(threadDir, filesPerDir, dirPerDir);
+    return threadDir;
   }
 
   @Override
@@ -121,7 +143,7 @@ public class FileTreeGenerator implements FilePool {
     }
 
     for (int i = 0; i < allThreadFiles.size(); i++) {
-      currIndex = rand1.nextInt(allThreadFiles.size());
+      currIndex = accessSampler.next(allThreadFiles.size());
       String path = allThreadFiles.get(currIndex);
       if (getPathLength(path) < THRESHOLD) {
         continue;
@@ -228,9 +250,6 @@ public class FileTreeGenerator implements FilePool {
     }
 
     if(toRead>0) {
-      for (int i = 0; i < toRead; i++) {
-        buffer[i] = 0;
-      }
       currentFileDataRead += toRead;
       return toRead;
     } else {
@@ -251,10 +270,22 @@ public class FileTreeGenerator implements FilePool {
   }
 
 
+  @Override
+  public void writeManifest(DataOutput out) throws IOException {
+    NamespaceManifest.writePaths(out, allThreadFiles);
+    NamespaceManifest.writePaths(out, allThreadDirs);
+  }
+
+  @Override
+  public void readManifest(ByteBuffer in) throws IOException {
+    NamespaceManifest.readPaths(in, allThreadFiles);
+    NamespaceManifest.readPaths(in, allThreadDirs);
+  }
+
   private String getRandomFile() {
     if (!allThreadFiles.isEmpty()) {
       for (int i = 0; i < allThreadFiles.size(); i++) {
-        currIndex = rand1.nextInt(allThreadFiles.size());
+        currIndex = accessSampler.next(allThreadFiles.size());
         String path = allThreadFiles.get(currIndex);
         if (getPathLength(path) < THRESHOLD) {
           continue;
@@ -277,7 +308,7 @@ public class FileTreeGenerator implements FilePool {
   public String getRandomDir() {
     if (!allThreadFiles.isEmpty()) {
       for (int i = 0; i < allThreadFiles.size(); i++) {
-        currIndex = rand1.nextInt(allThreadFiles.size());
+        currIndex = accessSampler.next(allThreadFiles.size());
         String path = allThreadFiles.get(currIndex);
         int dirIndex = path.lastIndexOf("/");
         path = path.substring(0, dirIndex);
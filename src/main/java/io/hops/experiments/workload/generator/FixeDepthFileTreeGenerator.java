@@ -23,6 +23,11 @@ package io.hops.experiments.workload.generator;
 public class FixeDepthFileTreeGenerator extends FileTreeGenerator implements FilePool {
 
   public FixeDepthFileTreeGenerator(String baseDir, int treeDepth, String fileSizeDistribution) {
-    super(baseDir, Integer.MAX_VALUE, Integer.MAX_VALUE, treeDepth, fileSizeDistribution);
+    this(baseDir, treeDepth, fileSizeDistribution, null);
+  }
+
+  public FixeDepthFileTreeGenerator(String baseDir, int treeDepth, String fileSizeDistribution,
+          AccessSampler accessSampler) {
+    super(baseDir, Integer.MAX_VALUE, Integer.MAX_VALUE, treeDepth, fileSizeDistribution, accessSampler);
   }
 }
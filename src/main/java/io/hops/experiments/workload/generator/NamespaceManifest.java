@@ -0,0 +1,270 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.workload.generator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Saves the files of a pool after the warm up, so that a later run loads
+ * them instead of creating the namespace again. One manifest per thread.
+ *
+ * A manifest is a header, the magic number, the version, the settings
+ * that shaped the namespace and the class of the pool, followed by the
+ * pool's own data. A manifest whose settings differ from the current ones
+ * is not loaded. The numbers are varints and
+ * the pools store their files either as tree coordinates or as paths in
+ * creation order, each path stored as the length of the prefix it shares
+ * with the previous path and the rest of the path. The files created one
+ * after the other are mostly in the same dir, so the prefixes are long. The manifest is mapped into
+ * memory to load it.
+ *
+ * @author salman
+ */
+public class NamespaceManifest {
+
+  private static final int MAGIC = 0x484d4e46; // HMNF
+  private static final int VERSION = 3;
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  public static File getManifestFile(String dir, int slaveId, int thread) {
+    return new File(dir, "slave-" + slaveId + "-thread-" + thread + ".manifest");
+  }
+
+  /**
+   * @param settings the settings that shaped the namespace, e.g. the base
+   * dir and the number of slaves and threads
+   */
+  /**
+   * @return the file that marks the manifests of the slave as out of date
+   */
+  public static File getDirtyFile(String dir, int slaveId) {
+    return new File(dir, "slave-" + slaveId + ".dirty");
+  }
+
+  public static void save(FilePool pool, File file, String settings) throws IOException {
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (!parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Unable to create the dir " + parent);
+    }
+    // a manifest is either complete or missing
+    File tmp = new File(parent, file.getName() + ".tmp");
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      writeString(out, settings);
+      save(pool, out);
+    } finally {
+      out.close();
+    }
+    if (file.exists() && !file.delete()) {
+      throw new IOException("Unable to replace " + file);
+    }
+    if (!tmp.renameTo(file)) {
+      throw new IOException("Unable to rename " + tmp + " to " + file);
+    }
+  }
+
+  /**
+   * Writes the class and the files of the pool. Used by the pools that
+   * wrap other pools
+   */
+  public static void save(FilePool pool, DataOutput out) throws IOException {
+    PersistentFilePool persistentPool = getPersistentPool(pool);
+    writeString(out, pool.getClass().getName());
+    persistentPool.writeManifest(out);
+  }
+
+  public static void load(FilePool pool, File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("The manifest " + file + " is too large to map");
+      }
+      ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (in.remaining() < 8 || in.getInt() != MAGIC) {
+        throw new IOException(file + " is not a namespace manifest");
+      }
+      int version = in.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported version " + version + " of the manifest " + file);
+      }
+      readString(in);
+      load(pool, in);
+    } catch (BufferUnderflowException e) {
+      throw new IOException("The manifest " + file + " is truncated");
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * @return the settings the manifest was saved with, null if the file is
+   * not a manifest of this version
+   */
+  public static String readSettings(File file) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 4096));
+    try {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        return null;
+      }
+      long length = 0;
+      for (int shift = 0; ; shift += 7) {
+        if (shift >= 35) {
+          return null;
+        }
+        byte b = in.readByte();
+        length |= (long) (b & 0x7f) << shift;
+        if ((b & 0x80) == 0) {
+          break;
+        }
+      }
+      if (length > Integer.MAX_VALUE) {
+        return null;
+      }
+      byte[] bytes = new byte[(int) length];
+      in.readFully(bytes);
+      return new String(bytes, UTF8);
+    } catch (EOFException e) {
+      return null;
+    } finally {
+      in.close();
+    }
+  }
+
+  public static void load(FilePool pool, ByteBuffer in) throws IOException {
+    PersistentFilePool persistentPool = getPersistentPool(pool);
+    String poolClass = readString(in);
+    if (!poolClass.equals(pool.getClass().getName())) {
+      throw new IOException("The manifest was written by a " + poolClass + ", not by a "
+              + pool.getClass().getName());
+    }
+    persistentPool.readManifest(in);
+  }
+
+  private static PersistentFilePool getPersistentPool(FilePool pool) {
+    if (!(pool instanceof PersistentFilePool)) {
+      throw new UnsupportedOperationException("The file pool " + pool + " can not be saved in a manifest");
+    }
+    return (PersistentFilePool) pool;
+  }
+
+  public static void writeVarLong(DataOutput out, long value) throws IOException {
+    while ((value & ~0x7fL) != 0) {
+      out.writeByte((int) ((value & 0x7f) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  public static long readVarLong(ByteBuffer in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = in.get();
+      value |= (long) (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed varint in the manifest");
+  }
+
+  /**
+   * Small negative numbers take as few bytes as small positive ones
+   */
+  public static void writeVarSignedLong(DataOutput out, long value) throws IOException {
+    writeVarLong(out, (value << 1) ^ (value >> 63));
+  }
+
+  public static long readVarSignedLong(ByteBuffer in) throws IOException {
+    long value = readVarLong(in);
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  public static int readVarInt(ByteBuffer in) throws IOException {
+    long value = readVarLong(in);
+    if (value > Integer.MAX_VALUE) {
+      throw new IOException("Malformed manifest. " + value + " is not an int");
+    }
+    return (int) value;
+  }
+
+  public static void writeString(DataOutput out, String string) throws IOException {
+    byte[] bytes = string.getBytes(UTF8);
+    writeVarLong(out, bytes.length);
+    out.write(bytes);
+  }
+
+  public static String readString(ByteBuffer in) throws IOException {
+    byte[] bytes = new byte[readVarInt(in)];
+    in.get(bytes);
+    return new String(bytes, UTF8);
+  }
+
+  /**
+   * Writes the paths in their order, each one as the number of chars it
+   * shares with the previous path and the rest of the path. The order is
+   * kept because the pools rank their files by creation order
+   */
+  public static void writePaths(DataOutput out, List<String> paths) throws IOException {
+    writeVarLong(out, paths.size());
+    String previous = "";
+    for (String path : paths) {
+      int shared = 0;
+      int max = Math.min(previous.length(), path.length());
+      while (shared < max && previous.charAt(shared) == path.charAt(shared)) {
+        shared++;
+      }
+      if (shared > 0 && Character.isHighSurrogate(path.charAt(shared - 1))) {
+        shared--;
+      }
+      writeVarLong(out, shared);
+      writeString(out, path.substring(shared));
+      previous = path;
+    }
+  }
+
+  public static void readPaths(ByteBuffer in, List<String> paths) throws IOException {
+    int count = readVarInt(in);
+    StringBuilder path = new StringBuilder(128);
+    for (int i = 0; i < count; i++) {
+      int shared = readVarInt(in);
+      if (shared > path.length()) {
+        throw new IOException("Malformed manifest. Prefix " + shared + " of " + path);
+      }
+      path.setLength(shared);
+      path.append(readString(in));
+      paths.add(path.toString());
+    }
+  }
+}
@@ -0,0 +1,38 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.workload.generator;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A pool whose files can be saved to a namespace manifest and loaded by a
+ * later run, see NamespaceManifest.
+ *
+ * @author salman
+ */
+public interface PersistentFilePool extends FilePool {
+
+  public void writeManifest(DataOutput out) throws IOException;
+
+  /**
+   * Adds the files of the manifest to the pool. The pool is new, i.e. it
+   * has no files yet.
+   */
+  public void readManifest(ByteBuffer in) throws IOException;
+}
@@ -0,0 +1,238 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.workload.generator;
+
+import io.hops.experiments.benchmarks.common.coin.FileSizeMultiFaceCoin;
+import io.hops.experiments.benchmarks.common.coin.SplitMix64Random;
+import io.hops.experiments.benchmarks.common.config.ConfigKeys;
+import io.hops.experiments.controller.Logger;
+
+import java.io.IOException;
+
+/**
+ * The pool of one thread over the SharedNamespace. Reads, stats etc. pick
+ * any file created by the threads of the slave, so the threads hit the same
+ * files and dirs.
+ *
+ * A file picked for rename or delete is taken out of the namespace so that
+ * two threads do not rename or delete the same file. If the rename fails the
+ * file is put back with its old name. Other threads can still read a file
+ * while it is being renamed or deleted; such ops fail like they would with
+ * real clients.
+ *
+ * @author salman
+ */
+public class SharedFileTreeGenerator implements FilePool {
+
+  private final SharedNamespace namespace;
+  private final SplitMix64Random rand = new SplitMix64Random();
+  private final AccessSampler accessSampler;
+  private final AccessSampler deleteSampler = new AccessSampler.Uniform();
+  private final StringBuilder pathBuilder = new StringBuilder(128);
+  private final long[] entry = new long[2];
+
+  private long pendingFile = -1;
+  // file taken out for rename. {file, renames}
+  private final long[] renaming = new long[2];
+  private boolean isRenaming = false;
+  private String renamingPath;
+
+  private final FileSizeMultiFaceCoin fileSizeCoin;
+  private long currentFileSize = -1;
+  private long currentFileDataRead = -1;
+
+  /**
+   * @param accessSampler picks the files for reads, renames etc. null = uniform
+   */
+  public SharedFileTreeGenerator(SharedNamespace namespace, String fileDistribution,
+          AccessSampler accessSampler) {
+    this.namespace = namespace;
+    this.accessSampler = accessSampler != null ? accessSampler : new AccessSampler.Uniform();
+    if (fileDistribution == null) {
+      fileDistribution = ConfigKeys.FILE_SIZE_IN_Bytes_DEFAULT;
+    }
+    this.fileSizeCoin = new FileSizeMultiFaceCoin(fileDistribution);
+  }
+
+  @Override
+  public String getDirToCreate() {
+    pathBuilder.setLength(0);
+    namespace.appendNewDirPath(pathBuilder, namespace.nextDir());
+    return pathBuilder.toString();
+  }
+
+  @Override
+  public String getFileToCreate() {
+    pendingFile = namespace.nextFile();
+    return buildFilePath(pendingFile, 0);
+  }
+
+  @Override
+  public void fileCreationSucceeded(String file) {
+    if (pendingFile < 0) {
+      throw new IllegalStateException("No file was handed out for creation. File: " + file);
+    }
+    namespace.add(pendingFile, 0);
+    pendingFile = -1;
+  }
+
+  @Override
+  public String getFileToRead() {
+    return getRandomFile();
+  }
+
+  @Override
+  public String getFileToRename() {
+    putBackRenaming();
+    if (!namespace.pick(rand, accessSampler, renaming, true)) {
+      return noFiles("getFileToRename");
+    }
+    isRenaming = true;
+    renamingPath = buildFilePath(renaming[0], (int) renaming[1]);
+    return renamingPath;
+  }
+
+  @Override
+  public void fileRenamed(String from, String to) {
+    if (!isRenaming || !renamingPath.equals(from)) {
+      throw new IllegalStateException("File name did not match.");
+    }
+    namespace.add(renaming[0], (int) renaming[1] + 1);
+    isRenaming = false;
+  }
+
+  @Override
+  public String getFileToDelete() {
+    if (!namespace.pick(rand, deleteSampler, entry, true)) {
+      return null;
+    }
+    return buildFilePath(entry[0], (int) entry[1]);
+  }
+
+  @Override
+  public String getDirToStat() {
+    return getRandomDir();
+  }
+
+  @Override
+  public String getFileToStat() {
+    return getRandomFile();
+  }
+
+  @Override
+  public String getFilePathToChangePermissions() {
+    return getRandomFile();
+  }
+
+  @Override
+  public String getDirPathToChangePermissions() {
+    return getRandomDir();
+  }
+
+  @Override
+  public String getFileToInfo() {
+    return getRandomFile();
+  }
+
+  @Override
+  public String getDirToInfo() {
+    return getRandomDir();
+  }
+
+  @Override
+  public String getFileToSetReplication() {
+    return getRandomFile();
+  }
+
+  @Override
+  public String getFileToAppend() {
+    return getRandomFile();
+  }
+
+  @Override
+  public String getFileToChown() {
+    return getRandomFile();
+  }
+
+  @Override
+  public String getDirToChown() {
+    return getRandomDir();
+  }
+
+  @Override
+  public long getFileData(byte[] buffer) throws IOException {
+    long toRead = -1;
+    if ((currentFileDataRead + buffer.length) >= currentFileSize) {
+      toRead = currentFileSize - currentFileDataRead;
+    } else {
+      toRead = buffer.length;
+    }
+
+    if (toRead > 0) {
+      currentFileDataRead += toRead;
+      return toRead;
+    } else {
+      return -1;
+    }
+  }
+
+  @Override
+  public long getNewFileSize() throws IOException {
+    currentFileSize = fileSizeCoin.getFileSize();
+    currentFileDataRead = 0;
+    return currentFileSize;
+  }
+
+  @Override
+  public boolean hasMoreFilesToWrite() {
+    return true;
+  }
+
+  private void putBackRenaming() {
+    if (isRenaming) {
+      namespace.add(renaming[0], (int) renaming[1]);
+      isRenaming = false;
+    }
+  }
+
+  private String getRandomFile() {
+    if (!namespace.pick(rand, accessSampler, entry, false)) {
+      return noFiles("getRandomFile");
+    }
+    return buildFilePath(entry[0], (int) entry[1]);
+  }
+
+  private String getRandomDir() {
+    if (!namespace.pick(rand, accessSampler, entry, false)) {
+      return noFiles("getRandomDir");
+    }
+    pathBuilder.setLength(0);
+    namespace.appendDirPath(pathBuilder, namespace.getDirOf(entry[0]));
+    return pathBuilder.toString();
+  }
+
+  private String buildFilePath(long file, int renames) {
+    pathBuilder.setLength(0);
+    namespace.appendFilePath(pathBuilder, file, renames);
+    return pathBuilder.toString();
+  }
+
+  private String noFiles(String caller) {
+    Logger.printMsg("Error: Unable to " + caller + " from shared file pool: " + this + " PoolSize is: " + namespace.size());
+    return null;
+  }
+}
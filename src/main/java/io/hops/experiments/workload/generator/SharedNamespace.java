@@ -0,0 +1,312 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.workload.generator;
+
+import io.hops.experiments.benchmarks.common.coin.SplitMix64Random;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The files created by all the threads of a slave. Used through
+ * SharedFileTreeGenerator.
+ *
+ * A file is identified by a number. File n is hops_file_n in dir
+ * n / filesPerDir of the tree, numbered as in CompactFileTreeGenerator.
+ * Slave s of S creates the files s, s + S, s + 2S, ... so in the CLUSTER mode
+ * the files of all the slaves are interleaved in the same dirs. In the
+ * SLAVE mode each slave has its own tree.
+ *
+ * The created files are spread over lock striped buckets so that the
+ * threads rarely wait for each other. A removed file leaves a hole in its
+ * bucket that is compacted later, so the files of a bucket stay in
+ * creation order, as the samplers expect. A renamed file is added again,
+ * i.e. it becomes the newest file.
+ *
+ * In the CLUSTER mode the master sends every slave the number of files the
+ * others issued in the warm up. The reads, stats etc. then also pick the
+ * other slaves' files, in proportion to their number, and compute their
+ * paths from the numbering. The renames and deletes only take the slave's
+ * own files. A file of another slave that was renamed or deleted after the
+ * warm up is not found, like it would not be found by a real client.
+ *
+ * @author salman
+ */
+public class SharedNamespace {
+
+  static final int STRIPES = 64;  // power of 2
+  private static final String MKDIRS_DIR = "/hops_mkdirs";
+  private static SharedNamespace instance;
+
+  private final String root;
+  private final int filesPerDir;
+  private final int dirPerDir;
+  private final int slaveId;
+  private final int numSlaves;
+  private final AtomicLong filesIssued = new AtomicLong(0);
+  private final AtomicLong dirsIssued = new AtomicLong(0);
+  private final Stripe[] stripes = new Stripe[STRIPES];
+  // own files in the stripes
+  private final AtomicLong liveFiles = new AtomicLong(0);
+  // files issued by each slave in the warm up. null = only the own files
+  private volatile long[] peerFiles;
+  private volatile long peerFilesTotal;
+
+  SharedNamespace(String root, int filesPerDir, int dirPerDir, int slaveId, int numSlaves) {
+    if (filesPerDir <= 0 || dirPerDir <= 0) {
+      throw new IllegalArgumentException("Files and dirs per dir should be greater than zero");
+    }
+    this.root = root;
+    this.filesPerDir = filesPerDir;
+    this.dirPerDir = dirPerDir;
+    this.slaveId = slaveId;
+    this.numSlaves = numSlaves;
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  /**
+   * All the threads of the JVM get the same namespace
+   */
+  public static synchronized SharedNamespace getInstance(String baseDir, int filesPerDir, int dirPerDir,
+          FilePoolSharing sharing, int slaveId, int numSlaves) {
+    if (instance == null) {
+      String root;
+      if (sharing == FilePoolSharing.CLUSTER) {
+        root = baseDir.trim();
+        root = (root.endsWith("/") ? root : root + "/") + "hops_shared";
+      } else if (sharing == FilePoolSharing.SLAVE) {
+        root = FileTreeGenerator.getThreadDir(baseDir, UUID.randomUUID(), 0, new Random());
+        slaveId = 0;
+        numSlaves = 1;
+      } else {
+        throw new IllegalArgumentException("The namespace is not shared. Sharing: " + sharing);
+      }
+      instance = new SharedNamespace(root, filesPerDir, dirPerDir, slaveId, Math.max(1, numSlaves));
+    }
+    return instance;
+  }
+
+  long nextFile() {
+    return filesIssued.getAndIncrement() * numSlaves + slaveId;
+  }
+
+  long nextDir() {
+    return dirsIssued.getAndIncrement() * numSlaves + slaveId;
+  }
+
+  public long getFilesIssued() {
+    return filesIssued.get();
+  }
+
+  public void setPeerFiles(long[] files) {
+    if (files.length != numSlaves) {
+      throw new IllegalArgumentException("Got the files of " + files.length + " slaves. Expecting " + numSlaves);
+    }
+    long total = 0;
+    for (int i = 0; i < files.length; i++) {
+      if (i != slaveId) {
+        total += files[i];
+      }
+    }
+    peerFilesTotal = total;
+    peerFiles = files.clone();
+  }
+
+  void add(long file, int renames) {
+    stripes[stripeOf(file)].add(file, renames);
+    liveFiles.incrementAndGet();
+  }
+
+  /**
+   * The sampler picks a rank among all the files, the oldest first, once
+   * per pick and always over the whole namespace, so that its size only
+   * changes by the files added or removed since the last pick. The rank is
+   * then mapped to the same relative position in a stripe picked uniformly,
+   * or in the files of another slave picked in proportion to its files.
+   * The files of the stripes and of the slaves are in creation order, so
+   * the position keeps the age of the file. Files that are not removed can
+   * also be files of the other slaves, the removed files are always own.
+   *
+   * @param entry gets the file number and the renames of a random file
+   * @param remove whether the file is removed from the namespace
+   * @return false if there are no files
+   */
+  boolean pick(SplitMix64Random rand, AccessSampler sampler, long[] entry, boolean remove) {
+    long own = Math.max(0, liveFiles.get());
+    // the removing picks use the same size, so that a sampler shared by
+    // reads and renames is not resized back and forth
+    long peers = peerFiles == null ? 0 : peerFilesTotal;
+    long total = own + peers;
+    if (own == 0 && (remove || peers == 0)) {
+      return false;
+    }
+    int size = (int) Math.min(total, Integer.MAX_VALUE);
+    double position = (sampler.next(size) + 0.5) / size;
+    if (!remove && rand.nextDouble() * total < peers) {
+      pickPeerFile(rand, position, entry);
+      return true;
+    }
+    int start = rand.nextInt(STRIPES);
+    for (int i = 0; i < STRIPES; i++) {
+      if (stripes[(start + i) & (STRIPES - 1)].pick(position, entry, remove)) {
+        if (remove) {
+          liveFiles.decrementAndGet();
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void pickPeerFile(SplitMix64Random rand, double position, long[] entry) {
+    long[] files = peerFiles;
+    long total = peerFilesTotal;
+    // the slave, in proportion to its files
+    long r = (long) (rand.nextDouble() * total);
+    int slave = 0;
+    for (; slave < files.length; slave++) {
+      if (slave == slaveId) {
+        continue;
+      }
+      if (r < files[slave]) {
+        break;
+      }
+      r -= files[slave];
+    }
+    if (slave == files.length) {
+      // rounding, take the last slave with files
+      slave = files.length - 1;
+      while (slave == slaveId || files[slave] == 0) {
+        slave--;
+      }
+    }
+    long k = Math.min((long) (position * files[slave]), files[slave] - 1);
+    entry[0] = k * numSlaves + slave;
+    entry[1] = 0;
+  }
+
+  public long size() {
+    return liveFiles.get();
+  }
+
+  long getDirOf(long file) {
+    return file / filesPerDir;
+  }
+
+  void appendFilePath(StringBuilder path, long file, int renames) {
+    appendDirPath(path, getDirOf(file));
+    CompactFileTreeGenerator.appendFileName(path, file, renames);
+  }
+
+  void appendDirPath(StringBuilder path, long dir) {
+    path.append(root);
+    CompactFileTreeGenerator.appendDirPath(path, dir, dirPerDir);
+  }
+
+  /**
+   * the dirs created by mkdirs are kept apart from the files' dirs
+   */
+  void appendNewDirPath(StringBuilder path, long dir) {
+    path.append(root).append(MKDIRS_DIR);
+    CompactFileTreeGenerator.appendDirPath(path, dir, dirPerDir);
+  }
+
+  private static int stripeOf(long file) {
+    return (int) ((file * 0x9E3779B97F4A7C15L) >>> 58);
+  }
+
+  private static class Stripe {
+    private static final long REMOVED = -1;
+    // files[0, size) in creation order, removed files are REMOVED
+    private long[] files = new long[256];
+    private int[] renames = new int[256];
+    private int size = 0;
+    private int live = 0;
+
+    synchronized void add(long file, int renamed) {
+      if (size == files.length) {
+        if (live < size / 2) {
+          compact();
+        } else {
+          files = Arrays.copyOf(files, size * 2);
+          renames = Arrays.copyOf(renames, size * 2);
+        }
+      }
+      files[size] = file;
+      renames[size] = renamed;
+      size++;
+      live++;
+    }
+
+    /**
+     * @param position relative position of the file, in [0, 1)
+     */
+    synchronized boolean pick(double position, long[] entry, boolean remove) {
+      if (live == 0) {
+        return false;
+      }
+      if (live < size / 2) {
+        compact();
+      }
+      // at least half of the entries are files, take the closest one
+      int index = Math.min((int) (position * size), size - 1);
+      if (files[index] == REMOVED) {
+        int after = index + 1;
+        int before = index - 1;
+        while (true) {
+          if (after < size && files[after] != REMOVED) {
+            index = after;
+            break;
+          }
+          if (before >= 0 && files[before] != REMOVED) {
+            index = before;
+            break;
+          }
+          after++;
+          before--;
+        }
+      }
+      entry[0] = files[index];
+      entry[1] = renames[index];
+      if (remove) {
+        files[index] = REMOVED;
+        live--;
+        while (size > 0 && files[size - 1] == REMOVED) {
+          size--;
+        }
+      }
+      return true;
+    }
+
+    private void compact() {
+      int j = 0;
+      for (int i = 0; i < size; i++) {
+        if (files[i] != REMOVED) {
+          files[j] = files[i];
+          renames[j] = renames[i];
+          j++;
+        }
+      }
+      size = j;
+    }
+
+  }
+}
@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.workload.generator;
+
+import java.io.Serializable;
+
+/**
+ * Shape of a pre-populated tree. The files are in the dirs at depth, the
+ * leaves, filesPerDir per leaf. Dirs are numbered as in
+ * CompactFileTreeGenerator, and file n is hops_file_n in leaf n / filesPerDir,
+ * so the path of every file is computed from its number.
+ *
+ * The leaves are partitioned between the workers, i.e. the threads of all
+ * the slaves: worker w of W gets the leaves w, w + W, w + 2W, ... A worker
+ * creates its leaves in order, so after a restart the created leaves are a
+ * prefix of its leaves. The pools of a later run compute the files of their
+ * partition instead of listing the namespace.
+ *
+ * @author salman
+ */
+public class TreeDescription implements Serializable {
+
+  private final String root;
+  private final int fanout;
+  private final int filesPerDir;
+  private final long files;
+  private final int depth;
+  // dirs above the leaves
+  private final long firstLeafDir;
+
+  /**
+   * @param depth depth of the leaves. 0 = the smallest depth that fits the files
+   */
+  public TreeDescription(String root, int fanout, int filesPerDir, long files, int depth) {
+    if (fanout <= 0 || filesPerDir <= 0 || files <= 0 || depth < 0) {
+      throw new IllegalArgumentException("Wrong tree. Fanout: " + fanout + " Files per dir: " + filesPerDir
+              + " Files: " + files + " Depth: " + depth);
+    }
+    long leaves = (files + filesPerDir - 1) / filesPerDir;
+    long levelSize = fanout;
+    long dirsAbove = 0;
+    int level = 1;
+    while (depth == 0 ? levelSize < leaves : level < depth) {
+      if (levelSize > Long.MAX_VALUE / fanout) {
+        throw new IllegalArgumentException("The tree is too deep. Depth: " + depth + " Fanout: " + fanout);
+      }
+      dirsAbove += levelSize;
+      levelSize *= fanout;
+      level++;
+    }
+    if (levelSize < leaves) {
+      throw new IllegalArgumentException(files + " files do not fit in " + levelSize + " leaves of "
+              + filesPerDir + " files");
+    }
+    root = root.trim();
+    this.root = root.endsWith("/") ? root.substring(0, root.length() - 1) : root;
+    this.fanout = fanout;
+    this.filesPerDir = filesPerDir;
+    this.files = files;
+    this.depth = level;
+    this.firstLeafDir = dirsAbove;
+  }
+
+  public String getRoot() {
+    return root;
+  }
+
+  public int getFanout() {
+    return fanout;
+  }
+
+  public int getFilesPerDir() {
+    return filesPerDir;
+  }
+
+  public long getFiles() {
+    return files;
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  public long getLeaves() {
+    return (files + filesPerDir - 1) / filesPerDir;
+  }
+
+  /**
+   * @return the k-th leaf of the worker
+   */
+  public long getLeafOf(int worker, int workers, long k) {
+    return worker + k * workers;
+  }
+
+  public long getLeavesOf(int worker, int workers) {
+    long leaves = getLeaves();
+    return worker < leaves ? (leaves - worker + workers - 1) / workers : 0;
+  }
+
+  public long getFilesOf(int worker, int workers) {
+    long leaves = getLeavesOf(worker, workers);
+    if (leaves == 0) {
+      return 0;
+    }
+    // only the last leaf of the tree can be partly filled
+    long lastLeaf = getLeafOf(worker, workers, leaves - 1);
+    return (leaves - 1) * filesPerDir + (getLastFile(lastLeaf) - getFirstFile(lastLeaf) + 1);
+  }
+
+  /**
+   * @return the index-th file of the worker
+   */
+  public long getFileOf(int worker, int workers, long index) {
+    return getLeafOf(worker, workers, index / filesPerDir) * filesPerDir + index % filesPerDir;
+  }
+
+  public long getFirstFile(long leaf) {
+    return leaf * filesPerDir;
+  }
+
+  public long getLastFile(long leaf) {
+    return Math.min(files, (leaf + 1) * filesPerDir) - 1;
+  }
+
+  public void appendLeafPath(StringBuilder path, long leaf) {
+    path.append(root);
+    CompactFileTreeGenerator.appendDirPath(path, firstLeafDir + leaf, fanout);
+  }
+
+  public void appendFilePath(StringBuilder path, long file, int renames) {
+    appendLeafPath(path, file / filesPerDir);
+    CompactFileTreeGenerator.appendFileName(path, file, renames);
+  }
+
+  @Override
+  public String toString() {
+    return files + " files in " + getLeaves() + " dirs of " + root + ". Depth: " + depth
+            + " Fanout: " + fanout + " Files per dir: " + filesPerDir;
+  }
+}
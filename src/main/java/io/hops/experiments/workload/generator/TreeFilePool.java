@@ -0,0 +1,293 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.hops.experiments.workload.generator;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pool of a worker's partition of a pre-populated tree. The files of the
+ * partition are computed from the TreeDescription, so the pool takes no
+ * memory per file and nothing is listed when it is created. The files and
+ * dirs created by the benchmark are kept in the wrapped pool.
+ *
+ * The reads, stats etc. pick a file among the tree files followed by the
+ * files of the wrapped pool, the wrapped pool choosing which of its own.
+ * The deletes empty the wrapped pool before taking the last files of the
+ * tree. Renamed tree files are kept in a map.
+ *
+ * Like the other pools it is used by one thread only. Its manifest is its
+ * part of the tree, the number of tree files not deleted, the renamed tree
+ * files and the manifest of the wrapped pool.
+ *
+ * @author salman
+ */
+public class TreeFilePool implements PersistentFilePool {
+
+  private final TreeDescription tree;
+  // the part of the tree of a loaded manifest replaces the pool's own part
+  private int worker;
+  private final int workers;
+  private final FilePool pool;
+  private final AccessSampler accessSampler;
+  // tree files not deleted, the files [0, treeFiles) of the partition
+  private long treeFiles;
+  // files created in the wrapped pool and not deleted
+  private long poolFiles = 0;
+  // times renamed, by index in the partition
+  private final Map<Long, Integer> renames = new HashMap<Long, Integer>();
+  // tree file handed out for a rename, -1 if it came from the wrapped pool
+  private long currIndex = -1;
+  private final StringBuilder pathBuilder = new StringBuilder(128);
+
+  /**
+   * @param accessSampler picks the files. null = uniform
+   */
+  public TreeFilePool(TreeDescription tree, int worker, int workers, FilePool pool, AccessSampler accessSampler) {
+    if (worker < 0 || worker >= workers) {
+      throw new IllegalArgumentException("Wrong worker " + worker + " of " + workers);
+    }
+    this.tree = tree;
+    this.worker = worker;
+    this.workers = workers;
+    this.pool = pool;
+    this.accessSampler = accessSampler != null ? accessSampler : new AccessSampler.Uniform();
+    this.treeFiles = tree.getFilesOf(worker, workers);
+  }
+
+  @Override
+  public String getDirToCreate() {
+    return pool.getDirToCreate();
+  }
+
+  @Override
+  public String getFileToCreate() {
+    return pool.getFileToCreate();
+  }
+
+  @Override
+  public void fileCreationSucceeded(String file) {
+    pool.fileCreationSucceeded(file);
+    poolFiles++;
+  }
+
+  @Override
+  public String getFileToAppend() {
+    return pickTreeFile() ? buildFilePath(currIndex) : pool.getFileToAppend();
+  }
+
+  @Override
+  public String getFileToRead() {
+    return pickTreeFile() ? buildFilePath(currIndex) : pool.getFileToRead();
+  }
+
+  @Override
+  public String getFileToStat() {
+    return pickTreeFile() ? buildFilePath(currIndex) : pool.getFileToStat();
+  }
+
+  @Override
+  public String getDirToStat() {
+    return pickTreeFile() ? buildDirPath(currIndex) : pool.getDirToStat();
+  }
+
+  @Override
+  public String getFileToInfo() {
+    return pickTreeFile() ? buildFilePath(currIndex) : pool.getFileToInfo();
+  }
+
+  @Override
+  public String getDirToInfo() {
+    return pickTreeFile() ? buildDirPath(currIndex) : pool.getDirToInfo();
+  }
+
+  @Override
+  public String getFileToSetReplication() {
+    return pickTreeFile() ? buildFilePath(currIndex) : pool.getFileToSetReplication();
+  }
+
+  @Override
+  public String getFilePathToChangePermissions() {
+    return pickTreeFile() ? buildFilePath(currIndex) : pool.getFilePathToChangePermissions();
+  }
+
+  @Override
+  public String getDirPathToChangePermissions() {
+    return pickTreeFile() ? buildDirPath(currIndex) : pool.getDirPathToChangePermissions();
+  }
+
+  @Override
+  public String getFileToRename() {
+    return pickTreeFile() ? buildFilePath(currIndex) : pool.getFileToRename();
+  }
+
+  @Override
+  public void fileRenamed(String from, String to) {
+    if (currIndex < 0) {
+      pool.fileRenamed(from, to);
+      return;
+    }
+    if (!from.equals(buildFilePath(currIndex))) {
+      throw new IllegalStateException("File name did not match.");
+    }
+    renames.put(currIndex, getRenames(currIndex) + 1);
+  }
+
+  @Override
+  public String getFileToDelete() {
+    if (poolFiles > 0) {
+      String file = pool.getFileToDelete();
+      if (file != null) {
+        poolFiles--;
+        currIndex = -1;
+        return file;
+      }
+      poolFiles = 0;
+    }
+    if (treeFiles == 0) {
+      return null;
+    }
+    currIndex = --treeFiles;
+    String file = buildFilePath(currIndex);
+    renames.remove(currIndex);
+    return file;
+  }
+
+  @Override
+  public String getFileToChown() {
+    return pickTreeFile() ? buildFilePath(currIndex) : pool.getFileToChown();
+  }
+
+  @Override
+  public String getDirToChown() {
+    return pickTreeFile() ? buildDirPath(currIndex) : pool.getDirToChown();
+  }
+
+  @Override
+  public long getFileData(byte[] buffer) throws IOException {
+    return pool.getFileData(buffer);
+  }
+
+  @Override
+  public long getNewFileSize() throws IOException {
+    return pool.getNewFileSize();
+  }
+
+  @Override
+  public boolean hasMoreFilesToWrite() {
+    return pool.hasMoreFilesToWrite();
+  }
+
+  @Override
+  public void writeManifest(DataOutput out) throws IOException {
+    NamespaceManifest.writeVarLong(out, worker);
+    NamespaceManifest.writeVarLong(out, workers);
+    NamespaceManifest.writeVarLong(out, treeFiles);
+    // the renamed files as (index delta, times renamed), sorted by index
+    List<Long> renamed = new ArrayList<Long>(renames.keySet());
+    Collections.sort(renamed);
+    NamespaceManifest.writeVarLong(out, renamed.size());
+    long previous = 0;
+    for (Long index : renamed) {
+      NamespaceManifest.writeVarLong(out, index - previous);
+      NamespaceManifest.writeVarLong(out, renames.get(index));
+      previous = index;
+    }
+    NamespaceManifest.writeVarLong(out, poolFiles);
+    NamespaceManifest.save(pool, out);
+  }
+
+  @Override
+  public void readManifest(ByteBuffer in) throws IOException {
+    int manifestWorker = NamespaceManifest.readVarInt(in);
+    int manifestWorkers = NamespaceManifest.readVarInt(in);
+    if (manifestWorkers != workers) {
+      throw new IllegalStateException("The manifest is of a tree split in " + manifestWorkers
+              + " parts. This tree is split in " + workers);
+    }
+    long manifestTreeFiles = NamespaceManifest.readVarLong(in);
+    if (manifestTreeFiles > tree.getFilesOf(manifestWorker, workers)) {
+      throw new IOException("The manifest has " + manifestTreeFiles + " tree files. The part "
+              + manifestWorker + " of the tree has " + tree.getFilesOf(manifestWorker, workers));
+    }
+    worker = manifestWorker;
+    treeFiles = manifestTreeFiles;
+    renames.clear();
+    int renamed = NamespaceManifest.readVarInt(in);
+    long index = 0;
+    for (int i = 0; i < renamed; i++) {
+      index += NamespaceManifest.readVarLong(in);
+      renames.put(index, NamespaceManifest.readVarInt(in));
+    }
+    poolFiles = NamespaceManifest.readVarLong(in);
+    NamespaceManifest.load(pool, in);
+  }
+
+  public long getTreeFiles() {
+    return treeFiles;
+  }
+
+  /**
+   * @return the index of a tree file, or -1 to use the wrapped pool
+   */
+  private long nextIndex() {
+    long files = treeFiles + poolFiles;
+    if (files == 0) {
+      return -1;
+    }
+    long index = files <= Integer.MAX_VALUE ? accessSampler.next((int) files)
+            // the sampler takes an int. Spread its picks over the larger pool
+            : (long) (accessSampler.next(Integer.MAX_VALUE) * ((double) files / Integer.MAX_VALUE));
+    return index < treeFiles ? index : -1;
+  }
+
+  /**
+   * @return true if the picked file, currIndex, is a tree file
+   */
+  private boolean pickTreeFile() {
+    currIndex = nextIndex();
+    return currIndex >= 0;
+  }
+
+  private String buildDirPath(long index) {
+    pathBuilder.setLength(0);
+    tree.appendLeafPath(pathBuilder, tree.getFileOf(worker, workers, index) / tree.getFilesPerDir());
+    return pathBuilder.toString();
+  }
+
+  private String buildFilePath(long index) {
+    pathBuilder.setLength(0);
+    tree.appendFilePath(pathBuilder, tree.getFileOf(worker, workers, index), getRenames(index));
+    return pathBuilder.toString();
+  }
+
+  private int getRenames(long index) {
+    Integer times = renames.get(index);
+    return times == null ? 0 : times;
+  }
+
+  @Override
+  public String toString() {
+    return "TreeFilePool{worker " + worker + " of " + workers + ", " + treeFiles + " tree files, pool " + pool + "}";
+  }
+}